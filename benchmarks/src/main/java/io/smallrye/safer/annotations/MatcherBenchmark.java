@@ -0,0 +1,119 @@
+package io.smallrye.safer.annotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.Matcher;
+import io.smallrye.safer.annotations.benchmarks.Sources;
+import io.smallrye.safer.annotations.benchmarks.TaskEnvironment;
+
+/**
+ * Measures how types are matched against growing lists of allowed types, one matcher at a time through the
+ * {@link javax.lang.model.util.Types} API, and through {@link AllowedTypes}, as well as how allowed types are turned into
+ * matchers. It lives in the processor package to reach its internals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatcherBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int allowedTypes;
+
+    @Param({ "exact", "subtype" })
+    public String matcher;
+
+    private Path dir;
+    private TaskEnvironment environment;
+    // Type{i}, Sub{i}, and a type which matches nothing
+    private final List<TypeMirror> checkedTypes = new ArrayList<>();
+    // Generic{i} or Subtype{i}
+    private final List<TypeMirror> wrappers = new ArrayList<>();
+    private final List<Matcher> matchers = new ArrayList<>();
+    private AllowedTypes allowed;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("safer-annotations-benchmark");
+        environment = TaskEnvironment.analyze(Sources.generateTypes(dir, allowedTypes));
+        Elements elements = environment.getElementUtils();
+        for (int i = 0; i < allowedTypes; i++) {
+            TypeMirror type = elements.getTypeElement("bench.types.Type" + i).asType();
+            checkedTypes.add(type);
+            checkedTypes.add(elements.getTypeElement("bench.types.Sub" + i).asType());
+            if (matcher.equals("exact")) {
+                wrappers.add(elements.getTypeElement("bench.types.Generic" + i).asType());
+                matchers.add(SaferAnnotationProcessor.makeTypeMatcher(type));
+            } else {
+                TypeMirror wrapper = elements.getTypeElement("bench.types.Subtype" + i).asType();
+                wrappers.add(wrapper);
+                matchers.add(SaferAnnotationProcessor.makeTypeMatcher(wrapper));
+            }
+        }
+        checkedTypes.add(elements.getTypeElement(String.class.getName()).asType());
+        allowed = new AllowedTypes(matchers, new SupertypeClosures());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void matchers(Blackhole blackhole) {
+        for (TypeMirror checkedType : checkedTypes) {
+            boolean matches = false;
+            for (Matcher m : matchers) {
+                if (m.matches(environment, checkedType)) {
+                    matches = true;
+                    break;
+                }
+            }
+            blackhole.consume(matches);
+        }
+    }
+
+    @Benchmark
+    public void allowedTypes(Blackhole blackhole) {
+        // measure the matching itself, not the verdicts remembered by the previous invocation
+        allowed.clearVerdicts();
+        for (TypeMirror checkedType : checkedTypes) {
+            blackhole.consume(allowed.matches(environment, checkedType));
+        }
+    }
+
+    @Benchmark
+    public void makeTypeMatcher(Blackhole blackhole) {
+        for (TypeMirror wrapper : wrappers) {
+            blackhole.consume(SaferAnnotationProcessor.makeTypeMatcher(wrapper));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package io.smallrye.safer.annotations.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks like {@link Main}, but writes the results as JSON unless told otherwise with <code>-rf</code>,
+ * to <code>jmh-result.json</code> unless told otherwise with <code>-rff</code>, so that the results of different
+ * commits can be compared.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("json");
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
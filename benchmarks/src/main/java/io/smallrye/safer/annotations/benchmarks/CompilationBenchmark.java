@@ -0,0 +1,109 @@
+package io.smallrye.safer.annotations.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor;
+
+/**
+ * Compares full in-process compilations: without checks, with the annotation processor, and with the javac plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CompilationBenchmark {
+
+    @Param({ "100", "1000" })
+    public int classes;
+
+    @Param({ "10" })
+    public int methodsPerClass;
+
+    private Path dir;
+    private List<File> sources;
+    private JavaCompiler compiler;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("safer-annotations-benchmark");
+        sources = Sources.generate(dir.resolve("src"), classes, methodsPerClass);
+        compiler = ToolProvider.getSystemJavaCompiler();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean javac() throws IOException {
+        return compile(Collections.emptyList(), "-proc:none");
+    }
+
+    @Benchmark
+    public boolean processor() throws IOException {
+        return compile(Arrays.asList(new SaferAnnotationProcessor()));
+    }
+
+    @Benchmark
+    public boolean plugin() throws IOException {
+        return compile(Collections.emptyList(), "-proc:none", "-Xplugin:SaferAnnotations");
+    }
+
+    boolean compile(List<Processor> processors, String... extraOptions) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ENGLISH,
+                StandardCharsets.UTF_8)) {
+            List<String> options = new ArrayList<>(Arrays.asList("-d", dir.resolve("classes").toString(),
+                    "-classpath", System.getProperty("java.class.path")));
+            options.addAll(Arrays.asList(extraOptions));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(processors);
+            if (!task.call()) {
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    System.err.println(diagnostic);
+                }
+                throw new IllegalStateException("Compilation failed");
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package io.smallrye.safer.annotations.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor;
+
+/**
+ * Measures the initialisation of the processor when its class path lists many {@link
+ * io.smallrye.safer.annotations.DefinitionOverride} services, up to the resolution of their targets, which happens
+ * when the processor is asked for the annotations it supports in <code>index</code> discovery mode. The overrides are
+ * either compiled along with the analyzed sources, or come from a jar on both the processor and the javac class paths,
+ * like those of libraries. Each invocation gets a new javac task, so that the symbols javac completes for the
+ * processor are measured, and the processor is loaded by a class loader which sees the generated service file, once
+ * per trial. The invocations never finish processing, so they do not release the class path snapshot, which is shared
+ * by them as it is by the concurrent compilations of a build daemon.
+ * <p>
+ * {@link #retainedHeap} reports the heap retained by each initialisation, processor and completed javac symbols
+ * included, as its <code>retainedBytes</code> secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InitBenchmark {
+
+    private static final Map<String, String> OPTIONS = Collections
+            .singletonMap(SaferAnnotationProcessor.DISCOVERY_OPTION, "index");
+
+    @Param({ "10", "100", "1000" })
+    public int overrides;
+
+    @Param({ "sources", "jar" })
+    public String location;
+
+    private Path dir;
+    // the sources each invocation analyzes, and the class path it needs
+    private List<File> sources;
+    private List<File> classPath;
+    private TaskEnvironment environment;
+    private URLClassLoader classLoader;
+    private Class<? extends Processor> processorClass;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("safer-annotations-benchmark");
+        Path resources = dir.resolve("resources");
+        List<File> overrideSources = Sources.generateOverrides(dir.resolve("src"), resources, overrides);
+        URL processorLocation = SaferAnnotationProcessor.class.getProtectionDomain().getCodeSource().getLocation();
+        if (location.equals("jar")) {
+            Path classes = dir.resolve("classes");
+            compile(overrideSources, classes);
+            Path jar = jar(Arrays.asList(classes, resources), dir.resolve("overrides.jar"));
+            Path empty = Files.write(dir.resolve("Empty.java"), "public class Empty {\n}\n".getBytes(StandardCharsets.UTF_8));
+            sources = Collections.singletonList(empty.toFile());
+            classPath = Collections.singletonList(jar.toFile());
+            classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL(), processorLocation },
+                    ClassLoader.getPlatformClassLoader());
+        } else {
+            sources = overrideSources;
+            classPath = Collections.emptyList();
+            classLoader = new URLClassLoader(new URL[] { resources.toUri().toURL(), processorLocation },
+                    ClassLoader.getPlatformClassLoader());
+        }
+        processorClass = classLoader.loadClass(SaferAnnotationProcessor.class.getName()).asSubclass(Processor.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void analyze() throws IOException {
+        environment = TaskEnvironment.analyze(sources, OPTIONS, classPath);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Set<String> init() throws ReflectiveOperationException {
+        return supportedAnnotationTypes(processorClass.getConstructor().newInstance());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    // so that the heap is compacted by System.gc(), and its usage is exact
+    @Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public Processor retainedHeap(Heap heap) throws ReflectiveOperationException {
+        Processor processor = processorClass.getConstructor().newInstance();
+        long before = usedHeap();
+        supportedAnnotationTypes(processor);
+        heap.retainedBytes += usedHeap() - before;
+        return processor;
+    }
+
+    private Set<String> supportedAnnotationTypes(Processor processor) {
+        processor.init(environment);
+        Set<String> supportedAnnotationTypes = processor.getSupportedAnnotationTypes();
+        if (supportedAnnotationTypes.size() < overrides) {
+            throw new IllegalStateException("Overrides not found: " + supportedAnnotationTypes);
+        }
+        return supportedAnnotationTypes;
+    }
+
+    private static long usedHeap() {
+        // what finalizers and cleaners release takes more than one collection to be reclaimed
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            System.gc();
+            System.runFinalization();
+            long previous = used;
+            used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (used == previous) {
+                break;
+            }
+        }
+        return used;
+    }
+
+    private static void compile(List<File> sources, Path output) throws IOException {
+        Files.createDirectories(output);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ENGLISH,
+                StandardCharsets.UTF_8)) {
+            if (!compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-proc:none", "-d", output.toString(), "-classpath",
+                            System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjectsFromFiles(sources)).call()) {
+                throw new IllegalStateException("Failed to compile the overrides");
+            }
+        }
+    }
+
+    private static Path jar(List<Path> directories, Path jar) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Path directory : directories) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(directory)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    out.putNextEntry(new JarEntry(directory.relativize(file).toString().replace('\\', '/')));
+                    Files.copy(file, (OutputStream) out);
+                    out.closeEntry();
+                }
+            }
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,140 @@
+package io.smallrye.safer.annotations.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.smallrye.safer.annotations.DefinitionOverride;
+
+/**
+ * Generates sources which use constrained annotations, in the way a typical service does: a few annotated methods per
+ * class, next to plain ones.
+ */
+public final class Sources {
+
+    static final String PACKAGE = "bench";
+    static final String TYPES_PACKAGE = "bench.types";
+    static final String OVERRIDES_PACKAGE = "bench.overrides";
+
+    private static final String[] RETURN_TYPES = { "void", "String", "java.util.List<Integer>" };
+    private static final String[] PARAMETER_TYPES = { "Integer", "java.util.List<Integer>", "RuntimeException",
+            "java.io.IOException" };
+
+    private Sources() {
+    }
+
+    /**
+     * Writes the constrained annotation and the given number of classes using it to the given directory.
+     *
+     * @return the written source files
+     */
+    public static List<File> generate(Path dir, int classes, int methodsPerClass) throws IOException {
+        Path packageDir = dir.resolve(PACKAGE);
+        Files.createDirectories(packageDir);
+        List<File> files = new ArrayList<>();
+        files.add(write(packageDir, "Handler", "package " + PACKAGE + ";\n"
+                + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                + "@TargetMethod(returnTypes = { void.class, String.class, ListOfInteger.class },"
+                + " parameterTypes = { Integer.class, ListOfInteger.class, ThrowableSubtype.class })\n"
+                + "public @interface Handler {\n"
+                + "}\n"
+                + "class ListOfInteger extends TargetMethod.GenericType<java.util.List<Integer>> {\n"
+                + "}\n"
+                + "class ThrowableSubtype extends TargetMethod.Subtype<Throwable> {\n"
+                + "}\n"));
+        for (int i = 0; i < classes; i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("package ").append(PACKAGE).append(";\n");
+            sb.append("public class Service").append(i).append(" {\n");
+            for (int m = 0; m < methodsPerClass; m++) {
+                String returnType = RETURN_TYPES[(i + m) % RETURN_TYPES.length];
+                String parameterType = PARAMETER_TYPES[(i + m) % PARAMETER_TYPES.length];
+                // every other method is annotated
+                if (m % 2 == 0) {
+                    sb.append("    @Handler\n");
+                }
+                sb.append("    public ").append(returnType).append(" method").append(m).append("(")
+                        .append(parameterType).append(" p) {\n");
+                if (!returnType.equals("void")) {
+                    sb.append("        return null;\n");
+                }
+                sb.append("    }\n");
+            }
+            sb.append("}\n");
+            files.add(write(packageDir, "Service" + i, sb.toString()));
+        }
+        return files;
+    }
+
+    /**
+     * Writes the given number of types, in the <code>bench.types</code> package: <code>Type{i}</code>, its subclass
+     * <code>Sub{i}</code>, and the <code>Generic{i}</code> and <code>Subtype{i}</code> wrappers which allow
+     * <code>List&lt;Type{i}&gt;</code> and the subtypes of <code>Type{i}</code> in constraints.
+     *
+     * @return the written source files
+     */
+    public static List<File> generateTypes(Path dir, int types) throws IOException {
+        Path packageDir = dir.resolve(TYPES_PACKAGE.replace('.', File.separatorChar));
+        Files.createDirectories(packageDir);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < types; i++) {
+            String header = "package " + TYPES_PACKAGE + ";\n"
+                    + "import io.smallrye.safer.annotations.TargetMethod;\n";
+            files.add(write(packageDir, "Type" + i, header
+                    + "public class Type" + i + " {\n"
+                    + "}\n"));
+            files.add(write(packageDir, "Sub" + i, header
+                    + "public class Sub" + i + " extends Type" + i + " implements java.io.Serializable {\n"
+                    + "}\n"));
+            files.add(write(packageDir, "Generic" + i, header
+                    + "public class Generic" + i + " extends TargetMethod.GenericType<java.util.List<Type" + i
+                    + ">> {\n"
+                    + "}\n"));
+            files.add(write(packageDir, "Subtype" + i, header
+                    + "public class Subtype" + i + " extends TargetMethod.Subtype<Type" + i + "> {\n"
+                    + "}\n"));
+        }
+        return files;
+    }
+
+    /**
+     * Writes the given number of annotations, in the <code>bench.overrides</code> package, each constrained by a
+     * {@link DefinitionOverride}, and the service file listing these overrides to the given resource directory.
+     *
+     * @return the written source files
+     */
+    public static List<File> generateOverrides(Path dir, Path resourceDir, int overrides) throws IOException {
+        Path packageDir = dir.resolve(OVERRIDES_PACKAGE.replace('.', File.separatorChar));
+        Files.createDirectories(packageDir);
+        List<File> files = new ArrayList<>();
+        StringBuilder services = new StringBuilder();
+        for (int i = 0; i < overrides; i++) {
+            files.add(write(packageDir, "Annotation" + i, "package " + OVERRIDES_PACKAGE + ";\n"
+                    + "public @interface Annotation" + i + " {\n"
+                    + "}\n"));
+            files.add(write(packageDir, "Override" + i, "package " + OVERRIDES_PACKAGE + ";\n"
+                    + "import io.smallrye.safer.annotations.DefinitionOverride;\n"
+                    + "import io.smallrye.safer.annotations.OverrideTarget;\n"
+                    + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                    + "@OverrideTarget(Annotation" + i + ".class)\n"
+                    + "@TargetMethod(returnTypes = String.class, parameterTypes = Integer.class)\n"
+                    + "public class Override" + i + " implements DefinitionOverride {\n"
+                    + "}\n"));
+            services.append(OVERRIDES_PACKAGE).append(".Override").append(i).append('\n');
+        }
+        Path servicesFile = resourceDir.resolve("META-INF/services/" + DefinitionOverride.class.getName());
+        Files.createDirectories(servicesFile.getParent());
+        Files.write(servicesFile, services.toString().getBytes(StandardCharsets.UTF_8));
+        return files;
+    }
+
+    private static File write(Path packageDir, String className, String source) throws IOException {
+        Path file = packageDir.resolve(className + ".java");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}
@@ -0,0 +1,158 @@
+package io.smallrye.safer.annotations.benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.sun.source.util.JavacTask;
+
+/**
+ * A {@link ProcessingEnvironment} over sources analyzed by javac, so that the processor internals can be measured
+ * outside of annotation processing rounds. It has no compilation output: messages go to the standard error, and the
+ * {@link Filer} finds and creates nothing.
+ */
+public final class TaskEnvironment implements ProcessingEnvironment, Messager, Filer {
+
+    private final JavacTask task;
+    private final Map<String, String> options;
+
+    private TaskEnvironment(JavacTask task, Map<String, String> options) {
+        this.task = task;
+        this.options = options;
+    }
+
+    /**
+     * Analyzes the given sources, against the class path of this JVM.
+     */
+    public static TaskEnvironment analyze(List<File> sources, Map<String, String> options) throws IOException {
+        return analyze(sources, options, Collections.emptyList());
+    }
+
+    /**
+     * Analyzes the given sources, against the class path of this JVM followed by the given jars and directories.
+     */
+    public static TaskEnvironment analyze(List<File> sources, Map<String, String> options, List<File> classPath)
+            throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ENGLISH,
+                StandardCharsets.UTF_8);
+        StringBuilder path = new StringBuilder(System.getProperty("java.class.path"));
+        for (File entry : classPath) {
+            path.append(File.pathSeparator).append(entry);
+        }
+        JavacTask task = (JavacTask) compiler.getTask(null, fileManager, null,
+                Arrays.asList("-proc:none", "-classpath", path.toString()), null,
+                fileManager.getJavaFileObjectsFromFiles(sources));
+        task.analyze();
+        return new TaskEnvironment(task, options);
+    }
+
+    public static TaskEnvironment analyze(List<File> sources) throws IOException {
+        return analyze(sources, Collections.emptyMap());
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    @Override
+    public Messager getMessager() {
+        return this;
+    }
+
+    @Override
+    public Filer getFiler() {
+        return this;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+        return task.getElements();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+        return task.getTypes();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+        return SourceVersion.latest();
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.ENGLISH;
+    }
+
+    // Messager
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg) {
+        System.err.println(kind.name().toLowerCase(Locale.ROOT) + ": " + msg);
+    }
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg, Element e) {
+        printMessage(kind, e + ": " + msg);
+    }
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg, Element e, AnnotationMirror a) {
+        printMessage(kind, msg, e);
+    }
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg, Element e, AnnotationMirror a, AnnotationValue v) {
+        printMessage(kind, msg, e);
+    }
+
+    // Filer
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) throws IOException {
+        throw new FilerException("No compilation output");
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) throws IOException {
+        throw new FilerException("No compilation output");
+    }
+
+    @Override
+    public FileObject createResource(Location location, CharSequence moduleAndPkg, CharSequence relativeName,
+            Element... originatingElements) throws IOException {
+        throw new FilerException("No compilation output");
+    }
+
+    @Override
+    public FileObject getResource(Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+            throws IOException {
+        throw new FileNotFoundException(relativeName.toString());
+    }
+}
@@ -0,0 +1,71 @@
+package io.smallrye.safer.annotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * What allocates in the methods of a {@link TargetAllocationFree} constraint, and how it is reported. The processor,
+ * the body scanner and the {@link RuntimeValidator} apply the same signature rules: a boxed return type, and boxed or
+ * varargs parameters, unless allowed with {@link AllowAllocation}.
+ */
+final class AllocationRules {
+
+    // the types primitive values are boxed to
+    private static final Set<String> BOXED_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "java.lang.Boolean",
+            "java.lang.Byte",
+            "java.lang.Character",
+            "java.lang.Short",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Float",
+            "java.lang.Double")));
+
+    private AllocationRules() {
+    }
+
+    /**
+     * @param type a type, or <code>null</code>
+     * @return whether it is the type a primitive value is boxed to
+     */
+    static boolean isBoxed(TypeMirror type) {
+        return type != null && type.getKind() == TypeKind.DECLARED
+                && isBoxed(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+    }
+
+    /**
+     * @param type the qualified name of a class
+     * @return whether it is the type a primitive value is boxed to
+     */
+    static boolean isBoxed(String type) {
+        return BOXED_TYPES.contains(type);
+    }
+
+    static String boxedReturnType(String type) {
+        return "boxed return type '" + type + "'";
+    }
+
+    static String boxedParameterType(String type) {
+        return "boxed parameter type '" + type + "'";
+    }
+
+    static String varargsParameter(String name) {
+        return "varargs parameter '" + name + "'";
+    }
+
+    /**
+     * @param allocation what allocates
+     * @param annotation the qualified name of the annotation with the {@link TargetAllocationFree} constraint
+     * @return the error message
+     */
+    static String message(String allocation, String annotation) {
+        return "Invalid allocation: " + allocation + ", and @" + annotation + " methods must not allocate";
+    }
+}
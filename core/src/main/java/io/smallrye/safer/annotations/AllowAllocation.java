@@ -0,0 +1,21 @@
+package io.smallrye.safer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Allows the allocations of a {@link TargetAllocationFree} method which were reviewed: on the method, all of them, on
+ * a parameter, its boxed or varargs type, and on a local variable, those made by its declaration. It is retained at
+ * runtime, so that the {@link RuntimeValidator} allows the same allocations as the processor.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.PARAMETER, ElementType.LOCAL_VARIABLE })
+public @interface AllowAllocation {
+
+    /**
+     * @return why the allocation is allowed
+     */
+    String value();
+}
@@ -0,0 +1,194 @@
+package io.smallrye.safer.annotations;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.ExactMatcher;
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.Matcher;
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.SubtypeMatcher;
+
+/**
+ * The list of types allowed in one position (return or parameter) of a {@link Constraint}, which remembers the
+ * verdicts it already gave so that types used over and over in signatures are only checked once.
+ * <p>
+ * Most allowed types are plain or fully parameterised types, or subtypes of raw types, which we can match by name:
+ * exact types against the canonical name of the checked type, and subtypes against the erased supertype closure of
+ * the checked type. Only the remaining matchers go through the {@link javax.lang.model.util.Types} API, and only when
+ * the erased types are compatible.
+ */
+final class AllowedTypes {
+
+    /**
+     * Bounds the number of verdicts we remember, evicting the least recently used ones.
+     */
+    static final int MAX_VERDICTS = 512;
+
+    private final List<Matcher> matchers;
+    private final SupertypeClosures supertypeClosures;
+    // canonical names of the allowed exact types
+    private final Set<String> exactNames = new HashSet<>();
+    // qualified names of the allowed raw supertypes
+    private final Set<String> subtypeNames = new HashSet<>();
+    // used for checked types which are not declared types, such as arrays
+    private final List<Matcher> subtypeMatchers = new ArrayList<>();
+    // matchers which need the Types API, with the erased name of their type, if declared
+    private final Map<Matcher, String> otherMatchers = new LinkedHashMap<>();
+    private final Map<String, Boolean> verdicts = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_VERDICTS;
+        }
+    };
+    private int hits;
+    private int misses;
+    private String description;
+
+    AllowedTypes(List<Matcher> matchers, SupertypeClosures supertypeClosures) {
+        this.matchers = matchers;
+        this.supertypeClosures = supertypeClosures;
+        for (Matcher matcher : matchers) {
+            if (matcher instanceof ExactMatcher) {
+                String name = TypeNames.canonicalName(((ExactMatcher) matcher).getTypeMirror());
+                // we leave wildcards to isSameType
+                if (name != null && name.indexOf('?') == -1) {
+                    exactNames.add(name);
+                    continue;
+                }
+                otherMatchers.put(matcher, erasedName(((ExactMatcher) matcher).getTypeMirror()));
+            } else if (matcher instanceof SubtypeMatcher) {
+                TypeMirror type = ((SubtypeMatcher) matcher).getTypeMirror();
+                String name = erasedName(type);
+                if (name != null && ((DeclaredType) type).getTypeArguments().isEmpty()
+                        && TypeNames.canonicalName(type) != null) {
+                    subtypeNames.add(name);
+                    subtypeMatchers.add(matcher);
+                    continue;
+                }
+                otherMatchers.put(matcher, name);
+            } else {
+                otherMatchers.put(matcher, null);
+            }
+        }
+    }
+
+    List<Matcher> getMatchers() {
+        return matchers;
+    }
+
+    private static String erasedName(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+
+    boolean matches(ProcessingEnvironment processingEnv, TypeMirror checkedType) {
+        String key = TypeNames.canonicalName(checkedType);
+        if (key == null) {
+            // type variables and such: let the Types API decide
+            return matchesAny(processingEnv, checkedType, matchers);
+        }
+        Boolean verdict = verdicts.get(key);
+        if (verdict == null) {
+            misses++;
+            verdict = matches(processingEnv, checkedType, key);
+            verdicts.put(key, verdict);
+        } else {
+            hits++;
+        }
+        return verdict;
+    }
+
+    private boolean matches(ProcessingEnvironment processingEnv, TypeMirror checkedType, String canonicalName) {
+        if (exactNames.contains(canonicalName)) {
+            return true;
+        }
+        if (subtypeNames.isEmpty() && otherMatchers.isEmpty()) {
+            return false;
+        }
+        if (checkedType.getKind() != TypeKind.DECLARED) {
+            return matchesAny(processingEnv, checkedType, subtypeMatchers)
+                    || matchesAny(processingEnv, checkedType, otherMatchers.keySet());
+        }
+        Set<String> closure = supertypeClosures.of(processingEnv.getTypeUtils(), (DeclaredType) checkedType);
+        if (closure == null) {
+            // incomplete hierarchy: let the Types API decide
+            return matchesAny(processingEnv, checkedType, matchers);
+        }
+        if (!subtypeNames.isEmpty()) {
+            for (String supertype : closure) {
+                if (subtypeNames.contains(supertype)) {
+                    return true;
+                }
+            }
+        }
+        for (Map.Entry<Matcher, String> entry : otherMatchers.entrySet()) {
+            Matcher matcher = entry.getKey();
+            String erasedName = entry.getValue();
+            // skip the matchers which cannot possibly match
+            if (erasedName != null) {
+                if (matcher instanceof SubtypeMatcher && !closure.contains(erasedName)) {
+                    continue;
+                }
+                if (matcher instanceof ExactMatcher && !erasedName.equals(erasedName(checkedType))) {
+                    continue;
+                }
+            }
+            if (matcher.matches(processingEnv, checkedType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(ProcessingEnvironment processingEnv, TypeMirror checkedType,
+            Iterable<Matcher> matchers) {
+        for (Matcher matcher : matchers) {
+            if (matcher.matches(processingEnv, checkedType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Types may gain supertypes between rounds, when the sources they depend on get generated, so verdicts are only
+     * kept for the duration of a round.
+     */
+    void clearVerdicts() {
+        verdicts.clear();
+    }
+
+    /**
+     * @return the number of checked types which reused a remembered verdict
+     */
+    int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of checked types which had to be matched
+     */
+    int getMisses() {
+        return misses;
+    }
+
+    // This is used in error reporting, and rendered once since every error against these types repeats it
+    @Override
+    public String toString() {
+        if (description == null) {
+            description = matchers.toString();
+        }
+        return description;
+    }
+}
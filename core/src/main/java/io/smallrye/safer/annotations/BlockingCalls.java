@@ -0,0 +1,122 @@
+package io.smallrye.safer.annotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The catalogue of blocking methods of a {@link TargetNonBlocking} constraint.
+ */
+final class BlockingCalls {
+
+    static final List<String> DEFAULT_BLOCKING = Collections.unmodifiableList(Arrays.asList(
+            "java.lang.Object#wait",
+            "java.lang.Thread#join",
+            "java.lang.Thread#sleep",
+            "java.util.concurrent.BlockingQueue#put",
+            "java.util.concurrent.BlockingQueue#take",
+            "java.util.concurrent.CompletableFuture#join",
+            "java.util.concurrent.CountDownLatch#await",
+            "java.util.concurrent.CyclicBarrier#await",
+            "java.util.concurrent.ExecutorService#awaitTermination",
+            "java.util.concurrent.ExecutorService#invokeAll",
+            "java.util.concurrent.ExecutorService#invokeAny",
+            "java.util.concurrent.Future#get",
+            "java.util.concurrent.Semaphore#acquire",
+            "java.util.concurrent.locks.Condition#await",
+            "java.util.concurrent.locks.Lock#lock",
+            "java.util.concurrent.locks.Lock#lockInterruptibly",
+            "java.sql.Connection",
+            "java.sql.DriverManager#getConnection",
+            "java.sql.ResultSet",
+            "java.sql.Statement",
+            "javax.sql.DataSource#getConnection",
+            "java.io.BufferedReader#readLine",
+            "java.io.InputStream#read",
+            "java.io.InputStream#readAllBytes",
+            "java.io.OutputStream#flush",
+            "java.io.OutputStream#write",
+            "java.io.Reader#read",
+            "java.nio.file.Files",
+            "java.net.InetAddress#getAllByName",
+            "java.net.InetAddress#getByName",
+            "java.net.ServerSocket#accept",
+            "java.net.Socket#connect",
+            "java.net.URL#openStream",
+            "java.net.URLConnection#getInputStream",
+            "java.net.http.HttpClient#send"));
+
+    // in-memory streams never block
+    static final List<String> DEFAULT_ALLOWED = Collections.unmodifiableList(Arrays.asList(
+            "java.io.ByteArrayInputStream",
+            "java.io.ByteArrayOutputStream",
+            "java.io.CharArrayReader",
+            "java.io.StringReader"));
+
+    final boolean defaults;
+    // on top of the defaults
+    final List<String> blocking;
+    final List<String> allowed;
+
+    BlockingCalls(boolean defaults, List<String> blocking, List<String> allowed) {
+        this.defaults = defaults;
+        this.blocking = blocking;
+        this.allowed = allowed;
+    }
+
+    /**
+     * @param elements the element utilities
+     * @param types the type utilities
+     * @param invoked a called method
+     * @return the catalogue entry the method matches, or <code>null</code> if it is not blocking, or allowed
+     */
+    String match(Elements elements, Types types, ExecutableElement invoked) {
+        if (match(elements, types, invoked, allowed) != null
+                || (defaults && match(elements, types, invoked, DEFAULT_ALLOWED) != null)) {
+            return null;
+        }
+        String entry = match(elements, types, invoked, blocking);
+        if (entry == null && defaults) {
+            entry = match(elements, types, invoked, DEFAULT_BLOCKING);
+        }
+        return entry;
+    }
+
+    private static String match(Elements elements, Types types, ExecutableElement invoked, List<String> entries) {
+        Element declaringType = invoked.getEnclosingElement();
+        String name = invoked.getSimpleName().toString();
+        for (String entry : entries) {
+            int separator = entry.indexOf('#');
+            if (separator != -1 && !entry.substring(separator + 1).equals(name)) {
+                continue;
+            }
+            // entries for types which are not in this compilation, such as JDBC on a runtime without java.sql, are ignored
+            TypeElement type = elements.getTypeElement(separator == -1 ? entry : entry.substring(0, separator));
+            if (type != null
+                    && types.isSubtype(types.erasure(declaringType.asType()), types.erasure(type.asType()))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a description of this catalogue, which is the same for equivalent catalogues
+     */
+    @Override
+    public String toString() {
+        List<String> description = new ArrayList<>();
+        description.add(String.valueOf(defaults));
+        description.addAll(blocking);
+        description.add("allowed");
+        description.addAll(allowed);
+        return description.toString();
+    }
+}
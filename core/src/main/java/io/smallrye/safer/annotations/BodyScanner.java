@@ -0,0 +1,52 @@
+package io.smallrye.safer.annotations;
+
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Reports the calls to blocking methods made from the bodies of {@link TargetNonBlocking} methods, the constructs
+ * which pin the carrier thread of {@link TargetVirtualThread} methods, and the allocations made from the bodies of
+ * {@link TargetAllocationFree} methods. Method bodies are only available to us through the javac Trees API on Java 11+,
+ * where the multi-release version of this class replaces this one, which cannot scan them.
+ */
+final class BodyScanner {
+
+    private BodyScanner() {
+    }
+
+    /**
+     * @return <code>null</code> after noting that method bodies are not checked, since they are not available before
+     *         Java 11
+     */
+    static BodyScanner create(ProcessingEnvironment processingEnv) {
+        processingEnv.getMessager().printMessage(Kind.NOTE,
+                "Method bodies are not checked: they are only available on javac 11 or later");
+        return null;
+    }
+
+    /**
+     * @return whether method bodies are available with this compiler, which they are not before Java 11
+     */
+    static boolean isAvailable(ProcessingEnvironment processingEnv) {
+        return false;
+    }
+
+    /**
+     * Scans the body of the given method, as soon as javac has attributed it.
+     *
+     * @param method the method
+     * @param constraints its {@link TargetNonBlocking}, {@link TargetVirtualThread} and {@link TargetAllocationFree}
+     *        constraints
+     */
+    void scan(ExecutableElement method, List<Constraint> constraints) {
+    }
+
+    /**
+     * Called once processing is over, with whether it raised errors.
+     */
+    void processingOver(boolean errorRaised) {
+    }
+}
@@ -0,0 +1,194 @@
+package io.smallrye.safer.annotations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * An immutable snapshot of what the processor reads from its class path: the declared {@link DefinitionOverride}
+ * services, the index of constrained annotations, and the constraint descriptors. The targets of the overrides found
+ * in jars are read from their class files, so that javac does not have to complete their symbols to find which one
+ * applies to an annotation; those of the overrides found in directories are left to the annotation mirrors, since
+ * directories are not fingerprinted beyond the resources above.
+ * <p>
+ * Snapshots are kept in a registry keyed by the fingerprint of these resources, and counted by the compilations using
+ * them: a compilation {@link #acquire(ProcessingEnvironment) acquires} its snapshot when the processor is initialised,
+ * reusing the one of any running compilation with the same fingerprint, and {@link #release() releases} it once
+ * processing is over, which evicts the snapshot when no other compilation uses it. The registry is static, so it is
+ * only shared by the processors loaded from the same class loader: build daemons and IDEs which keep their processor
+ * class loaders around and run compilations concurrently, or tools which run javac in process with the processor on
+ * their own class path. javac creates a new class loader for each compilation using {@code -processorpath}, in which
+ * case nothing is shared. What the processor reads from the compilation output, and the constraints it compiles from
+ * annotation mirrors, belong to a single compilation and are not shared.
+ */
+final class ClassPathSnapshot {
+
+    private static final String[] RESOURCES = {
+            SaferAnnotationProcessor.DEFINITION_OVERRIDE_SERVICES,
+            SaferAnnotationProcessor.CONSTRAINED_ANNOTATIONS_INDEX,
+            ConstraintDescriptors.RESOURCE
+    };
+
+    // fingerprint -> snapshot used by running compilations
+    private static final ConcurrentMap<Long, Entry> REGISTRY = new ConcurrentHashMap<>();
+
+    // null if the class path could not be fingerprinted, in which case the snapshot is not shared
+    private final Long fingerprint;
+    final Set<String> overrides;
+    // override class name -> target annotation name, for the overrides read from jars
+    final Map<String, String> overrideTargets;
+    final Set<String> constrainedAnnotations;
+    // resource URI -> descriptors
+    final Map<String, Map<String, ConstraintDescriptors.Descriptor>> descriptors;
+
+    private ClassPathSnapshot(Long fingerprint, Set<String> overrides, Map<String, String> overrideTargets,
+            Set<String> constrainedAnnotations,
+            Map<String, Map<String, ConstraintDescriptors.Descriptor>> descriptors) {
+        this.fingerprint = fingerprint;
+        this.overrides = overrides;
+        this.overrideTargets = overrideTargets;
+        this.constrainedAnnotations = constrainedAnnotations;
+        this.descriptors = descriptors;
+    }
+
+    /**
+     * @return the snapshot of the current processor class path, shared with the running compilations which load the
+     *         processor from the same class loader and see the same resources, to {@link #release()} once processing
+     *         is over
+     */
+    static ClassPathSnapshot acquire(ProcessingEnvironment processingEnv) {
+        Fingerprint fingerprint = new Fingerprint();
+        try {
+            fingerprint(SaferAnnotationProcessor.class.getClassLoader(), fingerprint);
+        } catch (IOException | URISyntaxException e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE,
+                    "Failed to fingerprint the processor class path, not sharing its resources: " + e);
+            return read(processingEnv, null);
+        }
+        // reads the resources while holding the entry, so that concurrent compilations do not read them again
+        return REGISTRY.compute(fingerprint.get(), (key, entry) -> {
+            if (entry == null) {
+                entry = new Entry(read(processingEnv, key));
+            }
+            entry.users++;
+            return entry;
+        }).snapshot;
+    }
+
+    /**
+     * Releases this snapshot, and evicts it if no other compilation uses it.
+     */
+    void release() {
+        if (fingerprint == null) {
+            return;
+        }
+        REGISTRY.computeIfPresent(fingerprint, (key, entry) -> --entry.users == 0 ? null : entry);
+    }
+
+    /**
+     * @return the number of snapshots in use
+     */
+    static int size() {
+        return REGISTRY.size();
+    }
+
+    private static ClassPathSnapshot read(ProcessingEnvironment processingEnv, Long fingerprint) {
+        Set<String> overrides = new LinkedHashSet<>();
+        ResourceLists.readClassPath(processingEnv, SaferAnnotationProcessor.DEFINITION_OVERRIDE_SERVICES, overrides);
+        Set<String> constrainedAnnotations = new LinkedHashSet<>();
+        ResourceLists.readClassPath(processingEnv, SaferAnnotationProcessor.CONSTRAINED_ANNOTATIONS_INDEX,
+                constrainedAnnotations);
+        return new ClassPathSnapshot(fingerprint, Collections.unmodifiableSet(overrides),
+                readOverrideTargets(overrides), Collections.unmodifiableSet(constrainedAnnotations),
+                ConstraintDescriptors.readClassPath(processingEnv));
+    }
+
+    private static Map<String, String> readOverrideTargets(Set<String> overrides) {
+        ClassLoader classLoader = SaferAnnotationProcessor.class.getClassLoader();
+        Map<String, String> targets = new HashMap<>();
+        for (String override : overrides) {
+            URL url = classLoader.getResource(override.replace('.', '/') + ".class");
+            if (url == null || !"jar".equals(url.getProtocol())) {
+                continue;
+            }
+            try (InputStream in = url.openStream()) {
+                ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    classFile.write(buffer, 0, read);
+                }
+                String target = OverrideTargets.read(classFile.toByteArray());
+                if (target != null) {
+                    targets.put(override, target);
+                }
+            } catch (IOException | RuntimeException e) {
+                // the annotation mirrors will tell
+            }
+        }
+        return Collections.unmodifiableMap(targets);
+    }
+
+    /**
+     * Fingerprints the URLs of the resources we read, along with the size and modification time of the files or jars
+     * they come from, or their contents if they come from elsewhere.
+     */
+    private static void fingerprint(ClassLoader classLoader, Fingerprint fingerprint)
+            throws IOException, URISyntaxException {
+        for (String resource : RESOURCES) {
+            fingerprint.add(resource);
+            Enumeration<URL> urls = classLoader.getResources(resource);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                fingerprint.add(url.toString());
+                URL file = url;
+                if ("jar".equals(url.getProtocol())) {
+                    URLConnection connection = url.openConnection();
+                    if (connection instanceof JarURLConnection) {
+                        file = ((JarURLConnection) connection).getJarFileURL();
+                    }
+                }
+                if ("file".equals(file.getProtocol())) {
+                    File f = new File(file.toURI());
+                    fingerprint.add(f.length()).add(f.lastModified());
+                } else {
+                    try (InputStream in = url.openStream()) {
+                        byte[] buffer = new byte[4096];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            for (int i = 0; i < read; i++) {
+                                fingerprint.add(buffer[i]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final ClassPathSnapshot snapshot;
+        // only updated within the registry's compute functions
+        int users;
+
+        Entry(ClassPathSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
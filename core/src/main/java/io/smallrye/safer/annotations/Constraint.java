@@ -0,0 +1,94 @@
+package io.smallrye.safer.annotations;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * The compiled constraints of a single annotation, taken either from the annotation itself or from its
+ * {@link DefinitionOverride}.
+ */
+final class Constraint {
+
+    private final TypeElement annotation;
+    // the DefinitionOverride this constraint comes from, if any
+    final String override;
+    final boolean targetAccessor;
+    // null unless the annotation has a TargetMethod constraint
+    final AllowedTypes allowedReturnTypes;
+    final AllowedTypes allowedParameterTypes;
+    // null unless the annotation has a TargetNonBlocking constraint
+    final BlockingCalls blockingCalls;
+    // null unless the annotation has a TargetVirtualThread constraint
+    final PinningRules pinningRules;
+    final boolean allocationFree;
+    private long fingerprint;
+
+    Constraint(TypeElement annotation, String override, boolean targetAccessor, AllowedTypes allowedReturnTypes,
+            AllowedTypes allowedParameterTypes, BlockingCalls blockingCalls, PinningRules pinningRules,
+            boolean allocationFree) {
+        this.annotation = annotation;
+        this.override = override;
+        this.targetAccessor = targetAccessor;
+        this.allowedReturnTypes = allowedReturnTypes;
+        this.allowedParameterTypes = allowedParameterTypes;
+        this.blockingCalls = blockingCalls;
+        this.pinningRules = pinningRules;
+        this.allocationFree = allocationFree;
+    }
+
+    String getAnnotationName() {
+        return annotation.getQualifiedName().toString();
+    }
+
+    boolean isTargetMethod() {
+        return allowedReturnTypes != null;
+    }
+
+    boolean isNonBlocking() {
+        return blockingCalls != null;
+    }
+
+    boolean isVirtualThread() {
+        return pinningRules != null;
+    }
+
+    /**
+     * @return whether this constraint checks the bodies of methods, rather than only their signatures
+     */
+    boolean checksBody() {
+        return isNonBlocking() || isVirtualThread() || allocationFree;
+    }
+
+    /**
+     * @return a fingerprint of what this constraint allows, so that cached verdicts can be invalidated when it changes
+     */
+    long fingerprint() {
+        if (fingerprint == 0) {
+            fingerprint = new Fingerprint()
+                    .add(getAnnotationName())
+                    .add(override)
+                    .add(targetAccessor)
+                    .add(isTargetMethod() ? allowedReturnTypes.toString() : null)
+                    .add(isTargetMethod() ? allowedParameterTypes.toString() : null)
+                    .add(isNonBlocking() ? blockingCalls.toString() : null)
+                    .add(isVirtualThread() ? pinningRules.toString() : null)
+                    .add(allocationFree)
+                    .get();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * On JDK 8 javac creates new symbols for every round, so a constraint compiled in an earlier round holds type mirrors
+     * that cannot be compared against the current ones. Later JDKs keep the same symbols and this is always true.
+     */
+    boolean isFor(TypeElement annotation) {
+        return this.annotation == annotation;
+    }
+
+    void newRound() {
+        if (isTargetMethod()) {
+            allowedReturnTypes.clearVerdicts();
+            allowedParameterTypes.clearVerdicts();
+        }
+    }
+}
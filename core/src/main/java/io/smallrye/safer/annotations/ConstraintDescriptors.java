@@ -0,0 +1,346 @@
+package io.smallrye.safer.annotations;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.StandardLocation;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.ExactMatcher;
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.Matcher;
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.SubtypeMatcher;
+
+/**
+ * Precompiled constraints, written when compiling the libraries which define constrained annotations or overrides, so
+ * that the compilations using them can skip reading their meta-annotations. They are stored in
+ * {@link #RESOURCE} resources, in this format:
+ *
+ * <pre>
+ * safer-annotations-constraints 1
+ * &#64;com.example.ServerExceptionMapper
+ * override com.example.ServerExceptionMapperOverride
+ * accessor
+ * method
+ * return exact void
+ * return exact io.smallrye.mutiny.Uni&lt;javax.ws.rs.core.Response&gt;
+ * parameter subtype java.lang.Throwable
+ * nonblocking
+ * blocking com.example.Client#await
+ * virtualthread
+ * allocationfree
+ * </pre>
+ *
+ * Where each annotation starts with its name, followed by the name of the {@link DefinitionOverride} it was compiled
+ * from if any, whether it has a {@link TargetAccessor} or {@link TargetMethod} constraint, and the types allowed by
+ * that {@link TargetMethod} constraint, then whether it has a {@link TargetNonBlocking} constraint, followed by
+ * <code>without-defaults</code> if it does not use the default catalogue, and the methods it adds to the catalogue
+ * or allows, then whether it has a {@link TargetVirtualThread} constraint, followed by <code>without-monitors</code>
+ * if monitors do not pin, then whether it has a {@link TargetAllocationFree} constraint. Older processors ignore the
+ * resources with <code>nonblocking</code>, <code>virtualthread</code> or <code>allocationfree</code> lines, and read
+ * these constraints from the annotations.
+ */
+final class ConstraintDescriptors {
+
+    /**
+     * Where we store descriptors.
+     */
+    static final String RESOURCE = "META-INF/safer-annotations/constraints";
+
+    /**
+     * Bump this whenever the format or the meaning of descriptors changes, so that we ignore older descriptors.
+     */
+    static final int VERSION = 1;
+
+    private static final String HEADER = "safer-annotations-constraints";
+
+    static final class Rule {
+        final boolean subtype;
+        final String type;
+
+        Rule(boolean subtype, String type) {
+            this.subtype = subtype;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Descriptors may be shared by several compilations, see {@link ClassPathSnapshot}, and must not be modified once
+     * read.
+     */
+    static final class Descriptor {
+        final String annotation;
+        String override;
+        boolean targetAccessor;
+        boolean targetMethod;
+        final List<Rule> returnTypes = new ArrayList<>();
+        final List<Rule> parameterTypes = new ArrayList<>();
+        boolean nonBlocking;
+        boolean nonBlockingDefaults = true;
+        final List<String> blocking = new ArrayList<>();
+        final List<String> allowed = new ArrayList<>();
+        boolean virtualThread;
+        boolean monitorsPin = true;
+        boolean allocationFree;
+
+        Descriptor(String annotation) {
+            this.annotation = annotation;
+        }
+
+        /**
+         * @return the constraint this descriptor describes, or <code>null</code> if some of its types cannot be found
+         */
+        Constraint compile(ProcessingEnvironment processingEnv, TypeElement annotation,
+                SupertypeClosures supertypeClosures) {
+            BlockingCalls blockingCalls = nonBlocking ? new BlockingCalls(nonBlockingDefaults, blocking, allowed) : null;
+            PinningRules pinningRules = virtualThread ? new PinningRules(monitorsPin) : null;
+            if (!targetMethod) {
+                return new Constraint(annotation, override, targetAccessor, null, null, blockingCalls, pinningRules,
+                        allocationFree);
+            }
+            List<Matcher> allowedReturnTypes = compile(processingEnv, returnTypes);
+            List<Matcher> allowedParameterTypes = compile(processingEnv, parameterTypes);
+            if (allowedReturnTypes == null || allowedParameterTypes == null) {
+                return null;
+            }
+            return new Constraint(annotation, override, targetAccessor,
+                    new AllowedTypes(allowedReturnTypes, supertypeClosures),
+                    new AllowedTypes(allowedParameterTypes, supertypeClosures), blockingCalls, pinningRules,
+                    allocationFree);
+        }
+
+        private static List<Matcher> compile(ProcessingEnvironment processingEnv, List<Rule> rules) {
+            List<Matcher> matchers = new ArrayList<>(rules.size());
+            for (Rule rule : rules) {
+                TypeMirror type = TypeNames.parse(processingEnv.getElementUtils(), processingEnv.getTypeUtils(),
+                        rule.type);
+                if (type == null) {
+                    return null;
+                }
+                matchers.add(rule.subtype ? new SubtypeMatcher(type) : new ExactMatcher(type));
+            }
+            return matchers;
+        }
+    }
+
+    private final Map<String, Descriptor> descriptors;
+
+    private ConstraintDescriptors(Map<String, Descriptor> descriptors) {
+        this.descriptors = descriptors;
+    }
+
+    static ConstraintDescriptors empty() {
+        return new ConstraintDescriptors(Collections.emptyMap());
+    }
+
+    /**
+     * @return the descriptor for the given annotation, or <code>null</code>
+     */
+    Descriptor get(String annotation) {
+        return descriptors.get(annotation);
+    }
+
+    Collection<Descriptor> getAll() {
+        return descriptors.values();
+    }
+
+    /**
+     * Reads all the descriptors visible from the processor class path.
+     *
+     * @return the descriptors of each resource, by resource URI
+     */
+    static Map<String, Map<String, Descriptor>> readClassPath(ProcessingEnvironment processingEnv) {
+        Map<String, Map<String, Descriptor>> descriptors = new LinkedHashMap<>();
+        try {
+            Enumeration<URL> resources = SaferAnnotationProcessor.class.getClassLoader().getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+                    Map<String, Descriptor> read = new LinkedHashMap<>();
+                    if (read(reader, read)) {
+                        descriptors.put(resource.toURI().toString(), Collections.unmodifiableMap(read));
+                    } else {
+                        processingEnv.getMessager().printMessage(Kind.NOTE,
+                                "Ignoring constraint descriptors from an unsupported version: " + resource);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to read " + RESOURCE + ": " + e);
+        }
+        return Collections.unmodifiableMap(descriptors);
+    }
+
+    /**
+     * Selects the descriptors to use from those read from the processor class path, leaving out the one from the
+     * compilation output, which may have been produced by a previous compilation of the current sources, and be stale.
+     */
+    static ConstraintDescriptors select(ProcessingEnvironment processingEnv,
+            Map<String, Map<String, Descriptor>> classPathDescriptors) {
+        URI ownDescriptors = null;
+        try {
+            ownDescriptors = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE).toUri();
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // fine
+        } catch (IOException | IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to locate " + RESOURCE + ": " + e);
+        }
+        Map<String, Descriptor> descriptors = new HashMap<>();
+        for (Map.Entry<String, Map<String, Descriptor>> entry : classPathDescriptors.entrySet()) {
+            if (ownDescriptors == null || !Objects.equals(ownDescriptors.toString(), entry.getKey())) {
+                descriptors.putAll(entry.getValue());
+            }
+        }
+        return new ConstraintDescriptors(descriptors);
+    }
+
+    /**
+     * @return false if these descriptors have an unsupported version
+     */
+    private static boolean read(BufferedReader reader, Map<String, Descriptor> descriptors) throws IOException {
+        String line = reader.readLine();
+        if (line == null || !line.equals(HEADER + " " + VERSION)) {
+            return false;
+        }
+        // only add them once they are all valid
+        Map<String, Descriptor> read = new LinkedHashMap<>();
+        Descriptor descriptor = null;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("@")) {
+                descriptor = new Descriptor(line.substring(1));
+                read.put(descriptor.annotation, descriptor);
+            } else if (descriptor == null) {
+                return false;
+            } else if (line.startsWith("override ")) {
+                descriptor.override = line.substring(9);
+            } else if (line.equals("accessor")) {
+                descriptor.targetAccessor = true;
+            } else if (line.equals("method")) {
+                descriptor.targetMethod = true;
+            } else if (line.startsWith("return ")) {
+                descriptor.returnTypes.add(readRule(line.substring(7)));
+            } else if (line.startsWith("parameter ")) {
+                descriptor.parameterTypes.add(readRule(line.substring(10)));
+            } else if (line.equals("nonblocking")) {
+                descriptor.nonBlocking = true;
+            } else if (line.equals("nonblocking without-defaults")) {
+                descriptor.nonBlocking = true;
+                descriptor.nonBlockingDefaults = false;
+            } else if (line.startsWith("blocking ")) {
+                descriptor.blocking.add(line.substring(9));
+            } else if (line.startsWith("allowed ")) {
+                descriptor.allowed.add(line.substring(8));
+            } else if (line.equals("virtualthread")) {
+                descriptor.virtualThread = true;
+            } else if (line.equals("virtualthread without-monitors")) {
+                descriptor.virtualThread = true;
+                descriptor.monitorsPin = false;
+            } else if (line.equals("allocationfree")) {
+                descriptor.allocationFree = true;
+            } else {
+                return false;
+            }
+        }
+        descriptors.putAll(read);
+        return true;
+    }
+
+    private static Rule readRule(String rule) throws IOException {
+        if (rule.startsWith("exact ")) {
+            return new Rule(false, rule.substring(6));
+        }
+        if (rule.startsWith("subtype ")) {
+            return new Rule(true, rule.substring(8));
+        }
+        throw new IOException("Invalid rule: " + rule);
+    }
+
+    /**
+     * Writes the given constraints.
+     *
+     * @return false if some constraints cannot be described, because they use types which have no canonical name
+     */
+    static boolean write(Writer writer, Collection<Constraint> constraints) throws IOException {
+        boolean complete = true;
+        writer.write(HEADER + " " + VERSION + "\n");
+        for (Constraint constraint : constraints) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('@').append(constraint.getAnnotationName()).append('\n');
+            if (constraint.override != null) {
+                sb.append("override ").append(constraint.override).append('\n');
+            }
+            if (constraint.targetAccessor) {
+                sb.append("accessor\n");
+            }
+            if (constraint.isTargetMethod()) {
+                sb.append("method\n");
+                if (!writeRules(sb, "return ", constraint.allowedReturnTypes)
+                        || !writeRules(sb, "parameter ", constraint.allowedParameterTypes)) {
+                    complete = false;
+                    continue;
+                }
+            }
+            if (constraint.isNonBlocking()) {
+                BlockingCalls blockingCalls = constraint.blockingCalls;
+                sb.append(blockingCalls.defaults ? "nonblocking\n" : "nonblocking without-defaults\n");
+                for (String entry : blockingCalls.blocking) {
+                    sb.append("blocking ").append(entry).append('\n');
+                }
+                for (String entry : blockingCalls.allowed) {
+                    sb.append("allowed ").append(entry).append('\n');
+                }
+            }
+            if (constraint.isVirtualThread()) {
+                sb.append(constraint.pinningRules.monitorsPin ? "virtualthread\n" : "virtualthread without-monitors\n");
+            }
+            if (constraint.allocationFree) {
+                sb.append("allocationfree\n");
+            }
+            writer.write(sb.toString());
+        }
+        return complete;
+    }
+
+    private static boolean writeRules(StringBuilder sb, String prefix, AllowedTypes allowedTypes) {
+        for (Matcher matcher : allowedTypes.getMatchers()) {
+            String kind;
+            String type;
+            if (matcher instanceof ExactMatcher) {
+                kind = "exact ";
+                type = TypeNames.canonicalName(((ExactMatcher) matcher).getTypeMirror());
+            } else if (matcher instanceof SubtypeMatcher) {
+                kind = "subtype ";
+                type = TypeNames.canonicalName(((SubtypeMatcher) matcher).getTypeMirror());
+            } else {
+                return false;
+            }
+            if (type == null) {
+                return false;
+            }
+            sb.append(prefix).append(kind).append(type).append('\n');
+        }
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package io.smallrye.safer.annotations;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Keeps the compiled constraints of every annotation seen during a compilation, keyed by the annotation qualified name,
+ * so that they are built once and reused in every later round. Annotations without constraints are remembered as well,
+ * so that we only look at their meta-annotations once. Within a round, the constraint of each annotation element is
+ * kept by element, so that the methods using it do not compute its qualified name for every annotation mirror.
+ */
+public class ConstraintRegistry {
+
+    private final Map<String, Constraint> constraints = new HashMap<>();
+    private final Set<String> unconstrained = new HashSet<>();
+    // annotation element -> constraint or null, for the current round, whose elements are not reused by the next ones
+    private final Map<TypeElement, Constraint> round = new HashMap<>();
+    private int hits;
+    private int misses;
+
+    /**
+     * @return the constraint of the given annotation, or <code>null</code> if it has none
+     */
+    Constraint get(TypeElement annotation, Function<TypeElement, Constraint> compiler) {
+        Constraint constraint = round.get(annotation);
+        if (constraint != null || round.containsKey(annotation)) {
+            return constraint;
+        }
+        constraint = lookup(annotation, compiler);
+        round.put(annotation, constraint);
+        return constraint;
+    }
+
+    private Constraint lookup(TypeElement annotation, Function<TypeElement, Constraint> compiler) {
+        String name = annotation.getQualifiedName().toString();
+        if (unconstrained.contains(name)) {
+            hits++;
+            return null;
+        }
+        Constraint constraint = constraints.get(name);
+        if (constraint != null && constraint.isFor(annotation)) {
+            hits++;
+            return constraint;
+        }
+        misses++;
+        constraint = compiler.apply(annotation);
+        if (constraint == null) {
+            unconstrained.add(name);
+        } else {
+            constraints.put(name, constraint);
+        }
+        return constraint;
+    }
+
+    void newRound() {
+        round.clear();
+        for (Constraint constraint : constraints.values()) {
+            constraint.newRound();
+        }
+    }
+
+    /**
+     * @return the number of annotations whose constraint, or lack thereof, was reused from an earlier round
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of annotations whose constraint had to be compiled
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the compiled constraints currently held
+     */
+    Collection<Constraint> getAll() {
+        return Collections.unmodifiableCollection(constraints.values());
+    }
+
+    /**
+     * @return the number of compiled constraints currently held, not counting annotations without constraints
+     */
+    public int size() {
+        return constraints.size();
+    }
+}
@@ -0,0 +1,205 @@
+package io.smallrye.safer.annotations;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.NoType;
+import javax.lang.model.type.NullType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Delegates to the processing environment of the compiler, counting the calls made to its {@link Types}, when enabled
+ * with {@link SaferAnnotationProcessor#STATS_OPTION}.
+ */
+final class CountingEnvironment implements ProcessingEnvironment {
+
+    private final ProcessingEnvironment delegate;
+    private final CountingTypes types;
+
+    CountingEnvironment(ProcessingEnvironment delegate, ProcessorStats stats) {
+        this.delegate = delegate;
+        this.types = new CountingTypes(delegate.getTypeUtils(), stats);
+    }
+
+    /**
+     * @return the processing environment of the compiler
+     */
+    ProcessingEnvironment getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+        return delegate.getOptions();
+    }
+
+    @Override
+    public Messager getMessager() {
+        return delegate.getMessager();
+    }
+
+    @Override
+    public Filer getFiler() {
+        return delegate.getFiler();
+    }
+
+    @Override
+    public Elements getElementUtils() {
+        return delegate.getElementUtils();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+        return delegate.getSourceVersion();
+    }
+
+    @Override
+    public Locale getLocale() {
+        return delegate.getLocale();
+    }
+
+    private static final class CountingTypes implements Types {
+
+        private final Types delegate;
+        private final ProcessorStats stats;
+
+        CountingTypes(Types delegate, ProcessorStats stats) {
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        @Override
+        public Element asElement(TypeMirror t) {
+            stats.typesCalled();
+            return delegate.asElement(t);
+        }
+
+        @Override
+        public boolean isSameType(TypeMirror t1, TypeMirror t2) {
+            stats.typesCalled();
+            return delegate.isSameType(t1, t2);
+        }
+
+        @Override
+        public boolean isSubtype(TypeMirror t1, TypeMirror t2) {
+            stats.typesCalled();
+            return delegate.isSubtype(t1, t2);
+        }
+
+        @Override
+        public boolean isAssignable(TypeMirror t1, TypeMirror t2) {
+            stats.typesCalled();
+            return delegate.isAssignable(t1, t2);
+        }
+
+        @Override
+        public boolean contains(TypeMirror t1, TypeMirror t2) {
+            stats.typesCalled();
+            return delegate.contains(t1, t2);
+        }
+
+        @Override
+        public boolean isSubsignature(ExecutableType m1, ExecutableType m2) {
+            stats.typesCalled();
+            return delegate.isSubsignature(m1, m2);
+        }
+
+        @Override
+        public List<? extends TypeMirror> directSupertypes(TypeMirror t) {
+            stats.typesCalled();
+            return delegate.directSupertypes(t);
+        }
+
+        @Override
+        public TypeMirror erasure(TypeMirror t) {
+            stats.typesCalled();
+            return delegate.erasure(t);
+        }
+
+        @Override
+        public TypeElement boxedClass(PrimitiveType p) {
+            stats.typesCalled();
+            return delegate.boxedClass(p);
+        }
+
+        @Override
+        public PrimitiveType unboxedType(TypeMirror t) {
+            stats.typesCalled();
+            return delegate.unboxedType(t);
+        }
+
+        @Override
+        public TypeMirror capture(TypeMirror t) {
+            stats.typesCalled();
+            return delegate.capture(t);
+        }
+
+        @Override
+        public PrimitiveType getPrimitiveType(TypeKind kind) {
+            stats.typesCalled();
+            return delegate.getPrimitiveType(kind);
+        }
+
+        @Override
+        public NullType getNullType() {
+            stats.typesCalled();
+            return delegate.getNullType();
+        }
+
+        @Override
+        public NoType getNoType(TypeKind kind) {
+            stats.typesCalled();
+            return delegate.getNoType(kind);
+        }
+
+        @Override
+        public ArrayType getArrayType(TypeMirror componentType) {
+            stats.typesCalled();
+            return delegate.getArrayType(componentType);
+        }
+
+        @Override
+        public WildcardType getWildcardType(TypeMirror extendsBound, TypeMirror superBound) {
+            stats.typesCalled();
+            return delegate.getWildcardType(extendsBound, superBound);
+        }
+
+        @Override
+        public DeclaredType getDeclaredType(TypeElement typeElem, TypeMirror... typeArgs) {
+            stats.typesCalled();
+            return delegate.getDeclaredType(typeElem, typeArgs);
+        }
+
+        @Override
+        public DeclaredType getDeclaredType(DeclaredType containing, TypeElement typeElem, TypeMirror... typeArgs) {
+            stats.typesCalled();
+            return delegate.getDeclaredType(containing, typeElem, typeArgs);
+        }
+
+        @Override
+        public TypeMirror asMemberOf(DeclaredType containing, Element element) {
+            stats.typesCalled();
+            return delegate.asMemberOf(containing, element);
+        }
+    }
+}
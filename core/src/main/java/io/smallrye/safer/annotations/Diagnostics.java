@@ -0,0 +1,157 @@
+package io.smallrye.safer.annotations;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * The invalid types found by the processor, which a change to the constraint of a widely used annotation can turn into
+ * a flood of errors. Their messages are only built when printed, and past
+ * {@link SaferAnnotationProcessor#ERROR_LIMIT_OPTION} errors per annotation, they are only counted, per invalid type,
+ * and summed up once processing is over. With {@link SaferAnnotationProcessor#REPORT_OPTION}, they are all written
+ * to a {@link #REPORT} resource, in this format:
+ *
+ * <pre>
+ * safer-annotations-report 1
+ * &#64;com.example.Route
+ * com.example.Resource hello(java.lang.Long) parameter 0 java.lang.Long
+ * com.example.Resource$Nested list() return int
+ * </pre>
+ *
+ * Where each annotation starts with its name, followed by one line per invalid type, with the binary name of the
+ * declaring class of the method, the method, <code>return</code> or <code>parameter</code> and its index, and the type.
+ */
+final class Diagnostics {
+
+    /**
+     * Where we write the report, in the generated sources so that it is not packaged.
+     */
+    static final String REPORT = "safer-annotations-report";
+
+    /**
+     * Bump this whenever the format or the meaning of reports changes.
+     */
+    static final int VERSION = 1;
+
+    private static final String HEADER = "safer-annotations-report";
+
+    private final ProcessingEnvironment processingEnv;
+    // 0 for no limit
+    private final int errorLimit;
+    // annotation -> errors printed so far
+    private final Map<String, Integer> printed = new HashMap<>();
+    // annotation -> invalid type description -> errors not printed, in reporting order
+    private final Map<String, Map<String, Integer>> unprinted = new LinkedHashMap<>();
+    // annotation -> report lines, null unless writing a report
+    private final Map<String, List<String>> report;
+
+    Diagnostics(ProcessingEnvironment processingEnv, int errorLimit, boolean report) {
+        this.processingEnv = processingEnv;
+        this.errorLimit = errorLimit;
+        this.report = report ? new LinkedHashMap<>() : null;
+    }
+
+    /**
+     * @return whether we write a report
+     */
+    boolean isReporting() {
+        return report != null;
+    }
+
+    /**
+     * Reports an invalid return or parameter type, unless its annotation has reached the error limit.
+     *
+     * @param constraint the constraint of the annotation
+     * @param kind <code>return</code> or <code>parameter</code>
+     * @param checkedType the invalid type
+     * @param allowedTypes the types it should have been
+     * @param element the method, for return types, or the parameter
+     */
+    void invalidType(Constraint constraint, String kind, TypeMirror checkedType, AllowedTypes allowedTypes,
+            Element element) {
+        String annotation = constraint.getAnnotationName();
+        if (report != null) {
+            report.computeIfAbsent(annotation, k -> new ArrayList<>()).add(reportLine(kind, checkedType, element));
+        }
+        int count = printed.getOrDefault(annotation, 0);
+        if (errorLimit > 0 && count >= errorLimit) {
+            unprinted.computeIfAbsent(annotation, k -> new LinkedHashMap<>())
+                    .merge(kind + " type '" + checkedType + "'", 1, Integer::sum);
+            return;
+        }
+        printed.put(annotation, count + 1);
+        processingEnv.getMessager().printMessage(Kind.ERROR,
+                "Invalid " + kind + " type: '" + checkedType + "' must be one of: " + allowedTypes, element);
+    }
+
+    private String reportLine(String kind, TypeMirror checkedType, Element element) {
+        ExecutableElement method = (ExecutableElement) (element instanceof ExecutableElement ? element
+                : element.getEnclosingElement());
+        StringBuilder sb = new StringBuilder();
+        sb.append(processingEnv.getElementUtils().getBinaryName((TypeElement) method.getEnclosingElement()))
+                .append(' ').append(method).append(' ').append(kind);
+        if (element != method) {
+            sb.append(' ').append(method.getParameters().indexOf(element));
+        }
+        return sb.append(' ').append(checkedType).toString();
+    }
+
+    /**
+     * Prints one error per annotation which reached the error limit, with the number of errors not printed for each
+     * invalid type.
+     */
+    void summarise() {
+        for (Map.Entry<String, Map<String, Integer>> entry : unprinted.entrySet()) {
+            int total = 0;
+            StringBuilder groups = new StringBuilder();
+            for (Map.Entry<String, Integer> group : entry.getValue().entrySet()) {
+                total += group.getValue();
+                if (groups.length() > 0) {
+                    groups.append(", ");
+                }
+                groups.append(group.getKey()).append(" (").append(group.getValue()).append(')');
+            }
+            processingEnv.getMessager().printMessage(Kind.ERROR, "Invalid types for @" + entry.getKey() + ": " + total
+                    + " more errors were not reported, past the limit of " + errorLimit + " set with "
+                    + SaferAnnotationProcessor.ERROR_LIMIT_OPTION + ": " + groups);
+        }
+        unprinted.clear();
+    }
+
+    /**
+     * Writes the report, if enabled.
+     */
+    void writeReport() {
+        if (report == null) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.SOURCE_OUTPUT, "", REPORT);
+            try (Writer writer = resource.openWriter()) {
+                writer.write(HEADER + " " + VERSION + "\n");
+                for (Map.Entry<String, List<String>> entry : report.entrySet()) {
+                    writer.write("@" + entry.getKey() + "\n");
+                    for (String line : entry.getValue()) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING, "Failed to write " + REPORT + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.smallrye.safer.annotations;
+
+/**
+ * Records the phases of the processor as JFR events. JFR is only available to us on Java 11+, where the multi-release
+ * version of this class replaces this one, which does nothing.
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    /**
+     * @return the started event, or <code>null</code>
+     */
+    static Object begin(String phase) {
+        return null;
+    }
+
+    static void end(Object event) {
+    }
+
+    static void statistics(ProcessorStats stats) {
+    }
+}
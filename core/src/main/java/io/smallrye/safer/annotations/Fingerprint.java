@@ -0,0 +1,53 @@
+package io.smallrye.safer.annotations;
+
+/**
+ * A 64-bit FNV-1a hash, used to tell whether the inputs of a check changed since a previous build.
+ */
+final class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    Fingerprint add(String value) {
+        if (value == null) {
+            return add(0L);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        // separate consecutive values, so that "ab", "c" differs from "a", "bc"
+        hash = (hash ^ 0xff) * PRIME;
+        return this;
+    }
+
+    Fingerprint add(long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * PRIME;
+            value >>>= 8;
+        }
+        return this;
+    }
+
+    Fingerprint add(byte[] value) {
+        for (byte b : value) {
+            hash = (hash ^ (b & 0xff)) * PRIME;
+        }
+        return add((long) value.length);
+    }
+
+    Fingerprint add(boolean value) {
+        return add(value ? 1L : 0L);
+    }
+
+    long get() {
+        return hash;
+    }
+
+    static long of(String value) {
+        return new Fingerprint().add(value).get();
+    }
+}
@@ -0,0 +1,52 @@
+package io.smallrye.safer.annotations;
+
+/**
+ * The base class of the invokers generated by the processor with {@link SaferAnnotationProcessor#INVOKERS_OPTION}: one
+ * per class declaring valid constrained methods, named after its binary name followed by {@link #SUFFIX}, in the same
+ * package. Each invoker calls these methods directly, from a switch over their indexes, and also provides them as
+ * functional interfaces matching their signatures. Use {@link MethodInvoker#of(java.lang.reflect.Method)} to get them,
+ * rather than this class. Only public methods of public classes have invokers.
+ */
+public abstract class GeneratedInvokers {
+
+    /**
+     * Appended to the binary name of the declaring class to name its invokers.
+     */
+    public static final String SUFFIX = "$$SaferInvokers";
+
+    private final String[] methods;
+
+    /**
+     * @param methods the name followed by a space and the erased descriptor of each method, in the order of their
+     *        indexes
+     */
+    protected GeneratedInvokers(String... methods) {
+        this.methods = methods;
+    }
+
+    final String[] getMethods() {
+        return methods;
+    }
+
+    /**
+     * Calls the method of the given index, without checking its arguments.
+     *
+     * @param method the method index
+     * @param instance the instance to call the method on, ignored for static methods
+     * @param arguments the arguments, with primitives boxed
+     * @return the result, boxed if it is a primitive, or <code>null</code> for <code>void</code> methods
+     * @throws Throwable whatever the method throws, unwrapped
+     */
+    protected abstract Object invoke(int method, Object instance, Object[] arguments) throws Throwable;
+
+    /**
+     * Returns the method of the given index as the functional interface of <code>java.util.function</code> matching its
+     * signature, with its receiver as first parameter if it is an instance method.
+     *
+     * @param method the method index
+     * @return the method as a functional interface, or <code>null</code> if no interface fits its signature
+     */
+    protected Object function(int method) {
+        return null;
+    }
+}
@@ -0,0 +1,356 @@
+package io.smallrye.safer.annotations;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaFileObject;
+
+/**
+ * Writes the sources of {@link GeneratedInvokers}. They live in the package of the declaring class, so that they can
+ * cast their arguments to the erasure of the parameter types, even when these are not public. They only call public
+ * methods of public classes, since {@link MethodInvoker} does not check who calls them.
+ */
+final class InvokerSources {
+
+    // parameter and result kinds -> functional interface, whose type parameters are the reference kinds, in order
+    private static final Map<String, String> FUNCTION_TYPES = new HashMap<>();
+
+    static {
+        String[][] functionTypes = {
+                { "V", "Runnable" }, { "Z", "BooleanSupplier" }, { "I", "IntSupplier" }, { "J", "LongSupplier" },
+                { "D", "DoubleSupplier" }, { "L", "Supplier" },
+                { "LV", "Consumer" }, { "LZ", "Predicate" }, { "LI", "ToIntFunction" }, { "LJ", "ToLongFunction" },
+                { "LD", "ToDoubleFunction" }, { "LL", "Function" },
+                { "IV", "IntConsumer" }, { "IZ", "IntPredicate" }, { "II", "IntUnaryOperator" },
+                { "IJ", "IntToLongFunction" }, { "ID", "IntToDoubleFunction" }, { "IL", "IntFunction" },
+                { "JV", "LongConsumer" }, { "JZ", "LongPredicate" }, { "JI", "LongToIntFunction" },
+                { "JJ", "LongUnaryOperator" }, { "JD", "LongToDoubleFunction" }, { "JL", "LongFunction" },
+                { "DV", "DoubleConsumer" }, { "DZ", "DoublePredicate" }, { "DI", "DoubleToIntFunction" },
+                { "DJ", "DoubleToLongFunction" }, { "DD", "DoubleUnaryOperator" }, { "DL", "DoubleFunction" },
+                { "LLV", "BiConsumer" }, { "LLZ", "BiPredicate" }, { "LLI", "ToIntBiFunction" },
+                { "LLJ", "ToLongBiFunction" }, { "LLD", "ToDoubleBiFunction" }, { "LLL", "BiFunction" },
+                { "LIV", "ObjIntConsumer" }, { "LJV", "ObjLongConsumer" }, { "LDV", "ObjDoubleConsumer" },
+                { "III", "IntBinaryOperator" }, { "JJJ", "LongBinaryOperator" }, { "DDD", "DoubleBinaryOperator" },
+        };
+        for (String[] functionType : functionTypes) {
+            FUNCTION_TYPES.put(functionType[0], functionType[1]);
+        }
+    }
+
+    private InvokerSources() {
+    }
+
+    /**
+     * Writes the invokers of the given methods, leaving out those which are not public, or cannot be called from
+     * another class of the same package.
+     *
+     * @param processingEnv the processing environment
+     * @param declaringType the class declaring the methods
+     * @param methods valid constrained methods
+     * @throws IOException if the source cannot be written
+     */
+    static void write(ProcessingEnvironment processingEnv, TypeElement declaringType, List<ExecutableElement> methods)
+            throws IOException {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        PackageElement pkg = elements.getPackageOf(declaringType);
+        if (!isPublic(declaringType)) {
+            return;
+        }
+        List<ExecutableElement> invoked = new ArrayList<>(methods.size());
+        List<String> descriptors = new ArrayList<>(methods.size());
+        for (ExecutableElement method : methods) {
+            String descriptor = TypeNames.descriptor(elements, types, method);
+            if (descriptor != null && isInvokable(types, method, pkg)) {
+                invoked.add(method);
+                descriptors.add(descriptor);
+            }
+        }
+        if (invoked.isEmpty()) {
+            return;
+        }
+        String packageName = pkg.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(declaringType).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + GeneratedInvokers.SUFFIX;
+        String receiver = declaringType.getQualifiedName().toString();
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\", \"deprecation\" })\n");
+        sb.append("public final class ").append(simpleName).append(" extends ")
+                .append(GeneratedInvokers.class.getName()).append(" {\n\n");
+        sb.append("    public ").append(simpleName).append("() {\n");
+        sb.append("        super(");
+        for (int i = 0; i < invoked.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('"').append(invoked.get(i).getSimpleName()).append(' ').append(descriptors.get(i)).append('"');
+        }
+        sb.append(");\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    protected Object invoke(int method, Object instance, Object[] arguments) throws Throwable {\n");
+        sb.append("        switch (method) {\n");
+        for (int i = 0; i < invoked.size(); i++) {
+            ExecutableElement method = invoked.get(i);
+            sb.append("            case ").append(i).append(":\n");
+            StringBuilder call = new StringBuilder();
+            if (method.getModifiers().contains(Modifier.STATIC)) {
+                call.append(receiver);
+            } else {
+                call.append("((").append(receiver).append(") instance)");
+            }
+            call.append('.').append(method.getSimpleName()).append('(');
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int p = 0; p < parameters.size(); p++) {
+                if (p > 0) {
+                    call.append(", ");
+                }
+                call.append('(').append(sourceName(types.erasure(parameters.get(p).asType()))).append(") arguments[")
+                        .append(p).append(']');
+            }
+            call.append(')');
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                sb.append("                ").append(call).append(";\n");
+                sb.append("                return null;\n");
+            } else {
+                sb.append("                return ").append(call).append(";\n");
+            }
+        }
+        sb.append("            default:\n");
+        sb.append("                throw new IndexOutOfBoundsException(String.valueOf(method));\n");
+        sb.append("        }\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    protected Object function(int method) {\n");
+        sb.append("        switch (method) {\n");
+        for (int i = 0; i < invoked.size(); i++) {
+            ExecutableElement method = invoked.get(i);
+            // lambdas need Java 8 sources
+            String functionType = processingEnv.getSourceVersion().compareTo(SourceVersion.RELEASE_8) >= 0
+                    ? functionType(elements, types, method, receiver)
+                    : null;
+            if (functionType != null) {
+                // a lambda rather than a method reference, which could be ambiguous with overloads
+                boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+                StringBuilder lambda = new StringBuilder("(");
+                StringBuilder call = new StringBuilder();
+                if (isStatic) {
+                    call.append(receiver);
+                } else {
+                    lambda.append(receiver).append(" instance");
+                    call.append("instance");
+                }
+                call.append('.').append(method.getSimpleName()).append('(');
+                List<? extends VariableElement> parameters = method.getParameters();
+                for (int p = 0; p < parameters.size(); p++) {
+                    if (p > 0 || !isStatic) {
+                        lambda.append(", ");
+                    }
+                    if (p > 0) {
+                        call.append(", ");
+                    }
+                    lambda.append(sourceName(types.erasure(parameters.get(p).asType()))).append(" argument").append(p);
+                    call.append("argument").append(p);
+                }
+                lambda.append(") -> ").append(call).append(')');
+                sb.append("            case ").append(i).append(":\n");
+                sb.append("                return (").append(functionType).append(") ").append(lambda).append(";\n");
+            }
+        }
+        sb.append("            default:\n");
+        sb.append("                return null;\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        JavaFileObject source = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? simpleName : packageName + "." + simpleName, topLevelType(declaringType));
+        try (Writer writer = source.openWriter()) {
+            writer.write(sb.toString());
+        }
+    }
+
+    /**
+     * @return whether the method can be called from the invokers, which are in the given package, with arguments cast to
+     *         the erasure of its parameter types
+     */
+    private static boolean isInvokable(Types types, ExecutableElement method, PackageElement pkg) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+            return false;
+        }
+        for (VariableElement parameter : method.getParameters()) {
+            TypeMirror type = parameter.asType();
+            while (type.getKind() == TypeKind.ARRAY) {
+                type = ((ArrayType) type).getComponentType();
+            }
+            if (type.getKind() == TypeKind.TYPEVAR
+                    && ((TypeVariable) type).getUpperBound().getKind() == TypeKind.INTERSECTION) {
+                // the erasure of the first bound does not satisfy the others, so the call would not compile
+                return false;
+            }
+            TypeMirror erasure = types.erasure(type);
+            if (erasure.getKind() == TypeKind.DECLARED
+                    && !isAccessible((TypeElement) ((DeclaredType) erasure).asElement(), pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the given type, and its enclosing types, are public
+     */
+    private static boolean isPublic(TypeElement type) {
+        Element element = type;
+        while (element.getKind() != ElementKind.PACKAGE) {
+            if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    /**
+     * Picks the functional interface of <code>java.util.function</code> matching the signature of the method without
+     * boxing, with its receiver as first parameter if it is an instance method, as in
+     * <code>ToIntFunction&lt;Receiver&gt;</code> for <code>int getI()</code>.
+     *
+     * @return the source name of the interface, or <code>null</code> if none fits the signature of the method, or it
+     *         declares checked exceptions, which these interfaces do not
+     */
+    private static String functionType(Elements elements, Types types, ExecutableElement method, String receiver) {
+        TypeMirror runtimeException = elements.getTypeElement(RuntimeException.class.getName()).asType();
+        TypeMirror error = elements.getTypeElement(Error.class.getName()).asType();
+        for (TypeMirror thrownType : method.getThrownTypes()) {
+            if (!types.isSubtype(thrownType, runtimeException) && !types.isSubtype(thrownType, error)) {
+                return null;
+            }
+        }
+        // the kind of each parameter, and of the result: L for references, V for void, or the primitive descriptor
+        List<String> referenceTypes = new ArrayList<>();
+        StringBuilder shape = new StringBuilder();
+        if (!method.getModifiers().contains(Modifier.STATIC)) {
+            shape.append('L');
+            referenceTypes.add(receiver);
+        }
+        for (VariableElement parameter : method.getParameters()) {
+            char kind = kind(parameter.asType());
+            shape.append(kind);
+            if (kind == 'L') {
+                referenceTypes.add(sourceName(types.erasure(parameter.asType())));
+            }
+        }
+        char result = kind(method.getReturnType());
+        shape.append(result);
+        if (result == 'L') {
+            referenceTypes.add(sourceName(types.erasure(method.getReturnType())));
+        }
+        String functionType = FUNCTION_TYPES.get(shape.toString());
+        if (functionType == null) {
+            return null;
+        }
+        if (!referenceTypes.isEmpty()) {
+            functionType += "<" + String.join(", ", referenceTypes) + ">";
+        }
+        return functionType.startsWith("Runnable") ? "java.lang." + functionType : "java.util.function." + functionType;
+    }
+
+    private static char kind(TypeMirror type) {
+        switch (type.getKind()) {
+            case VOID:
+                return 'V';
+            case BOOLEAN:
+                return 'Z';
+            case INT:
+                return 'I';
+            case LONG:
+                return 'J';
+            case DOUBLE:
+                return 'D';
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case FLOAT:
+                // no functional interface takes or returns them
+                return '?';
+            default:
+                return 'L';
+        }
+    }
+
+    /**
+     * @return whether the given type, and its enclosing types, can be named from the given package
+     */
+    private static boolean isAccessible(TypeElement type, PackageElement pkg) {
+        Element element = type;
+        while (element.getKind() != ElementKind.PACKAGE) {
+            if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+                // local classes
+                return false;
+            }
+            if (element.getModifiers().contains(Modifier.PRIVATE)
+                    || (!element.getModifiers().contains(Modifier.PUBLIC) && !pkg.equals(packageOf(element)))) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private static Element packageOf(Element element) {
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return element;
+    }
+
+    private static TypeElement topLevelType(TypeElement type) {
+        while (type.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+            type = (TypeElement) type.getEnclosingElement();
+        }
+        return type;
+    }
+
+    /**
+     * @param erasure an erased type
+     * @return its name in sources
+     */
+    private static String sourceName(TypeMirror erasure) {
+        switch (erasure.getKind()) {
+            case ARRAY:
+                return sourceName(((ArrayType) erasure).getComponentType()) + "[]";
+            case DECLARED:
+                return ((TypeElement) ((DeclaredType) erasure).asElement()).getQualifiedName().toString();
+            default:
+                // primitives
+                return erasure.getKind().name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
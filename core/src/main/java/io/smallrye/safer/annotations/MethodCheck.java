@@ -0,0 +1,29 @@
+package io.smallrye.safer.annotations;
+
+import java.util.List;
+
+import javax.lang.model.element.ExecutableElement;
+
+/**
+ * A constrained method, with the constraints it must be checked against.
+ */
+final class MethodCheck {
+
+    final ExecutableElement method;
+    final boolean targetAccessor;
+    // the TargetMethod constraints
+    final List<Constraint> constraints;
+    // the TargetNonBlocking, TargetVirtualThread and TargetAllocationFree constraints, which check its body
+    final List<Constraint> bodyConstraints;
+    // the names of its constrained annotations, only kept for the method index
+    final List<String> annotations;
+
+    MethodCheck(ExecutableElement method, boolean targetAccessor, List<Constraint> constraints,
+            List<Constraint> bodyConstraints, List<String> annotations) {
+        this.method = method;
+        this.targetAccessor = targetAccessor;
+        this.constraints = constraints;
+        this.bodyConstraints = bodyConstraints;
+        this.annotations = annotations;
+    }
+}
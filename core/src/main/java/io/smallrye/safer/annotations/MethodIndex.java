@@ -0,0 +1,293 @@
+package io.smallrye.safer.annotations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * The methods which carry constrained annotations and passed their checks, written by the processor when compiling
+ * with {@link SaferAnnotationProcessor#METHOD_INDEX_OPTION}, so that frameworks can find them at startup without
+ * scanning classes. They are stored in {@link #RESOURCE} resources, in this format:
+ *
+ * <pre>
+ * safer-annotations-methods 1
+ * &#64;com.example.Route
+ * com.example.Resource hello (Ljava/lang/String;)Ljava/lang/String;
+ * com.example.Resource$Nested list ()Ljava/util/List;
+ * </pre>
+ *
+ * Where each annotation starts with its name, followed by one line per method, with the binary name of its declaring
+ * class, its name and its erased descriptor.
+ */
+public final class MethodIndex {
+
+    /**
+     * Where we store method indexes.
+     */
+    public static final String RESOURCE = "META-INF/safer-annotations/methods";
+
+    /**
+     * Bump this whenever the format or the meaning of method indexes changes.
+     */
+    static final int VERSION = 1;
+
+    private static final String HEADER = "safer-annotations-methods";
+
+    /**
+     * An indexed method, described without loading its class.
+     */
+    public static final class Entry implements Comparable<Entry> {
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+
+        Entry(String className, String methodName, String descriptor) {
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+        }
+
+        /**
+         * @return the binary name of the class declaring the method, as passed to {@link Class#forName(String)}
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        /**
+         * @return the erased descriptor of the method, as in <code>(Ljava/lang/String;)V</code>
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return toString().compareTo(o.toString());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry && toString().equals(obj.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return className + " " + methodName + " " + descriptor;
+        }
+    }
+
+    // annotation name -> indexed methods, sorted so that the written index is stable
+    private final Map<String, Set<Entry>> entries = new TreeMap<>();
+    private final ClassLoader classLoader;
+
+    MethodIndex(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Reads and merges every method index visible from the given class loader.
+     *
+     * @param classLoader the class loader to read the indexes from, and to load the indexed methods with
+     * @return the merged index, which is empty if there is none
+     * @throws IOException if an index cannot be read, or has an unsupported version
+     */
+    public static MethodIndex read(ClassLoader classLoader) throws IOException {
+        MethodIndex index = new MethodIndex(classLoader);
+        Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            try (Reader reader = new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8)) {
+                if (!index.read(reader)) {
+                    throw new IOException("Unsupported method index version: " + resource);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the names of the annotations with indexed methods
+     */
+    public Set<String> getAnnotations() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @param annotation the annotation name
+     * @return the methods indexed for this annotation, without loading them
+     */
+    public Collection<Entry> getEntries(String annotation) {
+        Set<Entry> annotated = entries.get(annotation);
+        return annotated != null ? Collections.unmodifiableSet(annotated) : Collections.emptySet();
+    }
+
+    /**
+     * Loads the methods indexed for the given annotation, without initialising their classes.
+     *
+     * @param annotation the annotation type
+     * @return the methods, in the order of the index
+     * @throws IllegalStateException if an indexed method cannot be found, because the index does not match the classes
+     */
+    public List<Method> getMethods(Class<? extends Annotation> annotation) {
+        Collection<Entry> annotated = getEntries(annotation.getName());
+        List<Method> methods = new ArrayList<>(annotated.size());
+        Class<?> declaringClass = null;
+        for (Entry entry : annotated) {
+            try {
+                // entries are sorted by class
+                if (declaringClass == null || !declaringClass.getName().equals(entry.className)) {
+                    declaringClass = Class.forName(entry.className, false, classLoader);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new IllegalStateException("Failed to load indexed class: " + entry.className, e);
+            }
+            methods.add(findMethod(declaringClass, entry));
+        }
+        return methods;
+    }
+
+    private static Method findMethod(Class<?> declaringClass, Entry entry) {
+        for (Method method : declaringClass.getDeclaredMethods()) {
+            if (method.getName().equals(entry.methodName) && descriptor(method).equals(entry.descriptor)) {
+                return method;
+            }
+        }
+        throw new IllegalStateException("Indexed method not found: " + entry);
+    }
+
+    static String descriptor(Method method) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            appendDescriptor(sb, parameterType);
+        }
+        sb.append(')');
+        appendDescriptor(sb, method.getReturnType());
+        return sb.toString();
+    }
+
+    private static void appendDescriptor(StringBuilder sb, Class<?> type) {
+        if (type.isArray()) {
+            // array class names are already descriptors
+            sb.append(type.getName().replace('.', '/'));
+        } else if (type.isPrimitive()) {
+            // the descriptor of a primitive type is the name of its array class without the [
+            sb.append(type == void.class ? "V" : Array.newInstance(type, 0).getClass().getName().substring(1));
+        } else {
+            sb.append('L').append(type.getName().replace('.', '/')).append(';');
+        }
+    }
+
+    void add(String annotation, String className, String methodName, String descriptor) {
+        entries.computeIfAbsent(annotation, k -> new TreeSet<>()).add(new Entry(className, methodName, descriptor));
+    }
+
+    /**
+     * Removes the methods of the given top-level classes and of their nested classes, whose methods are indexed again
+     * when they are compiled again.
+     *
+     * @param topLevelClasses the binary names of top-level classes
+     */
+    void removeClasses(Set<String> topLevelClasses) {
+        for (Set<Entry> annotated : entries.values()) {
+            annotated.removeIf(entry -> {
+                int nested = entry.className.indexOf('$');
+                return topLevelClasses.contains(nested == -1 ? entry.className : entry.className.substring(0, nested))
+                        || topLevelClasses.contains(entry.className);
+            });
+        }
+        entries.values().removeIf(Set::isEmpty);
+    }
+
+    /**
+     * Removes the methods of the classes which do not exist anymore.
+     *
+     * @param exists tells whether a class, given its binary name, still exists
+     */
+    void retainClasses(Predicate<String> exists) {
+        for (Set<Entry> annotated : entries.values()) {
+            annotated.removeIf(entry -> !exists.test(entry.className));
+        }
+        entries.values().removeIf(Set::isEmpty);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Adds the methods of the given index to this one.
+     *
+     * @return false if the index has an unsupported version, in which case nothing is added
+     */
+    boolean read(Reader reader) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line = bufferedReader.readLine();
+        if (line == null || !line.equals(HEADER + " " + VERSION)) {
+            return false;
+        }
+        // only add them once they are all valid
+        MethodIndex read = new MethodIndex(classLoader);
+        String annotation = null;
+        while ((line = bufferedReader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("@")) {
+                annotation = line.substring(1);
+                continue;
+            }
+            String[] parts = line.split(" ");
+            if (annotation == null || parts.length != 3) {
+                return false;
+            }
+            read.add(annotation, parts[0], parts[1], parts[2]);
+        }
+        addAll(read);
+        return true;
+    }
+
+    void addAll(MethodIndex index) {
+        for (Map.Entry<String, Set<Entry>> annotated : index.entries.entrySet()) {
+            entries.computeIfAbsent(annotated.getKey(), k -> new TreeSet<>()).addAll(annotated.getValue());
+        }
+    }
+
+    void write(Writer writer) throws IOException {
+        writer.write(HEADER + " " + VERSION + "\n");
+        for (Map.Entry<String, Set<Entry>> annotated : entries.entrySet()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('@').append(annotated.getKey()).append('\n');
+            for (Entry entry : annotated.getValue()) {
+                sb.append(entry).append('\n');
+            }
+            writer.write(sb.toString());
+        }
+    }
+}
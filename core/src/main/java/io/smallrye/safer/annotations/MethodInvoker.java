@@ -0,0 +1,152 @@
+package io.smallrye.safer.annotations;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calls a valid constrained method through the {@link GeneratedInvokers} of its class, without reflection: there is no
+ * access check, no copy of the arguments, and exceptions are not wrapped. {@link #as(Class)} also gives the method as
+ * a functional interface matching its signature, which calls it without an array of arguments, or boxing its primitive
+ * arguments and result. The invokers of a class are loaded once, on first lookup, and kept in a {@link ClassValue}.
+ * <p>
+ * Since invokers skip access checks, only public methods of public classes have invokers: they give no access which
+ * {@link Method#invoke(Object, Object...)} would not.
+ */
+public final class MethodInvoker {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    // declaring class -> name and descriptor -> invoker
+    private static final ClassValue<Map<String, MethodInvoker>> INVOKERS = new ClassValue<Map<String, MethodInvoker>>() {
+        @Override
+        protected Map<String, MethodInvoker> computeValue(Class<?> declaringClass) {
+            return load(declaringClass);
+        }
+    };
+
+    private final GeneratedInvokers invokers;
+    private final int index;
+    private final String method;
+    private final int parameterCount;
+    private final Object function;
+
+    private MethodInvoker(GeneratedInvokers invokers, int index, String method) {
+        this.invokers = invokers;
+        this.index = index;
+        this.method = method;
+        this.parameterCount = parameterCount(method);
+        this.function = invokers.function(index);
+    }
+
+    /**
+     * @param method a method
+     * @return the invoker of the method, or <code>null</code> if none was generated for it
+     */
+    public static MethodInvoker of(Method method) {
+        return of(method.getDeclaringClass(), method.getName(), MethodIndex.descriptor(method));
+    }
+
+    /**
+     * Looks up an invoker without loading the method, for example for a {@link MethodIndex.Entry}.
+     *
+     * @param declaringClass the class declaring the method
+     * @param methodName the method name
+     * @param descriptor the erased descriptor of the method, as in <code>(Ljava/lang/String;)V</code>
+     * @return the invoker of the method, or <code>null</code> if none was generated for it
+     */
+    public static MethodInvoker of(Class<?> declaringClass, String methodName, String descriptor) {
+        return INVOKERS.get(declaringClass).get(methodName + " " + descriptor);
+    }
+
+    /**
+     * Calls the method. The arguments array is neither copied nor kept, so callers can reuse it.
+     *
+     * @param instance the instance to call the method on, ignored for static methods
+     * @param arguments the arguments, with primitives boxed
+     * @return the result, boxed if it is a primitive, or <code>null</code> for <code>void</code> methods
+     * @throws IllegalArgumentException if the number of arguments is wrong
+     * @throws ClassCastException if an argument, or the instance, has the wrong type
+     * @throws NullPointerException if the instance is <code>null</code> for an instance method, or a primitive argument
+     *         is <code>null</code>
+     * @throws Throwable whatever the method throws, unwrapped
+     */
+    public Object invoke(Object instance, Object... arguments) throws Throwable {
+        if (arguments == null) {
+            arguments = NO_ARGUMENTS;
+        }
+        if (arguments.length != parameterCount) {
+            throw new IllegalArgumentException("Wrong number of arguments for " + this + ": expected " + parameterCount
+                    + " but got " + arguments.length);
+        }
+        return invokers.invoke(index, instance, arguments);
+    }
+
+    /**
+     * Returns the method as the given functional interface of <code>java.util.function</code>, or {@link Runnable},
+     * whose parameters are the receiver of the method, if it is an instance method, followed by its parameters. For
+     * example, <code>int getI()</code> is a <code>ToIntFunction&lt;Declaring&gt;</code>,
+     * <code>void setI(int)</code> an <code>ObjIntConsumer&lt;Declaring&gt;</code>, and
+     * <code>static String sum(Integer, Integer)</code> a <code>BiFunction&lt;Integer, Integer, String&gt;</code>.
+     * Primitive interfaces are only used for <code>boolean</code>, <code>int</code>, <code>long</code> and
+     * <code>double</code>, like in <code>java.util.function</code>.
+     *
+     * @param functionType the functional interface
+     * @return the method as the functional interface, or <code>null</code> if it does not fit the signature of the
+     *         method, or the method declares checked exceptions, which these interfaces cannot throw
+     */
+    public <T> T as(Class<T> functionType) {
+        return functionType.isInstance(function) ? functionType.cast(function) : null;
+    }
+
+    @Override
+    public String toString() {
+        return invokers.getClass().getName() + " " + method;
+    }
+
+    private static Map<String, MethodInvoker> load(Class<?> declaringClass) {
+        ClassLoader classLoader = declaringClass.getClassLoader();
+        if (classLoader == null) {
+            // JDK classes have none
+            return Collections.emptyMap();
+        }
+        GeneratedInvokers invokers;
+        try {
+            Class<?> invokersClass = Class.forName(declaringClass.getName() + GeneratedInvokers.SUFFIX, true,
+                    classLoader);
+            if (!GeneratedInvokers.class.isAssignableFrom(invokersClass)) {
+                return Collections.emptyMap();
+            }
+            invokers = (GeneratedInvokers) invokersClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // not generated, or not accessible, in which case callers fall back to reflection
+            return Collections.emptyMap();
+        }
+        String[] methods = invokers.getMethods();
+        Map<String, MethodInvoker> byMethod = new HashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            byMethod.put(methods[i], new MethodInvoker(invokers, i, methods[i]));
+        }
+        return Collections.unmodifiableMap(byMethod);
+    }
+
+    /**
+     * @param method a method name, followed by a space and its descriptor
+     */
+    private static int parameterCount(String method) {
+        int count = 0;
+        int i = method.indexOf('(') + 1;
+        while (i > 0 && i < method.length() && method.charAt(i) != ')') {
+            char c = method.charAt(i);
+            if (c == 'L') {
+                i = method.indexOf(';', i);
+                count++;
+            } else if (c != '[') {
+                count++;
+            }
+            i++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,152 @@
+package io.smallrye.safer.annotations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Keeps track of the {@link DefinitionOverride} classes of a compilation by name only. Override classes are not looked
+ * up when they are declared, and their targets are indexed by name without looking them up when a constraint
+ * descriptor, or their class file in a jar of the processor class path, tells us. The other overrides, usually those of
+ * the compiled module, are looked up the first time we need to know which annotation they target, and we only keep the
+ * names of their targets. The {@link TypeElement} of an override is only looked up again when the annotation it targets
+ * shows up in a round, to compile its constraints, unless a constraint descriptor can be used instead.
+ */
+public class OverrideRegistry {
+
+    private static final String OVERRIDE_TARGET = OverrideTarget.class.getName();
+
+    // override class name -> how to report it if it cannot be found
+    private final Map<String, Kind> declared = new LinkedHashMap<>();
+    // override class name -> target annotation name, known without looking the override up
+    private final Map<String, String> knownTargets = new HashMap<>();
+    // target annotation name -> override class name, filled on first use, without looking up the overrides whose
+    // target is known
+    private Map<String, String> overridesByTarget;
+    private int resolved;
+    private ProcessorStats stats = new ProcessorStats(false);
+
+    void setStats(ProcessorStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Declares an override class, unless already declared.
+     * 
+     * @param className the override class name
+     * @param missingKind how to report the override class if we cannot find it
+     */
+    void declare(String className, Kind missingKind) {
+        declared.putIfAbsent(className, missingKind);
+    }
+
+    /**
+     * Tells us which annotation an override targets, so we do not have to look it up, if it is declared.
+     * 
+     * @param className the override class name
+     * @param target the target annotation name
+     */
+    void setKnownTarget(String className, String target) {
+        knownTargets.put(className, target);
+    }
+
+    /**
+     * @return the names of the annotations targeted by an override
+     */
+    Set<String> getTargets(ProcessingEnvironment processingEnv) {
+        return Collections.unmodifiableSet(getOverridesByTarget(processingEnv).keySet());
+    }
+
+    /**
+     * @return the name of the override class for the given annotation, or <code>null</code> if there is none
+     */
+    String getOverrideName(ProcessingEnvironment processingEnv, String annotation) {
+        return getOverridesByTarget(processingEnv).get(annotation);
+    }
+
+    /**
+     * @return the override for the given annotation, or <code>null</code> if there is none
+     */
+    TypeElement getOverride(ProcessingEnvironment processingEnv, String annotation) {
+        String override = getOverrideName(processingEnv, annotation);
+        if (override == null) {
+            return null;
+        }
+        resolved++;
+        return processingEnv.getElementUtils().getTypeElement(override);
+    }
+
+    private Map<String, String> getOverridesByTarget(ProcessingEnvironment processingEnv) {
+        if (overridesByTarget == null) {
+            long start = stats.start();
+            overridesByTarget = new HashMap<>();
+            for (Entry<String, Kind> override : declared.entrySet()) {
+                String className = override.getKey();
+                String target = knownTargets.get(className);
+                if (target == null) {
+                    target = readTarget(processingEnv, className, override.getValue());
+                }
+                if (target != null) {
+                    overridesByTarget.put(target, className);
+                }
+            }
+            stats.stop(ProcessorStats.Phase.OVERRIDE_DISCOVERY, start);
+        }
+        return overridesByTarget;
+    }
+
+    private String readTarget(ProcessingEnvironment processingEnv, String className, Kind missingKind) {
+        resolved++;
+        TypeElement typeElement = processingEnv.getElementUtils().getTypeElement(className);
+        if (typeElement == null) {
+            processingEnv.getMessager().printMessage(missingKind,
+                    "Failed to load override class: " + className);
+            return null;
+        }
+        for (AnnotationMirror annotationMirror : typeElement.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(OVERRIDE_TARGET)) {
+                continue;
+            }
+            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotationMirror
+                    .getElementValues().entrySet()) {
+                Object value = entry.getValue().getValue();
+                if (entry.getKey().getSimpleName().contentEquals("value") && value instanceof TypeMirror
+                        && ((TypeMirror) value).getKind() == TypeKind.DECLARED) {
+                    TypeElement target = (TypeElement) ((DeclaredType) value).asElement();
+                    return target.getQualifiedName().toString();
+                }
+            }
+        }
+        processingEnv.getMessager().printMessage(Kind.ERROR,
+                "Classes implementing DefinitionOverride must have an @OverrideTarget annotation", typeElement);
+        return null;
+    }
+
+    /**
+     * @return the number of override classes declared in service files
+     */
+    public int getDeclaredCount() {
+        return declared.size();
+    }
+
+    /**
+     * @return the number of times we had to look up an override class
+     */
+    public int getResolvedCount() {
+        return resolved;
+    }
+}
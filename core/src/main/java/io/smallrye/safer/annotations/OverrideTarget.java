@@ -1,11 +1,15 @@
 package io.smallrye.safer.annotations;
 
 import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
  * When placing constraints on a {@link DefinitionOverride} you must declare an <code>OverrideTarget</code> to
- * specify which annotation you are constraining or whose constraints you are overriding.
+ * specify which annotation you are constraining or whose constraints you are overriding. It is retained at runtime so
+ * that {@link RuntimeValidator} can find it too.
  */
+@Retention(RetentionPolicy.RUNTIME)
 public @interface OverrideTarget {
     /**
      * The annotation type we aim to constrain.
@@ -0,0 +1,143 @@
+package io.smallrye.safer.annotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the {@link OverrideTarget} of a {@link DefinitionOverride} from its class file, so that the overrides of the
+ * processor class path can be indexed by target without asking javac to complete their symbols.
+ */
+final class OverrideTargets {
+
+    private static final String OVERRIDE_TARGET = "L" + OverrideTarget.class.getName().replace('.', '/') + ";";
+
+    private OverrideTargets() {
+    }
+
+    /**
+     * @param classFile the class file of an override
+     * @return the qualified name of the annotation it targets, or <code>null</code> if it has no {@link OverrideTarget},
+     *         or if it targets a nested annotation, whose qualified name cannot be told from its binary name
+     * @throws IOException if it is not a valid class file
+     */
+    static String read(byte[] classFile) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(classFile));
+        // magic, minor and major versions
+        data.skipBytes(8);
+        int constantCount = data.readUnsignedShort();
+        String[] utf8 = new String[constantCount];
+        for (int i = 1; i < constantCount; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = data.readUTF();
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    data.skipBytes(2);
+                    break;
+                case 15:
+                    data.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    data.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    data.skipBytes(8);
+                    // they take two entries
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag: " + tag);
+            }
+        }
+        // access flags, this class and super class
+        data.skipBytes(6);
+        data.skipBytes(data.readUnsignedShort() * 2);
+        // fields, then methods
+        for (int members = 0; members < 2; members++) {
+            int count = data.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                // access flags, name and descriptor
+                data.skipBytes(6);
+                skipAttributes(data);
+            }
+        }
+        int attributeCount = data.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String name = utf8[data.readUnsignedShort()];
+            int length = data.readInt();
+            if (!"RuntimeVisibleAnnotations".equals(name) && !"RuntimeInvisibleAnnotations".equals(name)) {
+                data.skipBytes(length);
+                continue;
+            }
+            int annotationCount = data.readUnsignedShort();
+            for (int a = 0; a < annotationCount; a++) {
+                boolean overrideTarget = OVERRIDE_TARGET.equals(utf8[data.readUnsignedShort()]);
+                int valueCount = data.readUnsignedShort();
+                for (int v = 0; v < valueCount; v++) {
+                    String element = utf8[data.readUnsignedShort()];
+                    int tag = data.readUnsignedByte();
+                    if (overrideTarget && element.equals("value") && tag == 'c') {
+                        String descriptor = utf8[data.readUnsignedShort()];
+                        if (descriptor.startsWith("L") && descriptor.endsWith(";") && descriptor.indexOf('$') == -1) {
+                            return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+                        }
+                        return null;
+                    }
+                    skipElementValue(data, tag);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void skipAttributes(DataInputStream data) throws IOException {
+        int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            data.skipBytes(2);
+            data.skipBytes(data.readInt());
+        }
+    }
+
+    /**
+     * Skips an element value, whose tag was read.
+     */
+    private static void skipElementValue(DataInputStream data, int tag) throws IOException {
+        switch (tag) {
+            case 'e':
+                data.skipBytes(4);
+                break;
+            case '@':
+                data.skipBytes(2);
+                int count = data.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    data.skipBytes(2);
+                    skipElementValue(data, data.readUnsignedByte());
+                }
+                break;
+            case '[':
+                int length = data.readUnsignedShort();
+                for (int i = 0; i < length; i++) {
+                    skipElementValue(data, data.readUnsignedByte());
+                }
+                break;
+            default:
+                // constants and classes
+                data.skipBytes(2);
+                break;
+        }
+    }
+}
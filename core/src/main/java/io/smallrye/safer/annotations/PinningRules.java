@@ -0,0 +1,37 @@
+package io.smallrye.safer.annotations;
+
+/**
+ * What pins the carrier thread of the methods of a {@link TargetVirtualThread} constraint.
+ */
+final class PinningRules {
+
+    // JDK native methods are left out: most of them never block, and the JDK avoids pinning in those which do
+    private static final String[] JDK_PACKAGES = { "java.", "javax.", "jdk.", "sun.", "com.sun." };
+
+    final boolean monitorsPin;
+
+    PinningRules(boolean monitorsPin) {
+        this.monitorsPin = monitorsPin;
+    }
+
+    /**
+     * @param packageName the package declaring a native method
+     * @return whether calling it pins the carrier thread, because it may run Java code or block in a native frame
+     */
+    static boolean isPinningNative(String packageName) {
+        for (String jdkPackage : JDK_PACKAGES) {
+            if (packageName.startsWith(jdkPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a description of these rules, which is the same for equivalent rules
+     */
+    @Override
+    public String toString() {
+        return monitorsPin ? "monitors" : "native";
+    }
+}
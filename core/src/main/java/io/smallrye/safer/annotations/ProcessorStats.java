@@ -0,0 +1,137 @@
+package io.smallrye.safer.annotations;
+
+import java.util.Locale;
+
+/**
+ * Times the phases of the processor, and counts what it does, when enabled with
+ * {@link SaferAnnotationProcessor#STATS_OPTION}. The coarse phases are also recorded as JFR events on Java 11+,
+ * whether enabled or not. Phases may nest: constraint building includes the override discovery it triggers, and
+ * target method checks include their type checks.
+ */
+public final class ProcessorStats {
+
+    public enum Phase {
+        INIT("init"),
+        OVERRIDE_DISCOVERY("override discovery"),
+        CONSTRAINT_BUILDING("constraint building"),
+        CHECKS("checks"),
+        TARGET_METHOD("target method checks"),
+        TARGET_ACCESSOR("target accessor checks"),
+        TYPE_CHECK("type checks");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * A timed coarse phase.
+     */
+    final class Span {
+        private final Phase phase;
+        private final long start;
+        private final Object event;
+
+        Span(Phase phase) {
+            this.phase = phase;
+            this.start = start();
+            this.event = Events.begin(phase.label);
+        }
+
+        void end() {
+            Events.end(event);
+            stop(phase, start);
+        }
+    }
+
+    private final boolean enabled;
+    private final long[] nanos = new long[Phase.values().length];
+    private int elementsChecked;
+    private long typesCalls;
+
+    ProcessorStats(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return whether we time and count things
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    Span begin(Phase phase) {
+        return new Span(phase);
+    }
+
+    /**
+     * Starts timing a fine-grained phase, which is not recorded as a JFR event.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Phase phase, long start) {
+        if (enabled) {
+            nanos[phase.ordinal()] += System.nanoTime() - start;
+        }
+    }
+
+    void elementChecked() {
+        elementsChecked++;
+    }
+
+    void typesCalled() {
+        typesCalls++;
+    }
+
+    /**
+     * @return the time spent in the given phase, in nanoseconds
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return the number of constrained methods checked
+     */
+    public int getElementsChecked() {
+        return elementsChecked;
+    }
+
+    /**
+     * @return the number of calls to the {@link javax.lang.model.util.Types} API
+     */
+    public long getTypesCalls() {
+        return typesCalls;
+    }
+
+    String report(ConstraintRegistry constraints, VerdictCache cache) {
+        StringBuilder sb = new StringBuilder("Safer annotations stats:");
+        for (Phase phase : Phase.values()) {
+            sb.append(String.format(Locale.ROOT, "\n  %s: %.3f ms", phase.label, getNanos(phase) / 1_000_000.0));
+        }
+        sb.append("\n  elements checked: ").append(elementsChecked);
+        sb.append("\n  Types calls: ").append(typesCalls);
+        sb.append("\n  constraint cache: ").append(constraints.getHits()).append(" hits, ")
+                .append(constraints.getMisses()).append(" misses");
+        int verdictHits = 0;
+        int verdictMisses = 0;
+        for (Constraint constraint : constraints.getAll()) {
+            if (constraint.isTargetMethod()) {
+                verdictHits += constraint.allowedReturnTypes.getHits() + constraint.allowedParameterTypes.getHits();
+                verdictMisses += constraint.allowedReturnTypes.getMisses()
+                        + constraint.allowedParameterTypes.getMisses();
+            }
+        }
+        sb.append("\n  type verdict cache: ").append(verdictHits).append(" hits, ").append(verdictMisses)
+                .append(" misses");
+        if (cache != null) {
+            sb.append("\n  class verdict cache: ").append(cache.getHits()).append(" hits, ").append(cache.getMisses())
+                    .append(" misses");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,454 @@
+package io.smallrye.safer.annotations;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The subset of {@link javax.lang.model.util.Types} the checks need, for reflection types: the same type and subtype
+ * relations, and the same type names as javac prints, so that {@link RuntimeValidator} reports the same messages as the
+ * processor. We compare types structurally, so that the reflection types of the JDK and those of other libraries can
+ * be mixed.
+ */
+final class ReflectionTypes {
+
+    private static final Class<?>[] PRIMITIVE_WIDENING = { byte.class, short.class, int.class, long.class, float.class,
+            double.class };
+
+    private ReflectionTypes() {
+    }
+
+    static boolean isSameType(Type a, Type b) {
+        if (a == b) {
+            return true;
+        }
+        if (a instanceof ParameterizedType && b instanceof ParameterizedType) {
+            ParameterizedType pa = (ParameterizedType) a;
+            ParameterizedType pb = (ParameterizedType) b;
+            return pa.getRawType() == pb.getRawType()
+                    && isSameOwner(pa.getOwnerType(), pb.getOwnerType())
+                    && isSameTypes(pa.getActualTypeArguments(), pb.getActualTypeArguments());
+        }
+        if (a instanceof GenericArrayType && b instanceof GenericArrayType) {
+            return isSameType(((GenericArrayType) a).getGenericComponentType(),
+                    ((GenericArrayType) b).getGenericComponentType());
+        }
+        if (a instanceof WildcardType && b instanceof WildcardType) {
+            WildcardType wa = (WildcardType) a;
+            WildcardType wb = (WildcardType) b;
+            return isSameTypes(wa.getUpperBounds(), wb.getUpperBounds())
+                    && isSameTypes(wa.getLowerBounds(), wb.getLowerBounds());
+        }
+        if (a instanceof TypeVariable && b instanceof TypeVariable) {
+            TypeVariable<?> va = (TypeVariable<?>) a;
+            TypeVariable<?> vb = (TypeVariable<?>) b;
+            return va.getName().equals(vb.getName()) && va.getGenericDeclaration().equals(vb.getGenericDeclaration());
+        }
+        return false;
+    }
+
+    private static boolean isSameTypes(Type[] a, Type[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (!isSameType(a[i], b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // only parameterized owners tell types apart, since the raw types were already compared
+    private static boolean isSameOwner(Type a, Type b) {
+        if (a instanceof ParameterizedType || b instanceof ParameterizedType) {
+            return a != null && b != null && isSameType(a, b);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether <code>s</code> is a subtype of <code>t</code>, like javac says, without unchecked conversion
+     */
+    static boolean isSubtype(Type s, Type t) {
+        if (isSameType(s, t)) {
+            return true;
+        }
+        if (s instanceof Class && ((Class<?>) s).isPrimitive()) {
+            return t instanceof Class && ((Class<?>) t).isPrimitive() && isPrimitiveWidening((Class<?>) s, (Class<?>) t);
+        }
+        if (t instanceof Class && ((Class<?>) t).isPrimitive()) {
+            return false;
+        }
+        if (s instanceof TypeVariable) {
+            for (Type bound : ((TypeVariable<?>) s).getBounds()) {
+                if (isSubtype(bound, t)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (s instanceof WildcardType) {
+            return isSubtype(((WildcardType) s).getUpperBounds()[0], t);
+        }
+        Type sComponent = getComponentType(s);
+        if (sComponent != null) {
+            if (t == Object.class || t == Cloneable.class || t == Serializable.class) {
+                return true;
+            }
+            Type tComponent = getComponentType(t);
+            if (tComponent == null) {
+                return false;
+            }
+            if (isPrimitive(sComponent) || isPrimitive(tComponent)) {
+                return isSameType(sComponent, tComponent);
+            }
+            return isSubtype(sComponent, tComponent);
+        }
+        if (t instanceof Class) {
+            return ((Class<?>) t).isAssignableFrom(erasure(s));
+        }
+        if (t instanceof ParameterizedType) {
+            ParameterizedType pt = (ParameterizedType) t;
+            Type supertype = asSuper(s, (Class<?>) pt.getRawType());
+            if (!(supertype instanceof ParameterizedType)) {
+                // a raw type is only a subtype of a parameterised type through unchecked conversion
+                return false;
+            }
+            Type[] sArguments = ((ParameterizedType) supertype).getActualTypeArguments();
+            Type[] tArguments = pt.getActualTypeArguments();
+            if (sArguments.length != tArguments.length) {
+                return false;
+            }
+            for (int i = 0; i < tArguments.length; i++) {
+                if (!contains(tArguments[i], sArguments[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isPrimitiveWidening(Class<?> s, Class<?> t) {
+        if (s == char.class) {
+            s = short.class;
+            if (t == short.class) {
+                return false;
+            }
+        }
+        int sIndex = Arrays.asList(PRIMITIVE_WIDENING).indexOf(s);
+        int tIndex = Arrays.asList(PRIMITIVE_WIDENING).indexOf(t);
+        return sIndex != -1 && tIndex != -1 && sIndex <= tIndex;
+    }
+
+    private static boolean isPrimitive(Type type) {
+        return type instanceof Class && ((Class<?>) type).isPrimitive();
+    }
+
+    private static Type getComponentType(Type type) {
+        if (type instanceof GenericArrayType) {
+            return ((GenericArrayType) type).getGenericComponentType();
+        }
+        if (type instanceof Class) {
+            return ((Class<?>) type).getComponentType();
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the type argument <code>t</code> contains the type argument <code>s</code>
+     */
+    private static boolean contains(Type t, Type s) {
+        if (!(t instanceof WildcardType)) {
+            return isSameType(t, s);
+        }
+        WildcardType wt = (WildcardType) t;
+        if (wt.getLowerBounds().length > 0) {
+            Type lower = wt.getLowerBounds()[0];
+            if (s instanceof WildcardType) {
+                Type[] sLower = ((WildcardType) s).getLowerBounds();
+                return sLower.length > 0 && isSubtype(lower, sLower[0]);
+            }
+            return isSubtype(lower, s);
+        }
+        Type upper = wt.getUpperBounds()[0];
+        if (s instanceof WildcardType) {
+            WildcardType ws = (WildcardType) s;
+            if (ws.getLowerBounds().length > 0) {
+                return upper == Object.class;
+            }
+            return isSubtype(ws.getUpperBounds()[0], upper);
+        }
+        return isSubtype(s, upper);
+    }
+
+    /**
+     * @return the supertype of the given class or parameterised type whose class is <code>target</code>, with its type
+     *         arguments, or erased if the given type is raw, or <code>null</code> if there is none
+     */
+    private static Type asSuper(Type type, Class<?> target) {
+        Class<?> raw = erasure(type);
+        if (!target.isAssignableFrom(raw)) {
+            return null;
+        }
+        if (raw == target) {
+            return type;
+        }
+        Map<TypeVariable<?>, Type> substitution;
+        if (type instanceof ParameterizedType) {
+            substitution = new HashMap<>();
+            TypeVariable<?>[] parameters = raw.getTypeParameters();
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            for (int i = 0; i < parameters.length && i < arguments.length; i++) {
+                substitution.put(parameters[i], arguments[i]);
+            }
+        } else if (raw.getTypeParameters().length > 0) {
+            // the supertypes of a raw type are erased
+            return target;
+        } else {
+            substitution = Collections.emptyMap();
+        }
+        Type superclass = raw.getGenericSuperclass();
+        if (superclass != null) {
+            Type found = asSuper(substitute(superclass, substitution), target);
+            if (found != null) {
+                return found;
+            }
+        }
+        for (Type superinterface : raw.getGenericInterfaces()) {
+            Type found = asSuper(substitute(superinterface, substitution), target);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static Type substitute(Type type, Map<TypeVariable<?>, Type> substitution) {
+        if (substitution.isEmpty()) {
+            return type;
+        }
+        if (type instanceof TypeVariable) {
+            Type argument = substitution.get(type);
+            return argument != null ? argument : type;
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Type owner = parameterizedType.getOwnerType();
+            return new Parameterized((Class<?>) parameterizedType.getRawType(),
+                    owner != null ? substitute(owner, substitution) : null,
+                    substitute(parameterizedType.getActualTypeArguments(), substitution));
+        }
+        if (type instanceof GenericArrayType) {
+            return new GenericArray(substitute(((GenericArrayType) type).getGenericComponentType(), substitution));
+        }
+        if (type instanceof WildcardType) {
+            WildcardType wildcardType = (WildcardType) type;
+            return new Wildcard(substitute(wildcardType.getUpperBounds(), substitution),
+                    substitute(wildcardType.getLowerBounds(), substitution));
+        }
+        return type;
+    }
+
+    private static Type[] substitute(Type[] types, Map<TypeVariable<?>, Type> substitution) {
+        Type[] substituted = new Type[types.length];
+        for (int i = 0; i < types.length; i++) {
+            substituted[i] = substitute(types[i], substitution);
+        }
+        return substituted;
+    }
+
+    static Class<?> erasure(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(erasure(((GenericArrayType) type).getGenericComponentType()), 0)
+                    .getClass();
+        }
+        if (type instanceof TypeVariable) {
+            return erasure(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        if (type instanceof WildcardType) {
+            return erasure(((WildcardType) type).getUpperBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    /**
+     * @return the given type as javac prints it
+     */
+    static String toString(Type type) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, type);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, Type type) {
+        if (type instanceof Class) {
+            Class<?> c = (Class<?>) type;
+            if (c.isArray()) {
+                append(sb, c.getComponentType());
+                sb.append("[]");
+            } else {
+                // local and anonymous classes have no canonical name
+                String name = c.getCanonicalName();
+                sb.append(name != null ? name : c.getName());
+            }
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterizedType.getRawType();
+            if (parameterizedType.getOwnerType() instanceof ParameterizedType) {
+                append(sb, parameterizedType.getOwnerType());
+                sb.append('.').append(raw.getSimpleName());
+            } else {
+                append(sb, raw);
+            }
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            sb.append('<');
+            for (int i = 0; i < arguments.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                append(sb, arguments[i]);
+            }
+            sb.append('>');
+        } else if (type instanceof GenericArrayType) {
+            append(sb, ((GenericArrayType) type).getGenericComponentType());
+            sb.append("[]");
+        } else if (type instanceof WildcardType) {
+            WildcardType wildcardType = (WildcardType) type;
+            if (wildcardType.getLowerBounds().length > 0) {
+                sb.append("? super ");
+                append(sb, wildcardType.getLowerBounds()[0]);
+            } else if (wildcardType.getUpperBounds().length == 0 || wildcardType.getUpperBounds()[0] == Object.class) {
+                sb.append('?');
+            } else {
+                sb.append("? extends ");
+                append(sb, wildcardType.getUpperBounds()[0]);
+            }
+        } else if (type instanceof TypeVariable) {
+            sb.append(((TypeVariable<?>) type).getName());
+        } else {
+            sb.append(type.getTypeName());
+        }
+    }
+
+    private static final class Parameterized implements ParameterizedType {
+        private final Class<?> raw;
+        private final Type owner;
+        private final Type[] arguments;
+
+        Parameterized(Class<?> raw, Type owner, Type[] arguments) {
+            this.raw = raw;
+            this.owner = owner;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return raw;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return owner;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ParameterizedType && isSameType(this, (ParameterizedType) obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(arguments) ^ Objects.hashCode(owner) ^ raw.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return ReflectionTypes.toString(this);
+        }
+    }
+
+    private static final class GenericArray implements GenericArrayType {
+        private final Type component;
+
+        GenericArray(Type component) {
+            this.component = component;
+        }
+
+        @Override
+        public Type getGenericComponentType() {
+            return component;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GenericArrayType && isSameType(this, (GenericArrayType) obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return component.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return ReflectionTypes.toString(this);
+        }
+    }
+
+    private static final class Wildcard implements WildcardType {
+        private final Type[] upperBounds;
+        private final Type[] lowerBounds;
+
+        Wildcard(Type[] upperBounds, Type[] lowerBounds) {
+            this.upperBounds = upperBounds;
+            this.lowerBounds = lowerBounds;
+        }
+
+        @Override
+        public Type[] getUpperBounds() {
+            return upperBounds.clone();
+        }
+
+        @Override
+        public Type[] getLowerBounds() {
+            return lowerBounds.clone();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof WildcardType && isSameType(this, (WildcardType) obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(upperBounds) ^ Arrays.hashCode(lowerBounds);
+        }
+
+        @Override
+        public String toString() {
+            return ReflectionTypes.toString(this);
+        }
+    }
+}
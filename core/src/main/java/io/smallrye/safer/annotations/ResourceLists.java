@@ -0,0 +1,83 @@
+package io.smallrye.safer.annotations;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Enumeration;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Reads resources which list names, one per line, in the format of <code>META-INF/services</code> files: blank lines
+ * are ignored, as well as anything following a <code>#</code>.
+ */
+final class ResourceLists {
+
+    private ResourceLists() {
+    }
+
+    /**
+     * Reads every copy of the given resource visible from the processor class path, without loading any class.
+     * 
+     * @param processingEnv the processing environment
+     * @param path the resource path
+     * @param names where to add the names listed in the resources
+     */
+    static void readClassPath(ProcessingEnvironment processingEnv, String path, Set<String> names) {
+        try {
+            Enumeration<URL> resources = SaferAnnotationProcessor.class.getClassLoader().getResources(path);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try (Reader reader = new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8)) {
+                    read(reader, names);
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to read " + path + ": " + e);
+        }
+    }
+
+    /**
+     * Reads the given resource from the compilation output only.
+     * 
+     * @param processingEnv the processing environment
+     * @param path the resource path
+     * @param names where to add the names listed in the resource
+     */
+    static void readClassOutput(ProcessingEnvironment processingEnv, String path, Set<String> names) {
+        try {
+            FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", path);
+            try (Reader reader = resource.openReader(true)) {
+                read(reader, names);
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // ignore this one, it's fine if it doesn't exist
+        } catch (IOException | IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to read " + path + ": " + e);
+        }
+    }
+
+    static void read(Reader reader, Set<String> names) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            int comment = line.indexOf('#');
+            if (comment != -1) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (!line.isEmpty()) {
+                names.add(line);
+            }
+        }
+    }
+}
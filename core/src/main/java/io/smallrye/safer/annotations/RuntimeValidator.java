@@ -0,0 +1,393 @@
+package io.smallrye.safer.annotations;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.GenericSignatureFormatError;
+import java.lang.reflect.MalformedParameterizedTypeException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Applies the checks of the processor with reflection, to classes which never went through it, such as classes
+ * generated at runtime or proxies. Only the annotations with a <code>RUNTIME</code> retention can be seen, and the
+ * {@link DefinitionOverride} classes must have been compiled with this version of {@link OverrideTarget}, which is
+ * retained at runtime. The signatures of {@link TargetAllocationFree} methods are checked, but not their bodies, and
+ * varargs parameters are named like reflection does, from <code>arg0</code>, unless compiled with
+ * <code>-parameters</code>.
+ * <p>
+ * The violations of each class are computed once and kept in a {@link ClassValue}, as are the constraints of each
+ * annotation, so that validating a class again costs a single lookup. Validators can be used from any number of
+ * threads, and never block: threads validating the same class at the same time may all compute its violations, and
+ * the first one to finish wins.
+ */
+public final class RuntimeValidator {
+
+    /**
+     * A check that a method failed, with the same message as the processor would report.
+     */
+    public static final class Violation {
+        private final Method method;
+        private final String message;
+
+        Violation(Method method, String message) {
+            this.method = method;
+            this.message = message;
+        }
+
+        /**
+         * @return the method which failed the check
+         */
+        public Method getMethod() {
+            return method;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return method + ": " + message;
+        }
+    }
+
+    private static final class Matcher {
+        final Type type;
+        final boolean subtype;
+
+        Matcher(Type type, boolean subtype) {
+            this.type = type;
+            this.subtype = subtype;
+        }
+
+        boolean matches(Type checkedType) {
+            return subtype ? ReflectionTypes.isSubtype(checkedType, type) : ReflectionTypes.isSameType(type, checkedType);
+        }
+
+        // This is used in error reporting
+        @Override
+        public String toString() {
+            return subtype ? "subtype of " + ReflectionTypes.toString(type) : ReflectionTypes.toString(type);
+        }
+    }
+
+    private static final class RuntimeConstraint {
+        final String annotation;
+        final boolean targetAccessor;
+        final boolean allocationFree;
+        // null unless the annotation has a TargetMethod constraint
+        final List<Matcher> allowedReturnTypes;
+        final List<Matcher> allowedParameterTypes;
+
+        RuntimeConstraint(String annotation, boolean targetAccessor, boolean allocationFree,
+                List<Matcher> allowedReturnTypes, List<Matcher> allowedParameterTypes) {
+            this.annotation = annotation;
+            this.targetAccessor = targetAccessor;
+            this.allocationFree = allocationFree;
+            this.allowedReturnTypes = allowedReturnTypes;
+            this.allowedParameterTypes = allowedParameterTypes;
+        }
+
+        boolean isTargetMethod() {
+            return allowedReturnTypes != null;
+        }
+    }
+
+    // so that the order of violations does not depend on the order of reflection
+    private static final Comparator<Method> METHOD_ORDER = Comparator.comparing(Method::getName)
+            .thenComparing(method -> Arrays.toString(method.getParameterTypes()));
+
+    private final ClassLoader overridesLoader;
+    // target annotation name -> override class, read on first use
+    private volatile Map<String, Class<?>> overridesByTarget;
+
+    private final ClassValue<Optional<RuntimeConstraint>> constraints = new ClassValue<Optional<RuntimeConstraint>>() {
+        @Override
+        protected Optional<RuntimeConstraint> computeValue(Class<?> annotation) {
+            return Optional.ofNullable(buildConstraint(annotation));
+        }
+    };
+
+    private final ClassValue<List<Violation>> violations = new ClassValue<List<Violation>>() {
+        @Override
+        protected List<Violation> computeValue(Class<?> type) {
+            return check(type);
+        }
+    };
+
+    /**
+     * Creates a validator which reads the {@link DefinitionOverride} services visible from the class loader of this
+     * class.
+     */
+    public RuntimeValidator() {
+        this(RuntimeValidator.class.getClassLoader());
+    }
+
+    /**
+     * @param overridesLoader the class loader to read the {@link DefinitionOverride} services from
+     */
+    public RuntimeValidator(ClassLoader overridesLoader) {
+        this.overridesLoader = overridesLoader != null ? overridesLoader : ClassLoader.getSystemClassLoader();
+    }
+
+    /**
+     * Checks the methods declared by the given class, but not those of its nested classes, which must be validated on
+     * their own.
+     *
+     * @param type the class to check
+     * @return the checks its methods failed, which is empty if it is valid
+     */
+    public List<Violation> validate(Class<?> type) {
+        return violations.get(type);
+    }
+
+    /**
+     * @return whether the methods declared by the given class pass all checks
+     */
+    public boolean isValid(Class<?> type) {
+        return validate(type).isEmpty();
+    }
+
+    private List<Violation> check(Class<?> type) {
+        Method[] methods = type.getDeclaredMethods();
+        Arrays.sort(methods, METHOD_ORDER);
+        List<Violation> found = new ArrayList<>();
+        for (Method method : methods) {
+            if (method.isBridge() || method.isSynthetic()) {
+                continue;
+            }
+            check(method, found);
+        }
+        return found.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(found);
+    }
+
+    private void check(Method method, List<Violation> found) {
+        List<RuntimeConstraint> methodConstraints = null;
+        List<RuntimeConstraint> allocationConstraints = null;
+        boolean targetAccessor = false;
+        for (Annotation annotation : method.getDeclaredAnnotations()) {
+            RuntimeConstraint constraint = constraints.get(annotation.annotationType()).orElse(null);
+            if (constraint == null) {
+                continue;
+            }
+            targetAccessor |= constraint.targetAccessor;
+            if (constraint.allocationFree) {
+                if (allocationConstraints == null) {
+                    allocationConstraints = new ArrayList<>(1);
+                }
+                allocationConstraints.add(constraint);
+            }
+            if (constraint.isTargetMethod()) {
+                if (methodConstraints == null) {
+                    methodConstraints = new ArrayList<>(1);
+                }
+                methodConstraints.add(constraint);
+            }
+        }
+        if (targetAccessor) {
+            checkAccessor(method, found);
+        }
+        if (allocationConstraints != null) {
+            checkAllocationFreeSignature(method, allocationConstraints, found);
+        }
+        if (methodConstraints == null) {
+            return;
+        }
+        Type returnType;
+        Type[] parameterTypes;
+        try {
+            returnType = method.getGenericReturnType();
+            parameterTypes = method.getGenericParameterTypes();
+        } catch (GenericSignatureFormatError | MalformedParameterizedTypeException | TypeNotPresentException e) {
+            // generated classes can have broken generic signatures, which the JVM ignores
+            returnType = method.getReturnType();
+            parameterTypes = method.getParameterTypes();
+        }
+        for (RuntimeConstraint constraint : methodConstraints) {
+            checkType(returnType, constraint.allowedReturnTypes, "return", method, found);
+        }
+        for (Type parameterType : parameterTypes) {
+            for (RuntimeConstraint constraint : methodConstraints) {
+                checkType(parameterType, constraint.allowedParameterTypes, "parameter", method, found);
+            }
+        }
+    }
+
+    private static void checkAccessor(Method method, List<Violation> found) {
+        String name = method.getName();
+        if ((name.startsWith("get") && name.length() > 3)
+                || (name.startsWith("is") && name.length() > 2)) {
+            if (method.getReturnType() == void.class) {
+                found.add(new Violation(method, "Invalid getter return type: cannot be 'void'"));
+            }
+            if (method.getParameterCount() != 0) {
+                found.add(new Violation(method, "Getter cannot have parameters"));
+            }
+        } else if (name.startsWith("set") && name.length() > 3) {
+            if (method.getReturnType() != void.class) {
+                found.add(new Violation(method, "Invalid setter return type: must be 'void'"));
+            }
+            if (method.getParameterCount() != 1) {
+                found.add(new Violation(method, "Setter must have a single parameter"));
+            }
+        } else {
+            found.add(new Violation(method, "Invalid accessor name: " + name + " must start with 'get', 'is' or 'set'"));
+        }
+    }
+
+    private static void checkAllocationFreeSignature(Method method, List<RuntimeConstraint> allocationConstraints,
+            List<Violation> found) {
+        if (method.isAnnotationPresent(AllowAllocation.class)) {
+            return;
+        }
+        Parameter[] parameters = method.getParameters();
+        for (RuntimeConstraint constraint : allocationConstraints) {
+            if (AllocationRules.isBoxed(method.getReturnType().getName())) {
+                found.add(new Violation(method, AllocationRules.message(
+                        AllocationRules.boxedReturnType(method.getReturnType().getName()), constraint.annotation)));
+            }
+            for (int p = 0; p < parameters.length; p++) {
+                Parameter parameter = parameters[p];
+                if (parameter.isAnnotationPresent(AllowAllocation.class)) {
+                    continue;
+                }
+                if (method.isVarArgs() && p == parameters.length - 1) {
+                    found.add(new Violation(method, AllocationRules.message(
+                            AllocationRules.varargsParameter(parameter.getName()), constraint.annotation)));
+                } else if (AllocationRules.isBoxed(parameter.getType().getName())) {
+                    found.add(new Violation(method, AllocationRules.message(
+                            AllocationRules.boxedParameterType(parameter.getType().getName()), constraint.annotation)));
+                }
+            }
+        }
+    }
+
+    private static void checkType(Type checkedType, List<Matcher> allowedTypes, String kind, Method method,
+            List<Violation> found) {
+        for (Matcher matcher : allowedTypes) {
+            if (matcher.matches(checkedType)) {
+                return;
+            }
+        }
+        found.add(new Violation(method, "Invalid " + kind + " type: '" + ReflectionTypes.toString(checkedType)
+                + "' must be one of: " + allowedTypes));
+    }
+
+    /**
+     * Looks at the meta-annotations of the given annotation, and of its override, like the processor does. The
+     * {@link TargetMethod} of the override takes precedence over that of the annotation.
+     *
+     * @return the constraint, or <code>null</code> if the annotation has none
+     */
+    private RuntimeConstraint buildConstraint(Class<?> annotation) {
+        TargetMethod targetMethod = null;
+        boolean targetAccessor = false;
+        boolean allocationFree = false;
+        Class<?> override = getOverridesByTarget().get(annotation.getName());
+        for (Class<?> annotated : override != null ? Arrays.asList(override, annotation)
+                : Collections.<Class<?>> singletonList(annotation)) {
+            if (targetMethod == null) {
+                targetMethod = annotated.getAnnotation(TargetMethod.class);
+            }
+            targetAccessor |= annotated.isAnnotationPresent(TargetAccessor.class);
+            allocationFree |= annotated.isAnnotationPresent(TargetAllocationFree.class);
+        }
+        if (targetMethod == null) {
+            return targetAccessor || allocationFree
+                    ? new RuntimeConstraint(annotation.getCanonicalName(), targetAccessor, allocationFree, null, null)
+                    : null;
+        }
+        return new RuntimeConstraint(annotation.getCanonicalName(), targetAccessor, allocationFree,
+                matchers(targetMethod.returnTypes()), matchers(targetMethod.parameterTypes()));
+    }
+
+    private static List<Matcher> matchers(Class<?>[] types) {
+        List<Matcher> matchers = new ArrayList<>(types.length);
+        for (Class<?> type : types) {
+            matchers.add(makeTypeMatcher(type));
+        }
+        return Collections.unmodifiableList(matchers);
+    }
+
+    /**
+     * @return the matcher for the given allowed type, which may be a {@link TargetMethod.GenericType} or
+     *         {@link TargetMethod.Subtype} subclass
+     */
+    private static Matcher makeTypeMatcher(Class<?> type) {
+        Type superclass = type.getGenericSuperclass();
+        if (superclass instanceof ParameterizedType) {
+            ParameterizedType supertype = (ParameterizedType) superclass;
+            if (supertype.getRawType() == TargetMethod.GenericType.class) {
+                return new Matcher(supertype.getActualTypeArguments()[0], false);
+            } else if (supertype.getRawType() == TargetMethod.Subtype.class) {
+                return new Matcher(supertype.getActualTypeArguments()[0], true);
+            }
+        }
+        return new Matcher(type, false);
+    }
+
+    /**
+     * Reads the {@link DefinitionOverride} services once. Threads racing on the first use may all read them, which
+     * gives the same result.
+     */
+    private Map<String, Class<?>> getOverridesByTarget() {
+        Map<String, Class<?>> overrides = overridesByTarget;
+        if (overrides == null) {
+            overrides = readOverrides();
+            overridesByTarget = overrides;
+        }
+        return overrides;
+    }
+
+    private Map<String, Class<?>> readOverrides() {
+        Set<String> names = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> resources = overridesLoader.getResources(SaferAnnotationProcessor.DEFINITION_OVERRIDE_SERVICES);
+            while (resources.hasMoreElements()) {
+                try (Reader reader = new InputStreamReader(resources.nextElement().openStream(), StandardCharsets.UTF_8)) {
+                    ResourceLists.read(reader, names);
+                }
+            }
+        } catch (IOException e) {
+            // like the processor, we carry on without the overrides we cannot read
+        }
+        Map<String, Class<?>> overrides = new HashMap<>();
+        for (String name : names) {
+            Class<?> override;
+            try {
+                override = Class.forName(name, false, overridesLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // listed overrides which do not exist are ignored
+                continue;
+            }
+            OverrideTarget target = override.getAnnotation(OverrideTarget.class);
+            if (target == null) {
+                continue;
+            }
+            try {
+                // like the processor, when several overrides target the same annotation, the last one wins
+                overrides.put(target.value().getName(), override);
+            } catch (TypeNotPresentException e) {
+                // nothing to override then
+            }
+        }
+        return Collections.unmodifiableMap(overrides);
+    }
+}
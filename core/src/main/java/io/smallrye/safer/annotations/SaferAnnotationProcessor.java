@@ -1,22 +1,30 @@
 package io.smallrye.safer.annotations;
 
-import static javax.lang.model.util.ElementFilter.methodsIn;
+import static javax.lang.model.util.ElementFilter.typesIn;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.lang.annotation.Annotation;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.ServiceConfigurationError;
-import java.util.ServiceLoader;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -25,14 +33,17 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
-import javax.lang.model.type.MirroredTypeException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
@@ -47,6 +58,10 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
             this.typeMirror = typeMirror;
         }
 
+        TypeMirror getTypeMirror() {
+            return typeMirror;
+        }
+
         @Override
         public boolean matches(ProcessingEnvironment processingEnv, TypeMirror checkedType) {
             return processingEnv.getTypeUtils().isSameType(typeMirror, checkedType);
@@ -67,6 +82,10 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
             this.typeMirror = typeMirror;
         }
 
+        TypeMirror getTypeMirror() {
+            return typeMirror;
+        }
+
         @Override
         public boolean matches(ProcessingEnvironment processingEnv, TypeMirror checkedType) {
             // we want to check that checkedType (the param type used by the user) is a subtype of
@@ -85,20 +104,206 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
         boolean matches(ProcessingEnvironment processingEnv, TypeMirror checkedType);
     }
 
-    private Map<Name, TypeElement> targetMethodOverrides = new HashMap<>();
-    private Set<String> loadedOverrides = new HashSet<>();
+    /**
+     * Set this option to <code>index</code> to only claim the annotations known to have constraints, rather than all
+     * of them. Those are the annotations listed in {@link #CONSTRAINED_ANNOTATIONS_INDEX} resources, and those targeted
+     * by a {@link DefinitionOverride}. In this mode, the processor also indexes the constrained annotations it compiles.
+     * The default is <code>all</code>.
+     */
+    public static final String DISCOVERY_OPTION = "safer.discovery";
+
+    /**
+     * Lists the annotations with constraints, written by this processor when compiling them with
+     * {@link #DISCOVERY_OPTION} set to <code>index</code>.
+     */
+    public static final String CONSTRAINED_ANNOTATIONS_INDEX = "META-INF/safer-annotations/constrained-annotations";
+
+    /**
+     * Set this option to <code>generate</code> when compiling a library which defines constrained annotations or
+     * {@link DefinitionOverride} classes, to write precompiled descriptors of their constraints, which speed up the
+     * compilations using them. Set it to <code>ignore</code> to always read constraints from the annotations and
+     * overrides. By default, descriptors found on the processor class path are used.
+     */
+    public static final String DESCRIPTORS_OPTION = "safer.descriptors";
+
+    /**
+     * Set this option to <code>generate</code> to write a {@link MethodIndex} of the methods of this compilation which
+     * carry constrained annotations and pass their checks, so that frameworks can find them at startup without scanning.
+     */
+    public static final String METHOD_INDEX_OPTION = "safer.methodIndex";
+
+    /**
+     * Set this option to <code>generate</code> to write the {@link GeneratedInvokers} of each class of this compilation
+     * which declares public constrained methods passing their checks, so that frameworks can call them with a
+     * {@link MethodInvoker} rather than with reflection.
+     */
+    public static final String INVOKERS_OPTION = "safer.invokers";
+
+    /**
+     * Set this option to <code>true</code> to remember the classes found valid in a cache file, next to the compilation
+     * output directory, so that the next builds skip the unchanged ones. Set it to a path to choose the cache file.
+     * The cache is ignored whenever the processor is rebuilt, and entries are ignored whenever the signatures of their
+     * class, the hierarchy of the types they use, with its type arguments, or the constraints they were checked against
+     * change.
+     */
+    public static final String CACHE_OPTION = "safer.cache";
+
+    /**
+     * Set this option to <code>true</code> to print how long each phase of the processor took, and how much work it
+     * did, once processing is over. The same numbers are recorded in a JFR event on Java 11+.
+     */
+    public static final String STATS_OPTION = "safer.stats";
+
+    /**
+     * Set this option to the number of invalid type errors reported for each annotation, past which they are only
+     * counted per invalid type, and summed up in a single error once processing is over. Set it to <code>0</code> to
+     * report them all. The default is {@value #DEFAULT_ERROR_LIMIT}.
+     */
+    public static final String ERROR_LIMIT_OPTION = "safer.errorLimit";
+
+    static final int DEFAULT_ERROR_LIMIT = 100;
+
+    /**
+     * Set this option to <code>generate</code> to write every invalid type error, including those past
+     * {@link #ERROR_LIMIT_OPTION}, to a report in the generated sources output, for tools to read.
+     */
+    public static final String REPORT_OPTION = "safer.report";
+
+    /**
+     * The default cache file name.
+     */
+    public static final String CACHE_FILE = "safer-annotations.cache";
+
+    /**
+     * Reported in {@link #getSupportedOptions()} when this processor can run as a Gradle isolating incremental
+     * processor: each error only depends on the checked element and on the constraints of its annotations.
+     */
+    public static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+
+    /**
+     * Reported in {@link #getSupportedOptions()} instead of {@link #GRADLE_ISOLATING} when the compilation defines
+     * {@link DefinitionOverride} services, which change the constraints of annotations used by any element, when we
+     * write the {@link #CONSTRAINED_ANNOTATIONS_INDEX}, descriptors, a method index or an error report from several
+     * elements, or when method bodies can be checked, since the calls they make depend on the called types. Gradle asks
+     * right after {@link #init(ProcessingEnvironment)}, so this only depends on the options and on the environment.
+     */
+    public static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+
+    static final String DEFINITION_OVERRIDE_SERVICES = "META-INF/services/" + DefinitionOverride.class.getName();
+    private static final String TARGET_METHOD = TargetMethod.class.getName();
+    private static final String TARGET_ACCESSOR = TargetAccessor.class.getName();
+    private static final String TARGET_NON_BLOCKING = TargetNonBlocking.class.getName();
+    private static final String TARGET_VIRTUAL_THREAD = TargetVirtualThread.class.getName();
+    private static final String TARGET_ALLOCATION_FREE = TargetAllocationFree.class.getName();
+    private static final String TARGET = "java.lang.annotation.Target";
+    private static final String ALLOW_ALLOCATION = AllowAllocation.class.getName();
+    private static final String OVERRIDE_TARGET = OverrideTarget.class.getName();
+
+    private final OverrideRegistry overrides = new OverrideRegistry();
+    private final ConstraintRegistry constraints = new ConstraintRegistry();
+    private final SupertypeClosures supertypeClosures = new SupertypeClosures();
+    private ClassPathSnapshot classPathSnapshot;
+    private ConstraintDescriptors descriptors = ConstraintDescriptors.empty();
+    // constrained annotations defined in this compilation, to index
+    private final Map<String, TypeElement> definedConstraints = new TreeMap<>();
+    // overrides defined in this compilation, to describe
+    private final Map<String, TypeElement> definedOverrides = new TreeMap<>();
+    private VerdictCache cache;
+    // created on the first method whose body must be checked
+    private BodyScanner bodyScanner;
+    private boolean bodiesUnchecked;
+    // the valid constrained methods, when generating a method index
+    private MethodIndex methodIndex;
+    // the valid constrained methods of the types checked in this round, by declaring type, when generating invokers
+    private Map<TypeElement, List<ExecutableElement>> invokedMethods;
+    // the top-level types of this compilation, whose methods we index
+    private final Map<String, TypeElement> compiledTypes = new TreeMap<>();
+    // whether some overrides are declared by the compiled module
+    private boolean localOverrides;
+    // the constrained annotations indexed by previous compilations of this module
+    private final Set<String> indexedConstraints = new TreeSet<>();
+    // computed once in init, in index discovery mode
+    private Set<String> supportedAnnotationTypes = Collections.singleton("*");
+    // computed once in init, before we know what the compilation defines
+    private boolean aggregating;
+    private int errors;
+    private Diagnostics diagnostics;
+    private ProcessorStats stats = new ProcessorStats(false);
 
     public SaferAnnotationProcessor() {
     }
 
+    /**
+     * @return the registry of constraints compiled so far, mostly useful to check how often they were reused
+     */
+    public ConstraintRegistry getConstraintRegistry() {
+        return constraints;
+    }
+
+    /**
+     * @return the registry of overrides, mostly useful to check how many of them were looked up
+     */
+    public OverrideRegistry getOverrideRegistry() {
+        return overrides;
+    }
+
+    // what we read from the processor class path, shared with the other compilations using the same class loader
+    ClassPathSnapshot getClassPathSnapshot() {
+        return classPathSnapshot;
+    }
+
+    /**
+     * @return the timings and counters of this processor, only filled if enabled with {@link #STATS_OPTION}
+     */
+    public ProcessorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the verdict cache, mostly useful to check how many classes were skipped, or <code>null</code> unless
+     *         enabled with {@link #CACHE_OPTION}
+     */
+    public VerdictCache getVerdictCache() {
+        return cache;
+    }
+
     @Override
     public Set<String> getSupportedOptions() {
-        return Collections.emptySet();
+        Set<String> supportedOptions = new HashSet<>(
+                Arrays.asList(DISCOVERY_OPTION, DESCRIPTORS_OPTION, METHOD_INDEX_OPTION, INVOKERS_OPTION,
+                        CACHE_OPTION, STATS_OPTION, ERROR_LIMIT_OPTION, REPORT_OPTION));
+        // Gradle asks for this after init
+        supportedOptions.add(aggregating ? GRADLE_AGGREGATING : GRADLE_ISOLATING);
+        return supportedOptions;
     }
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
-        return Collections.singleton("*");
+        return supportedAnnotationTypes;
+    }
+
+    /**
+     * In index discovery mode, we only look at the annotations known to be constrained, and at those which define
+     * constraints, so that we can index the constrained annotations defined in this compilation.
+     */
+    private Set<String> indexedAnnotationTypes() {
+        Set<String> supportedAnnotationTypes = new HashSet<>();
+        supportedAnnotationTypes.add(TARGET_METHOD);
+        supportedAnnotationTypes.add(TARGET_ACCESSOR);
+        supportedAnnotationTypes.add(TARGET_NON_BLOCKING);
+        supportedAnnotationTypes.add(TARGET_VIRTUAL_THREAD);
+        supportedAnnotationTypes.add(TARGET_ALLOCATION_FREE);
+        if (isGeneratingDescriptors()) {
+            // so we can describe the overrides defined in this compilation
+            supportedAnnotationTypes.add(OVERRIDE_TARGET);
+        }
+        supportedAnnotationTypes.addAll(overrides.getTargets(processingEnv));
+        supportedAnnotationTypes.addAll(indexedConstraints);
+        supportedAnnotationTypes.addAll(classPathSnapshot.constrainedAnnotations);
+        for (ConstraintDescriptors.Descriptor descriptor : descriptors.getAll()) {
+            supportedAnnotationTypes.add(descriptor.annotation);
+        }
+        return Collections.unmodifiableSet(supportedAnnotationTypes);
     }
 
     @Override
@@ -109,6 +314,13 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
+        String statsOption = processingEnv.getOptions().get(STATS_OPTION);
+        stats = new ProcessorStats(statsOption != null && !"false".equals(statsOption));
+        if (stats.isEnabled()) {
+            this.processingEnv = new CountingEnvironment(processingEnv, stats);
+        }
+        overrides.setStats(stats);
+        ProcessorStats.Span span = stats.begin(ProcessorStats.Phase.INIT);
         /**
          * I tried using the APT API from Filer to load the services, but it can only load a single file.
          * I also tried accessing the JavaFileManager but it requires reflection to get to it, and differs
@@ -116,158 +328,784 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
          * I even tried setting up a JavaFileManager via ToolProvider and the ProcessingEnvironment.getOptions()
          * but turns out this map is empty.
          * The java.classpath system property is empty when invoked via Maven.
-         * The base TCCL doesn't allow us to load the service. Even the ClassLoader from the JavaFileManager
-         * don't allow us to use the ServiceLoader API, so this CL is the only one I found to work in Maven
-         * and Eclipse, and in a project where the service file is in the source path, as well as one where it
+         * The base TCCL doesn't see the service files, so our own ClassLoader is the only one I found to work in
+         * Maven and Eclipse, and in a project where the service file is in the source path, as well as one where it
          * comes from external libs.
          * In short: you can try to improve this, but good luck.
          */
-        // First try to load it via the filer, because this works in some cases where the ServiceLoader doesn't, even though
-        // there can be only a single file, but in case your overrides are in your current project, they won't be compiled yet
-        // so you can only load them via the Javac Mirror API, and not the ServiceLoader, which requires them to be compiled.
+        // First read it via the filer, because in case your overrides are in your current project, they won't be
+        // compiled yet, and are only visible via the Javac Mirror API. Those should be there, so warn if they are not.
+        long overrideDiscovery = stats.start();
+        Set<String> classNames = new LinkedHashSet<>();
+        ResourceLists.readClassOutput(processingEnv, DEFINITION_OVERRIDE_SERVICES, classNames);
+        for (String className : classNames) {
+            overrides.declare(className, Kind.WARNING);
+        }
+        localOverrides = !classNames.isEmpty();
+        ResourceLists.readClassOutput(processingEnv, CONSTRAINED_ANNOTATIONS_INDEX, indexedConstraints);
+        stats.stop(ProcessorStats.Phase.OVERRIDE_DISCOVERY, overrideDiscovery);
+        // Then read every service file from our ClassLoader, as text: we do not need to load or instantiate the
+        // override classes, which may not even be visible to it, only to look them up via the Mirror API, and
+        // only if they apply to the compiled code. Other running compilations using the same class loader may have read
+        // them already.
+        classPathSnapshot = ClassPathSnapshot.acquire(processingEnv);
+        for (String className : classPathSnapshot.overrides) {
+            overrides.declare(className, Kind.NOTE);
+            // unless compiled by this module, where the mirror is more recent than the class path
+            String target = classPathSnapshot.overrideTargets.get(className);
+            if (target != null && !classNames.contains(className)) {
+                overrides.setKnownTarget(className, target);
+            }
+        }
+        if (!"ignore".equals(processingEnv.getOptions().get(DESCRIPTORS_OPTION))) {
+            descriptors = ConstraintDescriptors.select(processingEnv, classPathSnapshot.descriptors);
+            for (ConstraintDescriptors.Descriptor descriptor : descriptors.getAll()) {
+                if (descriptor.override != null) {
+                    overrides.setKnownTarget(descriptor.override, descriptor.annotation);
+                }
+            }
+        }
+        if (isIndexing()) {
+            supportedAnnotationTypes = indexedAnnotationTypes();
+        }
+        int errorLimit = DEFAULT_ERROR_LIMIT;
+        String errorLimitOption = processingEnv.getOptions().get(ERROR_LIMIT_OPTION);
+        if (errorLimitOption != null) {
+            try {
+                errorLimit = Integer.parseInt(errorLimitOption);
+            } catch (NumberFormatException e) {
+                processingEnv.getMessager().printMessage(Kind.WARNING,
+                        "Invalid " + ERROR_LIMIT_OPTION + ": " + errorLimitOption);
+            }
+        }
+        diagnostics = new Diagnostics(this.processingEnv, errorLimit,
+                "generate".equals(processingEnv.getOptions().get(REPORT_OPTION)));
+        if ("generate".equals(processingEnv.getOptions().get(METHOD_INDEX_OPTION))) {
+            methodIndex = new MethodIndex(null);
+        }
+        if ("generate".equals(processingEnv.getOptions().get(INVOKERS_OPTION))) {
+            invokedMethods = new LinkedHashMap<>();
+        }
+        String cacheOption = processingEnv.getOptions().get(CACHE_OPTION);
+        if (cacheOption != null && !"false".equals(cacheOption)) {
+            openCache(cacheOption);
+        }
+        aggregating = localOverrides || isIndexing() || isGeneratingDescriptors() || methodIndex != null
+                || diagnostics.isReporting() || BodyScanner.isAvailable(processingEnv);
+        span.end();
+    }
+
+    private void openCache(String cacheOption) {
+        Path file;
+        if ("true".equals(cacheOption) || cacheOption.isEmpty()) {
+            try {
+                URI uri = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", CACHE_FILE).toUri();
+                if (!"file".equals(uri.getScheme())) {
+                    processingEnv.getMessager().printMessage(Kind.NOTE,
+                            "Verdict cache disabled: the compilation output is not a directory");
+                    return;
+                }
+                // keep it out of the compilation output, which gets packaged
+                Path classOutput = Paths.get(uri).getParent();
+                file = (classOutput.getParent() != null ? classOutput.getParent() : classOutput).resolve(CACHE_FILE);
+            } catch (IOException | IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Kind.NOTE, "Verdict cache disabled: " + e);
+                return;
+            }
+        } else {
+            file = Paths.get(cacheOption);
+        }
         try {
-            FileObject resource = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
-                    "META-INF/services/" + DefinitionOverride.class.getName());
-            try (BufferedReader reader = new BufferedReader(resource.openReader(true))) {
-                String line = null;
-                while ((line = reader.readLine()) != null) {
-                    String className = line.trim();
-                    loadOverrideClass(className);
+            cache = VerdictCache.open(file, VerdictCache.processorFingerprint());
+        } catch (IOException | RuntimeException e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "Verdict cache disabled, failed to read " + file + ": " + e);
+        }
+    }
+
+    private boolean isIndexing() {
+        return "index".equals(processingEnv.getOptions().get(DISCOVERY_OPTION));
+    }
+
+    private boolean isGeneratingDescriptors() {
+        return "generate".equals(processingEnv.getOptions().get(DESCRIPTORS_OPTION));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        doProcess(annotations, roundEnv);
+        return false;
+    }
+
+    public void doProcess(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        constraints.newRound();
+        boolean constrained = false;
+        // first look for definitions, since we do not want to use descriptors for them
+        for (TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            if (name.equals(TARGET_METHOD) || name.equals(TARGET_ACCESSOR) || name.equals(TARGET_NON_BLOCKING)
+                    || name.equals(TARGET_VIRTUAL_THREAD) || name.equals(TARGET_ALLOCATION_FREE)) {
+                for (TypeElement definition : typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                    if (definition.getKind() == ElementKind.ANNOTATION_TYPE) {
+                        definedConstraints.put(definition.getQualifiedName().toString(), definition);
+                        // in index discovery mode, we are not told about its uses, which are not indexed yet
+                        constrained = true;
+                    }
+                }
+            } else if (name.equals(OVERRIDE_TARGET)) {
+                for (TypeElement definition : typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                    definedOverrides.put(definition.getQualifiedName().toString(), definition);
                 }
             }
-        } catch (FileNotFoundException e) {
-            // ignore this one, it's fine if it doesn't exist
-        } catch (IOException | IllegalArgumentException e) {
-            // Shrug
-            e.printStackTrace();
-        }
-        // Now do the real thing in most cases.
-        Iterator<DefinitionOverride> services = ServiceLoader.load(DefinitionOverride.class,
-                SaferAnnotationProcessor.class.getClassLoader()).iterator();
-        while (services.hasNext()) {
-            // This is how we get around missing classes per entry, since there's no API to get us the class names
-            // rather than instances
+        }
+        for (TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            if (!name.equals(TARGET_METHOD) && !name.equals(TARGET_ACCESSOR) && !name.equals(TARGET_NON_BLOCKING)
+                    && !name.equals(TARGET_VIRTUAL_THREAD) && !name.equals(TARGET_ALLOCATION_FREE)
+                    && !name.equals(OVERRIDE_TARGET)
+                    && isMethodAnnotation(annotation)
+                    && constraints.get(annotation, this::compileConstraint) != null) {
+                constrained = true;
+            }
+        }
+        if (methodIndex != null) {
+            for (TypeElement type : typesIn(roundEnv.getRootElements())) {
+                compiledTypes.put(processingEnv.getElementUtils().getBinaryName(type).toString(), type);
+            }
+        }
+        // visit every method of the round once, rather than once per constrained annotation
+        if (constrained) {
+            check(typesIn(roundEnv.getRootElements()));
+        }
+        // before the last round, so that they are compiled like any other source
+        if (invokedMethods != null && !invokedMethods.isEmpty()) {
+            writeInvokers();
+        }
+        if (roundEnv.processingOver()) {
+            if (bodyScanner != null) {
+                bodyScanner.processingOver(roundEnv.errorRaised());
+            }
+            finish();
+            diagnostics.writeReport();
+            if (isIndexing()) {
+                writeIndex();
+            }
+            if (isGeneratingDescriptors()) {
+                writeDescriptors();
+            }
+            if (methodIndex != null) {
+                writeMethodIndex();
+            }
+        }
+    }
+
+    /**
+     * Annotations which cannot be placed on methods, such as {@link java.lang.annotation.Retention}, have nothing to
+     * check, so we do not look up their constraints, which would resolve the declared overrides.
+     *
+     * @return whether the {@link java.lang.annotation.Target} of the given annotation, if any, includes methods
+     */
+    private static boolean isMethodAnnotation(TypeElement annotation) {
+        for (AnnotationMirror annotationMirror : annotation.getAnnotationMirrors()) {
+            if (!((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(TARGET)) {
+                continue;
+            }
+            for (AnnotationValue value : annotationMirror.getElementValues().values()) {
+                Object elementTypes = value.getValue();
+                for (Object elementType : elementTypes instanceof List ? (List<?>) elementTypes
+                        : Collections.singletonList(value)) {
+                    Object constant = ((AnnotationValue) elementType).getValue();
+                    if (constant instanceof VariableElement
+                            && ((VariableElement) constant).getSimpleName().contentEquals("METHOD")) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks every constrained method of the given top-level type, and of its nested types. This is also the entry
+     * point of the javac plugin, which calls it once the type is attributed.
+     */
+    void check(TypeElement type) {
+        check(Collections.singletonList(type));
+    }
+
+    private void check(Collection<TypeElement> types) {
+        ProcessorStats.Span span = stats.begin(ProcessorStats.Phase.CHECKS);
+        for (TypeElement type : types) {
+            boolean cacheable = false;
+            long signature = 0;
+            long constraintSet = 0;
+            if (cache != null) {
+                Fingerprint signatureFingerprint = new Fingerprint();
+                Fingerprint constraintSetFingerprint = new Fingerprint();
+                // unless the signatures are not complete yet
+                if (fingerprint(type, signatureFingerprint, constraintSetFingerprint)) {
+                    signature = signatureFingerprint.get();
+                    constraintSet = constraintSetFingerprint.get();
+                    if (cache.isValid(type.getQualifiedName().toString(), signature, constraintSet)) {
+                        if (methodIndex != null || invokedMethods != null) {
+                            // all its constrained methods are still valid
+                            List<MethodCheck> validMethods = new ArrayList<>();
+                            scan(type, validMethods);
+                            for (MethodCheck methodCheck : validMethods) {
+                                validated(methodCheck);
+                            }
+                        }
+                        continue;
+                    }
+                    cacheable = true;
+                }
+            }
+            List<MethodCheck> methodChecks = new ArrayList<>();
+            scan(type, methodChecks);
+            int errorsBefore = errors;
+            for (MethodCheck methodCheck : methodChecks) {
+                int methodErrorsBefore = errors;
+                report(methodCheck);
+                if (errors == methodErrorsBefore) {
+                    validated(methodCheck);
+                }
+            }
+            if (cacheable && errors == errorsBefore) {
+                cache.recordValid(type.getQualifiedName().toString(), signature, constraintSet);
+            }
+        }
+        span.end();
+    }
+
+    /**
+     * Saves what needs to be kept for the next compilations, once every type is checked.
+     */
+    void finish() {
+        classPathSnapshot.release();
+        diagnostics.summarise();
+        if (cache != null) {
             try {
-                DefinitionOverride override = services.next();
-                loadOverrideClass(override.getClass().getName());
-            } catch (ServiceConfigurationError x) {
-                // I kid you not, there's no accessor for the service type
-                // format: io.smallrye.safer.annotations.DefinitionOverride: Provider io.quarkus.resteasy.reactive.server.runtime.ServerExceptionMapperOverride not found
-                String message = x.getMessage();
-                String prefix = DefinitionOverride.class.getName() + ": Provider ";
-                String suffix = " not found";
-                // Ignore those we already loaded above, and NOTE the others: let's not break the build for this
-                if (message.startsWith(prefix) && message.endsWith(suffix)) {
-                    String className = message.substring(prefix.length(), message.length() - suffix.length());
-                    if (loadedOverrides.contains(className)) {
-                        // ignore it
-                    } else {
-                        // ignore it and move on to the next one
-                        processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to load service provider: " + className);
+                cache.save();
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.NOTE,
+                        "Failed to write the verdict cache " + cache.getFile() + ": " + e);
+            }
+        }
+        if (stats.isEnabled()) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, stats.report(constraints, cache));
+            Events.statistics(stats);
+        }
+    }
+
+    private void scan(TypeElement type, List<MethodCheck> methodChecks) {
+        for (Element member : type.getEnclosedElements()) {
+            ElementKind kind = member.getKind();
+            if (kind == ElementKind.METHOD) {
+                MethodCheck methodCheck = collect((ExecutableElement) member);
+                if (methodCheck != null) {
+                    methodChecks.add(methodCheck);
+                }
+            } else if (kind.isClass() || kind.isInterface()) {
+                scan((TypeElement) member, methodChecks);
+            }
+        }
+    }
+
+    /**
+     * Adds everything the checks of the given type depend on to the given fingerprints: the signatures of its
+     * constrained methods, the supertypes of the types they use, and the constraints of these methods.
+     *
+     * @return false if some types cannot be fingerprinted reliably, or some methods have {@link TargetNonBlocking},
+     *         {@link TargetVirtualThread} or {@link TargetAllocationFree} constraints, which depend on their bodies
+     */
+    private boolean fingerprint(TypeElement type, Fingerprint signature, Fingerprint constraintSet) {
+        signature.add(type.getQualifiedName().toString());
+        if (!fingerprintTypeParameters(type.getTypeParameters(), signature)) {
+            return false;
+        }
+        for (Element member : type.getEnclosedElements()) {
+            ElementKind kind = member.getKind();
+            if (kind == ElementKind.METHOD) {
+                ExecutableElement method = (ExecutableElement) member;
+                boolean constrained = false;
+                for (AnnotationMirror annotationMirror : method.getAnnotationMirrors()) {
+                    TypeElement annotation = (TypeElement) annotationMirror.getAnnotationType().asElement();
+                    Constraint constraint = constraints.get(annotation, this::compileConstraint);
+                    if (constraint != null) {
+                        if (constraint.checksBody()) {
+                            // its body is not part of its signature, so it must be checked every time
+                            return false;
+                        }
+                        constrained = true;
+                        constraintSet.add(constraint.fingerprint());
                     }
-                } else {
-                    // ignore it and move on to the next one
-                    processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to load service provider: " + x.getMessage());
+                }
+                if (!constrained) {
+                    continue;
+                }
+                signature.add(method.getSimpleName().toString());
+                if (!fingerprintTypeParameters(method.getTypeParameters(), signature)
+                        || !fingerprintType(method.getReturnType(), signature)) {
+                    return false;
+                }
+                signature.add(method.getParameters().size());
+                for (VariableElement parameter : method.getParameters()) {
+                    if (!fingerprintType(parameter.asType(), signature)) {
+                        return false;
+                    }
+                }
+                // separates the constraints of each method
+                constraintSet.add(signature.get());
+            } else if (kind.isClass() || kind.isInterface()) {
+                if (!fingerprint((TypeElement) member, signature, constraintSet)) {
+                    return false;
                 }
             }
         }
+        return true;
     }
 
-    private void loadOverrideClass(String className) {
-        // do not load overrides twice
-        if (!loadedOverrides.add(className)) {
-            return;
+    private boolean fingerprintTypeParameters(List<? extends TypeParameterElement> typeParameters,
+            Fingerprint signature) {
+        for (TypeParameterElement typeParameter : typeParameters) {
+            signature.add(typeParameter.getSimpleName().toString());
+            for (TypeMirror bound : typeParameter.getBounds()) {
+                if (!fingerprintType(bound, signature)) {
+                    return false;
+                }
+            }
         }
-        TypeElement typeElement = this.processingEnv.getElementUtils().getTypeElement(className);
-        if (typeElement == null) {
-            processingEnv.getMessager().printMessage(Kind.WARNING,
-                    "Failed to load override class: " + className);
+        return true;
+    }
+
+    private boolean fingerprintType(TypeMirror type, Fingerprint signature) {
+        switch (type.getKind()) {
+            case ERROR:
+                return false;
+            case ARRAY:
+                signature.add("[]");
+                return fingerprintType(((ArrayType) type).getComponentType(), signature);
+            case DECLARED:
+                DeclaredType declaredType = (DeclaredType) type;
+                Long hierarchy = supertypeClosures.fingerprint(processingEnv.getTypeUtils(), declaredType);
+                if (hierarchy == null) {
+                    return false;
+                }
+                signature.add(type.toString());
+                signature.add(hierarchy);
+                for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+                    if (!fingerprintType(typeArgument, signature)) {
+                        return false;
+                    }
+                }
+                return true;
+            case WILDCARD:
+                WildcardType wildcardType = (WildcardType) type;
+                signature.add("?");
+                if (wildcardType.getExtendsBound() != null && !fingerprintType(wildcardType.getExtendsBound(), signature)) {
+                    return false;
+                }
+                signature.add("super");
+                return wildcardType.getSuperBound() == null || fingerprintType(wildcardType.getSuperBound(), signature);
+            default:
+                // primitives, void, and type variables, whose bounds are part of the declaring element
+                signature.add(type.toString());
+                return true;
+        }
+    }
+
+    /**
+     * @return the constraints of the given method, or <code>null</code> if it has none
+     */
+    private MethodCheck collect(ExecutableElement method) {
+        List<Constraint> methodConstraints = null;
+        List<Constraint> bodyConstraints = null;
+        List<String> annotations = null;
+        boolean targetAccessor = false;
+        for (AnnotationMirror annotationMirror : method.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            Constraint constraint = constraints.get(annotation, this::compileConstraint);
+            if (constraint == null) {
+                continue;
+            }
+            if (methodIndex != null) {
+                if (annotations == null) {
+                    annotations = new ArrayList<>(1);
+                }
+                annotations.add(annotation.getQualifiedName().toString());
+            }
+            targetAccessor |= constraint.targetAccessor;
+            if (constraint.isTargetMethod()) {
+                if (methodConstraints == null) {
+                    methodConstraints = new ArrayList<>(1);
+                }
+                methodConstraints.add(constraint);
+            }
+            if (constraint.checksBody()) {
+                if (bodyConstraints == null) {
+                    bodyConstraints = new ArrayList<>(1);
+                }
+                bodyConstraints.add(constraint);
+            }
+        }
+        if (!targetAccessor && methodConstraints == null && bodyConstraints == null) {
+            return null;
+        }
+        return new MethodCheck(method, targetAccessor,
+                methodConstraints != null ? methodConstraints : Collections.emptyList(),
+                bodyConstraints != null ? bodyConstraints : Collections.emptyList(), annotations);
+    }
+
+    private void report(MethodCheck methodCheck) {
+        ExecutableElement method = methodCheck.method;
+        stats.elementChecked();
+        if (methodCheck.targetAccessor) {
+            long start = stats.start();
+            checkAccessor(method);
+            stats.stop(ProcessorStats.Phase.TARGET_ACCESSOR, start);
+        }
+        if (!methodCheck.bodyConstraints.isEmpty()) {
+            checkAllocationFreeSignature(methodCheck);
+            checkBody(methodCheck);
+        }
+        List<Constraint> methodConstraints = methodCheck.constraints;
+        if (methodConstraints.isEmpty()) {
             return;
         }
-        OverrideTarget target = typeElement.getAnnotation(OverrideTarget.class);
-        if (target == null) {
-            processingEnv.getMessager().printMessage(Kind.ERROR,
-                    "Classes implementing DefinitionOverride must have an @OverrideTarget annotation", typeElement);
+        long start = stats.start();
+        TypeMirror returnType = method.getReturnType();
+        for (int c = 0; c < methodConstraints.size(); c++) {
+            Constraint constraint = methodConstraints.get(c);
+            checkType(returnType, constraint, constraint.allowedReturnTypes, "return", method);
+        }
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int p = 0; p < parameters.size(); p++) {
+            VariableElement parameter = parameters.get(p);
+            TypeMirror parameterType = parameter.asType();
+            for (int c = 0; c < methodConstraints.size(); c++) {
+                Constraint constraint = methodConstraints.get(c);
+                checkType(parameterType, constraint, constraint.allowedParameterTypes, "parameter", parameter);
+            }
+        }
+        stats.stop(ProcessorStats.Phase.TARGET_METHOD, start);
+    }
+
+    /**
+     * Records a constrained method which passed its checks, for the outputs which list them.
+     */
+    private void validated(MethodCheck methodCheck) {
+        if (methodIndex != null) {
+            index(methodCheck);
+        }
+        if (invokedMethods != null) {
+            invokedMethods.computeIfAbsent((TypeElement) methodCheck.method.getEnclosingElement(),
+                    k -> new ArrayList<>()).add(methodCheck.method);
+        }
+    }
+
+    /**
+     * Reports the boxed types and varargs in the signature of the given method, if it has a {@link TargetAllocationFree}
+     * constraint. Its body is checked by {@link #checkBody(MethodCheck)}.
+     */
+    private void checkAllocationFreeSignature(MethodCheck methodCheck) {
+        ExecutableElement method = methodCheck.method;
+        if (isAllocationAllowed(method)) {
             return;
         }
-        try {
-            // This API is brain dead: any attempt to load a Class from an annotation mirror will throw a MirroredTypeException
-            // from which we can obtain the DeclaredType
-            Class<?> value = target.value();
-            if (value == null) {
-                processingEnv.getMessager().printMessage(Kind.ERROR,
-                        "Classes implementing DefinitionOverride must have an @OverrideTarget annotation",
-                        typeElement);
-                return;
+        for (Constraint constraint : methodCheck.bodyConstraints) {
+            if (!constraint.allocationFree) {
+                continue;
+            }
+            String annotation = constraint.getAnnotationName();
+            if (AllocationRules.isBoxed(method.getReturnType())) {
+                error(AllocationRules.message(AllocationRules.boxedReturnType(method.getReturnType().toString()),
+                        annotation), method);
+            }
+            List<? extends VariableElement> parameters = method.getParameters();
+            for (int p = 0; p < parameters.size(); p++) {
+                VariableElement parameter = parameters.get(p);
+                if (isAllocationAllowed(parameter)) {
+                    continue;
+                }
+                if (method.isVarArgs() && p == parameters.size() - 1) {
+                    error(AllocationRules.message(
+                            AllocationRules.varargsParameter(parameter.getSimpleName().toString()), annotation),
+                            parameter);
+                } else if (AllocationRules.isBoxed(parameter.asType())) {
+                    error(AllocationRules.message(AllocationRules.boxedParameterType(parameter.asType().toString()),
+                            annotation), parameter);
+                }
             }
-        } catch (MirroredTypeException x) {
-            // See previous note, this is the normal flow, duh :(
-            DeclaredType dt = (DeclaredType) x.getTypeMirror();
-            TypeElement elem = (TypeElement) dt.asElement();
-            targetMethodOverrides.put(elem.getQualifiedName(), typeElement);
         }
     }
 
-    @Override
-    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        doProcess(annotations, roundEnv);
+    /**
+     * @return whether the given method, parameter or local variable has an {@link AllowAllocation} annotation
+     */
+    static boolean isAllocationAllowed(Element element) {
+        for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(ALLOW_ALLOCATION)) {
+                return true;
+            }
+        }
         return false;
     }
 
-    public void doProcess(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        for (TypeElement annotation : annotations) {
-            if (hasAnnotation(annotation, TargetMethod.class)) {
-                handleTargetMethod(roundEnv, annotation);
+    /**
+     * Scans the body of the given method for blocking calls, pinning constructs and allocations, once javac has
+     * attributed it, which is after processing.
+     */
+    private void checkBody(MethodCheck methodCheck) {
+        if (bodyScanner == null) {
+            if (bodiesUnchecked) {
+                return;
             }
-            if (hasAnnotation(annotation, TargetAccessor.class)) {
-                handleTargetAccessor(roundEnv, annotation);
+            bodyScanner = BodyScanner.create(processingEnv);
+            if (bodyScanner == null) {
+                // it said why
+                bodiesUnchecked = true;
+                return;
             }
         }
+        bodyScanner.scan(methodCheck.method, methodCheck.bodyConstraints);
     }
 
-    private boolean hasAnnotation(TypeElement annotation, Class<? extends Annotation> metaAnnotation) {
-        TypeElement override = targetMethodOverrides.get(annotation.getQualifiedName());
-        if (override != null && override.getAnnotation(metaAnnotation) != null) {
-            return true;
+    private void index(MethodCheck methodCheck) {
+        ExecutableElement method = methodCheck.method;
+        String descriptor = TypeNames.descriptor(processingEnv.getElementUtils(), processingEnv.getTypeUtils(), method);
+        if (descriptor == null) {
+            return;
+        }
+        String className = processingEnv.getElementUtils().getBinaryName((TypeElement) method.getEnclosingElement())
+                .toString();
+        for (String annotation : methodCheck.annotations) {
+            methodIndex.add(annotation, className, method.getSimpleName().toString(), descriptor);
         }
-        return annotation.getAnnotation(metaAnnotation) != null;
     }
 
-    private void handleTargetAccessor(RoundEnvironment roundEnv, TypeElement annotation) {
-        // get the target method
-        for (ExecutableElement i : methodsIn(roundEnv.getElementsAnnotatedWith(annotation))) {
-            String name = i.getSimpleName().toString();
-            if ((name.startsWith("get") && name.length() > 3)
-                    || (name.startsWith("is") && name.length() > 2)) {
-                TypeMirror returnType = i.getReturnType();
-                if (returnType.getKind() == TypeKind.VOID) {
-                    processingEnv.getMessager().printMessage(Kind.ERROR,
-                            "Invalid getter return type: cannot be 'void'", i);
+    private void writeInvokers() {
+        for (Entry<TypeElement, List<ExecutableElement>> entry : invokedMethods.entrySet()) {
+            try {
+                InvokerSources.write(processingEnv, entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.WARNING, "Failed to write invokers: " + e,
+                        entry.getKey());
+            }
+        }
+        invokedMethods.clear();
+    }
+
+    private void writeMethodIndex() {
+        // keep the methods indexed by previous compilations of this module, in case it is compiled incrementally, but
+        // not those of the types compiled again, or of the types which were removed since
+        MethodIndex merged = new MethodIndex(null);
+        boolean previouslyIndexed = false;
+        try {
+            FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                    MethodIndex.RESOURCE);
+            try (Reader reader = previous.openReader(true)) {
+                previouslyIndexed = true;
+                if (merged.read(reader)) {
+                    merged.removeClasses(compiledTypes.keySet());
+                    Map<String, Boolean> existingClasses = new HashMap<>();
+                    merged.retainClasses(className -> existingClasses.computeIfAbsent(className,
+                            name -> processingEnv.getElementUtils().getTypeElement(name.replace('$', '.')) != null));
                 }
-                if (!i.getParameters().isEmpty()) {
-                    processingEnv.getMessager().printMessage(Kind.ERROR,
-                            "Getter cannot have parameters", i);
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // fine, this is the first compilation
+        } catch (IOException | IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Kind.NOTE, "Failed to read " + MethodIndex.RESOURCE + ": " + e);
+        }
+        merged.addAll(methodIndex);
+        // an empty index still replaces the entries of a previous one
+        if (merged.isEmpty() && !previouslyIndexed) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    MethodIndex.RESOURCE, compiledTypes.values().toArray(new Element[0]));
+            try (Writer writer = resource.openWriter()) {
+                merged.write(writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING, "Failed to write " + MethodIndex.RESOURCE + ": " + e);
+        }
+    }
+
+    private void writeIndex() {
+        // keep the annotations indexed by previous compilations of this module, in case it is compiled incrementally,
+        // unless they were removed, or compiled again without their constraint
+        Set<String> names = new TreeSet<>();
+        for (String name : indexedConstraints) {
+            TypeElement annotation = processingEnv.getElementUtils().getTypeElement(name);
+            if (annotation != null && definesConstraint(annotation)) {
+                names.add(name);
+            }
+        }
+        names.addAll(definedConstraints.keySet());
+        if (names.equals(indexedConstraints)) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    CONSTRAINED_ANNOTATIONS_INDEX, definedConstraints.values().toArray(new Element[0]));
+            try (Writer writer = resource.openWriter()) {
+                for (String name : names) {
+                    writer.write(name);
+                    writer.write('\n');
                 }
-            } else if (name.startsWith("set") && name.length() > 3) {
-                TypeMirror returnType = i.getReturnType();
-                if (returnType.getKind() != TypeKind.VOID) {
-                    processingEnv.getMessager().printMessage(Kind.ERROR,
-                            "Invalid setter return type: must be 'void'", i);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "Failed to write " + CONSTRAINED_ANNOTATIONS_INDEX + ": " + e);
+        }
+    }
+
+    /**
+     * @return whether the given annotation carries {@link TargetMethod}, {@link TargetAccessor},
+     *         {@link TargetNonBlocking}, {@link TargetVirtualThread} or {@link TargetAllocationFree}
+     */
+    private static boolean definesConstraint(TypeElement annotation) {
+        for (AnnotationMirror annotationMirror : annotation.getAnnotationMirrors()) {
+            String name = ((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName()
+                    .toString();
+            if (name.equals(TARGET_METHOD) || name.equals(TARGET_ACCESSOR) || name.equals(TARGET_NON_BLOCKING)
+                    || name.equals(TARGET_VIRTUAL_THREAD) || name.equals(TARGET_ALLOCATION_FREE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeDescriptors() {
+        Map<String, TypeElement> described = new TreeMap<>(definedConstraints);
+        for (String annotation : overrides.getTargets(processingEnv)) {
+            if (definedOverrides.containsKey(overrides.getOverrideName(processingEnv, annotation))) {
+                TypeElement annotationElement = processingEnv.getElementUtils().getTypeElement(annotation);
+                if (annotationElement != null) {
+                    described.put(annotation, annotationElement);
                 }
-                if (i.getParameters().size() != 1) {
-                    processingEnv.getMessager().printMessage(Kind.ERROR,
-                            "Setter must have a single parameter", i);
+            }
+        }
+        List<Constraint> describedConstraints = new ArrayList<>();
+        for (TypeElement annotation : described.values()) {
+            Constraint constraint = constraints.get(annotation, this::compileConstraint);
+            if (constraint != null) {
+                describedConstraints.add(constraint);
+            }
+        }
+        if (describedConstraints.isEmpty()) {
+            return;
+        }
+        List<Element> originatingElements = new ArrayList<>(definedConstraints.values());
+        originatingElements.addAll(definedOverrides.values());
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ConstraintDescriptors.RESOURCE, originatingElements.toArray(new Element[0]));
+            try (Writer writer = resource.openWriter()) {
+                if (!ConstraintDescriptors.write(writer, describedConstraints)) {
+                    processingEnv.getMessager().printMessage(Kind.NOTE,
+                            "Some constraints use types which cannot be described, and were left out of "
+                                    + ConstraintDescriptors.RESOURCE);
                 }
-            } else {
-                processingEnv.getMessager().printMessage(Kind.ERROR,
-                        "Invalid accessor name: " + name + " must start with 'get', 'is' or 'set'", i);
             }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "Failed to write " + ConstraintDescriptors.RESOURCE + ": " + e);
+        }
+    }
+
+    private void error(String message, Element element) {
+        errors++;
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    private void checkAccessor(ExecutableElement i) {
+        String name = i.getSimpleName().toString();
+        if ((name.startsWith("get") && name.length() > 3)
+                || (name.startsWith("is") && name.length() > 2)) {
+            TypeMirror returnType = i.getReturnType();
+            if (returnType.getKind() == TypeKind.VOID) {
+                error("Invalid getter return type: cannot be 'void'", i);
+            }
+            if (!i.getParameters().isEmpty()) {
+                error("Getter cannot have parameters", i);
+            }
+        } else if (name.startsWith("set") && name.length() > 3) {
+            TypeMirror returnType = i.getReturnType();
+            if (returnType.getKind() != TypeKind.VOID) {
+                error("Invalid setter return type: must be 'void'", i);
+            }
+            if (i.getParameters().size() != 1) {
+                error("Setter must have a single parameter", i);
+            }
+        } else {
+            error("Invalid accessor name: " + name + " must start with 'get', 'is' or 'set'", i);
+        }
+    }
+
+    /**
+     * Looks at the meta-annotations of the given annotation, and of its override, to build its constraint. The
+     * {@link TargetMethod} of the override takes precedence over that of the annotation.
+     * 
+     * @return the constraint, or <code>null</code> if the annotation has none
+     */
+    private Constraint compileConstraint(TypeElement annotation) {
+        ProcessorStats.Span span = stats.begin(ProcessorStats.Phase.CONSTRAINT_BUILDING);
+        try {
+            return buildConstraint(annotation);
+        } finally {
+            span.end();
         }
     }
 
-    private void handleTargetMethod(RoundEnvironment roundEnv, TypeElement annotation) {
-        // get the target method
-        AnnotationMirror targetMethod = getAnnotation(TargetMethod.class.getName(), annotation);
+    private Constraint buildConstraint(TypeElement annotation) {
+        String annotationName = annotation.getQualifiedName().toString();
+        ConstraintDescriptors.Descriptor descriptor = descriptors.get(annotationName);
+        // descriptors are only valid if they were compiled with the same override, and if the annotation is not
+        // being compiled right now
+        if (descriptor != null
+                && Objects.equals(descriptor.override, overrides.getOverrideName(processingEnv, annotationName))
+                && !definedConstraints.containsKey(annotationName)) {
+            Constraint constraint = descriptor.compile(processingEnv, annotation, supertypeClosures);
+            if (constraint != null) {
+                return constraint;
+            }
+        }
+        AnnotationMirror targetMethod = null;
+        AnnotationMirror targetNonBlocking = null;
+        AnnotationMirror targetVirtualThread = null;
+        boolean targetAccessor = false;
+        boolean allocationFree = false;
+        TypeElement override = overrides.getOverride(processingEnv, annotationName);
+        for (TypeElement annotated : override != null ? Arrays.asList(override, annotation)
+                : Collections.singletonList(annotation)) {
+            for (AnnotationMirror annotationMirror : annotated.getAnnotationMirrors()) {
+                Name name = ((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName();
+                if (targetMethod == null && name.contentEquals(TARGET_METHOD)) {
+                    targetMethod = annotationMirror;
+                } else if (targetNonBlocking == null && name.contentEquals(TARGET_NON_BLOCKING)) {
+                    targetNonBlocking = annotationMirror;
+                } else if (targetVirtualThread == null && name.contentEquals(TARGET_VIRTUAL_THREAD)) {
+                    targetVirtualThread = annotationMirror;
+                } else if (name.contentEquals(TARGET_ACCESSOR)) {
+                    targetAccessor = true;
+                } else if (name.contentEquals(TARGET_ALLOCATION_FREE)) {
+                    allocationFree = true;
+                }
+            }
+        }
+        BlockingCalls blockingCalls = targetNonBlocking != null ? makeBlockingCalls(targetNonBlocking) : null;
+        PinningRules pinningRules = targetVirtualThread != null ? makePinningRules(targetVirtualThread) : null;
+        if (targetMethod == null) {
+            return targetAccessor || blockingCalls != null || pinningRules != null || allocationFree
+                    ? new Constraint(annotation, overrideName(override), targetAccessor, null, null, blockingCalls,
+                            pinningRules, allocationFree)
+                    : null;
+        }
         List<Matcher> allowedReturnTypes = new ArrayList<>();
         List<Matcher> allowedParameterTypes = new ArrayList<>();
         AnnotationValue returnTypes = getAnnotationValue("returnTypes", targetMethod);
@@ -284,17 +1122,44 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
                 allowedParameterTypes.add(makeTypeMatcher(parameterType));
             }
         }
-        for (ExecutableElement i : methodsIn(roundEnv.getElementsAnnotatedWith(annotation))) {
-            TypeMirror returnType = i.getReturnType();
-            checkType(returnType, allowedReturnTypes, "return", i);
-            for (VariableElement parameter : i.getParameters()) {
-                TypeMirror parameterType = parameter.asType();
-                checkType(parameterType, allowedParameterTypes, "parameter", parameter);
-            }
+        return new Constraint(annotation, overrideName(override), targetAccessor,
+                new AllowedTypes(allowedReturnTypes, supertypeClosures),
+                new AllowedTypes(allowedParameterTypes, supertypeClosures), blockingCalls, pinningRules,
+                allocationFree);
+    }
+
+    private BlockingCalls makeBlockingCalls(AnnotationMirror targetNonBlocking) {
+        AnnotationValue defaults = getAnnotationValue("defaults", targetNonBlocking);
+        return new BlockingCalls(defaults == null || (Boolean) defaults.getValue(),
+                getStrings("blocking", targetNonBlocking), getStrings("allowed", targetNonBlocking));
+    }
+
+    private PinningRules makePinningRules(AnnotationMirror targetVirtualThread) {
+        AnnotationValue monitorsPin = getAnnotationValue("monitorsPin", targetVirtualThread);
+        return new PinningRules(monitorsPin == null || (Boolean) monitorsPin.getValue());
+    }
+
+    private List<String> getStrings(String value, AnnotationMirror annotated) {
+        AnnotationValue strings = getAnnotationValue(value, annotated);
+        if (strings == null) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>();
+        for (AnnotationValue obj : (List<AnnotationValue>) strings.getValue()) {
+            values.add((String) obj.getValue());
         }
+        return values;
+    }
+
+    private static String overrideName(TypeElement override) {
+        return override != null ? override.getQualifiedName().toString() : null;
     }
 
-    private Matcher makeTypeMatcher(TypeMirror type) {
+    /**
+     * @return the matcher for the given allowed type, which may be wrapped in a {@link TargetMethod.GenericType} or
+     *         {@link TargetMethod.Subtype} subclass
+     */
+    static Matcher makeTypeMatcher(TypeMirror type) {
         if (type.getKind() == TypeKind.DECLARED) {
             TypeElement typeElement = (TypeElement) ((DeclaredType) type).asElement();
             TypeMirror superclass = typeElement.getSuperclass();
@@ -313,21 +1178,14 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
         return new ExactMatcher(type);
     }
 
-    private void checkType(TypeMirror checkedType, List<Matcher> allowedTypes, String kind, Element element) {
-        boolean ok = false;
-        for (Matcher allowedType : allowedTypes) {
-            if (allowedType.matches(processingEnv, checkedType)) {
-                // OK
-                ok = true;
-                break;
-            }
-        }
-        if (!ok) {
-            processingEnv.getMessager().printMessage(Kind.ERROR,
-                    "Invalid " + kind + " type: '" + checkedType + "' must be one of: "
-                            + allowedTypes,
-                    element);
+    private void checkType(TypeMirror checkedType, Constraint constraint, AllowedTypes allowedTypes, String kind,
+            Element element) {
+        long start = stats.start();
+        if (!allowedTypes.matches(processingEnv, checkedType)) {
+            errors++;
+            diagnostics.invalidType(constraint, kind, checkedType, allowedTypes, element);
         }
+        stats.stop(ProcessorStats.Phase.TYPE_CHECK, start);
     }
 
     private AnnotationValue getAnnotationValue(String value, AnnotationMirror annotated) {
@@ -338,18 +1196,4 @@ public class SaferAnnotationProcessor extends AbstractProcessor {
         }
         return null;
     }
-
-    private AnnotationMirror getAnnotation(String targetAnnotation, TypeElement annotated) {
-        TypeElement override = targetMethodOverrides.get(annotated.getQualifiedName());
-        if (override != null)
-            annotated = override;
-        for (AnnotationMirror annotationMirror : annotated.getAnnotationMirrors()) {
-            DeclaredType annotationType = annotationMirror.getAnnotationType();
-            TypeElement typeElement = (TypeElement) annotationType.asElement();
-            if (typeElement.getQualifiedName().toString().contentEquals(targetAnnotation)) {
-                return annotationMirror;
-            }
-        }
-        return null;
-    }
 }
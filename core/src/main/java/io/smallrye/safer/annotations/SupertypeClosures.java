@@ -0,0 +1,154 @@
+package io.smallrye.safer.annotations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Types;
+
+/**
+ * Computes and remembers the erased supertypes of declared types, so that subtype checks against raw types can be
+ * answered with set lookups rather than calls to {@link Types#isSubtype(TypeMirror, TypeMirror)}, and the fingerprints
+ * of their parameterised supertypes, so that the verdict cache notices when a type argument of a supertype changes.
+ */
+final class SupertypeClosures {
+
+    private final Map<String, Set<String>> closures = new HashMap<>();
+    private final Map<String, Long> fingerprints = new HashMap<>();
+
+    /**
+     * Returns the qualified names of the given type and all its supertypes, erased.
+     * 
+     * @param types the type utilities
+     * @param type the type whose supertypes we want
+     * @return the supertype closure, or <code>null</code> if it cannot be computed reliably, because the type is local or
+     *         anonymous, or has supertypes that are not resolved (yet)
+     */
+    Set<String> of(Types types, DeclaredType type) {
+        String name = ((TypeElement) type.asElement()).getQualifiedName().toString();
+        if (name.isEmpty()) {
+            return null;
+        }
+        Set<String> closure = closures.get(name);
+        if (closure != null) {
+            return closure;
+        }
+        closure = new HashSet<>();
+        closure.add(name);
+        for (TypeMirror supertype : types.directSupertypes(types.erasure(type))) {
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                // most likely an error type, we will know more in the next round
+                return null;
+            }
+            Set<String> supertypeClosure = of(types, (DeclaredType) supertype);
+            if (supertypeClosure == null) {
+                return null;
+            }
+            closure.addAll(supertypeClosure);
+        }
+        closure = Collections.unmodifiableSet(closure);
+        closures.put(name, closure);
+        return closure;
+    }
+
+    /**
+     * Returns a fingerprint of the hierarchy of the given type: its parameterised supertypes, the bounds of their type
+     * parameters, and the hierarchies of the types used in their type arguments, all the way up.
+     *
+     * @param types the type utilities
+     * @param type the type whose hierarchy we want
+     * @return the fingerprint, or <code>null</code> if it cannot be computed reliably, for the same reasons as
+     *         {@link #of(Types, DeclaredType)}
+     */
+    Long fingerprint(Types types, DeclaredType type) {
+        String name = ((TypeElement) type.asElement()).getQualifiedName().toString();
+        if (name.isEmpty()) {
+            return null;
+        }
+        Long fingerprint = fingerprints.get(name);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        // a set, so that the result does not depend on where we enter cycles such as Foo implements Comparable<Foo>
+        Set<String> hierarchy = new HashSet<>();
+        if (!collect(types, (TypeElement) type.asElement(), new HashSet<>(), hierarchy)) {
+            return null;
+        }
+        // the order of the hierarchy does not matter
+        long sum = 0;
+        for (String supertype : hierarchy) {
+            sum += Fingerprint.of(supertype);
+        }
+        fingerprints.put(name, sum);
+        return sum;
+    }
+
+    private boolean collect(Types types, TypeElement element, Set<String> visited, Set<String> hierarchy) {
+        String name = element.getQualifiedName().toString();
+        if (name.isEmpty()) {
+            return false;
+        }
+        if (!visited.add(name)) {
+            return true;
+        }
+        hierarchy.add(name);
+        for (TypeParameterElement typeParameter : element.getTypeParameters()) {
+            for (TypeMirror bound : typeParameter.getBounds()) {
+                hierarchy.add(name + "<" + typeParameter.getSimpleName() + " extends " + bound + ">");
+                if (!collectType(types, bound, visited, hierarchy)) {
+                    return false;
+                }
+            }
+        }
+        for (TypeMirror supertype : types.directSupertypes(element.asType())) {
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                // most likely an error type, we will know more in the next round
+                return false;
+            }
+            // includes the type arguments, such as java.util.ArrayList<java.lang.Integer>
+            hierarchy.add(name + " extends " + supertype);
+            if (!collectType(types, supertype, visited, hierarchy)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean collectType(Types types, TypeMirror type, Set<String> visited, Set<String> hierarchy) {
+        switch (type.getKind()) {
+            case ERROR:
+                return false;
+            case ARRAY:
+                return collectType(types, ((ArrayType) type).getComponentType(), visited, hierarchy);
+            case DECLARED:
+                DeclaredType declaredType = (DeclaredType) type;
+                if (!collect(types, (TypeElement) declaredType.asElement(), visited, hierarchy)) {
+                    return false;
+                }
+                for (TypeMirror typeArgument : declaredType.getTypeArguments()) {
+                    if (!collectType(types, typeArgument, visited, hierarchy)) {
+                        return false;
+                    }
+                }
+                return true;
+            case WILDCARD:
+                WildcardType wildcardType = (WildcardType) type;
+                return (wildcardType.getExtendsBound() == null
+                        || collectType(types, wildcardType.getExtendsBound(), visited, hierarchy))
+                        && (wildcardType.getSuperBound() == null
+                                || collectType(types, wildcardType.getSuperBound(), visited, hierarchy));
+            default:
+                // primitives and type variables, whose bounds are part of their declaring element
+                return true;
+        }
+    }
+}
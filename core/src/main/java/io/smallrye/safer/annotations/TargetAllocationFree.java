@@ -0,0 +1,20 @@
+package io.smallrye.safer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Target is on a hot path, such as a per-message handler, so it must not allocate: boxed return and parameter types, and
+ * varargs parameters, are reported, and so are <code>new</code> expressions, autoboxing, capturing lambdas and method
+ * references, string concatenations and for-each loops over collections made from its body, on javac 11 or later.
+ * Allocations made from the lambdas and classes it declares are not, since they usually run elsewhere. Use
+ * {@link AllowAllocation} for the allocations which were reviewed.
+ * If you cannot directly annotate your annotation, use {@link DefinitionOverride}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TargetAllocationFree {
+
+}
@@ -0,0 +1,37 @@
+package io.smallrye.safer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Target must not block, because it runs on an event loop: calls to the methods of the blocking catalogue made from its
+ * body are reported, on javac 11 or later. Calls made from the lambdas and classes it declares are not, since they
+ * usually run elsewhere.
+ * <p>
+ * Catalogue entries are either a type name, for all its methods, or a type name and a method name separated by
+ * <code>#</code>, as in <code>java.lang.Thread#sleep</code>. They also match the methods of the subtypes of that type.
+ * If you cannot directly annotate your annotation, use {@link DefinitionOverride}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TargetNonBlocking {
+
+    /**
+     * @return the blocking methods to add to the catalogue
+     */
+    String[] blocking() default {};
+
+    /**
+     * @return the methods which can be called even though they are in the catalogue
+     */
+    String[] allowed() default {};
+
+    /**
+     * @return whether the catalogue starts with the JDK methods known to block, such as
+     *         <code>java.lang.Thread#sleep</code>, <code>java.util.concurrent.Future#get</code>, JDBC or blocking I/O,
+     *         or is empty
+     */
+    boolean defaults() default true;
+}
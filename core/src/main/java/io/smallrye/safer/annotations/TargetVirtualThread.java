@@ -0,0 +1,24 @@
+package io.smallrye.safer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Target runs on a virtual thread, so it must not pin its carrier thread: <code>synchronized</code> blocks, calls to
+ * <code>synchronized</code> methods or to <code>Object.wait</code>, and calls to native methods outside the JDK, made
+ * from its body or from the bodies of the methods of its class which it calls directly, are reported, on javac 11 or
+ * later. Calls made from the lambdas and classes it declares are not, since they usually run elsewhere.
+ * If you cannot directly annotate your annotation, use {@link DefinitionOverride}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TargetVirtualThread {
+
+    /**
+     * @return whether <code>synchronized</code> and <code>Object.wait</code> pin the carrier thread, which they stopped
+     *         doing in Java 24, so that they are only reported when this is <code>true</code>
+     */
+    boolean monitorsPin() default true;
+}
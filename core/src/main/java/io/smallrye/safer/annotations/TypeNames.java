@@ -0,0 +1,291 @@
+package io.smallrye.safer.annotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Stable textual forms of type mirrors, usable as cache keys, and which can be parsed back into type mirrors.
+ */
+final class TypeNames {
+
+    private TypeNames() {
+    }
+
+    /**
+     * Returns a canonical name for the given type, such that two types with the same canonical name are the same type
+     * for the whole compilation. Type annotations are ignored, like <code>Types.isSameType</code> does.
+     * 
+     * @param type the type to name
+     * @return the canonical name, or <code>null</code> if the type cannot be named that way, for example because it
+     *         contains type variables whose meaning depends on where they are used, or error types.
+     */
+    static String canonicalName(TypeMirror type) {
+        StringBuilder sb = new StringBuilder();
+        return append(sb, type) ? sb.toString() : null;
+    }
+
+    private static boolean append(StringBuilder sb, TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+                sb.append(type.getKind().name().toLowerCase(Locale.ROOT));
+                return true;
+            case VOID:
+                sb.append("void");
+                return true;
+            case ARRAY:
+                if (!append(sb, ((ArrayType) type).getComponentType())) {
+                    return false;
+                }
+                sb.append("[]");
+                return true;
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                sb.append('?');
+                if (wildcard.getExtendsBound() != null) {
+                    sb.append(" extends ");
+                    return append(sb, wildcard.getExtendsBound());
+                }
+                if (wildcard.getSuperBound() != null) {
+                    sb.append(" super ");
+                    return append(sb, wildcard.getSuperBound());
+                }
+                return true;
+            case DECLARED:
+                DeclaredType declaredType = (DeclaredType) type;
+                TypeMirror enclosingType = declaredType.getEnclosingType();
+                TypeElement element = (TypeElement) declaredType.asElement();
+                if (element.getQualifiedName().length() == 0) {
+                    // local and anonymous classes do not have unique names
+                    return false;
+                }
+                if (enclosingType.getKind() == TypeKind.DECLARED
+                        && !((DeclaredType) enclosingType).getTypeArguments().isEmpty()) {
+                    // inner class of a parameterised type
+                    if (!append(sb, enclosingType)) {
+                        return false;
+                    }
+                    sb.append('.').append(element.getSimpleName());
+                } else {
+                    sb.append(element.getQualifiedName());
+                }
+                List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+                if (!typeArguments.isEmpty()) {
+                    sb.append('<');
+                    for (int i = 0; i < typeArguments.size(); i++) {
+                        if (i > 0) {
+                            sb.append(',');
+                        }
+                        if (!append(sb, typeArguments.get(i))) {
+                            return false;
+                        }
+                    }
+                    sb.append('>');
+                }
+                return true;
+            default:
+                // type variables, intersections, errors…
+                return false;
+        }
+    }
+
+    /**
+     * Returns the erased descriptor of the given method, as found in class files.
+     * 
+     * @param elements the element utilities
+     * @param types the type utilities
+     * @param method the method
+     * @return the descriptor, or <code>null</code> if some of its types are not resolved (yet)
+     */
+    static String descriptor(Elements elements, Types types, ExecutableElement method) {
+        StringBuilder sb = new StringBuilder("(");
+        for (VariableElement parameter : method.getParameters()) {
+            if (!appendDescriptor(sb, elements, types.erasure(parameter.asType()))) {
+                return null;
+            }
+        }
+        sb.append(')');
+        return appendDescriptor(sb, elements, types.erasure(method.getReturnType())) ? sb.toString() : null;
+    }
+
+    private static boolean appendDescriptor(StringBuilder sb, Elements elements, TypeMirror erasure) {
+        switch (erasure.getKind()) {
+            case BOOLEAN:
+                sb.append('Z');
+                return true;
+            case BYTE:
+                sb.append('B');
+                return true;
+            case SHORT:
+                sb.append('S');
+                return true;
+            case INT:
+                sb.append('I');
+                return true;
+            case LONG:
+                sb.append('J');
+                return true;
+            case CHAR:
+                sb.append('C');
+                return true;
+            case FLOAT:
+                sb.append('F');
+                return true;
+            case DOUBLE:
+                sb.append('D');
+                return true;
+            case VOID:
+                sb.append('V');
+                return true;
+            case ARRAY:
+                sb.append('[');
+                return appendDescriptor(sb, elements, ((ArrayType) erasure).getComponentType());
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) erasure).asElement();
+                sb.append('L').append(elements.getBinaryName(element).toString().replace('.', '/')).append(';');
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parses a type from its canonical name.
+     * 
+     * @param elements the element utilities
+     * @param types the type utilities
+     * @param canonicalName a type name, as returned by {@link #canonicalName(TypeMirror)}
+     * @return the type, or <code>null</code> if the name is not valid, or refers to types that do not exist
+     */
+    static TypeMirror parse(Elements elements, Types types, String canonicalName) {
+        try {
+            Parser parser = new Parser(elements, types, canonicalName);
+            TypeMirror type = parser.type();
+            return parser.position == canonicalName.length() ? type : null;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException x) {
+            return null;
+        }
+    }
+
+    private static class Parser {
+        private final Elements elements;
+        private final Types types;
+        private final String name;
+        int position;
+
+        Parser(Elements elements, Types types, String name) {
+            this.elements = elements;
+            this.types = types;
+            this.name = name;
+        }
+
+        TypeMirror type() {
+            if (consume("?")) {
+                if (consume(" extends ")) {
+                    return types.getWildcardType(type(), null);
+                }
+                if (consume(" super ")) {
+                    return types.getWildcardType(null, type());
+                }
+                return types.getWildcardType(null, null);
+            }
+            TypeMirror type;
+            String identifier = identifier();
+            switch (identifier) {
+                case "void":
+                    type = types.getNoType(TypeKind.VOID);
+                    break;
+                case "boolean":
+                case "byte":
+                case "short":
+                case "int":
+                case "long":
+                case "char":
+                case "float":
+                case "double":
+                    type = types.getPrimitiveType(TypeKind.valueOf(identifier.toUpperCase(Locale.ROOT)));
+                    break;
+                default:
+                    type = declaredType(null, typeElement(identifier));
+                    // inner classes of parameterised types
+                    while (consume(".")) {
+                        TypeElement enclosingElement = (TypeElement) ((DeclaredType) type).asElement();
+                        type = declaredType((DeclaredType) type,
+                                typeElement(enclosingElement.getQualifiedName() + "." + identifier()));
+                    }
+            }
+            while (consume("[]")) {
+                type = types.getArrayType(type);
+            }
+            return type;
+        }
+
+        private TypeMirror declaredType(DeclaredType enclosingType, TypeElement element) {
+            if (!consume("<")) {
+                if (enclosingType == null && !element.getTypeParameters().isEmpty()) {
+                    // raw type
+                    return types.erasure(element.asType());
+                }
+                return enclosingType == null ? element.asType() : types.getDeclaredType(enclosingType, element);
+            }
+            List<TypeMirror> typeArguments = new ArrayList<>();
+            do {
+                typeArguments.add(type());
+            } while (consume(","));
+            if (!consume(">")) {
+                throw new IllegalArgumentException(name);
+            }
+            TypeMirror[] array = typeArguments.toArray(new TypeMirror[0]);
+            return enclosingType == null ? types.getDeclaredType(element, array)
+                    : types.getDeclaredType(enclosingType, element, array);
+        }
+
+        private TypeElement typeElement(String qualifiedName) {
+            TypeElement element = elements.getTypeElement(qualifiedName);
+            if (element == null) {
+                throw new IllegalArgumentException(qualifiedName);
+            }
+            return element;
+        }
+
+        private String identifier() {
+            int start = position;
+            // dotted names, but stop at the dot following type arguments
+            while (position < name.length()
+                    && (Character.isJavaIdentifierPart(name.charAt(position))
+                            || (name.charAt(position) == '.' && position > start))) {
+                position++;
+            }
+            if (position == start) {
+                throw new IllegalArgumentException(name);
+            }
+            return name.substring(start, position);
+        }
+
+        private boolean consume(String token) {
+            if (name.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+    }
+}
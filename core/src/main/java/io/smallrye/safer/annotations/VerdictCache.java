@@ -0,0 +1,236 @@
+package io.smallrye.safer.annotations;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers the classes found valid by previous builds, along with fingerprints of their constrained signatures and
+ * of the constraints they were checked against, so that unchanged classes need not be checked again. The cache file
+ * is made of a header:
+ *
+ * <pre>
+ * int  magic ("SAFR")
+ * int  format version
+ * long processor fingerprint
+ * </pre>
+ *
+ * Followed by fixed-size records:
+ *
+ * <pre>
+ * long class name fingerprint
+ * long signature fingerprint
+ * long constraints fingerprint
+ * </pre>
+ *
+ * New verdicts are appended, and supersede the earlier records for the same class. The whole file is only rewritten
+ * when the processor changes, or when superseded records take up most of it.
+ */
+public final class VerdictCache {
+
+    static final int MAGIC = 0x53414652;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+
+    // the processor classes do not change while they are loaded
+    private static volatile Long processorBuild;
+
+    private final Path file;
+    private final long processorFingerprint;
+    // class name fingerprint -> signature and constraints fingerprints
+    private final Map<Long, long[]> records = new HashMap<>();
+    private final Map<Long, long[]> appended = new LinkedHashMap<>();
+    private int storedRecords;
+    private boolean rewrite;
+    private int hits;
+    private int misses;
+
+    private VerdictCache(Path file, long processorFingerprint) {
+        this.file = file;
+        this.processorFingerprint = processorFingerprint;
+    }
+
+    /**
+     * Fingerprints the build of the processor: the contents of its jar, or of its class directory when it is not
+     * packaged, so that verdicts are not trusted across rebuilds of the processor that keep the same version.
+     */
+    static long processorFingerprint() throws IOException {
+        Long build = processorBuild;
+        if (build == null) {
+            CodeSource codeSource = VerdictCache.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null) {
+                throw new IOException("Cannot locate the processor classes");
+            }
+            Path location;
+            try {
+                location = Paths.get(codeSource.getLocation().toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            Fingerprint fingerprint = new Fingerprint().add(ConstraintDescriptors.VERSION);
+            if (Files.isDirectory(location)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(location)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    fingerprint.add(location.relativize(file).toString()).add(Files.readAllBytes(file));
+                }
+            } else {
+                try (ZipFile jar = new ZipFile(location.toFile())) {
+                    // the central directory has the checksum of every entry, no need to inflate them
+                    Enumeration<? extends ZipEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        fingerprint.add(entry.getName()).add(entry.getCrc()).add(entry.getSize());
+                    }
+                }
+            }
+            build = fingerprint.get();
+            processorBuild = build;
+        }
+        return build;
+    }
+
+    /**
+     * Reads the given cache file, or starts an empty cache if it is missing, or was written by another build of
+     * the processor.
+     */
+    static VerdictCache open(Path file, long processorFingerprint) throws IOException {
+        VerdictCache cache = new VerdictCache(file, processorFingerprint);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                cache.rewrite = true;
+                return cache;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getLong() != processorFingerprint) {
+                cache.rewrite = true;
+                return cache;
+            }
+            while (buffer.remaining() >= RECORD_SIZE) {
+                long className = buffer.getLong();
+                cache.records.put(className, new long[] { buffer.getLong(), buffer.getLong() });
+                cache.storedRecords++;
+            }
+            // a partially written record: start over
+            if (buffer.hasRemaining()) {
+                cache.rewrite = true;
+            }
+        } catch (NoSuchFileException e) {
+            cache.rewrite = true;
+        }
+        return cache;
+    }
+
+    /**
+     * @return true if the given class was found valid by a previous build, with the same fingerprints
+     */
+    boolean isValid(String className, long signature, long constraints) {
+        long[] record = records.get(Fingerprint.of(className));
+        if (record != null && record[0] == signature && record[1] == constraints) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    void recordValid(String className, long signature, long constraints) {
+        Long key = Fingerprint.of(className);
+        long[] record = records.get(key);
+        if (record != null && record[0] == signature && record[1] == constraints) {
+            return;
+        }
+        record = new long[] { signature, constraints };
+        records.put(key, record);
+        appended.put(key, record);
+    }
+
+    /**
+     * Writes the new verdicts of this build, appending them unless the file needs to be rewritten.
+     */
+    void save() throws IOException {
+        if (!rewrite && storedRecords + appended.size() > 2 * records.size() + 1024) {
+            // mostly superseded records
+            rewrite = true;
+        }
+        if (rewrite) {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(processorFingerprint).flip();
+                write(channel, header);
+                write(channel, records);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            storedRecords = records.size();
+            rewrite = false;
+        } else if (!appended.isEmpty()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                write(channel, appended);
+            }
+            storedRecords += appended.size();
+        }
+        appended.clear();
+    }
+
+    private static void write(FileChannel channel, Map<Long, long[]> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (Map.Entry<Long, long[]> entry : records.entrySet()) {
+            buffer.putLong(entry.getKey()).putLong(entry.getValue()[0]).putLong(entry.getValue()[1]);
+        }
+        buffer.flip();
+        write(channel, buffer);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return the cache file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of classes which were not checked again, because their verdict was cached
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of classes which had to be checked
+     */
+    public int getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,601 @@
+package io.smallrye.safer.annotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.SynchronizedTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+/**
+ * Reports the calls to blocking methods made from the bodies of {@link TargetNonBlocking} methods, the constructs which
+ * pin the carrier thread of {@link TargetVirtualThread} methods, and the allocations made from the bodies of
+ * {@link TargetAllocationFree} methods, with the javac Trees API. Method bodies are only
+ * attributed after annotation processing, so the processor registers this scanner as a task listener, and scans the
+ * methods of each type once javac has analysed it. Since javac enters the methods again once processing is over, they
+ * are then looked up by name. The plugin checks types once they are analysed, so their methods are scanned right away.
+ */
+final class BodyScanner implements TaskListener {
+
+    private final Trees trees;
+    private final Elements elements;
+    private final Types types;
+    private final Messager messager;
+    // top-level type name -> method key -> constraints of the methods waiting for it to be analysed, null if they are
+    // analysed already
+    private final Map<String, Map<String, List<Constraint>>> pending;
+    // whether processing is over without errors, after which javac should analyse every type
+    private boolean analysisExpected;
+
+    private BodyScanner(Trees trees, ProcessingEnvironment processingEnv, boolean analysed) {
+        this.trees = trees;
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+        this.pending = analysed ? null : new HashMap<>();
+    }
+
+    /**
+     * @return the scanner, or <code>null</code> after warning that method bodies are not checked, if they are not
+     *         available with this compiler, for example because it is not javac, or because a build tool wraps its
+     *         processing environment
+     */
+    static BodyScanner create(ProcessingEnvironment processingEnv) {
+        if (processingEnv instanceof CountingEnvironment) {
+            processingEnv = ((CountingEnvironment) processingEnv).getDelegate();
+        }
+        if (processingEnv instanceof PluginEnvironment) {
+            return new BodyScanner(((PluginEnvironment) processingEnv).getTrees(), processingEnv, true);
+        }
+        try {
+            BodyScanner scanner = new BodyScanner(Trees.instance(processingEnv), processingEnv, false);
+            JavacTask.instance(processingEnv).addTaskListener(scanner);
+            return scanner;
+        } catch (IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Kind.WARNING,
+                    "Method bodies are not checked: they are only available from the javac processing environment, and "
+                            + processingEnv.getClass().getName()
+                            + " is not, because the compiler is not javac or a build tool wraps its environment");
+            return null;
+        }
+    }
+
+    /**
+     * @return whether method bodies are available with this compiler, without listening to it
+     */
+    static boolean isAvailable(ProcessingEnvironment processingEnv) {
+        if (processingEnv instanceof CountingEnvironment) {
+            processingEnv = ((CountingEnvironment) processingEnv).getDelegate();
+        }
+        if (processingEnv instanceof PluginEnvironment) {
+            return true;
+        }
+        try {
+            Trees.instance(processingEnv);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scans the body of the given method, as soon as javac has attributed it.
+     *
+     * @param method the method
+     * @param constraints its {@link TargetNonBlocking}, {@link TargetVirtualThread} and {@link TargetAllocationFree}
+     *        constraints
+     */
+    void scan(ExecutableElement method, List<Constraint> constraints) {
+        if (pending == null) {
+            scanBody(method, constraints);
+        } else {
+            pending.computeIfAbsent(topLevelType(method).getQualifiedName().toString(), k -> new HashMap<>())
+                    .put(key(method), constraints);
+        }
+    }
+
+    /**
+     * Called once processing is over: javac then analyses every type, unless processing raised errors, or it only
+     * runs annotation processing, with <code>-proc:only</code>, in which case we warn that bodies were not checked.
+     */
+    void processingOver(boolean errorRaised) {
+        analysisExpected = !errorRaised;
+    }
+
+    @Override
+    public void finished(TaskEvent event) {
+        if (event.getKind() == TaskEvent.Kind.COMPILATION) {
+            if (analysisExpected && pending != null && !pending.isEmpty()) {
+                messager.printMessage(Kind.WARNING, "The bodies of the methods with @TargetNonBlocking, "
+                        + "@TargetVirtualThread or @TargetAllocationFree constraints were not checked, because javac "
+                        + "stopped before analysing them, for example with -proc:only");
+            }
+            return;
+        }
+        // package and module infos have no type
+        if (event.getKind() != TaskEvent.Kind.ANALYZE || event.getTypeElement() == null) {
+            return;
+        }
+        Map<String, List<Constraint>> methods = pending.remove(event.getTypeElement().getQualifiedName().toString());
+        if (methods != null) {
+            scanPending(event.getTypeElement(), methods);
+        }
+    }
+
+    private void scanPending(TypeElement type, Map<String, List<Constraint>> methods) {
+        for (Element member : type.getEnclosedElements()) {
+            ElementKind kind = member.getKind();
+            if (kind == ElementKind.METHOD) {
+                List<Constraint> constraints = methods.get(key((ExecutableElement) member));
+                if (constraints != null) {
+                    scanBody((ExecutableElement) member, constraints);
+                }
+            } else if (kind.isClass() || kind.isInterface()) {
+                scanPending((TypeElement) member, methods);
+            }
+        }
+    }
+
+    /**
+     * @return a name for the given method which does not change when javac enters it again
+     */
+    private static String key(ExecutableElement method) {
+        return ((TypeElement) method.getEnclosingElement()).getQualifiedName() + "." + method;
+    }
+
+    private void scanBody(ExecutableElement method, List<Constraint> constraints) {
+        TreePath methodPath = trees.getPath(method);
+        if (methodPath == null || !(methodPath.getLeaf() instanceof MethodTree)) {
+            return;
+        }
+        for (Constraint constraint : constraints) {
+            if (constraint.isVirtualThread() && constraint.pinningRules.monitorsPin
+                    && method.getModifiers().contains(Modifier.SYNCHRONIZED)) {
+                reportPinning(constraint, "synchronized method", null, methodPath);
+            }
+        }
+        new BodyVisitor(method, constraints, null).scanBody(methodPath);
+    }
+
+    /**
+     * Visits a method body, and the bodies of the methods of the same top-level type it calls, for pinning constructs.
+     * Blocking calls and allocations are only looked for in the constrained method.
+     */
+    private final class BodyVisitor extends TreePathScanner<Void, Void> {
+        private final ExecutableElement method;
+        private final List<Constraint> constraints;
+        // the constrained method calling this one, or null if this one is constrained
+        private final ExecutableElement caller;
+        private final Set<ExecutableElement> scannedCallees;
+        // the TargetAllocationFree constraints, empty if allocations are allowed
+        private final List<Constraint> allocationConstraints;
+        // how many of the enclosing local variables allow allocations
+        private int allowedAllocations;
+        // whether we are in the operands of a reported string concatenation
+        private boolean inConcatenation;
+
+        BodyVisitor(ExecutableElement method, List<Constraint> constraints, BodyVisitor caller) {
+            this.method = method;
+            this.constraints = constraints;
+            this.caller = caller != null ? caller.method : null;
+            this.scannedCallees = caller != null ? caller.scannedCallees : new HashSet<>();
+            List<Constraint> allocationConstraints = Collections.emptyList();
+            if (caller == null && !SaferAnnotationProcessor.isAllocationAllowed(method)) {
+                for (Constraint constraint : constraints) {
+                    if (constraint.allocationFree) {
+                        if (allocationConstraints.isEmpty()) {
+                            allocationConstraints = new ArrayList<>(1);
+                        }
+                        allocationConstraints.add(constraint);
+                    }
+                }
+            }
+            this.allocationConstraints = allocationConstraints;
+        }
+
+        void scanBody(TreePath methodPath) {
+            MethodTree methodTree = (MethodTree) methodPath.getLeaf();
+            if (methodTree.getBody() == null) {
+                // abstract and native methods
+                return;
+            }
+            scan(new TreePath(methodPath, methodTree.getBody()), null);
+        }
+
+        @Override
+        public Void visitSynchronized(SynchronizedTree node, Void p) {
+            for (Constraint constraint : constraints) {
+                if (constraint.isVirtualThread() && constraint.pinningRules.monitorsPin) {
+                    reportPinning(constraint, "synchronized block", caller, getCurrentPath());
+                }
+            }
+            return super.visitSynchronized(node, p);
+        }
+
+        @Override
+        public Void visitMethodInvocation(MethodInvocationTree node, Void p) {
+            Element invoked = trees.getElement(getCurrentPath());
+            if (invoked != null && invoked.getKind() == ElementKind.METHOD) {
+                check((ExecutableElement) invoked);
+                checkArguments((ExecutableElement) invoked, node.getArguments());
+            }
+            return super.visitMethodInvocation(node, p);
+        }
+
+        @Override
+        public Void visitLambdaExpression(LambdaExpressionTree node, Void p) {
+            // lambdas usually run elsewhere, for example when handed to an executor, but those which capture values
+            // are allocated here
+            if (isCheckingAllocations() && isCapturing(getCurrentPath())) {
+                reportAllocation("capturing lambda", node);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitClass(ClassTree node, Void p) {
+            // and so do local and anonymous classes
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableTree node, Void p) {
+            Element variable = trees.getElement(getCurrentPath());
+            boolean allowed = variable != null && SaferAnnotationProcessor.isAllocationAllowed(variable);
+            if (allowed) {
+                allowedAllocations++;
+            }
+            try {
+                if (node.getInitializer() != null && variable != null) {
+                    checkBoxing(node.getInitializer(), variable.asType());
+                }
+                return super.visitVariable(node, p);
+            } finally {
+                if (allowed) {
+                    allowedAllocations--;
+                }
+            }
+        }
+
+        @Override
+        public Void visitNewClass(NewClassTree node, Void p) {
+            if (isCheckingAllocations()) {
+                reportAllocation("new '" + trees.getTypeMirror(getCurrentPath()) + "'", node);
+                Element constructor = trees.getElement(getCurrentPath());
+                if (constructor instanceof ExecutableElement) {
+                    checkArguments((ExecutableElement) constructor, node.getArguments());
+                }
+            }
+            return super.visitNewClass(node, p);
+        }
+
+        @Override
+        public Void visitNewArray(NewArrayTree node, Void p) {
+            if (isCheckingAllocations()) {
+                reportAllocation("new '" + trees.getTypeMirror(getCurrentPath()) + "'", node);
+            }
+            return super.visitNewArray(node, p);
+        }
+
+        @Override
+        public Void visitMemberReference(MemberReferenceTree node, Void p) {
+            if (isCheckingAllocations() && !isType(new TreePath(getCurrentPath(), node.getQualifierExpression()))) {
+                // like capturing lambdas, method references bound to a receiver are allocated here
+                reportAllocation("bound method reference", node);
+            }
+            return super.visitMemberReference(node, p);
+        }
+
+        @Override
+        public Void visitAssignment(AssignmentTree node, Void p) {
+            if (isCheckingAllocations()) {
+                checkBoxing(node.getExpression(),
+                        trees.getTypeMirror(new TreePath(getCurrentPath(), node.getVariable())));
+            }
+            return super.visitAssignment(node, p);
+        }
+
+        @Override
+        public Void visitCompoundAssignment(CompoundAssignmentTree node, Void p) {
+            if (isCheckingAllocations()) {
+                TypeMirror type = trees.getTypeMirror(new TreePath(getCurrentPath(), node.getVariable()));
+                if (node.getKind() == Tree.Kind.PLUS_ASSIGNMENT && isString(type)) {
+                    reportAllocation("string concatenation", node);
+                } else if (AllocationRules.isBoxed(type)) {
+                    reportAllocation("autoboxing to '" + type + "'", node);
+                }
+            }
+            return super.visitCompoundAssignment(node, p);
+        }
+
+        @Override
+        public Void visitUnary(UnaryTree node, Void p) {
+            if (isCheckingAllocations() && isIncrementOrDecrement(node.getKind())) {
+                TypeMirror type = trees.getTypeMirror(new TreePath(getCurrentPath(), node.getExpression()));
+                if (AllocationRules.isBoxed(type)) {
+                    reportAllocation("autoboxing to '" + type + "'", node);
+                }
+            }
+            return super.visitUnary(node, p);
+        }
+
+        @Override
+        public Void visitReturn(ReturnTree node, Void p) {
+            // lambdas are not visited, so this returns from the method
+            if (node.getExpression() != null) {
+                checkBoxing(node.getExpression(), method.getReturnType());
+            }
+            return super.visitReturn(node, p);
+        }
+
+        @Override
+        public Void visitBinary(BinaryTree node, Void p) {
+            if (inConcatenation || !isCheckingAllocations() || node.getKind() != Tree.Kind.PLUS
+                    || !isString(trees.getTypeMirror(getCurrentPath())) || isConstant(node)) {
+                return super.visitBinary(node, p);
+            }
+            // a + b + c is a single concatenation
+            reportAllocation("string concatenation", node);
+            inConcatenation = true;
+            try {
+                return super.visitBinary(node, p);
+            } finally {
+                inConcatenation = false;
+            }
+        }
+
+        @Override
+        public Void visitEnhancedForLoop(EnhancedForLoopTree node, Void p) {
+            if (isCheckingAllocations()) {
+                TypeMirror type = trees.getTypeMirror(new TreePath(getCurrentPath(), node.getExpression()));
+                if (type != null && type.getKind() != TypeKind.ARRAY) {
+                    reportAllocation("for-each iterator over '" + type + "'", node.getExpression());
+                }
+            }
+            return super.visitEnhancedForLoop(node, p);
+        }
+
+        private void check(ExecutableElement invoked) {
+            String name = ((TypeElement) invoked.getEnclosingElement()).getQualifiedName() + "." + invoked;
+            boolean scanCallee = false;
+            for (Constraint constraint : constraints) {
+                // blocking calls are only checked in the constrained method
+                if (constraint.isNonBlocking() && caller == null) {
+                    String entry = constraint.blockingCalls.match(elements, types, invoked);
+                    if (entry != null) {
+                        trees.printMessage(Kind.ERROR, "Invalid blocking call: '" + name + "' matches '" + entry
+                                + "', and @" + constraint.getAnnotationName() + " methods must not block",
+                                getCurrentPath().getLeaf(), getCurrentPath().getCompilationUnit());
+                    }
+                }
+                if (!constraint.isVirtualThread()) {
+                    continue;
+                }
+                Set<Modifier> modifiers = invoked.getModifiers();
+                if (constraint.pinningRules.monitorsPin && modifiers.contains(Modifier.SYNCHRONIZED)) {
+                    reportPinning(constraint, "call to synchronized method '" + name + "'", caller, getCurrentPath());
+                } else if (constraint.pinningRules.monitorsPin && invoked.getSimpleName().contentEquals("wait")
+                        && ((TypeElement) invoked.getEnclosingElement()).getQualifiedName()
+                                .contentEquals("java.lang.Object")) {
+                    reportPinning(constraint, "call to '" + name + "'", caller, getCurrentPath());
+                } else if (modifiers.contains(Modifier.NATIVE) && PinningRules
+                        .isPinningNative(elements.getPackageOf(invoked).getQualifiedName().toString())) {
+                    reportPinning(constraint, "call to native method '" + name + "'", caller, getCurrentPath());
+                } else if (caller == null) {
+                    scanCallee = true;
+                }
+            }
+            if (scanCallee && scannedCallees.add(invoked)
+                    && topLevelType(invoked).equals(topLevelType(method))) {
+                TreePath calleePath = trees.getPath(invoked);
+                if (calleePath != null && calleePath.getLeaf() instanceof MethodTree) {
+                    new BodyVisitor(invoked, constraints, this).scanBody(calleePath);
+                }
+            }
+        }
+
+        /**
+         * Reports the varargs arrays, and the primitive arguments passed as references, of a method or constructor call.
+         */
+        private void checkArguments(ExecutableElement invoked, List<? extends ExpressionTree> arguments) {
+            if (!isCheckingAllocations()) {
+                return;
+            }
+            List<? extends VariableElement> parameters = invoked.getParameters();
+            TypeMirror varargsType = null;
+            if (invoked.isVarArgs()) {
+                TypeMirror arrayType = parameters.get(parameters.size() - 1).asType();
+                // an array passed as is is not copied
+                if (arguments.size() != parameters.size() || !types.isAssignable(
+                        trees.getTypeMirror(new TreePath(getCurrentPath(), arguments.get(arguments.size() - 1))),
+                        arrayType)) {
+                    reportAllocation("varargs array for '" + invoked.getSimpleName() + "'",
+                            getCurrentPath().getLeaf());
+                    varargsType = ((ArrayType) arrayType).getComponentType();
+                }
+            }
+            for (int i = 0; i < arguments.size(); i++) {
+                checkBoxing(arguments.get(i), varargsType != null && i >= parameters.size() - 1 ? varargsType
+                        : parameters.get(Math.min(i, parameters.size() - 1)).asType());
+            }
+        }
+
+        private void checkBoxing(ExpressionTree expression, TypeMirror target) {
+            if (!isCheckingAllocations() || target == null || target.getKind().isPrimitive()
+                    || target.getKind() == TypeKind.ERROR) {
+                return;
+            }
+            TypeMirror type = trees.getTypeMirror(new TreePath(getCurrentPath(), expression));
+            if (type != null && type.getKind().isPrimitive()) {
+                reportAllocation("autoboxing of '" + type + "'", expression);
+            }
+        }
+
+        private boolean isCheckingAllocations() {
+            return !allocationConstraints.isEmpty() && allowedAllocations == 0;
+        }
+
+        private void reportAllocation(String construct, Tree tree) {
+            for (Constraint constraint : allocationConstraints) {
+                trees.printMessage(Kind.ERROR, AllocationRules.message(construct, constraint.getAnnotationName()),
+                        tree, getCurrentPath().getCompilationUnit());
+            }
+        }
+
+        /**
+         * @return whether the given lambda uses local variables or parameters declared outside of it, or the instance it
+         *         is declared in
+         */
+        private boolean isCapturing(TreePath lambda) {
+            Set<Element> declared = new HashSet<>();
+            boolean[] capturing = new boolean[1];
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitVariable(VariableTree node, Void p) {
+                    declared.add(trees.getElement(getCurrentPath()));
+                    return super.visitVariable(node, p);
+                }
+
+                @Override
+                public Void visitIdentifier(IdentifierTree node, Void p) {
+                    Element element = trees.getElement(getCurrentPath());
+                    if (node.getName().contentEquals("this") || node.getName().contentEquals("super")) {
+                        capturing[0] = true;
+                    } else if (element != null) {
+                        switch (element.getKind()) {
+                            case LOCAL_VARIABLE:
+                            case PARAMETER:
+                            case EXCEPTION_PARAMETER:
+                            case RESOURCE_VARIABLE:
+                                capturing[0] |= !declared.contains(element);
+                                break;
+                            case FIELD:
+                            case METHOD:
+                                capturing[0] |= !element.getModifiers().contains(Modifier.STATIC);
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    return super.visitIdentifier(node, p);
+                }
+
+                @Override
+                public Void visitClass(ClassTree node, Void p) {
+                    return null;
+                }
+            }.scan(lambda, null);
+            return capturing[0];
+        }
+
+        private boolean isType(TreePath expression) {
+            Element element = trees.getElement(expression);
+            if (element != null) {
+                return element.getKind().isClass() || element.getKind().isInterface();
+            }
+            // parameterized, array and primitive types
+            Tree.Kind kind = expression.getLeaf().getKind();
+            return kind == Tree.Kind.PARAMETERIZED_TYPE || kind == Tree.Kind.ARRAY_TYPE
+                    || kind == Tree.Kind.PRIMITIVE_TYPE;
+        }
+
+        /**
+         * @return whether the given expression is a compile-time constant, whose string concatenations do not allocate
+         */
+        private boolean isConstant(ExpressionTree expression) {
+            switch (expression.getKind()) {
+                case PARENTHESIZED:
+                    return isConstant(((ParenthesizedTree) expression).getExpression());
+                case TYPE_CAST:
+                    return isConstant(((TypeCastTree) expression).getExpression());
+                case IDENTIFIER:
+                case MEMBER_SELECT:
+                    Element element = trees.getElement(new TreePath(getCurrentPath(), expression));
+                    return element instanceof VariableElement
+                            && ((VariableElement) element).getConstantValue() != null;
+                case NULL_LITERAL:
+                    return false;
+                default:
+                    if (expression instanceof LiteralTree) {
+                        return true;
+                    }
+                    if (expression instanceof BinaryTree) {
+                        return isConstant(((BinaryTree) expression).getLeftOperand())
+                                && isConstant(((BinaryTree) expression).getRightOperand());
+                    }
+                    return false;
+            }
+        }
+    }
+
+    private static boolean isString(TypeMirror type) {
+        return type != null && type.getKind() == TypeKind.DECLARED && type.toString().equals("java.lang.String");
+    }
+
+    private static boolean isIncrementOrDecrement(Tree.Kind kind) {
+        return kind == Tree.Kind.PREFIX_INCREMENT || kind == Tree.Kind.POSTFIX_INCREMENT
+                || kind == Tree.Kind.PREFIX_DECREMENT || kind == Tree.Kind.POSTFIX_DECREMENT;
+    }
+
+    /**
+     * @param caller the constrained method calling the method where the construct is, or <code>null</code> if the
+     *        construct is in the constrained method
+     */
+    private void reportPinning(Constraint constraint, String construct, ExecutableElement caller, TreePath path) {
+        Tree tree = path.getLeaf();
+        trees.printMessage(Kind.ERROR, "Invalid pinning construct: " + construct
+                + (caller != null ? ", called from '" + caller + "'" : "") + ", and @" + constraint.getAnnotationName()
+                + " methods run on virtual threads", tree, path.getCompilationUnit());
+    }
+
+    private static TypeElement topLevelType(Element element) {
+        while (element.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (TypeElement) element;
+    }
+}
@@ -0,0 +1,107 @@
+package io.smallrye.safer.annotations;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Records the phases of the processor as JFR events, so that they can be correlated with the phases of javac in flight
+ * recordings.
+ */
+final class Events {
+
+    // runtimes linked without the jdk.jfr module just do not record anything
+    private static final boolean JFR = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    @Name("io.smallrye.safer.annotations.Phase")
+    @Label("Safer Annotations Phase")
+    @Description("A phase of the safer annotations checks")
+    @Category({ "SmallRye", "Safer Annotations" })
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("io.smallrye.safer.annotations.Statistics")
+    @Label("Safer Annotations Statistics")
+    @Description("What the safer annotations checks did during a compilation, when enabled with -Asafer.stats")
+    @Category({ "SmallRye", "Safer Annotations" })
+    @StackTrace(false)
+    static final class StatisticsEvent extends Event {
+        @Label("Init")
+        @Timespan
+        long init;
+        @Label("Override Discovery")
+        @Timespan
+        long overrideDiscovery;
+        @Label("Constraint Building")
+        @Timespan
+        long constraintBuilding;
+        @Label("Checks")
+        @Timespan
+        long checks;
+        @Label("Target Method Checks")
+        @Timespan
+        long targetMethod;
+        @Label("Target Accessor Checks")
+        @Timespan
+        long targetAccessor;
+        @Label("Type Checks")
+        @Timespan
+        long typeCheck;
+        @Label("Elements Checked")
+        int elementsChecked;
+        @Label("Types Calls")
+        long typesCalls;
+    }
+
+    private Events() {
+    }
+
+    /**
+     * @return the started event, or <code>null</code>
+     */
+    static Object begin(String phase) {
+        if (!JFR) {
+            return null;
+        }
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    static void end(Object event) {
+        if (event != null) {
+            ((PhaseEvent) event).commit();
+        }
+    }
+
+    static void statistics(ProcessorStats stats) {
+        if (!JFR) {
+            return;
+        }
+        StatisticsEvent event = new StatisticsEvent();
+        if (!event.isEnabled() || !stats.isEnabled()) {
+            return;
+        }
+        event.init = stats.getNanos(ProcessorStats.Phase.INIT);
+        event.overrideDiscovery = stats.getNanos(ProcessorStats.Phase.OVERRIDE_DISCOVERY);
+        event.constraintBuilding = stats.getNanos(ProcessorStats.Phase.CONSTRAINT_BUILDING);
+        event.checks = stats.getNanos(ProcessorStats.Phase.CHECKS);
+        event.targetMethod = stats.getNanos(ProcessorStats.Phase.TARGET_METHOD);
+        event.targetAccessor = stats.getNanos(ProcessorStats.Phase.TARGET_ACCESSOR);
+        event.typeCheck = stats.getNanos(ProcessorStats.Phase.TYPE_CHECK);
+        event.elementsChecked = stats.getElementsChecked();
+        event.typesCalls = stats.getTypesCalls();
+        event.commit();
+    }
+}
@@ -0,0 +1,154 @@
+package io.smallrye.safer.annotations;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+
+/**
+ * The subset of {@link ProcessingEnvironment} which {@link SaferAnnotationProcessor} needs to check types, backed by a
+ * {@link JavacTask}, so that the {@link SaferAnnotationsPlugin} can share its checks.
+ */
+final class PluginEnvironment implements ProcessingEnvironment, Messager, Filer {
+
+    private final JavacTask task;
+    private final Trees trees;
+    private final Map<String, String> options;
+    // where we report messages which are not about an element
+    private CompilationUnitTree compilationUnit;
+    // messages reported before javac gave us a compilation unit
+    private final List<Runnable> pendingMessages = new ArrayList<>();
+
+    PluginEnvironment(JavacTask task, Map<String, String> options) {
+        this.task = task;
+        this.trees = Trees.instance(task);
+        this.options = options;
+    }
+
+    void setCompilationUnit(CompilationUnitTree compilationUnit) {
+        this.compilationUnit = compilationUnit;
+        for (Runnable message : pendingMessages) {
+            message.run();
+        }
+        pendingMessages.clear();
+    }
+
+    Trees getTrees() {
+        return trees;
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    @Override
+    public Messager getMessager() {
+        return this;
+    }
+
+    @Override
+    public Filer getFiler() {
+        return this;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+        return task.getElements();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+        return task.getTypes();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+        return SourceVersion.latest();
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    // Messager
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg) {
+        if (compilationUnit != null) {
+            trees.printMessage(kind, msg, compilationUnit, compilationUnit);
+        } else {
+            // Trees can only report against a compilation unit, so wait for the first one to be parsed
+            String message = msg.toString();
+            pendingMessages.add(() -> printMessage(kind, message));
+        }
+    }
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg, Element e) {
+        TreePath path = e != null ? trees.getPath(e) : null;
+        if (path != null) {
+            trees.printMessage(kind, msg, path.getLeaf(), path.getCompilationUnit());
+        } else {
+            printMessage(kind, msg);
+        }
+    }
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg, Element e, AnnotationMirror a) {
+        printMessage(kind, msg, e);
+    }
+
+    @Override
+    public void printMessage(Kind kind, CharSequence msg, Element e, AnnotationMirror a, AnnotationValue v) {
+        printMessage(kind, msg, e);
+    }
+
+    // Filer: the plugin has no access to the file manager
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) throws IOException {
+        throw new FilerException("Not supported by the " + SaferAnnotationsPlugin.NAME + " plugin");
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) throws IOException {
+        throw new FilerException("Not supported by the " + SaferAnnotationsPlugin.NAME + " plugin");
+    }
+
+    @Override
+    public FileObject createResource(Location location, CharSequence moduleAndPkg, CharSequence relativeName,
+            Element... originatingElements) throws IOException {
+        throw new FilerException("Not supported by the " + SaferAnnotationsPlugin.NAME + " plugin");
+    }
+
+    @Override
+    public FileObject getResource(Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+            throws IOException {
+        throw new FileNotFoundException(relativeName + " is not available to the " + SaferAnnotationsPlugin.NAME
+                + " plugin");
+    }
+}
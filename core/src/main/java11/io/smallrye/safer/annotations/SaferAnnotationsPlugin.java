@@ -0,0 +1,64 @@
+package io.smallrye.safer.annotations;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.lang.model.element.TypeElement;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
+/**
+ * Runs the checks of {@link SaferAnnotationProcessor} as a javac plugin, once per top-level type after it is
+ * attributed, rather than in annotation processing rounds. Enable it with <code>-Xplugin:SaferAnnotations</code>,
+ * followed by the processor options, without their <code>-A</code> prefix, for example
+ * <code>-Xplugin:"SaferAnnotations safer.cache=true"</code>.
+ * <p>
+ * The plugin only checks: it does not write the index or the descriptors of the annotations it compiles, or the error
+ * report, which require the annotation processing {@link javax.annotation.processing.Filer}.
+ */
+public class SaferAnnotationsPlugin implements Plugin {
+
+    public static final String NAME = "SaferAnnotations";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void init(JavacTask task, String... args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals == -1) {
+                options.put(arg, null);
+            } else {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        PluginEnvironment environment = new PluginEnvironment(task, options);
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        processor.init(environment);
+        task.addTaskListener(new TaskListener() {
+            @Override
+            public void finished(TaskEvent event) {
+                if (event.getKind() == TaskEvent.Kind.PARSE) {
+                    // reports the messages of the initialisation
+                    environment.setCompilationUnit(event.getCompilationUnit());
+                } else if (event.getKind() == TaskEvent.Kind.ANALYZE) {
+                    TypeElement type = event.getTypeElement();
+                    // package and module infos have no type
+                    if (type != null) {
+                        environment.setCompilationUnit(event.getCompilationUnit());
+                        processor.check(type);
+                    }
+                } else if (event.getKind() == TaskEvent.Kind.COMPILATION) {
+                    processor.finish();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,135 @@
+package io.smallrye.safer.annotations;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.Matcher;
+import io.smallrye.safer.annotations.SaferAnnotationProcessor.SubtypeMatcher;
+
+public class AllowedTypesTest {
+
+    @Test
+    public void testVerdictsMemoized(@TempDir Path dir) throws Exception {
+        compile(dir, processingEnv -> {
+            Elements elements = processingEnv.getElementUtils();
+            Types types = processingEnv.getTypeUtils();
+            TypeMirror string = elements.getTypeElement(String.class.getName()).asType();
+            TypeMirror integer = elements.getTypeElement(Integer.class.getName()).asType();
+            // not a plain matcher, so it goes through the Types API
+            CountingMatcher matcher = new CountingMatcher(
+                    new SubtypeMatcher(elements.getTypeElement(CharSequence.class.getName()).asType()));
+            AllowedTypes allowedTypes = new AllowedTypes(Collections.singletonList(matcher), new SupertypeClosures());
+
+            // repeated signature types are matched once
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertTrue(allowedTypes.matches(processingEnv, string));
+                Assertions.assertFalse(allowedTypes.matches(processingEnv, integer));
+            }
+            Assertions.assertEquals(2, matcher.calls);
+            Assertions.assertEquals(2, allowedTypes.getMisses());
+            Assertions.assertEquals(4, allowedTypes.getHits());
+
+            // until the next round
+            new Constraint(elements.getTypeElement(Deprecated.class.getName()), null, false, allowedTypes, allowedTypes,
+                    null, null, false).newRound();
+            Assertions.assertTrue(allowedTypes.matches(processingEnv, string));
+            Assertions.assertTrue(allowedTypes.matches(processingEnv, string));
+            Assertions.assertEquals(3, matcher.calls);
+            Assertions.assertEquals(3, allowedTypes.getMisses());
+            Assertions.assertEquals(5, allowedTypes.getHits());
+
+            // the least recently used verdicts are evicted past the bound
+            TypeMirror array = string;
+            for (int i = 0; i < AllowedTypes.MAX_VERDICTS; i++) {
+                array = types.getArrayType(array);
+                allowedTypes.matches(processingEnv, array);
+                if (i == AllowedTypes.MAX_VERDICTS / 2) {
+                    // more recently used than string, so it is kept while string is evicted
+                    allowedTypes.matches(processingEnv, integer);
+                }
+            }
+            int calls = matcher.calls;
+            Assertions.assertFalse(allowedTypes.matches(processingEnv, integer));
+            Assertions.assertEquals(calls, matcher.calls);
+            Assertions.assertTrue(allowedTypes.matches(processingEnv, string));
+            Assertions.assertEquals(calls + 1, matcher.calls);
+        });
+    }
+
+    private static void compile(Path dir, Consumer<ProcessingEnvironment> test) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ENGLISH,
+                StandardCharsets.UTF_8)) {
+            fileManager.setLocation(StandardLocation.SOURCE_PATH, Arrays.asList(new File("src/test/java")));
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(dir.toFile()));
+            JavaFileObject file = fileManager.getJavaFileForInput(StandardLocation.SOURCE_PATH,
+                    "io.smallrye.safer.annotations.test.Valid", JavaFileObject.Kind.SOURCE);
+            CompilationTask task = compiler.getTask(null, fileManager, null, Arrays.asList("-proc:only"), null,
+                    Arrays.asList(file));
+            task.setProcessors(Arrays.asList(new AbstractProcessor() {
+                @Override
+                public Set<String> getSupportedAnnotationTypes() {
+                    return Collections.singleton("*");
+                }
+
+                @Override
+                public SourceVersion getSupportedSourceVersion() {
+                    return SourceVersion.latest();
+                }
+
+                @Override
+                public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+                    if (roundEnv.processingOver()) {
+                        test.accept(processingEnv);
+                    }
+                    return false;
+                }
+            }));
+            Assertions.assertTrue(task.call());
+        }
+    }
+
+    /**
+     * Counts the checks which get past the remembered verdicts.
+     */
+    private static class CountingMatcher implements Matcher {
+
+        private final Matcher delegate;
+        private int calls;
+
+        CountingMatcher(Matcher delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean matches(ProcessingEnvironment processingEnv, TypeMirror checkedType) {
+            calls++;
+            return delegate.matches(processingEnv, checkedType);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.smallrye.safer.annotations;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ClassPathSnapshotTest {
+
+    @Test
+    public void testClassPathSnapshotShared() throws Exception {
+        int registered = ClassPathSnapshot.size();
+        // holds the first compilation in its first round, while the others run
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<SaferAnnotationProcessor> first = executor.submit(() -> compile(new AbstractProcessor() {
+                @Override
+                public Set<String> getSupportedAnnotationTypes() {
+                    return Collections.singleton("*");
+                }
+
+                @Override
+                public SourceVersion getSupportedSourceVersion() {
+                    return SourceVersion.latest();
+                }
+
+                @Override
+                public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+                    if (started.getCount() > 0) {
+                        started.countDown();
+                        try {
+                            done.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return false;
+                }
+            }));
+            Assertions.assertTrue(started.await(1, TimeUnit.MINUTES));
+            Assertions.assertEquals(registered + 1, ClassPathSnapshot.size());
+            List<Future<SaferAnnotationProcessor>> compilations = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                compilations.add(executor.submit(() -> compile()));
+            }
+            List<ClassPathSnapshot> snapshots = new ArrayList<>();
+            for (Future<SaferAnnotationProcessor> compilation : compilations) {
+                snapshots.add(compilation.get().getClassPathSnapshot());
+            }
+            // still used by the first compilation
+            Assertions.assertEquals(registered + 1, ClassPathSnapshot.size());
+            done.countDown();
+            ClassPathSnapshot snapshot = first.get().getClassPathSnapshot();
+            for (ClassPathSnapshot other : snapshots) {
+                Assertions.assertSame(snapshot, other);
+            }
+            // evicted once no compilation uses it
+            Assertions.assertEquals(registered, ClassPathSnapshot.size());
+            Assertions.assertNotSame(snapshot, compile().getClassPathSnapshot());
+            Assertions.assertEquals(registered, ClassPathSnapshot.size());
+        } finally {
+            done.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOverrideTargetsReadFromClassFiles() throws Exception {
+        Assertions.assertEquals("io.smallrye.safer.annotations.test.OverriddenMethodAnnotation",
+                OverrideTargets.read(classFile("io/smallrye/safer/annotations/test/TestOverride.class")));
+        Assertions.assertNull(OverrideTargets.read(classFile("io/smallrye/safer/annotations/test/Valid.class")));
+    }
+
+    private static byte[] classFile(String name) throws Exception {
+        return Files.readAllBytes(Paths.get(ClassPathSnapshotTest.class.getClassLoader().getResource(name).toURI()));
+    }
+
+    private static SaferAnnotationProcessor compile(Processor... processors) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        File target = new File("target/test-classes-output");
+        target.mkdirs();
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ENGLISH,
+                StandardCharsets.UTF_8)) {
+            fileManager.setLocation(StandardLocation.SOURCE_PATH, Arrays.asList(new File("src/test/java")));
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(target));
+            JavaFileObject file = fileManager.getJavaFileForInput(StandardLocation.SOURCE_PATH,
+                    "io.smallrye.safer.annotations.test.Valid", JavaFileObject.Kind.SOURCE);
+            CompilationTask task = compiler.getTask(null, fileManager, null, Arrays.asList("-proc:only"), null,
+                    Arrays.asList(file));
+            // javac initialises the processors in turn, as they run
+            List<Processor> allProcessors = new ArrayList<>();
+            allProcessors.add(processor);
+            allProcessors.addAll(Arrays.asList(processors));
+            task.setProcessors(allProcessors);
+            Assertions.assertTrue(task.call());
+        }
+        return processor;
+    }
+}
@@ -0,0 +1,40 @@
+package io.smallrye.safer.annotations.test;
+
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import io.smallrye.safer.annotations.AllowAllocation;
+
+public class AllocationFree {
+    private static final String PREFIX = "message-";
+    private int count;
+
+    @AllocationFreeAnnotation
+    public int handle(long id, List<Integer> values, int[] array) {
+        Object box = new Object();
+        values.add(count);
+        String name = "id " + id + count;
+        String constant = PREFIX + "constant";
+        for (Integer value : values) {
+            count += value;
+        }
+        for (int value : array) {
+            count += value;
+        }
+        IntSupplier capturing = () -> count;
+        Supplier<String> stateless = () -> "stateless";
+        Supplier<String> bound = name::trim;
+        Supplier<Object> unbound = Object::new;
+        String.format("%d", count);
+        @AllowAllocation("logged once")
+        String reviewed = "reviewed " + count;
+        return count;
+    }
+
+    @AllocationFreeAnnotation
+    @AllowAllocation("startup only")
+    public int start(int id) {
+        return new Object().hashCode() + id;
+    }
+}
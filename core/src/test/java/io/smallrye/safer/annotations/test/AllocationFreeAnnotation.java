@@ -0,0 +1,12 @@
+package io.smallrye.safer.annotations.test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import io.smallrye.safer.annotations.TargetAllocationFree;
+
+@Retention(RetentionPolicy.RUNTIME)
+@TargetAllocationFree
+public @interface AllocationFreeAnnotation {
+
+}
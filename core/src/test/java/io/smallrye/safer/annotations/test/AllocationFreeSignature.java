@@ -0,0 +1,20 @@
+package io.smallrye.safer.annotations.test;
+
+import io.smallrye.safer.annotations.AllowAllocation;
+
+public class AllocationFreeSignature {
+    @AllocationFreeAnnotation
+    public Integer handle(Long id, int count, String... names) {
+        return null;
+    }
+
+    @AllocationFreeAnnotation
+    public void handleReviewed(@AllowAllocation("legacy signature") Long id, int count) {
+    }
+
+    @AllocationFreeAnnotation
+    @AllowAllocation("startup only")
+    public Integer start(Integer id) {
+        return id;
+    }
+}
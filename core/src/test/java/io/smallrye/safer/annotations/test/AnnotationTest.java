@@ -2,17 +2,44 @@ package io.smallrye.safer.annotations.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
@@ -24,7 +51,14 @@ import javax.tools.ToolProvider;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
 
+import io.smallrye.safer.annotations.DefinitionOverride;
+import io.smallrye.safer.annotations.MethodIndex;
+import io.smallrye.safer.annotations.MethodInvoker;
+import io.smallrye.safer.annotations.ProcessorStats;
 import io.smallrye.safer.annotations.SaferAnnotationProcessor;
 
 public class AnnotationTest {
@@ -66,9 +100,734 @@ public class AnnotationTest {
         compile(Collections.emptySet(), Valid.class);
     }
 
-    private void compile(Set<ExpectedError> errors, Class<?>... classes) throws IOException {
+    @Test
+    public void testConstraintsReusedAcrossRounds() throws IOException {
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor, new GeneratingProcessor()), Valid.class);
+        // AccessorAnnotation, MethodAnnotation, SubtypeMethodAnnotation and OverriddenMethodAnnotation are compiled in
+        // the first round, and MethodAnnotation is found again in the generated class of the second round
+        Assertions.assertEquals(4, processor.getConstraintRegistry().getMisses());
+        Assertions.assertEquals(1, processor.getConstraintRegistry().getHits());
+    }
+
+    /**
+     * Generates a class using a constrained annotation in the first round, so that it is processed in a second round.
+     */
+    @SupportedAnnotationTypes("*")
+    static class GeneratingProcessor extends AbstractProcessor {
+
+        private boolean generated;
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latest();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            if (!generated) {
+                generated = true;
+                try (Writer writer = processingEnv.getFiler()
+                        .createSourceFile("io.smallrye.safer.annotations.test.Generated").openWriter()) {
+                    writer.write("package io.smallrye.safer.annotations.test;\n"
+                            + "public class Generated {\n"
+                            + "    @MethodAnnotation public String method(Integer i) { return null; }\n"
+                            + "}\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return false;
+        }
+    }
+
+    @Test
+    public void testOverridesResolvedLazily() throws IOException {
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        // no annotation which could be overridden: the meta-annotations of AccessorAnnotation cannot be on methods
+        compile(Collections.emptySet(), Arrays.asList(processor), AccessorAnnotation.class);
+        // TestOverride
+        Assertions.assertEquals(1, processor.getOverrideRegistry().getDeclaredCount());
+        Assertions.assertEquals(0, processor.getOverrideRegistry().getResolvedCount());
+
+        processor = new SaferAnnotationProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor), Valid.class);
+        // once to find its target, then once more to compile its constraints
+        Assertions.assertEquals(2, processor.getOverrideRegistry().getResolvedCount());
+    }
+
+    @Test
+    public void testMissingOverride(@TempDir Path dir) throws Exception {
+        // listed overrides which do not exist must not break the build
+        Path services = dir.resolve("services");
+        Files.createDirectories(services.resolve("META-INF/services"));
+        Files.write(services.resolve("META-INF/services/" + DefinitionOverride.class.getName()),
+                Arrays.asList("io.smallrye.safer.annotations.test.MissingOverride"));
+        Path sources = dir.resolve("src");
+        Files.createDirectories(sources);
+        Files.write(sources.resolve("Annotated.java"), Arrays.asList("public class Annotated {",
+                "    @Deprecated",
+                "    public void method() {",
+                "    }",
+                "}"));
+        // the processor reads the services of its own class loader
+        URL processorClasses = SaferAnnotationProcessor.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { processorClasses, services.toUri().toURL() }, ClassLoader.getSystemClassLoader().getParent())) {
+            Processor processor = (Processor) classLoader.loadClass(SaferAnnotationProcessor.class.getName())
+                    .getConstructor().newInstance();
+            Assertions.assertTrue(compile(sources, dir.resolve("classes"), processor, Collections.emptyList(),
+                    javax.tools.Diagnostic.Kind.NOTE)
+                            .contains("Failed to load override class: io.smallrye.safer.annotations.test.MissingOverride"));
+        }
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        compile(invalidErrors(), Arrays.asList(processor),
+                Arrays.asList("-A" + SaferAnnotationProcessor.STATS_OPTION + "=true"), Valid.class, Invalid.class);
+        ProcessorStats stats = processor.getStats();
+        Assertions.assertTrue(stats.isEnabled());
+        Assertions.assertTrue(stats.getElementsChecked() > 0);
+        Assertions.assertTrue(stats.getTypesCalls() > 0);
+        Assertions.assertTrue(stats.getNanos(ProcessorStats.Phase.INIT) > 0);
+        Assertions.assertTrue(stats.getNanos(ProcessorStats.Phase.CHECKS) > 0);
+        Assertions.assertTrue(stats.getNanos(ProcessorStats.Phase.TYPE_CHECK) > 0);
+        // off by default
+        processor = new SaferAnnotationProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor), Valid.class);
+        Assertions.assertFalse(processor.getStats().isEnabled());
+        Assertions.assertEquals(0, processor.getStats().getNanos(ProcessorStats.Phase.CHECKS));
+    }
+
+    @Test
+    public void testErrorLimit(@TempDir Path dir) throws IOException {
+        Set<ExpectedError> errors = new HashSet<>(invalidErrors());
+        // past the first two errors of each annotation, the others are summed up per type
+        errors.removeIf(error -> (error.line == 39 || error.line == 43 || error.line == 53
+                || (error.line == 57 && error.column > 41)));
+        errors.add(new ExpectedError(Diagnostic.NOPOS, Diagnostic.NOPOS,
+                "Invalid types for @io.smallrye.safer.annotations.test.MethodAnnotation: 4 more errors were not "
+                        + "reported, past the limit of 2 set with safer.errorLimit: "
+                        + "parameter type 'java.util.List<java.lang.String>' (3), parameter type 'java.lang.String' (1)"));
+        errors.add(new ExpectedError(Diagnostic.NOPOS, Diagnostic.NOPOS,
+                "Invalid types for @io.smallrye.safer.annotations.test.SubtypeMethodAnnotation: 2 more errors were not "
+                        + "reported, past the limit of 2 set with safer.errorLimit: "
+                        + "parameter type 'java.util.ArrayList<java.lang.String>' (1), "
+                        + "parameter type 'java.lang.String[]' (1)"));
+        compile(errors, Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.ERROR_LIMIT_OPTION + "=2",
+                        "-A" + SaferAnnotationProcessor.REPORT_OPTION + "=generate"),
+                dir, Invalid.class);
+
+        // the report has them all, and lands with the classes when generated sources have no directory of their own
+        List<String> report = Files.readAllLines(dir.resolve("safer-annotations-report"));
+        Assertions.assertEquals("safer-annotations-report 1", report.get(0));
+        int methodAnnotation = report.indexOf("@io.smallrye.safer.annotations.test.MethodAnnotation");
+        Assertions.assertEquals(Arrays.asList(
+                "io.smallrye.safer.annotations.test.Invalid$Nested nested() return int",
+                "io.smallrye.safer.annotations.test.Invalid method() return int",
+                "io.smallrye.safer.annotations.test.Invalid method2(java.util.List<java.lang.String>) parameter 0 "
+                        + "java.util.List<java.lang.String>",
+                "io.smallrye.safer.annotations.test.Invalid method3(java.util.List<java.lang.Integer>,java.lang.String) "
+                        + "parameter 1 java.lang.String",
+                "io.smallrye.safer.annotations.test.Invalid method5(java.util.List<java.lang.String>,"
+                        + "java.util.List<java.lang.String>) parameter 0 java.util.List<java.lang.String>",
+                "io.smallrye.safer.annotations.test.Invalid method5(java.util.List<java.lang.String>,"
+                        + "java.util.List<java.lang.String>) parameter 1 java.util.List<java.lang.String>"),
+                report.subList(methodAnnotation + 1, methodAnnotation + 7));
+    }
+
+    @Test
+    public void testIndexDiscovery(@TempDir Path dir) throws IOException {
+        Path index = dir.resolve(SaferAnnotationProcessor.CONSTRAINED_ANNOTATIONS_INDEX);
+        List<String> options = Arrays.asList("-A" + SaferAnnotationProcessor.DISCOVERY_OPTION + "=index");
+        // the annotations defined in this compilation are not indexed yet, but their uses are checked
+        compile(invalidErrors(), Arrays.asList(new SaferAnnotationProcessor()), options, dir, Invalid.class,
+                AccessorAnnotation.class, MethodAnnotation.class, SubtypeMethodAnnotation.class);
+        // then they are, along with stale entries which must go
+        Files.write(index, Arrays.asList(Deprecated.class.getName(), "test.Removed"), StandardOpenOption.APPEND);
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        compile(invalidErrors(), Arrays.asList(processor), options, dir, Invalid.class);
+        Set<String> supportedAnnotationTypes = processor.getSupportedAnnotationTypes();
+        Assertions.assertFalse(supportedAnnotationTypes.contains("*"));
+        Assertions.assertTrue(supportedAnnotationTypes.contains(MethodAnnotation.class.getName()));
+        Assertions.assertTrue(supportedAnnotationTypes.contains(OverriddenMethodAnnotation.class.getName()));
+        Assertions.assertEquals(Arrays.asList(AccessorAnnotation.class.getName(), MethodAnnotation.class.getName(),
+                SubtypeMethodAnnotation.class.getName()), Files.readAllLines(index));
+    }
+
+    @Test
+    public void testIndexWritten(@TempDir Path dir) throws IOException {
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DISCOVERY_OPTION + "=index"), dir, AccessorAnnotation.class,
+                MethodAnnotation.class);
+        Assertions.assertEquals(Arrays.asList(AccessorAnnotation.class.getName(), MethodAnnotation.class.getName()),
+                Files.readAllLines(dir.resolve(SaferAnnotationProcessor.CONSTRAINED_ANNOTATIONS_INDEX)));
+    }
+
+    @Test
+    public void testDescriptorsRead() throws IOException {
+        compile(describedErrors(), Described.class);
+        // unless told not to
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DESCRIPTORS_OPTION + "=ignore"), Described.class);
+    }
+
+    private Set<ExpectedError> describedErrors() {
+        return new HashSet<>(Arrays.asList(
+                new ExpectedError(12, 17,
+                        "Invalid return type: 'void' must be one of: [java.lang.String]"),
+                new ExpectedError(12, 38,
+                        "Invalid parameter type: 'java.util.List<java.lang.String>' must be one of: [java.util.List<java.lang.Integer>, subtype of java.lang.Exception]")));
+    }
+
+    @Test
+    public void testIncrementalBuildMatchesFullBuild() throws IOException {
+        SaferAnnotationProcessor processor = wrappedProcessor();
+        Set<ExpectedError> fullBuild = new HashSet<>(invalidErrors());
+        fullBuild.addAll(describedErrors());
+        compile(fullBuild, Arrays.asList(processor), Valid.class, Invalid.class, Described.class);
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_ISOLATING));
+
+        // an isolating processor must report the same errors when each class is recompiled on its own
+        Set<ExpectedError> incrementalBuild = new HashSet<>();
+        incrementalBuild.addAll(compile(null, Arrays.asList(wrappedProcessor()), Valid.class));
+        incrementalBuild.addAll(compile(null, Arrays.asList(wrappedProcessor()), Invalid.class));
+        incrementalBuild.addAll(compile(null, Arrays.asList(wrappedProcessor()), Described.class));
+        Assertions.assertEquals(fullBuild, incrementalBuild);
+
+        // writing descriptors aggregates several elements
+        processor = wrappedProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DESCRIPTORS_OPTION + "=generate"), MethodAnnotation.class);
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_AGGREGATING));
+        Assertions.assertFalse(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_ISOLATING));
+
+        // so does indexing the constrained annotations, which Gradle knows before they are compiled
+        processor = wrappedProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DISCOVERY_OPTION + "=index"), Valid.class);
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_AGGREGATING));
+    }
+
+    @Test
+    public void testConstrainedAnnotationAddedIncrementally(@TempDir Path dir) throws IOException {
+        Path classes = dir.resolve("classes");
+        Path first = dir.resolve("first");
+        Files.createDirectories(first);
+        Files.write(first.resolve("Plain.java"), Arrays.asList("public class Plain {",
+                "    public int method() {",
+                "        return 0;",
+                "    }",
+                "}"));
+        SaferAnnotationProcessor processor = wrappedProcessor();
+        Assertions.assertEquals(Collections.emptyList(), compile(first, classes, processor, Collections.emptyList()));
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_ISOLATING));
+
+        // the next step adds a constrained annotation and uses it, which Gradle asks about before they are compiled
+        Path second = dir.resolve("second");
+        Files.createDirectories(second);
+        Files.write(second.resolve("Handler.java"), Arrays.asList(
+                "@io.smallrye.safer.annotations.TargetMethod(returnTypes = String.class)",
+                "public @interface Handler {",
+                "}"));
+        List<String> handled = Arrays.asList("public class Handled {",
+                "    @Handler",
+                "    public String method() {",
+                "        return null;",
+                "    }",
+                "}");
+        Files.write(second.resolve("Handled.java"), handled);
+        processor = wrappedProcessor();
+        Assertions.assertEquals(Collections.emptyList(), compile(second, classes, processor, Collections.emptyList()));
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_ISOLATING));
+        // an isolating processor does not write resources from several elements
+        Assertions.assertFalse(Files.exists(classes.resolve(SaferAnnotationProcessor.CONSTRAINED_ANNOTATIONS_INDEX)));
+
+        // then a change to the use alone is checked against the compiled annotation, as in a full build
+        Files.write(second.resolve("Handled.java"), handled.stream().map(line -> line.replace("String", "int")
+                .replace("null", "0")).collect(Collectors.toList()));
+        List<String> fullBuild = compile(second, dir.resolve("full"), wrappedProcessor(), Collections.emptyList());
+        Assertions.assertEquals(Arrays.asList("Invalid return type: 'int' must be one of: [java.lang.String]"),
+                fullBuild);
+        Path third = dir.resolve("third");
+        Files.createDirectories(third);
+        Files.move(second.resolve("Handled.java"), third.resolve("Handled.java"));
+        Assertions.assertEquals(fullBuild, compile(third, classes, wrappedProcessor(), Collections.emptyList()));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testAggregatingWithBodies() throws IOException {
+        // the calls made by method bodies depend on the called types
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor), Valid.class);
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_AGGREGATING));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testPlugin() throws IOException {
+        List<String> options = Arrays.asList("-proc:none", "-Xplugin:SaferAnnotations");
+        compile(invalidErrors(), Collections.emptyList(), options, Invalid.class);
+        compile(Collections.emptySet(), Collections.emptyList(), options, Valid.class);
+        compile(describedErrors(), Collections.emptyList(), options, Described.class);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testBlockingCalls(@TempDir Path dir) throws IOException {
+        // allowed calls, and calls from lambdas, are not reported
+        Set<ExpectedError> errors = new HashSet<>(Arrays.asList(
+                new ExpectedError(12, 21, blockingCallError("java.lang.Thread.sleep(long)", "java.lang.Thread#sleep")),
+                new ExpectedError(19, 14, blockingCallError("io.smallrye.safer.annotations.test.NonBlocking.await()",
+                        "io.smallrye.safer.annotations.test.NonBlocking#await")),
+                new ExpectedError(20, 26,
+                        blockingCallError("java.util.concurrent.Future.get()", "java.util.concurrent.Future#get")),
+                new ExpectedError(20, 53, blockingCallError("java.util.concurrent.CompletableFuture.join()",
+                        "java.util.concurrent.CompletableFuture#join"))));
+        compile(errors, NonBlocking.class);
+        compile(errors, Collections.emptyList(), Arrays.asList("-proc:none", "-Xplugin:SaferAnnotations"),
+                NonBlocking.class);
+
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DESCRIPTORS_OPTION + "=generate"), dir,
+                NonBlockingAnnotation.class);
+        Assertions.assertEquals("safer-annotations-constraints 1\n"
+                + "@io.smallrye.safer.annotations.test.NonBlockingAnnotation\n"
+                + "nonblocking\n"
+                + "blocking io.smallrye.safer.annotations.test.NonBlocking#await\n"
+                + "allowed java.lang.Thread#join\n",
+                new String(Files.readAllBytes(dir.resolve("META-INF/safer-annotations/constraints")),
+                        StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testBodiesNotAnalysed(@TempDir Path dir) throws IOException {
+        Path sources = dir.resolve("src");
+        Files.createDirectories(sources);
+        Files.write(sources.resolve("Sleeping.java"), Arrays.asList("public class Sleeping {",
+                "    @io.smallrye.safer.annotations.test.NonBlockingAnnotation",
+                "    public void method() throws InterruptedException {",
+                "        Thread.sleep(1);",
+                "    }",
+                "}"));
+        Assertions.assertEquals(Arrays.asList(blockingCallError("java.lang.Thread.sleep(long)", "java.lang.Thread#sleep")),
+                compile(sources, dir.resolve("classes"), new SaferAnnotationProcessor(), Collections.emptyList()));
+        // javac stops before analysing the bodies
+        Assertions.assertEquals(Arrays.asList("The bodies of the methods with @TargetNonBlocking, @TargetVirtualThread "
+                + "or @TargetAllocationFree constraints were not checked, because javac stopped before analysing them, "
+                + "for example with -proc:only"),
+                compile(sources, dir.resolve("classes"), new SaferAnnotationProcessor(), Arrays.asList("-proc:only"),
+                        javax.tools.Diagnostic.Kind.WARNING));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testBodiesNotAvailable(@TempDir Path dir) throws IOException {
+        Path sources = dir.resolve("src");
+        Files.createDirectories(sources);
+        Files.write(sources.resolve("Sleeping.java"), Arrays.asList("public class Sleeping {",
+                "    @io.smallrye.safer.annotations.test.NonBlockingAnnotation",
+                "    public void method() throws InterruptedException {",
+                "        Thread.sleep(1);",
+                "    }",
+                "}"));
+        List<String> warnings = compile(sources, dir.resolve("classes"), wrappedProcessor(), Collections.emptyList(),
+                javax.tools.Diagnostic.Kind.WARNING);
+        Assertions.assertEquals(1, warnings.size(), warnings.toString());
+        Assertions.assertTrue(warnings.get(0).startsWith("Method bodies are not checked: they are only available from "
+                + "the javac processing environment, and "), warnings.get(0));
+        Assertions.assertTrue(warnings.get(0).endsWith(" is not, because the compiler is not javac or a build tool "
+                + "wraps its environment"), warnings.get(0));
+    }
+
+    /**
+     * @return a processor whose environment is wrapped, as Gradle does for incremental processors, which hides method
+     *         bodies from it
+     */
+    private static SaferAnnotationProcessor wrappedProcessor() {
+        return new SaferAnnotationProcessor() {
+            @Override
+            public synchronized void init(ProcessingEnvironment processingEnv) {
+                super.init((ProcessingEnvironment) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { ProcessingEnvironment.class },
+                        (proxy, method, args) -> method.invoke(processingEnv, args)));
+            }
+        };
+    }
+
+    private static String blockingCallError(String method, String entry) {
+        return "Invalid blocking call: '" + method + "' matches '" + entry
+                + "', and @io.smallrye.safer.annotations.test.NonBlockingAnnotation methods must not block";
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testPinning(@TempDir Path dir) throws IOException {
+        // constructs in lambdas, and native JDK methods, are not reported
+        Set<ExpectedError> errors = new HashSet<>(Arrays.asList(
+                new ExpectedError(9, 30, pinningError("synchronized method")),
+                new ExpectedError(10, 9, pinningError("synchronized block")),
+                new ExpectedError(13, 18, pinningError("call to 'java.lang.Object.wait()'")),
+                new ExpectedError(14, 16, pinningError(
+                        "call to synchronized method 'io.smallrye.safer.annotations.test.VirtualThread.counted()'")),
+                new ExpectedError(15, 19, pinningError(
+                        "call to native method 'io.smallrye.safer.annotations.test.VirtualThread.nativeCall()'")),
+                new ExpectedError(26, 9, pinningError("synchronized block, called from 'handle(java.lang.Runnable)'")),
+                new ExpectedError(27, 20, pinningError(
+                        "call to synchronized method 'io.smallrye.safer.annotations.test.VirtualThread.counted()', "
+                                + "called from 'handle(java.lang.Runnable)'"))));
+        compile(errors, VirtualThread.class);
+        compile(errors, Collections.emptyList(), Arrays.asList("-proc:none", "-Xplugin:SaferAnnotations"),
+                VirtualThread.class);
+
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DESCRIPTORS_OPTION + "=generate"), dir,
+                VirtualThreadAnnotation.class);
+        Assertions.assertEquals("safer-annotations-constraints 1\n"
+                + "@io.smallrye.safer.annotations.test.VirtualThreadAnnotation\n"
+                + "virtualthread\n",
+                new String(Files.readAllBytes(dir.resolve("META-INF/safer-annotations/constraints")),
+                        StandardCharsets.UTF_8));
+    }
+
+    private static String pinningError(String construct) {
+        return "Invalid pinning construct: " + construct
+                + ", and @io.smallrye.safer.annotations.test.VirtualThreadAnnotation methods run on virtual threads";
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testAllocations(@TempDir Path dir) throws IOException {
+        // constant concatenations, non-capturing lambdas, unbound method references, loops over arrays and reviewed
+        // allocations are not reported
+        Set<ExpectedError> errors = new HashSet<>(Arrays.asList(
+                new ExpectedError(15, 22, allocationError("new 'java.lang.Object'")),
+                new ExpectedError(16, 20, allocationError("autoboxing of 'int'")),
+                new ExpectedError(17, 34, allocationError("string concatenation")),
+                new ExpectedError(19, 30,
+                        allocationError("for-each iterator over 'java.util.List<java.lang.Integer>'")),
+                new ExpectedError(25, 33, allocationError("capturing lambda")),
+                new ExpectedError(27, 34, allocationError("bound method reference")),
+                new ExpectedError(29, 22, allocationError("varargs array for 'format'")),
+                new ExpectedError(29, 29, allocationError("autoboxing of 'int'"))));
+        compile(errors, AllocationFree.class);
+        compile(errors, Collections.emptyList(), Arrays.asList("-proc:none", "-Xplugin:SaferAnnotations"),
+                AllocationFree.class);
+
+        // javac stops before attributing bodies when signatures are invalid, so they are checked separately
+        Set<ExpectedError> signatureErrors = new HashSet<>(Arrays.asList(
+                new ExpectedError(7, 20, allocationError("boxed return type 'java.lang.Integer'")),
+                new ExpectedError(7, 32, allocationError("boxed parameter type 'java.lang.Long'")),
+                new ExpectedError(7, 57, allocationError("varargs parameter 'names'"))));
+        compile(signatureErrors, AllocationFreeSignature.class);
+        compile(signatureErrors, Collections.emptyList(), Arrays.asList("-proc:none", "-Xplugin:SaferAnnotations"),
+                AllocationFreeSignature.class);
+
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DESCRIPTORS_OPTION + "=generate"), dir,
+                AllocationFreeAnnotation.class);
+        Assertions.assertEquals("safer-annotations-constraints 1\n"
+                + "@io.smallrye.safer.annotations.test.AllocationFreeAnnotation\n"
+                + "allocationfree\n",
+                new String(Files.readAllBytes(dir.resolve("META-INF/safer-annotations/constraints")),
+                        StandardCharsets.UTF_8));
+    }
+
+    private static String allocationError(String construct) {
+        return "Invalid allocation: " + construct
+                + ", and @io.smallrye.safer.annotations.test.AllocationFreeAnnotation methods must not allocate";
+    }
+
+    @Test
+    public void testDescriptorsWritten(@TempDir Path dir) throws IOException {
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()),
+                Arrays.asList("-A" + SaferAnnotationProcessor.DESCRIPTORS_OPTION + "=generate"), dir,
+                AccessorAnnotation.class, MethodAnnotation.class, TestOverride.class);
+        String descriptors = new String(Files.readAllBytes(dir.resolve("META-INF/safer-annotations/constraints")),
+                StandardCharsets.UTF_8);
+        Assertions.assertEquals("safer-annotations-constraints 1\n"
+                + "@io.smallrye.safer.annotations.test.AccessorAnnotation\n"
+                + "accessor\n"
+                + "@io.smallrye.safer.annotations.test.MethodAnnotation\n"
+                + "method\n"
+                + "return exact void\n"
+                + "return exact java.lang.String\n"
+                + "return exact java.util.List<java.lang.Integer>\n"
+                + "parameter exact java.lang.Integer\n"
+                + "parameter exact java.util.List<java.lang.Integer>\n"
+                + "parameter subtype java.lang.Throwable\n"
+                + "@io.smallrye.safer.annotations.test.OverriddenMethodAnnotation\n"
+                + "override io.smallrye.safer.annotations.test.TestOverride\n"
+                + "method\n"
+                + "return exact java.lang.String\n"
+                + "parameter exact java.lang.String\n", descriptors);
+    }
+
+    @Test
+    public void testMethodIndex(@TempDir Path dir) throws IOException {
+        File index = dir.resolve(MethodIndex.RESOURCE).toFile();
+        List<String> options = Arrays.asList("-A" + SaferAnnotationProcessor.METHOD_INDEX_OPTION + "=generate");
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        // invalid methods are left out
+        compile(invalidErrors(), Arrays.asList(processor), options, dir, Valid.class, Invalid.class);
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_AGGREGATING));
+        String validAccessors = "@io.smallrye.safer.annotations.test.AccessorAnnotation\n"
+                + "io.smallrye.safer.annotations.test.Valid getI ()I\n"
+                + "io.smallrye.safer.annotations.test.Valid getName ()Ljava/lang/String;\n"
+                + "io.smallrye.safer.annotations.test.Valid setI (I)V\n";
+        String validMethods = "@io.smallrye.safer.annotations.test.MethodAnnotation\n"
+                + "io.smallrye.safer.annotations.test.Valid getName ()Ljava/lang/String;\n"
+                + "io.smallrye.safer.annotations.test.Valid method ()V\n"
+                + "io.smallrye.safer.annotations.test.Valid method2 (Ljava/lang/Integer;Ljava/util/List;"
+                + "Ljava/lang/Throwable;Ljava/lang/RuntimeException;)Ljava/util/List;\n"
+                + "io.smallrye.safer.annotations.test.Valid method3 (Ljava/lang/Integer;)Ljava/lang/String;\n"
+                + "@io.smallrye.safer.annotations.test.OverriddenMethodAnnotation\n"
+                + "io.smallrye.safer.annotations.test.Valid method4 (Ljava/lang/String;)Ljava/lang/String;\n"
+                + "@io.smallrye.safer.annotations.test.SubtypeMethodAnnotation\n"
+                + "io.smallrye.safer.annotations.test.Valid method5 (Ljava/io/IOException;Ljava/lang/StringBuilder;"
+                + "Ljava/util/ArrayList;Ljava/lang/String;)V\n";
+        Assertions.assertEquals("safer-annotations-methods 1\n" + validAccessors + validMethods,
+                new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8));
+
+        // compiling other classes keeps the methods indexed by the previous compilation
+        compile(describedErrors(), Arrays.asList(new SaferAnnotationProcessor()), options, dir, Described.class);
+        Assertions.assertEquals("safer-annotations-methods 1\n"
+                + validAccessors
+                + "@io.smallrye.safer.annotations.test.DescribedMethodAnnotation\n"
+                + "io.smallrye.safer.annotations.test.Described valid (Ljava/util/List;Ljava/lang/RuntimeException;)"
+                + "Ljava/lang/String;\n"
+                + validMethods, new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8));
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+            MethodIndex methodIndex = MethodIndex.read(classLoader);
+            Assertions.assertEquals(5, methodIndex.getAnnotations().size());
+            List<Method> methods = methodIndex.getMethods(MethodAnnotation.class);
+            Assertions.assertEquals(4, methods.size());
+            Assertions.assertEquals("method2", methods.get(2).getName());
+            Assertions.assertEquals(Arrays.asList(Integer.class, List.class, Throwable.class, RuntimeException.class),
+                    Arrays.asList(methods.get(2).getParameterTypes()));
+            Assertions.assertTrue(methods.get(2).isAnnotationPresent(MethodAnnotation.class));
+        }
+
+        // the methods of classes which no longer exist are dropped, even if nothing is left
+        Files.write(index.toPath(), Arrays.asList("safer-annotations-methods 1",
+                "@io.smallrye.safer.annotations.test.MethodAnnotation",
+                "io.smallrye.safer.annotations.test.Removed method ()V"));
+        compile(Collections.emptySet(), Arrays.asList(new SaferAnnotationProcessor()), options, dir, Corpus.class);
+        Assertions.assertEquals("safer-annotations-methods 1\n",
+                new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInvokers() throws Throwable {
+        List<String> options = Arrays.asList("-A" + SaferAnnotationProcessor.INVOKERS_OPTION + "=generate");
+        SaferAnnotationProcessor processor = wrappedProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor), options, Invoked.class);
+        // each invoker only depends on its declaring class
+        Assertions.assertTrue(processor.getSupportedOptions().contains(SaferAnnotationProcessor.GRADLE_ISOLATING));
+
+        ClassLoader classLoader = new OutputClassLoader();
+        Class<?> invoked = classLoader.loadClass(Invoked.class.getName());
+        Assertions.assertNotSame(Invoked.class, invoked);
+        Object instance = invoked.getConstructor().newInstance();
+        Assertions.assertNull(MethodInvoker.of(invoked.getMethod("setI", int.class)).invoke(instance, 42));
+        Assertions.assertEquals(42, MethodInvoker.of(invoked.getMethod("getI")).invoke(instance));
+        Assertions.assertEquals("1+2",
+                MethodInvoker.of(invoked.getMethod("sum", Integer.class, Integer.class)).invoke(null, 1, 2));
+        // invokers do not check access, so only public methods have them
+        Assertions.assertNull(MethodInvoker.of(invoked.getDeclaredMethod("hidden", Integer.class)));
+        Assertions.assertNull(MethodInvoker.of(invoked.getDeclaredMethod("secret", Integer.class)));
+        Assertions.assertEquals("2", MethodInvoker.of(invoked, "size", "(Ljava/util/List;)Ljava/lang/String;")
+                .invoke(instance, Arrays.asList(1, 2)));
+        StringBuilder sb = new StringBuilder();
+        MethodInvoker.of(invoked.getMethod("append", StringBuilder.class, CharSequence.class)).invoke(instance, sb, "a");
+        Assertions.assertEquals("a", sb.toString());
+
+        // exceptions are not wrapped
+        MethodInvoker fail = MethodInvoker.of(invoked.getMethod("fail", Throwable.class));
+        IOException exception = new IOException();
+        Assertions.assertSame(exception, Assertions.assertThrows(IOException.class, () -> fail.invoke(instance, exception)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fail.invoke(instance));
+
+        // typed entry points, without arrays of arguments or boxing
+        ObjIntConsumer<Object> setI = MethodInvoker.of(invoked.getMethod("setI", int.class)).as(ObjIntConsumer.class);
+        setI.accept(instance, 7);
+        ToIntFunction<Object> getI = MethodInvoker.of(invoked.getMethod("getI")).as(ToIntFunction.class);
+        Assertions.assertEquals(7, getI.applyAsInt(instance));
+        BiFunction<Integer, Integer, String> sum = MethodInvoker.of(invoked.getMethod("sum", Integer.class, Integer.class))
+                .as(BiFunction.class);
+        Assertions.assertEquals("3+4", sum.apply(3, 4));
+        Assertions.assertNull(MethodInvoker.of(invoked.getMethod("getI")).as(ToLongFunction.class));
+        // checked exceptions do not fit
+        Assertions.assertNull(MethodInvoker.of(invoked.getMethod("fail", Throwable.class)).as(BiConsumer.class));
+
+        Class<?> nested = classLoader.loadClass(Invoked.Nested.class.getName());
+        Assertions.assertEquals("nested",
+                MethodInvoker.of(nested.getMethod("name")).invoke(nested.getConstructor().newInstance()));
+        // classes compiled without the option have none
+        Assertions.assertNull(MethodInvoker.of(Invoked.class.getMethod("getI")));
+        Assertions.assertNull(MethodInvoker.of(Object.class.getMethod("toString")));
+    }
+
+    /**
+     * Loads the {@link Invoked} classes from the compilation output, where their invokers are, rather than from the test
+     * classes.
+     */
+    private static class OutputClassLoader extends ClassLoader {
+        OutputClassLoader() {
+            super(AnnotationTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(Invoked.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    try {
+                        byte[] bytes = Files.readAllBytes(
+                                new File("target/test-classes-output", name.replace('.', '/') + ".class").toPath());
+                        loaded = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return loaded;
+            }
+        }
+    }
+
+    @Test
+    public void testVerdictCache(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("cache");
+        List<String> options = Arrays.asList("-A" + SaferAnnotationProcessor.CACHE_OPTION + "=" + file);
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        compile(invalidErrors(), Arrays.asList(processor), options, Valid.class, Invalid.class);
+        Assertions.assertEquals(0, processor.getVerdictCache().getHits());
+        Assertions.assertEquals(2, processor.getVerdictCache().getMisses());
+
+        // only valid classes are cached
+        processor = new SaferAnnotationProcessor();
+        compile(invalidErrors(), Arrays.asList(processor), options, Valid.class, Invalid.class);
+        Assertions.assertEquals(1, processor.getVerdictCache().getHits());
+        Assertions.assertEquals(1, processor.getVerdictCache().getMisses());
+
+        // an unreadable cache is started over
+        Files.write(file, new byte[] { 1, 2, 3 });
+        processor = new SaferAnnotationProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor), options, Valid.class);
+        Assertions.assertEquals(0, processor.getVerdictCache().getHits());
+        processor = new SaferAnnotationProcessor();
+        compile(Collections.emptySet(), Arrays.asList(processor), options, Valid.class);
+        Assertions.assertEquals(1, processor.getVerdictCache().getHits());
+    }
+
+    @Test
+    public void testVerdictCacheSupertypeArguments(@TempDir Path dir) throws IOException {
+        Path sources = dir.resolve("src");
+        Files.createDirectories(sources);
+        Files.write(sources.resolve("Numbers.java"),
+                Arrays.asList("class Numbers extends java.util.ArrayList<Integer> {}"));
+        Files.write(sources.resolve("Uses.java"), Arrays.asList("public class Uses {",
+                "    @io.smallrye.safer.annotations.test.SubtypeMethodAnnotation",
+                "    public void method(Exception e, String s, Numbers l) {}",
+                "}"));
+        List<String> options = Arrays.asList("-A" + SaferAnnotationProcessor.CACHE_OPTION + "=" + dir.resolve("cache"));
+        SaferAnnotationProcessor processor = new SaferAnnotationProcessor();
+        Assertions.assertEquals(Collections.emptyList(), compile(sources, dir.resolve("classes"), processor, options));
+        processor = new SaferAnnotationProcessor();
+        Assertions.assertEquals(Collections.emptyList(), compile(sources, dir.resolve("classes"), processor, options));
+        Assertions.assertEquals(2, processor.getVerdictCache().getHits());
+
+        // same erased hierarchy, but no longer a List<Integer>
+        Files.write(sources.resolve("Numbers.java"),
+                Arrays.asList("class Numbers extends java.util.ArrayList<String> {}"));
+        processor = new SaferAnnotationProcessor();
+        Assertions.assertEquals(Arrays.asList("Invalid parameter type: 'Numbers' must be one of: [subtype of "
+                + "java.lang.Exception, subtype of java.lang.CharSequence, subtype of java.util.List<java.lang.Integer>]"),
+                compile(sources, dir.resolve("classes"), processor, options));
+        // Numbers has no constrained method, only Uses is checked again
+        Assertions.assertEquals(1, processor.getVerdictCache().getHits());
+        Assertions.assertEquals(1, processor.getVerdictCache().getMisses());
+    }
+
+    /**
+     * Compiles the sources of the given directory, against the test classes and the class output.
+     *
+     * @return the error messages
+     */
+    private List<String> compile(Path sources, Path classOutput, Processor processor, List<String> options)
+            throws IOException {
+        return compile(sources, classOutput, processor, options, javax.tools.Diagnostic.Kind.ERROR);
+    }
+
+    /**
+     * Compiles the sources of the given directory, against the test classes and the class output.
+     *
+     * @return the messages of the given kind
+     */
+    private List<String> compile(Path sources, Path classOutput, Processor processor, List<String> options,
+            javax.tools.Diagnostic.Kind kind) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> errors = new ArrayList<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ENGLISH,
+                StandardCharsets.UTF_8);
+                Stream<Path> files = Files.list(sources)) {
+            Files.createDirectories(classOutput);
+            List<String> compilerOptions = new ArrayList<>(Arrays.asList("-d", classOutput.toString(), "-classpath",
+                    System.getProperty("java.class.path") + File.pathSeparator + classOutput));
+            compilerOptions.addAll(options);
+            CompilationTask task = compiler.getTask(null, fileManager, diagnostics, compilerOptions, null,
+                    fileManager.getJavaFileObjectsFromPaths(files.collect(Collectors.toList())));
+            task.setProcessors(Arrays.asList(processor));
+            task.call();
+        }
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == kind) {
+                errors.add(diagnostic.getMessage(Locale.ENGLISH));
+            }
+        }
+        return errors;
+    }
+
+    private Set<ExpectedError> compile(Set<ExpectedError> errors, Class<?>... classes) throws IOException {
+        return compile(errors, Arrays.asList(new SaferAnnotationProcessor()), classes);
+    }
+
+    private Set<ExpectedError> compile(Set<ExpectedError> errors, List<Processor> processors, Class<?>... classes)
+            throws IOException {
+        return compile(errors, processors, Collections.emptyList(), classes);
+    }
+
+    private Set<ExpectedError> compile(Set<ExpectedError> errors, List<Processor> processors, List<String> options,
+            Class<?>... classes)
+            throws IOException {
+        // Make sure we do not produce those compilation output in test-classes because we compile on 8 and 12 and don't want to
+        // run tests on a Java 8 runtime seeing classes produced by 12. Besides, we don't need to load those classes.
+        return compile(errors, processors, options, Paths.get("target/test-classes-output"), classes);
+    }
+
+    /**
+     * Compiles the given classes to the given output, checking that they produce the given errors, unless
+     * <code>null</code>.
+     *
+     * @return the errors produced
+     */
+    private Set<ExpectedError> compile(Set<ExpectedError> errors, List<Processor> processors, List<String> options,
+            Path classOutput, Class<?>... classes)
+            throws IOException {
         JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        Set<ExpectedError> receivedErrors = new HashSet<>();
+        // in reporting order
+        Set<ExpectedError> receivedErrors = new LinkedHashSet<>();
         DiagnosticListener<? super JavaFileObject> diagnosticListener = new DiagnosticListener<JavaFileObject>() {
             @Override
             public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
@@ -82,9 +841,7 @@ public class AnnotationTest {
                 }
             }
         };
-        // Make sure we do not produce those compilation output in test-classes because we compile on 8 and 12 and don't want to
-        // run tests on a Java 8 runtime seeing classes produced by 12. Besides, we don't need to load those classes.
-        File target = new File("target/test-classes-output");
+        File target = classOutput.toFile();
         target.mkdirs();
         StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnosticListener, Locale.ENGLISH,
                 StandardCharsets.UTF_8);
@@ -95,22 +852,29 @@ public class AnnotationTest {
         for (Class<?> klass : classes) {
             files.add(fileManager.getJavaFileForInput(StandardLocation.SOURCE_PATH, klass.getName(), Kind.SOURCE));
         }
-        CompilationTask task = compiler.getTask(null, fileManager, diagnosticListener,
-                Arrays.asList("-sourcepath", "src/test/java", "-d", target.getPath()),
-                null, files);
-        task.setProcessors(Arrays.asList(new SaferAnnotationProcessor()));
-        if (errors.isEmpty()) {
+        List<String> compilerOptions = new ArrayList<>(Arrays.asList("-sourcepath", "src/test/java", "-d", target.getPath()));
+        compilerOptions.addAll(options);
+        CompilationTask task = compiler.getTask(null, fileManager, diagnosticListener, compilerOptions, null, files);
+        task.setProcessors(processors);
+        if (errors == null) {
+            task.call();
+        } else if (errors.isEmpty()) {
             Assertions.assertTrue(task.call());
         } else {
             Assertions.assertFalse(task.call());
             Assertions.assertTrue(errors.equals(receivedErrors));
             Assertions.assertEquals(errors, receivedErrors);
         }
+        return receivedErrors;
     }
 
     @Test
     public void testInvalid() throws IOException {
-        compile(new HashSet<>(Arrays.asList(
+        compile(invalidErrors(), Invalid.class);
+    }
+
+    static Set<ExpectedError> invalidErrors() {
+        return new HashSet<>(Arrays.asList(
                 new ExpectedError(34, 16,
                         "Invalid return type: 'int' must be one of: [void, java.lang.String, java.util.List<java.lang.Integer>]"),
                 new ExpectedError(39, 38,
@@ -124,7 +888,21 @@ public class AnnotationTest {
                 new ExpectedError(25, 16, "Invalid setter return type: must be 'void'"),
                 new ExpectedError(30, 17, "Setter must have a single parameter"),
                 new ExpectedError(48, 17, "Invalid return type: 'void' must be one of: [java.lang.String]"),
-                new ExpectedError(48, 33, "Invalid parameter type: 'java.lang.Integer' must be one of: [java.lang.String]"))),
-                Invalid.class);
+                new ExpectedError(48, 33, "Invalid parameter type: 'java.lang.Integer' must be one of: [java.lang.String]"),
+                new ExpectedError(53, 38,
+                        "Invalid parameter type: 'java.util.List<java.lang.String>' must be one of: [java.lang.Integer, java.util.List<java.lang.Integer>, subtype of java.lang.Throwable]"),
+                new ExpectedError(53, 55,
+                        "Invalid parameter type: 'java.util.List<java.lang.String>' must be one of: [java.lang.Integer, java.util.List<java.lang.Integer>, subtype of java.lang.Throwable]"),
+                new ExpectedError(57, 31,
+                        "Invalid parameter type: 'java.lang.Error' must be one of: [subtype of java.lang.Exception, subtype of java.lang.CharSequence, subtype of java.util.List<java.lang.Integer>]"),
+                new ExpectedError(57, 41,
+                        "Invalid parameter type: 'java.lang.Object' must be one of: [subtype of java.lang.Exception, subtype of java.lang.CharSequence, subtype of java.util.List<java.lang.Integer>]"),
+                new ExpectedError(57, 72,
+                        "Invalid parameter type: 'java.util.ArrayList<java.lang.String>' must be one of: [subtype of java.lang.Exception, subtype of java.lang.CharSequence, subtype of java.util.List<java.lang.Integer>]"),
+                new ExpectedError(57, 84,
+                        "Invalid parameter type: 'java.lang.String[]' must be one of: [subtype of java.lang.Exception, subtype of java.lang.CharSequence, subtype of java.util.List<java.lang.Integer>]"),
+                new ExpectedError(64, 20,
+                        "Invalid return type: 'int' must be one of: [void, java.lang.String, java.util.List<java.lang.Integer>]"),
+                new ExpectedError(64, 20, "Invalid accessor name: nested must start with 'get', 'is' or 'set'")));
     }
 }
@@ -0,0 +1,159 @@
+package io.smallrye.safer.annotations.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.smallrye.safer.annotations.DefinitionOverride;
+
+/**
+ * Generates a synthetic code base, much larger than the test fixtures, to find out how the checks scale. It is made
+ * of:
+ * <ul>
+ * <li>a hierarchy of <code>Level{i}</code> classes, each extending the previous one, and allowed by every constraint as
+ * subtypes of <code>Level0</code>, so that checking the deepest one walks the whole hierarchy,</li>
+ * <li>a <code>Box&lt;T&gt;</code> nested into a deep generic type, allowed as is by every constraint,</li>
+ * <li>annotations constrained with {@link io.smallrye.safer.annotations.TargetMethod}, and annotations constrained
+ * by a {@link DefinitionOverride}, listed in a service file of the compilation output,</li>
+ * <li>classes whose methods use these annotations and types.</li>
+ * </ul>
+ * Every method is valid, so the compilation of a corpus must succeed.
+ */
+public class Corpus {
+
+    static final String PACKAGE = "corpus";
+
+    private int classes = 1000;
+    private int methodsPerClass = 10;
+    private int constrainedAnnotations = 50;
+    private int overrides = 50;
+    private int genericDepth = 5;
+    private int hierarchyDepth = 20;
+
+    public Corpus classes(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    public Corpus methodsPerClass(int methodsPerClass) {
+        this.methodsPerClass = methodsPerClass;
+        return this;
+    }
+
+    public Corpus constrainedAnnotations(int constrainedAnnotations) {
+        this.constrainedAnnotations = constrainedAnnotations;
+        return this;
+    }
+
+    public Corpus overrides(int overrides) {
+        this.overrides = overrides;
+        return this;
+    }
+
+    public Corpus genericDepth(int genericDepth) {
+        this.genericDepth = genericDepth;
+        return this;
+    }
+
+    public Corpus hierarchyDepth(int hierarchyDepth) {
+        this.hierarchyDepth = hierarchyDepth;
+        return this;
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    /**
+     * Writes the sources of the corpus to the given source directory, and its {@link DefinitionOverride} service file
+     * to the given compilation output directory, where the processor looks for the services of the compiled module.
+     *
+     * @return the source files
+     */
+    public List<File> generate(Path sourceDir, Path classOutput) throws IOException {
+        Path packageDir = sourceDir.resolve(PACKAGE);
+        Files.createDirectories(packageDir);
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i <= hierarchyDepth; i++) {
+            files.add(write(packageDir, "Level" + i, "public class Level" + i
+                    + (i > 0 ? " extends Level" + (i - 1) : "") + " {\n}\n"));
+        }
+        files.add(write(packageDir, "Box", "public class Box<T> {\n}\n"));
+        String deepType = deepType();
+        files.add(write(packageDir, "Wrappers", "import io.smallrye.safer.annotations.TargetMethod;\n"
+                + "class DeepType extends TargetMethod.GenericType<" + deepType + "> {\n}\n"
+                + "class LevelSubtype extends TargetMethod.Subtype<Level0> {\n}\n"
+                + "public class Wrappers {\n}\n"));
+
+        String allowedTypes = "@TargetMethod(returnTypes = { void.class, String.class, DeepType.class },"
+                + " parameterTypes = { Integer.class, LevelSubtype.class, DeepType.class })\n";
+        for (int a = 0; a < constrainedAnnotations; a++) {
+            files.add(write(packageDir, "Constrained" + a, "import io.smallrye.safer.annotations.TargetMethod;\n"
+                    + allowedTypes
+                    + "public @interface Constrained" + a + " {\n}\n"));
+        }
+        StringBuilder services = new StringBuilder();
+        for (int o = 0; o < overrides; o++) {
+            files.add(write(packageDir, "Overridden" + o, "public @interface Overridden" + o + " {\n}\n"));
+            files.add(write(packageDir, "Override" + o, "import io.smallrye.safer.annotations.DefinitionOverride;\n"
+                    + "import io.smallrye.safer.annotations.OverrideTarget;\n"
+                    + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                    + "@OverrideTarget(Overridden" + o + ".class)\n"
+                    + allowedTypes
+                    + "public class Override" + o + " implements DefinitionOverride {\n}\n"));
+            services.append(PACKAGE).append(".Override").append(o).append('\n');
+        }
+        if (overrides > 0) {
+            Path servicesFile = classOutput.resolve("META-INF/services/" + DefinitionOverride.class.getName());
+            Files.createDirectories(servicesFile.getParent());
+            Files.write(servicesFile, services.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        String[] returnTypes = { "void", "String", deepType };
+        String[] parameterTypes = { "Integer", "Level" + hierarchyDepth, deepType };
+        int annotations = constrainedAnnotations + overrides;
+        for (int i = 0; i < classes; i++) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("public class Service").append(i).append(" {\n");
+            for (int m = 0; m < methodsPerClass; m++) {
+                int n = i * methodsPerClass + m;
+                String returnType = returnTypes[n % returnTypes.length];
+                // every other method is constrained
+                if (m % 2 == 0 && annotations > 0) {
+                    int a = (n / 2) % annotations;
+                    sb.append("    @").append(a < constrainedAnnotations ? "Constrained" + a
+                            : "Overridden" + (a - constrainedAnnotations)).append('\n');
+                }
+                sb.append("    public ").append(returnType).append(" method").append(m).append("(")
+                        .append(parameterTypes[n % parameterTypes.length]).append(" p0, ")
+                        .append(parameterTypes[(n + 1) % parameterTypes.length]).append(" p1) {\n");
+                if (!returnType.equals("void")) {
+                    sb.append("        return null;\n");
+                }
+                sb.append("    }\n");
+            }
+            sb.append("}\n");
+            files.add(write(packageDir, "Service" + i, sb.toString()));
+        }
+        return files;
+    }
+
+    private String deepType() {
+        StringBuilder sb = new StringBuilder("String");
+        for (int i = 0; i < genericDepth; i++) {
+            sb.insert(0, "Box<").append('>');
+        }
+        return sb.toString();
+    }
+
+    private static File write(Path packageDir, String className, String source) throws IOException {
+        Path file = packageDir.resolve(className + ".java");
+        Files.write(file, ("package " + PACKAGE + ";\n" + source).getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}
@@ -0,0 +1,14 @@
+package io.smallrye.safer.annotations.test;
+
+import java.util.List;
+
+public class Described {
+    @DescribedMethodAnnotation
+    public String valid(List<Integer> l, RuntimeException x) {
+        return null;
+    }
+
+    @DescribedMethodAnnotation
+    public void invalid(List<String> l) {
+    }
+}
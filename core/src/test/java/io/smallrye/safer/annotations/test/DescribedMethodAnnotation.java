@@ -0,0 +1,10 @@
+package io.smallrye.safer.annotations.test;
+
+/**
+ * The constraints of this annotation only come from the descriptor in
+ * <code>src/test/resources/META-INF/safer-annotations/constraints</code>, as if it came from a library compiled with
+ * <code>-Asafer.descriptors=generate</code>.
+ */
+public @interface DescribedMethodAnnotation {
+
+}
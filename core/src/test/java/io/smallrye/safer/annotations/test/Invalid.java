@@ -47,4 +47,22 @@ public class Invalid {
     @OverriddenMethodAnnotation
     public void method4(Integer s) {
     }
+
+    // the same invalid type is reported every time, even when its verdict is remembered
+    @MethodAnnotation
+    public void method5(List<String> ls, List<String> ls2) {
+    }
+
+    @SubtypeMethodAnnotation
+    public void method6(Error e, Object o, java.util.ArrayList<String> l, String[] s) {
+    }
+
+    // nested types are checked too
+    public static class Nested {
+        @MethodAnnotation
+        @AccessorAnnotation
+        public int nested() {
+            return 1;
+        }
+    }
 }
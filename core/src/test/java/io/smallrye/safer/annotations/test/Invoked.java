@@ -0,0 +1,54 @@
+package io.smallrye.safer.annotations.test;
+
+import java.util.List;
+
+public class Invoked {
+    private int i;
+
+    @AccessorAnnotation
+    public int getI() {
+        return i;
+    }
+
+    @AccessorAnnotation
+    public void setI(int i) {
+        this.i = i;
+    }
+
+    @MethodAnnotation
+    public static String sum(Integer a, Integer b) {
+        return a + "+" + b;
+    }
+
+    @MethodAnnotation
+    String hidden(Integer a) {
+        return "hidden " + a;
+    }
+
+    @MethodAnnotation
+    private String secret(Integer a) {
+        return "secret " + a;
+    }
+
+    @MethodAnnotation
+    public String size(List<Integer> l) {
+        return String.valueOf(l.size());
+    }
+
+    @MethodAnnotation
+    public void fail(Throwable t) throws Throwable {
+        throw t;
+    }
+
+    @SubtypeMethodAnnotation
+    public <T extends CharSequence> void append(StringBuilder sb, T t) {
+        sb.append(t);
+    }
+
+    public static class Nested<T> {
+        @MethodAnnotation
+        public String name() {
+            return "nested";
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.smallrye.safer.annotations.test;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.List;
 
 import io.smallrye.safer.annotations.TargetMethod;
@@ -8,6 +10,7 @@ import io.smallrye.safer.annotations.TargetMethod.GenericType;
 class ListOfInteger extends GenericType<List<Integer>> {
 }
 
+@Retention(RetentionPolicy.RUNTIME)
 @TargetMethod(parameterTypes = { Integer.class, ListOfInteger.class, ThrowableSubType.class }, returnTypes = { void.class,
         String.class,
         ListOfInteger.class })
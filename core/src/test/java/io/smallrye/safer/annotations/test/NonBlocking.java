@@ -0,0 +1,29 @@
+package io.smallrye.safer.annotations.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class NonBlocking {
+    @NonBlockingAnnotation
+    public String handle(Future<String> future, CompletableFuture<String> completableFuture, Thread thread,
+            ExecutorService executor) throws Exception {
+        Thread.sleep(10);
+        thread.join();
+        new ByteArrayInputStream(new byte[0]).read();
+        executor.submit(() -> {
+            Thread.sleep(10);
+            return null;
+        });
+        await();
+        return future.get() + completableFuture.join();
+    }
+
+    public void blocking() throws InterruptedException {
+        Thread.sleep(10);
+    }
+
+    void await() {
+    }
+}
@@ -0,0 +1,12 @@
+package io.smallrye.safer.annotations.test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import io.smallrye.safer.annotations.TargetNonBlocking;
+
+@Retention(RetentionPolicy.RUNTIME)
+@TargetNonBlocking(blocking = "io.smallrye.safer.annotations.test.NonBlocking#await", allowed = "java.lang.Thread#join")
+public @interface NonBlockingAnnotation {
+
+}
@@ -1,7 +1,11 @@
 package io.smallrye.safer.annotations.test;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
 import io.smallrye.safer.annotations.TargetMethod;
 
+@Retention(RetentionPolicy.RUNTIME)
 @TargetMethod(parameterTypes = { Integer.class }, returnTypes = { void.class })
 public @interface OverriddenMethodAnnotation {
 
@@ -0,0 +1,98 @@
+package io.smallrye.safer.annotations.test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.safer.annotations.RuntimeValidator;
+
+public class RuntimeValidatorTest {
+
+    public static class Generic<E extends RuntimeException> {
+        @SubtypeMethodAnnotation
+        public void valid(E e, StringBuilder sb, IntegerList l) {
+        }
+
+        @SubtypeMethodAnnotation
+        public <T extends CharSequence> void bounded(T t) {
+        }
+
+        @SubtypeMethodAnnotation
+        public void invalid(List<? extends Integer> l) {
+        }
+    }
+
+    public static abstract class IntegerList extends AbstractList<Integer> {
+    }
+
+    @Test
+    public void testSameErrorsAsProcessor() {
+        RuntimeValidator validator = new RuntimeValidator();
+        List<String> messages = new ArrayList<>();
+        for (RuntimeValidator.Violation violation : validator.validate(Invalid.class)) {
+            Assertions.assertEquals(Invalid.class, violation.getMethod().getDeclaringClass());
+            messages.add(violation.getMessage());
+        }
+        for (RuntimeValidator.Violation violation : validator.validate(Invalid.Nested.class)) {
+            messages.add(violation.getMessage());
+        }
+        messages.sort(null);
+        Assertions.assertEquals(AnnotationTest.invalidErrors().stream().map(error -> error.message).sorted()
+                .collect(Collectors.toList()), messages);
+        Assertions.assertTrue(validator.isValid(Valid.class), () -> validator.validate(Valid.class).toString());
+    }
+
+    @Test
+    public void testGenerics() {
+        List<RuntimeValidator.Violation> violations = new RuntimeValidator().validate(Generic.class);
+        Assertions.assertEquals(Arrays.asList("Invalid parameter type: 'java.util.List<? extends java.lang.Integer>' must"
+                + " be one of: [subtype of java.lang.Exception, subtype of java.lang.CharSequence, subtype of"
+                + " java.util.List<java.lang.Integer>]"),
+                violations.stream().map(RuntimeValidator.Violation::getMessage).collect(Collectors.toList()));
+        Assertions.assertEquals("invalid", violations.get(0).getMethod().getName());
+    }
+
+    @Test
+    public void testAllocationFreeSignature() throws Exception {
+        // reflection only knows the parameter names when compiled with -parameters
+        String names = AllocationFreeSignature.class.getMethod("handle", Long.class, int.class, String[].class)
+                .getParameters()[2].getName();
+        Assertions.assertEquals(Arrays.asList(
+                "Invalid allocation: boxed return type 'java.lang.Integer', and"
+                        + " @io.smallrye.safer.annotations.test.AllocationFreeAnnotation methods must not allocate",
+                "Invalid allocation: boxed parameter type 'java.lang.Long', and"
+                        + " @io.smallrye.safer.annotations.test.AllocationFreeAnnotation methods must not allocate",
+                "Invalid allocation: varargs parameter '" + names + "', and"
+                        + " @io.smallrye.safer.annotations.test.AllocationFreeAnnotation methods must not allocate"),
+                new RuntimeValidator().validate(AllocationFreeSignature.class).stream()
+                        .map(RuntimeValidator.Violation::getMessage).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testConcurrentValidation() throws Exception {
+        RuntimeValidator validator = new RuntimeValidator();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<RuntimeValidator.Violation>>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> validator.validate(Invalid.class)));
+            }
+            // threads may race on the first validation, but they all see the one that won
+            List<RuntimeValidator.Violation> violations = validator.validate(Invalid.class);
+            for (Future<List<RuntimeValidator.Violation>> future : futures) {
+                Assertions.assertEquals(violations.size(), future.get().size());
+            }
+            Assertions.assertSame(violations, validator.validate(Invalid.class));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.smallrye.safer.annotations.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor;
+
+/**
+ * Compiles generated {@link Corpus corpora} of growing sizes with and without the processor, and fails if the time
+ * spent in the processor, relative to plain javac, goes past a budget, or grows faster than the corpus. Compilations
+ * with the processor are also slower because javac itself does more work as soon as annotation processing is enabled,
+ * with any processor: this is reported, but not held against the processor. It takes minutes, so it only runs with
+ * <code>-Dsafer.scaling=true</code>, and can be tuned
+ * with:
+ * <ul>
+ * <li><code>safer.scaling.sizes</code>: the numbers of classes of the corpora, <code>5000,10000,20000</code> by
+ * default,</li>
+ * <li><code>safer.scaling.budget</code>: the maximum time spent in the processor, as a fraction of the plain javac
+ * time, <code>0.25</code> by default,</li>
+ * <li><code>safer.scaling.linearity</code>: how much larger the processor time per class of the largest corpus may be
+ * than that of the smallest one, <code>2</code> by default,</li>
+ * <li><code>safer.scaling.runs</code>: how many times each corpus is compiled, keeping the fastest run, <code>3</code>
+ * by default.</li>
+ * </ul>
+ */
+@EnabledIfSystemProperty(named = "safer.scaling", matches = "true")
+public class ScalingTest {
+
+    // processor times per class smaller than this are noise
+    private static final double NOISE_NANOS_PER_CLASS = 20_000;
+
+    /**
+     * Times the calls to the processor, which is all the time it spends outside of javac.
+     */
+    static class TimedProcessor implements Processor {
+
+        private final Processor delegate = new SaferAnnotationProcessor();
+        long nanos;
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        @Override
+        public void init(ProcessingEnvironment processingEnv) {
+            long start = System.nanoTime();
+            delegate.init(processingEnv);
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            long start = System.nanoTime();
+            boolean claimed = delegate.process(annotations, roundEnv);
+            nanos += System.nanoTime() - start;
+            return claimed;
+        }
+
+        @Override
+        public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation,
+                ExecutableElement member, String userText) {
+            return delegate.getCompletions(element, annotation, member, userText);
+        }
+    }
+
+    @Test
+    public void testScaling(@TempDir Path dir) throws IOException {
+        String[] sizes = System.getProperty("safer.scaling.sizes", "5000,10000,20000").split(",");
+        double budget = Double.parseDouble(System.getProperty("safer.scaling.budget", "0.25"));
+        double linearity = Double.parseDouble(System.getProperty("safer.scaling.linearity", "2"));
+        int runs = Integer.parseInt(System.getProperty("safer.scaling.runs", "3"));
+
+        // warm up javac and the processor
+        measure(dir.resolve("warmup"), new Corpus().classes(500), 1);
+
+        double[] processorPerClass = new double[sizes.length];
+        StringBuilder report = new StringBuilder("Processor time:");
+        for (int i = 0; i < sizes.length; i++) {
+            Corpus corpus = new Corpus().classes(Integer.parseInt(sizes[i].trim()));
+            long[] times = measure(dir.resolve("corpus" + i), corpus, runs);
+            long javac = times[0];
+            long overhead = Math.max(0, times[1] - javac);
+            long processor = times[2];
+            processorPerClass[i] = (double) processor / corpus.getClasses();
+            report.append(String.format(Locale.ROOT,
+                    "\n  %d classes: javac %d ms, in the processor %d ms (%.1f%%), with the processor +%d ms",
+                    corpus.getClasses(), javac / 1_000_000, processor / 1_000_000, 100.0 * processor / javac,
+                    overhead / 1_000_000));
+            Assertions.assertTrue(processor <= budget * javac,
+                    "Processor time over budget for " + corpus.getClasses() + " classes\n" + report);
+        }
+        System.err.println(report);
+        double allowedPerClass = linearity * Math.max(processorPerClass[0], NOISE_NANOS_PER_CLASS);
+        Assertions.assertTrue(processorPerClass[sizes.length - 1] <= allowedPerClass,
+                "Processor time grows faster than the corpus\n" + report);
+    }
+
+    /**
+     * @return the fastest compilation times of the given corpus, without and with the processor, and the fastest time
+     *         spent in the processor, in nanoseconds
+     */
+    private long[] measure(Path dir, Corpus corpus, int runs) throws IOException {
+        Path sourceDir = dir.resolve("src");
+        Path classOutput = dir.resolve("classes");
+        List<File> sources = corpus.generate(sourceDir, classOutput);
+        long javac = Long.MAX_VALUE;
+        long withProcessor = Long.MAX_VALUE;
+        long inProcessor = Long.MAX_VALUE;
+        // alternate, so that both suffer from the same noise
+        for (int run = 0; run < runs; run++) {
+            javac = Math.min(javac, compile(sources, classOutput, Collections.emptyList()));
+            TimedProcessor processor = new TimedProcessor();
+            withProcessor = Math.min(withProcessor, compile(sources, classOutput, Arrays.asList(processor)));
+            inProcessor = Math.min(inProcessor, processor.nanos);
+        }
+        return new long[] { javac, withProcessor, inProcessor };
+    }
+
+    private long compile(List<File> sources, Path classOutput, List<Processor> processors) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ENGLISH,
+                StandardCharsets.UTF_8)) {
+            List<String> options = new ArrayList<>(Arrays.asList("-d", classOutput.toString(), "-classpath",
+                    System.getProperty("java.class.path")));
+            if (processors.isEmpty()) {
+                options.add("-proc:none");
+            }
+            Files.createDirectories(classOutput);
+            CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(processors);
+            // do not charge this compilation for the garbage of the previous one
+            System.gc();
+            long start = System.nanoTime();
+            boolean success = task.call();
+            long time = System.nanoTime() - start;
+            if (!success) {
+                StringBuilder sb = new StringBuilder("Compilation failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    sb.append('\n').append(diagnostic);
+                }
+                Assertions.fail(sb.toString());
+            }
+            return time;
+        }
+    }
+}
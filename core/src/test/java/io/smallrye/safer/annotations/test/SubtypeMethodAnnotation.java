@@ -0,0 +1,24 @@
+package io.smallrye.safer.annotations.test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+
+import io.smallrye.safer.annotations.TargetMethod;
+import io.smallrye.safer.annotations.TargetMethod.Subtype;
+
+class ExceptionSubType extends Subtype<Exception> {
+}
+
+class CharSequenceSubType extends Subtype<CharSequence> {
+}
+
+class ListOfIntegerSubType extends Subtype<List<Integer>> {
+}
+
+@Retention(RetentionPolicy.RUNTIME)
+@TargetMethod(parameterTypes = { ExceptionSubType.class, CharSequenceSubType.class,
+        ListOfIntegerSubType.class }, returnTypes = void.class)
+public @interface SubtypeMethodAnnotation {
+
+}
@@ -1,5 +1,7 @@
 package io.smallrye.safer.annotations.test;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Valid {
@@ -30,4 +32,14 @@ public class Valid {
     public String method4(String s) {
         return null;
     }
+
+    @SubtypeMethodAnnotation
+    public void method5(IOException e, StringBuilder sb, ArrayList<Integer> l, String s) {
+    }
+
+    @AccessorAnnotation
+    @MethodAnnotation
+    public String getName() {
+        return null;
+    }
 }
@@ -0,0 +1,35 @@
+package io.smallrye.safer.annotations.test;
+
+import java.util.concurrent.CompletableFuture;
+
+public class VirtualThread {
+    private final Object lock = new Object();
+
+    @VirtualThreadAnnotation
+    public synchronized void handle(Runnable task) throws InterruptedException {
+        synchronized (lock) {
+            task.run();
+        }
+        lock.wait();
+        counted();
+        nativeCall();
+        Integer.toHexString(System.identityHashCode(lock));
+        helper();
+        CompletableFuture.runAsync(() -> {
+            synchronized (lock) {
+                task.run();
+            }
+        });
+    }
+
+    private void helper() {
+        synchronized (lock) {
+            counted();
+        }
+    }
+
+    synchronized void counted() {
+    }
+
+    native void nativeCall();
+}
@@ -0,0 +1,12 @@
+package io.smallrye.safer.annotations.test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import io.smallrye.safer.annotations.TargetVirtualThread;
+
+@Retention(RetentionPolicy.RUNTIME)
+@TargetVirtualThread
+public @interface VirtualThreadAnnotation {
+
+}
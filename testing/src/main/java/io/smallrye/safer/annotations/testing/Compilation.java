@@ -0,0 +1,150 @@
+package io.smallrye.safer.annotations.testing;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * The outcome of a {@link SaferCompiler} compilation: its diagnostics, the output resources written by the
+ * processors, and the processors themselves, to look at what they did. When many test cases are compiled together,
+ * the diagnostics of each case can be told apart by the class name of its source.
+ */
+public final class Compilation {
+
+    private final boolean success;
+    private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+    private final List<Processor> processors;
+    // CLASS_OUTPUT relative name -> content
+    private final Map<String, byte[]> resources;
+
+    Compilation(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics, List<Processor> processors,
+            Map<String, byte[]> resources) {
+        this.success = success;
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.processors = Collections.unmodifiableList(processors);
+        this.resources = resources;
+    }
+
+    /**
+     * @return true if the compilation reported no error
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return every diagnostic, in reporting order
+     */
+    public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return the errors and warnings reported for the given class, in reporting order
+     */
+    public List<ExpectedDiagnostic> getDiagnostics(String className) {
+        URI uri = Source.uri(className);
+        List<ExpectedDiagnostic> found = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getSource() != null && diagnostic.getSource().toUri().equals(uri)
+                    && (diagnostic.getKind() == Kind.ERROR || diagnostic.getKind() == Kind.WARNING
+                            || diagnostic.getKind() == Kind.MANDATORY_WARNING)) {
+                found.add(ExpectedDiagnostic.of(diagnostic));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the errors reported for any source, in reporting order
+     */
+    public List<ExpectedDiagnostic> getErrors() {
+        List<ExpectedDiagnostic> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Kind.ERROR) {
+                errors.add(ExpectedDiagnostic.of(diagnostic));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @return the processors which ran in this compilation
+     */
+    public List<Processor> getProcessors() {
+        return processors;
+    }
+
+    /**
+     * @return the given resource of the compilation output, or <code>null</code> if it was not written
+     */
+    public String getResource(String relativeName) {
+        byte[] content = resources.get(relativeName);
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Fails unless the compilation reported no error.
+     */
+    public Compilation assertSuccess() {
+        if (!success) {
+            throw new AssertionError("Compilation failed:" + describe(getErrors()));
+        }
+        return this;
+    }
+
+    /**
+     * Fails unless the compilation reported exactly the given errors, in any order.
+     */
+    public Compilation assertErrors(ExpectedDiagnostic... expected) {
+        assertSame(expected, getErrors(), "");
+        return this;
+    }
+
+    /**
+     * Fails unless the compilation reported exactly the given errors for the given class, in any order.
+     */
+    public Compilation assertErrors(String className, ExpectedDiagnostic... expected) {
+        List<ExpectedDiagnostic> errors = new ArrayList<>();
+        for (ExpectedDiagnostic diagnostic : getDiagnostics(className)) {
+            if (diagnostic.getKind() == Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+        }
+        assertSame(expected, errors, " for " + className);
+        return this;
+    }
+
+    private static void assertSame(ExpectedDiagnostic[] expected, List<ExpectedDiagnostic> actual, String what) {
+        Set<ExpectedDiagnostic> expectedSet = new LinkedHashSet<>(Arrays.asList(expected));
+        Set<ExpectedDiagnostic> actualSet = new LinkedHashSet<>(actual);
+        if (expectedSet.equals(actualSet)) {
+            return;
+        }
+        Set<ExpectedDiagnostic> missing = new LinkedHashSet<>(expectedSet);
+        missing.removeAll(actualSet);
+        Set<ExpectedDiagnostic> unexpected = new LinkedHashSet<>(actualSet);
+        unexpected.removeAll(expectedSet);
+        throw new AssertionError("Unexpected errors" + what + "\nMissing:" + describe(missing) + "\nUnexpected:"
+                + describe(unexpected));
+    }
+
+    private static String describe(Iterable<ExpectedDiagnostic> diagnostics) {
+        StringBuilder sb = new StringBuilder();
+        for (ExpectedDiagnostic diagnostic : diagnostics) {
+            sb.append("\n  ").append(diagnostic);
+        }
+        return sb.toString();
+    }
+}
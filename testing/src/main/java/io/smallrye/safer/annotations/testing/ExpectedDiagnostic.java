@@ -0,0 +1,78 @@
+package io.smallrye.safer.annotations.testing;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import javax.tools.Diagnostic;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+/**
+ * A diagnostic we expect from a compilation, at a given position of a source, as javac reports it: lines and columns
+ * start at 1, and messages are in English.
+ */
+public final class ExpectedDiagnostic {
+
+    private final Kind kind;
+    private final long line;
+    private final long column;
+    private final String message;
+
+    public ExpectedDiagnostic(Kind kind, long line, long column, String message) {
+        this.kind = kind;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    public static ExpectedDiagnostic error(long line, long column, String message) {
+        return new ExpectedDiagnostic(Kind.ERROR, line, column, message);
+    }
+
+    public static ExpectedDiagnostic warning(long line, long column, String message) {
+        return new ExpectedDiagnostic(Kind.WARNING, line, column, message);
+    }
+
+    static ExpectedDiagnostic of(Diagnostic<? extends JavaFileObject> diagnostic) {
+        return new ExpectedDiagnostic(diagnostic.getKind(), diagnostic.getLineNumber(), diagnostic.getColumnNumber(),
+                diagnostic.getMessage(Locale.ENGLISH));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getColumn() {
+        return column;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, line, column, message);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ExpectedDiagnostic)) {
+            return false;
+        }
+        ExpectedDiagnostic o = (ExpectedDiagnostic) obj;
+        return kind == o.kind
+                && line == o.line
+                && column == o.column
+                && Objects.equals(message, o.message);
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase(Locale.ROOT) + " [" + line + ":" + column + "] " + message;
+    }
+}
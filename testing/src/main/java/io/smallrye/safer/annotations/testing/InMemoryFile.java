@@ -0,0 +1,58 @@
+package io.smallrye.safer.annotations.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * A file of the compilation output, held in memory. It does not exist until it is written.
+ */
+final class InMemoryFile extends SimpleJavaFileObject {
+
+    private byte[] content;
+
+    InMemoryFile(URI uri, Kind kind) {
+        super(uri, kind);
+    }
+
+    byte[] getContent() {
+        return content;
+    }
+
+    void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    @Override
+    public InputStream openInputStream() throws IOException {
+        if (content == null) {
+            throw new FileNotFoundException(toUri().toString());
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+        if (content == null) {
+            throw new FileNotFoundException(toUri().toString());
+        }
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                content = toByteArray();
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package io.smallrye.safer.annotations.testing;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Keeps the compilation output in memory, and reads everything else, such as the class path, through a standard file
+ * manager, which can be reused by many compilations since it caches the contents of the class path.
+ * <p>
+ * The annotation processor path is empty: only the processors given to the compilation task run, and the services
+ * found on the class path, such as other processors or javac plugins, are ignored.
+ */
+public class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    // location/relative name -> file
+    private final Map<String, InMemoryFile> files = new HashMap<>();
+    private final ClassLoader processorClassLoader;
+
+    public InMemoryFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+        try {
+            fileManager.setLocation(StandardLocation.ANNOTATION_PROCESSOR_PATH, Collections.emptyList());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        // the parent of the system class loader only sees the JDK
+        processorClassLoader = new URLClassLoader(new URL[0], ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    /**
+     * Forgets the output of previous compilations.
+     */
+    public void clear() {
+        files.clear();
+    }
+
+    /**
+     * @return the content of the given output file, or <code>null</code> if it was not written
+     */
+    public byte[] getOutput(Location location, String relativeName) {
+        InMemoryFile file = files.get(key(location, relativeName));
+        return file != null ? file.getContent() : null;
+    }
+
+    /**
+     * @return the contents of the files written to the given output location, by relative name
+     */
+    public Map<String, byte[]> getOutputs(Location location) {
+        String prefix = key(location, "");
+        Map<String, byte[]> outputs = new HashMap<>();
+        for (Map.Entry<String, InMemoryFile> file : files.entrySet()) {
+            if (file.getKey().startsWith(prefix) && file.getValue().getContent() != null) {
+                outputs.put(file.getKey().substring(prefix.length()), file.getValue().getContent());
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Writes a file to the output before compiling, as a previous compilation of the same module would have.
+     */
+    public void putOutput(Location location, String relativeName, byte[] content) {
+        getFile(location, relativeName, Kind.OTHER).setContent(content);
+    }
+
+    private static String key(Location location, String relativeName) {
+        return location.getName() + "/" + relativeName;
+    }
+
+    private InMemoryFile getFile(Location location, String relativeName, Kind kind) {
+        String key = key(location, relativeName);
+        InMemoryFile file = files.get(key);
+        if (file == null) {
+            file = new InMemoryFile(URI.create("mem:///" + key), kind);
+            files.put(key, file);
+        }
+        return file;
+    }
+
+    private static String relativeName(String packageName, String relativeName) {
+        return packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+    }
+
+    @Override
+    public ClassLoader getClassLoader(Location location) {
+        if (location == StandardLocation.ANNOTATION_PROCESSOR_PATH) {
+            return processorClassLoader;
+        }
+        return super.getClassLoader(location);
+    }
+
+    @Override
+    public boolean hasLocation(Location location) {
+        return location.isOutputLocation() || super.hasLocation(location);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, Kind kind, FileObject sibling) {
+        return getFile(location, className.replace('.', '/') + kind.extension, kind);
+    }
+
+    @Override
+    public FileObject getFileForOutput(Location location, String packageName, String relativeName,
+            FileObject sibling) {
+        return getFile(location, relativeName(packageName, relativeName), Kind.OTHER);
+    }
+
+    @Override
+    public FileObject getFileForInput(Location location, String packageName, String relativeName)
+            throws IOException {
+        if (location.isOutputLocation()) {
+            InMemoryFile file = files.get(key(location, relativeName(packageName, relativeName)));
+            return file != null && file.getContent() != null ? file : null;
+        }
+        return super.getFileForInput(location, packageName, relativeName);
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof InMemoryFile || file instanceof Source) {
+            String path = file.toUri().getPath();
+            // strip the location and the extension
+            String name = path.substring(path.indexOf('/', 1) + 1, path.lastIndexOf('.'));
+            return name.replace('/', '.');
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if (a instanceof InMemoryFile || b instanceof InMemoryFile || a instanceof Source || b instanceof Source) {
+            return a.toUri().equals(b.toUri());
+        }
+        return super.isSameFile(a, b);
+    }
+}
@@ -0,0 +1,119 @@
+package io.smallrye.safer.annotations.testing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.annotation.processing.Processor;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor;
+
+/**
+ * Compiles sources held in memory with the {@link SaferAnnotationProcessor}, against the class path of the current
+ * JVM, without touching the disk. Create one per test class and reuse it for every test case: the compiler and the
+ * contents of the class path are only looked up once. Close it once done, to close the jars of the class path it keeps
+ * open. Compiling many test cases in one go is faster still, and
+ * {@link Compilation#assertErrors(String, ExpectedDiagnostic...)} tells their errors apart:
+ *
+ * <pre>
+ * try (SaferCompiler compiler = new SaferCompiler()) {
+ *     compiler.compile(Source.of("test.Valid", "package test; ..."), Source.of("test.Invalid", "package test; ..."))
+ *             .assertErrors("test.Valid")
+ *             .assertErrors("test.Invalid", ExpectedDiagnostic.error(5, 17, "Invalid return type: ..."));
+ * }
+ * </pre>
+ *
+ * Compilations go as far as generating classes, in memory, since the constraints on method bodies are only checked
+ * once javac has analysed them, after annotation processing. Compilers are not thread-safe.
+ */
+public class SaferCompiler implements AutoCloseable {
+
+    private final JavaCompiler compiler;
+    private final InMemoryFileManager fileManager;
+    private final List<String> options = new ArrayList<>();
+    // CLASS_OUTPUT relative name -> content
+    private final Map<String, byte[]> resources = new HashMap<>();
+    private Supplier<List<Processor>> processors = () -> Collections
+            .<Processor> singletonList(new SaferAnnotationProcessor());
+
+    public SaferCompiler() {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler: run the tests with a JDK");
+        }
+        fileManager = new InMemoryFileManager(compiler.getStandardFileManager(null, Locale.ENGLISH,
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds javac options, such as processor options: <code>-Asafer.discovery=index</code>.
+     */
+    public SaferCompiler options(String... options) {
+        this.options.addAll(Arrays.asList(options));
+        return this;
+    }
+
+    /**
+     * Sets the processors of each compilation, since processors cannot be reused.
+     */
+    public SaferCompiler processors(Supplier<List<Processor>> processors) {
+        this.processors = processors;
+        return this;
+    }
+
+    /**
+     * Writes a resource to the output of every compilation, before it starts, as a previous compilation of the same
+     * module would have, for example the {@link io.smallrye.safer.annotations.DefinitionOverride} services of the
+     * module.
+     */
+    public SaferCompiler resource(String relativeName, String content) {
+        resources.put(relativeName, content.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    public Compilation compile(JavaFileObject... sources) {
+        return compile(Arrays.asList(sources));
+    }
+
+    /**
+     * Compiles the given sources in a single compilation task.
+     */
+    public Compilation compile(List<? extends JavaFileObject> sources) {
+        fileManager.clear();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            fileManager.putOutput(StandardLocation.CLASS_OUTPUT, resource.getKey(), resource.getValue());
+        }
+        List<Processor> compilationProcessors = processors.get();
+        CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, sources);
+        task.setProcessors(compilationProcessors);
+        boolean success = task.call();
+        return new Compilation(success, diagnostics.getDiagnostics(), compilationProcessors,
+                fileManager.getOutputs(StandardLocation.CLASS_OUTPUT));
+    }
+
+    /**
+     * Closes the file manager of the compilations, along with the jars of the class path it opened.
+     */
+    @Override
+    public void close() {
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.smallrye.safer.annotations.testing;
+
+import java.net.URI;
+
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * A compilation unit held in memory.
+ */
+public final class Source extends SimpleJavaFileObject {
+
+    private final String className;
+    private final String code;
+
+    private Source(String className, String code) {
+        super(uri(className), Kind.SOURCE);
+        this.className = className;
+        this.code = code;
+    }
+
+    /**
+     * @param className the qualified name of the top-level class of the compilation unit
+     * @param code the code of the compilation unit, including its package declaration
+     */
+    public static Source of(String className, String code) {
+        return new Source(className, code);
+    }
+
+    static URI uri(String className) {
+        return URI.create("mem:///SOURCE_PATH/" + className.replace('.', '/') + Kind.SOURCE.extension);
+    }
+
+    /**
+     * @return the qualified name of the top-level class of the compilation unit
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return code;
+    }
+}
@@ -0,0 +1,117 @@
+package io.smallrye.safer.annotations.testing;
+
+import static io.smallrye.safer.annotations.testing.ExpectedDiagnostic.error;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import io.smallrye.safer.annotations.SaferAnnotationProcessor;
+
+public class SaferCompilerTest {
+
+    private static final Source HANDLER = Source.of("test.Handler", "package test;\n"
+            + "import io.smallrye.safer.annotations.TargetMethod;\n"
+            + "@TargetMethod(returnTypes = String.class, parameterTypes = Integer.class)\n"
+            + "public @interface Handler {\n"
+            + "}\n");
+
+    private static final Source VALID = Source.of("test.Valid", "package test;\n"
+            + "public class Valid {\n"
+            + "    @Handler\n"
+            + "    public String handle(Integer i) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final Source INVALID = Source.of("test.Invalid", "package test;\n"
+            + "public class Invalid {\n"
+            + "    @Handler\n"
+            + "    public void handle(Long l) {\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final ExpectedDiagnostic[] INVALID_ERRORS = {
+            error(4, 17, "Invalid return type: 'void' must be one of: [java.lang.String]"),
+            error(4, 29, "Invalid parameter type: 'java.lang.Long' must be one of: [java.lang.Integer]")
+    };
+
+    @Test
+    public void testBatch() {
+        try (SaferCompiler compiler = new SaferCompiler()) {
+            Compilation compilation = compiler.compile(HANDLER, VALID, INVALID)
+                    .assertErrors("test.Valid")
+                    .assertErrors("test.Invalid", INVALID_ERRORS)
+                    .assertErrors(INVALID_ERRORS);
+            Assertions.assertFalse(compilation.isSuccess());
+            Assertions.assertThrows(AssertionError.class, () -> compilation.assertErrors("test.Valid", INVALID_ERRORS));
+            Assertions.assertThrows(AssertionError.class, compilation::assertSuccess);
+        }
+    }
+
+    @Test
+    public void testReused() {
+        try (SaferCompiler compiler = new SaferCompiler()
+                .options("-A" + SaferAnnotationProcessor.DISCOVERY_OPTION + "=index")) {
+            compiler.compile(HANDLER, INVALID).assertErrors(INVALID_ERRORS);
+            Compilation compilation = compiler.compile(HANDLER, VALID).assertSuccess();
+            // what the annotation processor wrote in memory
+            Assertions.assertEquals("test.Handler\n",
+                    compilation.getResource(SaferAnnotationProcessor.CONSTRAINED_ANNOTATIONS_INDEX));
+            Assertions.assertEquals(1, compilation.getProcessors().size());
+        }
+    }
+
+    @Test
+    public void testOutputResources() {
+        Source plain = Source.of("test.Plain", "package test;\n"
+                + "public @interface Plain {\n"
+                + "}\n");
+        Source override = Source.of("test.PlainOverride", "package test;\n"
+                + "import io.smallrye.safer.annotations.DefinitionOverride;\n"
+                + "import io.smallrye.safer.annotations.OverrideTarget;\n"
+                + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                + "@OverrideTarget(Plain.class)\n"
+                + "@TargetMethod(returnTypes = String.class)\n"
+                + "public class PlainOverride implements DefinitionOverride {\n"
+                + "}\n");
+        Source user = Source.of("test.User", "package test;\n"
+                + "public class User {\n"
+                + "    @Plain\n"
+                + "    public void method() {\n"
+                + "    }\n"
+                + "}\n");
+        try (SaferCompiler compiler = new SaferCompiler()) {
+            compiler.resource("META-INF/services/io.smallrye.safer.annotations.DefinitionOverride", "test.PlainOverride\n")
+                    .compile(plain, override, user)
+                    .assertErrors("test.User",
+                            error(4, 17, "Invalid return type: 'void' must be one of: [java.lang.String]"));
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testBodies() {
+        Source nonBlocking = Source.of("test.NonBlocking", "package test;\n"
+                + "import io.smallrye.safer.annotations.TargetNonBlocking;\n"
+                + "@TargetNonBlocking\n"
+                + "public @interface NonBlocking {\n"
+                + "}\n");
+        Source sleeping = Source.of("test.Sleeping", "package test;\n"
+                + "public class Sleeping {\n"
+                + "    @NonBlocking\n"
+                + "    public void method() throws InterruptedException {\n"
+                + "        Thread.sleep(1);\n"
+                + "    }\n"
+                + "}\n");
+        try (SaferCompiler compiler = new SaferCompiler()) {
+            // bodies are checked once javac analysed them, past annotation processing
+            compiler.compile(nonBlocking, sleeping)
+                    .assertErrors("test.Sleeping", error(5, 21, "Invalid blocking call: 'java.lang.Thread.sleep(long)' "
+                            + "matches 'java.lang.Thread#sleep', and @test.NonBlocking methods must not block"));
+            Compilation compilation = compiler.compile(HANDLER, VALID).assertSuccess();
+            Assertions.assertNotNull(compilation.getResource("test/Valid.class"));
+        }
+    }
+}
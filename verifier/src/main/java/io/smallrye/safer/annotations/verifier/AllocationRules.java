@@ -0,0 +1,57 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.smallrye.safer.annotations.verifier.Type.ClassType;
+
+/**
+ * The signature rules of the <code>TargetAllocationFree</code> constraint, with the same messages as the processor: a
+ * boxed return type, and boxed or varargs parameters, unless allowed with <code>AllowAllocation</code>.
+ */
+final class AllocationRules {
+
+    // the types primitive values are boxed to
+    private static final Set<String> BOXED_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "java/lang/Boolean",
+            "java/lang/Byte",
+            "java/lang/Character",
+            "java/lang/Short",
+            "java/lang/Integer",
+            "java/lang/Long",
+            "java/lang/Float",
+            "java/lang/Double")));
+
+    private AllocationRules() {
+    }
+
+    /**
+     * @return whether the given type is the type a primitive value is boxed to
+     */
+    static boolean isBoxed(Type type) {
+        return type instanceof ClassType && BOXED_TYPES.contains(((ClassType) type).name);
+    }
+
+    static String boxedReturnType(String type) {
+        return "boxed return type '" + type + "'";
+    }
+
+    static String boxedParameterType(String type) {
+        return "boxed parameter type '" + type + "'";
+    }
+
+    static String varargsParameter(String name) {
+        return "varargs parameter '" + name + "'";
+    }
+
+    /**
+     * @param allocation what allocates
+     * @param annotation the source name of the annotation with the <code>TargetAllocationFree</code> constraint
+     * @return the error message
+     */
+    static String message(String allocation, String annotation) {
+        return "Invalid allocation: " + allocation + ", and @" + annotation + " methods must not allocate";
+    }
+}
@@ -0,0 +1,47 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A jar or a directory of class files and resources.
+ */
+abstract class Archive {
+
+    private final Path path;
+
+    Archive(Path path) {
+        this.path = path;
+    }
+
+    static Archive open(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return new DirectoryArchive(path);
+        }
+        return new JarArchive(path);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the names of every file of this archive, in the order they are stored
+     */
+    abstract List<String> getEntries();
+
+    abstract boolean contains(String name);
+
+    /**
+     * @return the contents of the given file, positioned at its start, or <code>null</code> if there is no such file
+     */
+    abstract ByteBuffer read(String name) throws IOException;
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,497 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a class file we need to check it, and to look up the hierarchy of the types it uses, parsed straight
+ * from its bytes, as specified in JVMS 4. Everything else, such as fields and bytecode, is skipped.
+ */
+final class ClassFile {
+
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_BRIDGE = 0x0040;
+    static final int ACC_VARARGS = 0x0080;
+    static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * An annotation, with its class values, and arrays of class values. Other values are left out.
+     */
+    static final class Annotation {
+        // internal name of the annotation type
+        final String type;
+        // element name -> descriptor, or list of descriptors
+        final Map<String, Object> values;
+
+        Annotation(String type, Map<String, Object> values) {
+            this.type = type;
+            this.values = values;
+        }
+    }
+
+    static final class Method {
+        final int access;
+        final String name;
+        final String descriptor;
+        // null if not generic
+        final String signature;
+        final List<Annotation> annotations;
+        // the annotations of each parameter, empty if none has any
+        final List<List<Annotation>> parameterAnnotations;
+        // from the MethodParameters attribute, null if not compiled with -parameters
+        final List<String> parameterNames;
+        // the first line of its body, or -1 if unknown
+        final int line;
+
+        Method(int access, String name, String descriptor, String signature, List<Annotation> annotations,
+                List<List<Annotation>> parameterAnnotations, List<String> parameterNames, int line) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.signature = signature;
+            this.annotations = annotations;
+            this.parameterAnnotations = parameterAnnotations;
+            this.parameterNames = parameterNames;
+            this.line = line;
+        }
+
+        /**
+         * @return the annotations of the given parameter
+         */
+        List<Annotation> getParameterAnnotations(int parameter) {
+            return parameter < parameterAnnotations.size() ? parameterAnnotations.get(parameter)
+                    : Collections.<Annotation> emptyList();
+        }
+
+        /**
+         * @return the name of the given parameter, or <code>argN</code> like reflection if it was not recorded
+         */
+        String getParameterName(int parameter) {
+            String name = parameterNames != null && parameter < parameterNames.size() ? parameterNames.get(parameter)
+                    : null;
+            return name != null ? name : "arg" + parameter;
+        }
+    }
+
+    final int access;
+    final String name;
+    // null for java.lang.Object and module-info
+    final String superName;
+    final List<String> interfaces;
+    // null if not generic
+    final String signature;
+    // null if not recorded
+    final String sourceFile;
+    // the enclosing class and simple name of member classes, from their InnerClasses entry, or null
+    final String outerName;
+    final String simpleName;
+    // whether this is a local or anonymous class
+    final boolean local;
+    final List<Annotation> annotations;
+    final List<Method> methods;
+
+    private ClassFile(int access, String name, String superName, List<String> interfaces, String signature,
+            String sourceFile, String outerName, String simpleName, boolean local, List<Annotation> annotations,
+            List<Method> methods) {
+        this.access = access;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.signature = signature;
+        this.sourceFile = sourceFile;
+        this.outerName = outerName;
+        this.simpleName = simpleName;
+        this.local = local;
+        this.annotations = annotations;
+        this.methods = methods;
+    }
+
+    /**
+     * @return the source file path, relative to the source root, as javac reports it
+     */
+    String getSourcePath() {
+        String file = sourceFile;
+        if (file == null) {
+            // the top-level class name is our best guess
+            String topLevel = name.substring(name.lastIndexOf('/') + 1);
+            int dollar = topLevel.indexOf('$');
+            file = (dollar > 0 ? topLevel.substring(0, dollar) : topLevel) + ".java";
+        }
+        int slash = name.lastIndexOf('/');
+        return slash == -1 ? file : name.substring(0, slash + 1) + file;
+    }
+
+    /**
+     * Parses the given class file, from its position to its limit, without changing its position.
+     *
+     * @throws IllegalArgumentException if it is not a valid class file
+     */
+    static ClassFile parse(ByteBuffer bytes) {
+        try {
+            return new Parser(bytes.slice()).parse();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated class file", e);
+        }
+    }
+
+    private static final class Parser {
+        private final ByteBuffer bytes;
+        private int position;
+        // constant pool entry offsets, and the strings we decoded
+        private int[] offsets;
+        private String[] strings;
+
+        Parser(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        ClassFile parse() {
+            if (u4() != MAGIC) {
+                throw new IllegalArgumentException("Not a class file");
+            }
+            // minor and major versions
+            position += 4;
+            readConstantPool();
+            int access = u2();
+            String name = className(u2());
+            String superName = className(u2());
+            int interfaceCount = u2();
+            List<String> interfaces = new ArrayList<>(interfaceCount);
+            for (int i = 0; i < interfaceCount; i++) {
+                interfaces.add(className(u2()));
+            }
+            // fields
+            int fieldCount = u2();
+            for (int i = 0; i < fieldCount; i++) {
+                position += 6;
+                skipAttributes();
+            }
+            int methodCount = u2();
+            List<Method> methods = new ArrayList<>(methodCount);
+            for (int i = 0; i < methodCount; i++) {
+                methods.add(method());
+            }
+            String signature = null;
+            String sourceFile = null;
+            String outerName = null;
+            String simpleName = null;
+            boolean local = false;
+            List<Annotation> annotations = Collections.emptyList();
+            int attributeCount = u2();
+            for (int i = 0; i < attributeCount; i++) {
+                String attribute = utf8(u2());
+                int length = u4();
+                int end = position + length;
+                switch (attribute) {
+                    case "Signature":
+                        signature = utf8(u2());
+                        break;
+                    case "SourceFile":
+                        sourceFile = utf8(u2());
+                        break;
+                    case "InnerClasses":
+                        int classCount = u2();
+                        for (int c = 0; c < classCount; c++) {
+                            int inner = u2();
+                            int outer = u2();
+                            int simple = u2();
+                            position += 2;
+                            if (name.equals(className(inner))) {
+                                if (outer != 0 && simple != 0) {
+                                    outerName = className(outer);
+                                    simpleName = utf8(simple);
+                                } else {
+                                    local = true;
+                                }
+                            }
+                        }
+                        break;
+                    case "RuntimeVisibleAnnotations":
+                    case "RuntimeInvisibleAnnotations":
+                        annotations = annotations(annotations);
+                        break;
+                    default:
+                        break;
+                }
+                position = end;
+            }
+            return new ClassFile(access, name, superName, interfaces, signature, sourceFile, outerName, simpleName, local,
+                    annotations, methods);
+        }
+
+        private Method method() {
+            int access = u2();
+            String name = utf8(u2());
+            String descriptor = utf8(u2());
+            String signature = null;
+            List<Annotation> annotations = Collections.emptyList();
+            List<List<Annotation>> parameterAnnotations = Collections.emptyList();
+            List<String> parameterNames = null;
+            int line = -1;
+            int attributeCount = u2();
+            for (int i = 0; i < attributeCount; i++) {
+                String attribute = utf8(u2());
+                int length = u4();
+                int end = position + length;
+                switch (attribute) {
+                    case "Signature":
+                        signature = utf8(u2());
+                        break;
+                    case "RuntimeVisibleAnnotations":
+                    case "RuntimeInvisibleAnnotations":
+                        annotations = annotations(annotations);
+                        break;
+                    case "RuntimeVisibleParameterAnnotations":
+                    case "RuntimeInvisibleParameterAnnotations":
+                        parameterAnnotations = parameterAnnotations(parameterAnnotations);
+                        break;
+                    case "MethodParameters":
+                        int parameterCount = u1();
+                        parameterNames = new ArrayList<>(parameterCount);
+                        for (int p = 0; p < parameterCount; p++) {
+                            int parameterName = u2();
+                            parameterNames.add(parameterName != 0 ? utf8(parameterName) : null);
+                            // access_flags
+                            position += 2;
+                        }
+                        break;
+                    case "Code":
+                        line = firstLine();
+                        break;
+                    default:
+                        break;
+                }
+                position = end;
+            }
+            return new Method(access, name, descriptor, signature, annotations, parameterAnnotations, parameterNames,
+                    line);
+        }
+
+        private int firstLine() {
+            // max_stack and max_locals
+            position += 4;
+            int codeLength = u4();
+            position += codeLength;
+            int exceptionTableLength = u2();
+            position += exceptionTableLength * 8;
+            int line = -1;
+            int attributeCount = u2();
+            for (int i = 0; i < attributeCount; i++) {
+                String attribute = utf8(u2());
+                int length = u4();
+                int end = position + length;
+                if (attribute.equals("LineNumberTable")) {
+                    int lineCount = u2();
+                    for (int l = 0; l < lineCount; l++) {
+                        // start_pc
+                        position += 2;
+                        int number = u2();
+                        if (line == -1 || number < line) {
+                            line = number;
+                        }
+                    }
+                }
+                position = end;
+            }
+            return line;
+        }
+
+        private List<Annotation> annotations(List<Annotation> annotations) {
+            int count = u2();
+            List<Annotation> all = new ArrayList<>(annotations.size() + count);
+            all.addAll(annotations);
+            for (int i = 0; i < count; i++) {
+                all.add(annotation());
+            }
+            return all;
+        }
+
+        private List<List<Annotation>> parameterAnnotations(List<List<Annotation>> parameterAnnotations) {
+            int parameterCount = u1();
+            // the visible and invisible annotations of each parameter are in two attributes
+            List<List<Annotation>> all = new ArrayList<>(parameterAnnotations);
+            for (int p = 0; p < parameterCount; p++) {
+                if (p < all.size()) {
+                    all.set(p, annotations(all.get(p)));
+                } else {
+                    all.add(annotations(Collections.<Annotation> emptyList()));
+                }
+            }
+            return all;
+        }
+
+        private Annotation annotation() {
+            String descriptor = utf8(u2());
+            String type = descriptor.startsWith("L") && descriptor.endsWith(";")
+                    ? descriptor.substring(1, descriptor.length() - 1)
+                    : descriptor;
+            Map<String, Object> values = Collections.emptyMap();
+            int count = u2();
+            for (int i = 0; i < count; i++) {
+                String name = utf8(u2());
+                Object value = elementValue();
+                if (value != null) {
+                    if (values.isEmpty()) {
+                        values = new HashMap<>();
+                    }
+                    values.put(name, value);
+                }
+            }
+            return new Annotation(type, values);
+        }
+
+        /**
+         * @return the descriptor of a class value, a list for arrays, or <code>null</code> for other values
+         */
+        private Object elementValue() {
+            char tag = (char) u1();
+            switch (tag) {
+                case 'B':
+                case 'C':
+                case 'D':
+                case 'F':
+                case 'I':
+                case 'J':
+                case 'S':
+                case 'Z':
+                case 's':
+                    position += 2;
+                    return null;
+                case 'e':
+                    position += 4;
+                    return null;
+                case 'c':
+                    return utf8(u2());
+                case '@':
+                    annotation();
+                    return null;
+                case '[':
+                    int count = u2();
+                    List<Object> values = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        Object value = elementValue();
+                        if (value != null) {
+                            values.add(value);
+                        }
+                    }
+                    return values;
+                default:
+                    throw new IllegalArgumentException("Invalid element value tag: " + tag);
+            }
+        }
+
+        private void readConstantPool() {
+            int count = u2();
+            offsets = new int[count];
+            strings = new String[count];
+            for (int i = 1; i < count; i++) {
+                int tag = u1();
+                offsets[i] = position;
+                switch (tag) {
+                    case 1:
+                        int length = u2();
+                        position += length;
+                        break;
+                    case 7:
+                    case 8:
+                    case 16:
+                    case 19:
+                    case 20:
+                        position += 2;
+                        break;
+                    case 15:
+                        position += 3;
+                        break;
+                    case 3:
+                    case 4:
+                    case 9:
+                    case 10:
+                    case 11:
+                    case 12:
+                    case 17:
+                    case 18:
+                        position += 4;
+                        break;
+                    case 5:
+                    case 6:
+                        position += 8;
+                        // they take two entries
+                        i++;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid constant pool tag " + tag + " at " + i);
+                }
+            }
+        }
+
+        private String className(int index) {
+            if (index == 0) {
+                return null;
+            }
+            return utf8(bytes.getShort(offsets[index]) & 0xFFFF);
+        }
+
+        private String utf8(int index) {
+            String string = strings[index];
+            if (string == null) {
+                int offset = offsets[index];
+                int length = bytes.getShort(offset) & 0xFFFF;
+                string = decode(offset + 2, length);
+                strings[index] = string;
+            }
+            return string;
+        }
+
+        /**
+         * Decodes modified UTF-8.
+         */
+        private String decode(int offset, int length) {
+            char[] chars = new char[length];
+            int count = 0;
+            int end = offset + length;
+            while (offset < end) {
+                int b = bytes.get(offset++) & 0xFF;
+                if (b < 0x80) {
+                    chars[count++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0) {
+                    chars[count++] = (char) (((b & 0x1F) << 6) | (bytes.get(offset++) & 0x3F));
+                } else {
+                    chars[count++] = (char) (((b & 0x0F) << 12) | ((bytes.get(offset++) & 0x3F) << 6)
+                            | (bytes.get(offset++) & 0x3F));
+                }
+            }
+            return new String(chars, 0, count);
+        }
+
+        private void skipAttributes() {
+            int count = u2();
+            for (int i = 0; i < count; i++) {
+                position += 2;
+                int length = u4();
+                position += length;
+            }
+        }
+
+        private int u1() {
+            return bytes.get(position++) & 0xFF;
+        }
+
+        private int u2() {
+            int value = bytes.getShort(position) & 0xFFFF;
+            position += 2;
+            return value;
+        }
+
+        private int u4() {
+            int value = bytes.getInt(position);
+            position += 4;
+            return value;
+        }
+    }
+}
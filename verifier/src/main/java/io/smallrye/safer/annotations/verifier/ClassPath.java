@@ -0,0 +1,100 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Looks classes up by internal name in the checked archives, then in their class path, then in the JDK running the
+ * verifier, and keeps them once parsed. It is used from every verifying thread: two threads may parse the same class,
+ * but only one of them is kept.
+ */
+final class ClassPath {
+
+    private final List<Archive> archives;
+    // the JDK classes only, and not those of the verifier
+    private final ClassLoader platform = ClassLoader.getSystemClassLoader().getParent();
+    // empty for the classes we could not find or parse
+    private final ConcurrentMap<String, Optional<ClassFile>> classes = new ConcurrentHashMap<>();
+
+    ClassPath(List<Archive> archives) {
+        this.archives = archives;
+    }
+
+    /**
+     * @return the class with the given internal name, or <code>null</code> if it cannot be found or parsed
+     */
+    ClassFile find(String name) {
+        Optional<ClassFile> classFile = classes.get(name);
+        if (classFile == null) {
+            classFile = Optional.ofNullable(load(name));
+            Optional<ClassFile> previous = classes.putIfAbsent(name, classFile);
+            if (previous != null) {
+                classFile = previous;
+            }
+        }
+        return classFile.orElse(null);
+    }
+
+    /**
+     * Parses a class file of a checked archive, and keeps it for the lookups of its class, unless an earlier archive
+     * also has it, like a class path would.
+     *
+     * @throws IllegalArgumentException if it is not a valid class file
+     */
+    ClassFile parse(Archive archive, String entry, ByteBuffer bytes) {
+        ClassFile classFile = ClassFile.parse(bytes);
+        if (entry.equals(classFile.name + ".class") && !classes.containsKey(classFile.name)) {
+            for (Archive other : archives) {
+                if (other == archive) {
+                    classes.putIfAbsent(classFile.name, Optional.of(classFile));
+                    break;
+                }
+                if (other.contains(entry)) {
+                    break;
+                }
+            }
+        }
+        return classFile;
+    }
+
+    private ClassFile load(String name) {
+        String resource = name + ".class";
+        try {
+            for (Archive archive : archives) {
+                ByteBuffer bytes = archive.read(resource);
+                if (bytes != null) {
+                    return ClassFile.parse(bytes);
+                }
+            }
+            if (platform != null) {
+                try (InputStream in = platform.getResourceAsStream(resource)) {
+                    if (in != null) {
+                        return ClassFile.parse(ByteBuffer.wrap(readAll(in)));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + resource, e);
+        } catch (IllegalArgumentException e) {
+            // a broken class is as good as a missing one
+        }
+        return null;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
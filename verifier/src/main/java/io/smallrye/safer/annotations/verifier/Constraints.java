@@ -0,0 +1,228 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.smallrye.safer.annotations.verifier.Type.ClassType;
+
+/**
+ * Reads the constraints of annotations from their class files, and from the class files of their
+ * <code>DefinitionOverride</code>, like the processor does from their mirrors: the <code>TargetMethod</code> of the
+ * override takes precedence over that of the annotation.
+ */
+final class Constraints {
+
+    static final String TARGET_METHOD = "io/smallrye/safer/annotations/TargetMethod";
+    static final String TARGET_ACCESSOR = "io/smallrye/safer/annotations/TargetAccessor";
+    static final String TARGET_ALLOCATION_FREE = "io/smallrye/safer/annotations/TargetAllocationFree";
+    static final String ALLOW_ALLOCATION = "io/smallrye/safer/annotations/AllowAllocation";
+    static final String OVERRIDE_TARGET = "io/smallrye/safer/annotations/OverrideTarget";
+    static final String GENERIC_TYPE = TARGET_METHOD + "$GenericType";
+    static final String SUBTYPE = TARGET_METHOD + "$Subtype";
+    static final String DEFINITION_OVERRIDE_SERVICES = "META-INF/services/io.smallrye.safer.annotations.DefinitionOverride";
+
+    /**
+     * An allowed type, which the checked type must be the same as, or a subtype of.
+     */
+    static final class Matcher {
+        final Type type;
+        final boolean subtype;
+        private final String description;
+
+        Matcher(Type type, boolean subtype, Types types) {
+            this.type = type;
+            this.subtype = subtype;
+            this.description = subtype ? "subtype of " + types.toString(type) : types.toString(type);
+        }
+
+        // This is used in error reporting
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    static final class Constraint {
+        // the source name of the annotation
+        final String annotation;
+        final boolean targetAccessor;
+        final boolean allocationFree;
+        // null unless the annotation has a TargetMethod constraint
+        final List<Matcher> allowedReturnTypes;
+        final List<Matcher> allowedParameterTypes;
+
+        Constraint(String annotation, boolean targetAccessor, boolean allocationFree, List<Matcher> allowedReturnTypes,
+                List<Matcher> allowedParameterTypes) {
+            this.annotation = annotation;
+            this.targetAccessor = targetAccessor;
+            this.allocationFree = allocationFree;
+            this.allowedReturnTypes = allowedReturnTypes;
+            this.allowedParameterTypes = allowedParameterTypes;
+        }
+
+        boolean isTargetMethod() {
+            return allowedReturnTypes != null;
+        }
+    }
+
+    private final ClassPath classPath;
+    private final Types types;
+    // target annotation internal name -> override internal name
+    private final Map<String, String> overridesByTarget = new HashMap<>();
+    // annotation internal name -> constraint, empty if it has none
+    private final ConcurrentMap<String, Optional<Constraint>> constraints = new ConcurrentHashMap<>();
+
+    Constraints(ClassPath classPath, Types types) {
+        this.classPath = classPath;
+        this.types = types;
+    }
+
+    /**
+     * Reads the overrides declared in the service files of the given archives, and what they target. Like the
+     * processor, when several overrides target the same annotation, the last one wins.
+     *
+     * @param checked the archives being checked, whose missing overrides are warned about
+     */
+    void readOverrides(List<Archive> archives, Collection<Archive> checked, List<Diagnostic> diagnostics)
+            throws IOException {
+        // override class name -> whether it is declared by a checked archive
+        Map<String, Boolean> declared = new LinkedHashMap<>();
+        for (Archive archive : archives) {
+            ByteBuffer services = archive.read(DEFINITION_OVERRIDE_SERVICES);
+            if (services == null) {
+                continue;
+            }
+            byte[] bytes = new byte[services.remaining()];
+            services.get(bytes);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    if (comment != -1) {
+                        line = line.substring(0, comment);
+                    }
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        declared.putIfAbsent(line, checked.contains(archive));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : declared.entrySet()) {
+            String className = entry.getKey();
+            ClassFile override = classPath.find(className.replace('.', '/'));
+            if (override == null) {
+                diagnostics.add(new Diagnostic(entry.getValue() ? Diagnostic.Kind.WARNING : Diagnostic.Kind.NOTE, null,
+                        -1, null, null, "Failed to load override class: " + className));
+                continue;
+            }
+            String target = null;
+            for (ClassFile.Annotation annotation : override.annotations) {
+                Object value = annotation.values.get("value");
+                if (annotation.type.equals(OVERRIDE_TARGET) && value instanceof String) {
+                    Type type = Signatures.parseType((String) value);
+                    if (type instanceof ClassType) {
+                        target = ((ClassType) type).name;
+                    }
+                }
+            }
+            if (target == null) {
+                diagnostics.add(new Diagnostic(Diagnostic.Kind.ERROR, override.getSourcePath(), -1,
+                        types.getSourceName(override.name), null,
+                        "Classes implementing DefinitionOverride must have an @OverrideTarget annotation"));
+                continue;
+            }
+            overridesByTarget.put(target, override.name);
+        }
+    }
+
+    /**
+     * @param annotation the internal name of an annotation
+     * @return its constraint, or <code>null</code> if it has none
+     */
+    Constraint get(String annotation) {
+        Optional<Constraint> constraint = constraints.get(annotation);
+        if (constraint == null) {
+            constraint = Optional.ofNullable(build(annotation));
+            Optional<Constraint> previous = constraints.putIfAbsent(annotation, constraint);
+            if (previous != null) {
+                constraint = previous;
+            }
+        }
+        return constraint.orElse(null);
+    }
+
+    private Constraint build(String annotation) {
+        ClassFile.Annotation targetMethod = null;
+        boolean targetAccessor = false;
+        boolean allocationFree = false;
+        String override = overridesByTarget.get(annotation);
+        for (String annotated : override != null ? new String[] { override, annotation } : new String[] { annotation }) {
+            ClassFile classFile = classPath.find(annotated);
+            if (classFile == null) {
+                continue;
+            }
+            for (ClassFile.Annotation meta : classFile.annotations) {
+                if (targetMethod == null && meta.type.equals(TARGET_METHOD)) {
+                    targetMethod = meta;
+                } else if (meta.type.equals(TARGET_ACCESSOR)) {
+                    targetAccessor = true;
+                } else if (meta.type.equals(TARGET_ALLOCATION_FREE)) {
+                    allocationFree = true;
+                }
+            }
+        }
+        if (targetMethod == null) {
+            return targetAccessor || allocationFree
+                    ? new Constraint(types.getSourceName(annotation), targetAccessor, allocationFree, null, null)
+                    : null;
+        }
+        return new Constraint(types.getSourceName(annotation), targetAccessor, allocationFree,
+                matchers(targetMethod.values.get("returnTypes")), matchers(targetMethod.values.get("parameterTypes")));
+    }
+
+    private List<Matcher> matchers(Object values) {
+        List<Matcher> matchers = new ArrayList<>();
+        if (values instanceof List) {
+            for (Object value : (List<?>) values) {
+                matchers.add(makeTypeMatcher(Signatures.parseType((String) value)));
+            }
+        }
+        return matchers;
+    }
+
+    /**
+     * @return the matcher for the given allowed type, which may be wrapped in a <code>TargetMethod.GenericType</code>
+     *         or <code>TargetMethod.Subtype</code> subclass
+     */
+    private Matcher makeTypeMatcher(Type type) {
+        if (type instanceof ClassType) {
+            ClassFile classFile = classPath.find(((ClassType) type).name);
+            if (classFile != null && classFile.signature != null) {
+                ClassType superclass = Signatures.parseClass(classFile.signature).superclass;
+                if (superclass != null && superclass.arguments.size() == 1) {
+                    if (superclass.name.equals(GENERIC_TYPE)) {
+                        return new Matcher(superclass.arguments.get(0), false, types);
+                    } else if (superclass.name.equals(SUBTYPE)) {
+                        return new Matcher(superclass.arguments.get(0), true, types);
+                    }
+                }
+            }
+        }
+        return new Matcher(type, false, types);
+    }
+}
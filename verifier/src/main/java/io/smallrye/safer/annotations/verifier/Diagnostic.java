@@ -0,0 +1,85 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.util.Locale;
+
+/**
+ * A problem found by the {@link Verifier}, with the same message as the processor would report for the same source.
+ */
+public final class Diagnostic {
+
+    public enum Kind {
+        ERROR,
+        WARNING,
+        NOTE
+    }
+
+    private final Kind kind;
+    private final String source;
+    private final long line;
+    private final String element;
+    private final String archive;
+    private final String message;
+
+    Diagnostic(Kind kind, String source, long line, String element, String archive, String message) {
+        this.kind = kind;
+        this.source = source;
+        this.line = line;
+        this.element = element;
+        this.archive = archive;
+        this.message = message;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the path of the source file, relative to its source root, as recorded in the class file, or
+     *         <code>null</code> if this is not about a class
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the first line of the body of the method, or -1 if it has none or the class file does not tell, since
+     *         the line of the method declaration itself is not recorded
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * @return the class or method, as in <code>com.acme.Resource.get(java.lang.String)</code>, or <code>null</code>
+     */
+    public String getElement() {
+        return element;
+    }
+
+    /**
+     * @return the jar or directory of the class, or <code>null</code>
+     */
+    public String getArchive() {
+        return archive;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return this diagnostic, formatted like javac does
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (source != null) {
+            sb.append(source);
+            if (line != -1) {
+                sb.append(':').append(line);
+            }
+            sb.append(": ");
+        }
+        return sb.append(kind.name().toLowerCase(Locale.ROOT)).append(": ").append(message).toString();
+    }
+}
@@ -0,0 +1,46 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A directory of class files and resources, such as a compilation output.
+ */
+final class DirectoryArchive extends Archive {
+
+    private final List<String> entries = new ArrayList<>();
+
+    DirectoryArchive(Path path) throws IOException {
+        super(path);
+        try (Stream<Path> files = Files.walk(path)) {
+            files.filter(Files::isRegularFile)
+                    .map(file -> path.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"))
+                    .sorted()
+                    .forEach(entries::add);
+        }
+    }
+
+    @Override
+    List<String> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    @Override
+    boolean contains(String name) {
+        return Files.isRegularFile(getPath().resolve(name));
+    }
+
+    @Override
+    ByteBuffer read(String name) throws IOException {
+        if (!contains(name)) {
+            return null;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(getPath().resolve(name)));
+    }
+}
@@ -0,0 +1,210 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A jar, mapped in memory and read without {@link java.util.zip.ZipFile}: we only read its central directory when
+ * opening it, and then the entries we need, straight from the mapping. Stored entries are not even copied. The mapping
+ * is never modified, and each read works on its own view of it, so entries can be read from many threads.
+ */
+final class JarArchive extends Archive {
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int ZIP64_EXTRA_FIELD = 0x0001;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final class Entry {
+        final int method;
+        final long compressedSize;
+        final long size;
+        final long offset;
+
+        Entry(int method, long compressedSize, long size, long offset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    private final MappedByteBuffer mapping;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    JarArchive(Path path) throws IOException {
+        super(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Jar too large to be mapped: " + path);
+            }
+            // the mapping stays valid once the channel is closed
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            readCentralDirectory(view());
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Invalid jar: " + path, e);
+        }
+    }
+
+    private ByteBuffer view() {
+        return mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void readCentralDirectory(ByteBuffer buffer) throws IOException {
+        int end = findEndOfCentralDirectory(buffer);
+        long count = buffer.getShort(end + 10) & 0xFFFF;
+        long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if ((count == 0xFFFF || offset == 0xFFFFFFFFL) && end >= 20
+                && buffer.getInt(end - 20) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR) {
+            int zip64End = checkedOffset(buffer.getLong(end - 12));
+            if (buffer.getInt(zip64End) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                throw new IOException("Invalid ZIP64 end of central directory");
+            }
+            count = buffer.getLong(zip64End + 32);
+            offset = buffer.getLong(zip64End + 48);
+        }
+        int position = checkedOffset(offset);
+        for (long i = 0; i < count; i++) {
+            if (buffer.getInt(position) != CENTRAL_DIRECTORY_HEADER) {
+                throw new IOException("Invalid central directory header at " + position);
+            }
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+            byte[] name = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(position + 46);
+            nameBuffer.get(name);
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                // the real values are in the ZIP64 extra field, in this order, if they overflow
+                int extra = position + 46 + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = buffer.getShort(extra) & 0xFFFF;
+                    int length = buffer.getShort(extra + 2) & 0xFFFF;
+                    if (id == ZIP64_EXTRA_FIELD) {
+                        int value = extra + 4;
+                        if (size == 0xFFFFFFFFL) {
+                            size = buffer.getLong(value);
+                            value += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL) {
+                            compressedSize = buffer.getLong(value);
+                            value += 8;
+                        }
+                        if (localOffset == 0xFFFFFFFFL) {
+                            localOffset = buffer.getLong(value);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+            }
+            String entryName = new String(name, StandardCharsets.UTF_8);
+            if (!entryName.endsWith("/") && entries.put(entryName,
+                    new Entry(method, compressedSize, size, localOffset)) == null) {
+                names.add(entryName);
+            }
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) throws IOException {
+        // it is followed by a comment of up to 64k
+        int last = buffer.limit() - 22;
+        for (int position = last; position >= 0 && position >= last - 0xFFFF; position--) {
+            if (buffer.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+                return position;
+            }
+        }
+        throw new IOException("End of central directory not found");
+    }
+
+    private int checkedOffset(long offset) throws IOException {
+        if (offset < 0 || offset >= mapping.limit()) {
+            throw new IOException("Invalid offset " + offset);
+        }
+        return (int) offset;
+    }
+
+    @Override
+    List<String> getEntries() {
+        return Collections.unmodifiableList(names);
+    }
+
+    @Override
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    @Override
+    ByteBuffer read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer buffer = view();
+        int header = checkedOffset(entry.offset);
+        if (buffer.getInt(header) != LOCAL_FILE_HEADER) {
+            throw new IOException("Invalid local file header for " + name + " in " + this);
+        }
+        // the local name and extra field may differ from those of the central directory
+        int data = header + 30 + (buffer.getShort(header + 26) & 0xFFFF) + (buffer.getShort(header + 28) & 0xFFFF);
+        if (entry.compressedSize > buffer.limit() - data || entry.size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid size for " + name + " in " + this);
+        }
+        buffer.position(data);
+        buffer.limit(data + (int) entry.compressedSize);
+        if (entry.method == STORED) {
+            return buffer.slice();
+        }
+        if (entry.method != DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + name + " in " + this);
+        }
+        // with an extra byte, which zlib may need when there is no header
+        byte[] input = new byte[(int) entry.compressedSize + 1];
+        buffer.get(input, 0, (int) entry.compressedSize);
+        byte[] output = new byte[(int) entry.size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < output.length) {
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated entry " + name + " in " + this);
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid entry " + name + " in " + this, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(output);
+    }
+}
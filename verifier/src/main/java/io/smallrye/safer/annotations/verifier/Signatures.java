@@ -0,0 +1,236 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.smallrye.safer.annotations.verifier.Type.ArrayType;
+import io.smallrye.safer.annotations.verifier.Type.ClassType;
+import io.smallrye.safer.annotations.verifier.Type.Primitive;
+import io.smallrye.safer.annotations.verifier.Type.TypeParameter;
+import io.smallrye.safer.annotations.verifier.Type.TypeVariable;
+import io.smallrye.safer.annotations.verifier.Type.Wildcard;
+
+/**
+ * Parses descriptors and generic signatures, as specified in JVMS 4.3 and 4.7.9.1. Descriptors are signatures without
+ * type parameters, type arguments or type variables, so the same parser reads both.
+ */
+final class Signatures {
+
+    /**
+     * A parsed class signature.
+     */
+    static final class ClassSignature {
+        final List<TypeParameter> typeParameters;
+        // null for java.lang.Object, module-info and such
+        final ClassType superclass;
+        final List<ClassType> interfaces;
+
+        ClassSignature(List<TypeParameter> typeParameters, ClassType superclass, List<ClassType> interfaces) {
+            this.typeParameters = typeParameters;
+            this.superclass = superclass;
+            this.interfaces = interfaces;
+        }
+    }
+
+    /**
+     * A parsed method descriptor or signature.
+     */
+    static final class MethodSignature {
+        final List<TypeParameter> typeParameters;
+        final List<Type> parameters;
+        final Type returnType;
+
+        MethodSignature(List<TypeParameter> typeParameters, List<Type> parameters, Type returnType) {
+            this.typeParameters = typeParameters;
+            this.parameters = parameters;
+            this.returnType = returnType;
+        }
+    }
+
+    private final String signature;
+    private int position;
+
+    private Signatures(String signature) {
+        this.signature = signature;
+    }
+
+    /**
+     * @param signature a field descriptor or signature, or <code>V</code>, as found in annotation class values
+     */
+    static Type parseType(String signature) {
+        Signatures parser = new Signatures(signature);
+        Type type = parser.type();
+        parser.end();
+        return type;
+    }
+
+    static MethodSignature parseMethod(String signature) {
+        Signatures parser = new Signatures(signature);
+        List<TypeParameter> typeParameters = parser.typeParameters();
+        parser.expect('(');
+        List<Type> parameters = new ArrayList<>();
+        while (parser.peek() != ')') {
+            parameters.add(parser.type());
+        }
+        parser.expect(')');
+        Type returnType = parser.type();
+        // we do not need the thrown types
+        return new MethodSignature(typeParameters, parameters, returnType);
+    }
+
+    static ClassSignature parseClass(String signature) {
+        Signatures parser = new Signatures(signature);
+        List<TypeParameter> typeParameters = parser.typeParameters();
+        ClassType superclass = parser.classType();
+        List<ClassType> interfaces = new ArrayList<>();
+        while (parser.position < signature.length()) {
+            interfaces.add(parser.classType());
+        }
+        return new ClassSignature(typeParameters, superclass, interfaces);
+    }
+
+    private List<TypeParameter> typeParameters() {
+        if (peek() != '<') {
+            return Collections.emptyList();
+        }
+        position++;
+        List<TypeParameter> typeParameters = new ArrayList<>();
+        while (peek() != '>') {
+            String name = identifier(':');
+            List<Type> bounds = new ArrayList<>(1);
+            while (peek() == ':') {
+                position++;
+                // the class bound is empty when there are only interface bounds
+                if (peek() != ':') {
+                    bounds.add(type());
+                }
+            }
+            typeParameters.add(new TypeParameter(name, bounds));
+        }
+        position++;
+        return typeParameters;
+    }
+
+    private Type type() {
+        char c = next();
+        switch (c) {
+            case 'L':
+                position--;
+                return classType();
+            case 'T':
+                TypeVariable typeVariable = new TypeVariable(identifier(';'));
+                position++;
+                return typeVariable;
+            case '[':
+                return new ArrayType(type());
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 'V':
+                return new Primitive(c);
+            default:
+                throw invalid();
+        }
+    }
+
+    private ClassType classType() {
+        expect('L');
+        int start = position;
+        ClassType type = null;
+        while (true) {
+            char c = next();
+            if (c == '<' || c == '.' || c == ';') {
+                String name = signature.substring(start, position - 1);
+                if (type != null) {
+                    name = type.name + '$' + name;
+                }
+                List<Type> arguments = Collections.emptyList();
+                if (c == '<') {
+                    arguments = typeArguments();
+                    c = next();
+                }
+                type = new ClassType(name, arguments, type);
+                if (c == ';') {
+                    return type.owner != null && allRaw(type.owner) ? new ClassType(type.name, type.arguments, null)
+                            : type;
+                }
+                if (c != '.') {
+                    throw invalid();
+                }
+                start = position;
+            }
+        }
+    }
+
+    private static boolean allRaw(ClassType type) {
+        for (ClassType t = type; t != null; t = t.owner) {
+            if (!t.isRaw()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Type> typeArguments() {
+        List<Type> arguments = new ArrayList<>();
+        while (peek() != '>') {
+            char c = peek();
+            if (c == '*') {
+                position++;
+                arguments.add(new Wildcard('*', null));
+            } else if (c == '+' || c == '-') {
+                position++;
+                arguments.add(new Wildcard(c, type()));
+            } else {
+                arguments.add(type());
+            }
+        }
+        position++;
+        return arguments;
+    }
+
+    private String identifier(char end) {
+        int index = signature.indexOf(end, position);
+        if (index <= position) {
+            throw invalid();
+        }
+        String identifier = signature.substring(position, index);
+        position = index;
+        return identifier;
+    }
+
+    private char peek() {
+        if (position >= signature.length()) {
+            throw invalid();
+        }
+        return signature.charAt(position);
+    }
+
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw invalid();
+        }
+    }
+
+    private void end() {
+        if (position != signature.length()) {
+            throw invalid();
+        }
+    }
+
+    private IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Invalid signature at " + position + ": " + signature);
+    }
+}
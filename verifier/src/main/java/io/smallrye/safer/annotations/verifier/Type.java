@@ -0,0 +1,112 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A type read from a class file descriptor or generic signature. Class names are kept in their internal form, such as
+ * <code>java/util/Map$Entry</code>, and only turned into source names by {@link Types#toString(Type)}.
+ */
+abstract class Type {
+
+    private Type() {
+    }
+
+    /**
+     * A primitive type, or <code>void</code>, by descriptor.
+     */
+    static final class Primitive extends Type {
+        final char descriptor;
+
+        Primitive(char descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        String getName() {
+            switch (descriptor) {
+                case 'B':
+                    return "byte";
+                case 'C':
+                    return "char";
+                case 'D':
+                    return "double";
+                case 'F':
+                    return "float";
+                case 'I':
+                    return "int";
+                case 'J':
+                    return "long";
+                case 'S':
+                    return "short";
+                case 'Z':
+                    return "boolean";
+                case 'V':
+                    return "void";
+                default:
+                    throw new IllegalArgumentException("Invalid primitive descriptor: " + descriptor);
+            }
+        }
+    }
+
+    static final class ClassType extends Type {
+        final String name;
+        final List<Type> arguments;
+        // the enclosing type, only when the signature spells it out because it is parameterised
+        final ClassType owner;
+
+        ClassType(String name, List<Type> arguments, ClassType owner) {
+            this.name = name;
+            this.arguments = arguments;
+            this.owner = owner;
+        }
+
+        ClassType(String name) {
+            this(name, Collections.emptyList(), null);
+        }
+
+        boolean isRaw() {
+            return arguments.isEmpty();
+        }
+    }
+
+    static final class ArrayType extends Type {
+        final Type component;
+
+        ArrayType(Type component) {
+            this.component = component;
+        }
+    }
+
+    static final class TypeVariable extends Type {
+        final String name;
+
+        TypeVariable(String name) {
+            this.name = name;
+        }
+    }
+
+    static final class Wildcard extends Type {
+        // '*' for unbounded, '+' for extends, '-' for super
+        final char kind;
+        // null if unbounded
+        final Type bound;
+
+        Wildcard(char kind, Type bound) {
+            this.kind = kind;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * A type parameter of a generic class or method, with its bounds.
+     */
+    static final class TypeParameter {
+        final String name;
+        final List<Type> bounds;
+
+        TypeParameter(String name, List<Type> bounds) {
+            this.name = name;
+            this.bounds = bounds;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.smallrye.safer.annotations.verifier.Signatures.ClassSignature;
+import io.smallrye.safer.annotations.verifier.Type.ArrayType;
+import io.smallrye.safer.annotations.verifier.Type.ClassType;
+import io.smallrye.safer.annotations.verifier.Type.Primitive;
+import io.smallrye.safer.annotations.verifier.Type.TypeParameter;
+import io.smallrye.safer.annotations.verifier.Type.TypeVariable;
+import io.smallrye.safer.annotations.verifier.Type.Wildcard;
+
+/**
+ * What the processor asks of {@link javax.lang.model.util.Types}, over the class files of a {@link ClassPath}: same
+ * type and subtype tests, as specified in JLS 4.10, and the names javac gives to types in its messages. Every method
+ * can be called from any thread.
+ */
+final class Types {
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private final ClassPath classPath;
+    // internal name -> source name
+    private final ConcurrentMap<String, String> sourceNames = new ConcurrentHashMap<>();
+    // internal name -> generic supertypes, in terms of its own type variables
+    private final ConcurrentMap<String, List<ClassType>> supertypes = new ConcurrentHashMap<>();
+    // internal names of the classes missing from the hierarchies we walked
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    Types(ClassPath classPath) {
+        this.classPath = classPath;
+    }
+
+    /**
+     * @return the type as javac prints it, such as <code>java.util.Map.Entry&lt;java.lang.String,T&gt;</code>
+     */
+    String toString(Type type) {
+        return toString(type, false);
+    }
+
+    /**
+     * @param varargs whether this is the last parameter type of a variable arity method
+     */
+    String toString(Type type, boolean varargs) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, type, varargs);
+        return sb.toString();
+    }
+
+    private void append(StringBuilder sb, Type type, boolean varargs) {
+        if (type instanceof Primitive) {
+            sb.append(((Primitive) type).getName());
+        } else if (type instanceof ClassType) {
+            ClassType classType = (ClassType) type;
+            if (classType.owner != null) {
+                append(sb, classType.owner, false);
+                sb.append('.').append(simpleName(classType.name));
+            } else {
+                sb.append(getSourceName(classType.name));
+            }
+            if (!classType.arguments.isEmpty()) {
+                sb.append('<');
+                for (int i = 0; i < classType.arguments.size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    append(sb, classType.arguments.get(i), false);
+                }
+                sb.append('>');
+            }
+        } else if (type instanceof ArrayType) {
+            // javac prints the element type, then the dimensions from the outermost one
+            Type element = type;
+            int dimensions = 0;
+            while (element instanceof ArrayType) {
+                element = ((ArrayType) element).component;
+                dimensions++;
+            }
+            append(sb, element, false);
+            for (int i = 0; i < dimensions; i++) {
+                sb.append(i == 0 && varargs ? "..." : "[]");
+            }
+        } else if (type instanceof TypeVariable) {
+            sb.append(((TypeVariable) type).name);
+        } else {
+            Wildcard wildcard = (Wildcard) type;
+            sb.append('?');
+            if (wildcard.kind == '+') {
+                sb.append(" extends ");
+                append(sb, wildcard.bound, false);
+            } else if (wildcard.kind == '-') {
+                sb.append(" super ");
+                append(sb, wildcard.bound, false);
+            }
+        }
+    }
+
+    /**
+     * @return the source name of the given class, with dots between nested classes, as declared in the class files
+     */
+    String getSourceName(String name) {
+        String sourceName = sourceNames.get(name);
+        if (sourceName == null) {
+            ClassFile classFile = classPath.find(name);
+            if (classFile != null && classFile.outerName != null) {
+                sourceName = getSourceName(classFile.outerName) + '.' + classFile.simpleName;
+            } else if (classFile != null) {
+                sourceName = name.replace('/', '.');
+            } else {
+                // our best guess
+                sourceName = name.replace('/', '.').replace('$', '.');
+            }
+            sourceNames.putIfAbsent(name, sourceName);
+        }
+        return sourceName;
+    }
+
+    private String simpleName(String name) {
+        ClassFile classFile = classPath.find(name);
+        if (classFile != null && classFile.simpleName != null) {
+            return classFile.simpleName;
+        }
+        return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('$')) + 1);
+    }
+
+    boolean isSameType(Type a, Type b) {
+        if (a instanceof Primitive && b instanceof Primitive) {
+            return ((Primitive) a).descriptor == ((Primitive) b).descriptor;
+        } else if (a instanceof ClassType && b instanceof ClassType) {
+            ClassType ca = (ClassType) a;
+            ClassType cb = (ClassType) b;
+            return ca.name.equals(cb.name) && areSameTypes(ca.arguments, cb.arguments);
+        } else if (a instanceof ArrayType && b instanceof ArrayType) {
+            return isSameType(((ArrayType) a).component, ((ArrayType) b).component);
+        } else if (a instanceof TypeVariable && b instanceof TypeVariable) {
+            return ((TypeVariable) a).name.equals(((TypeVariable) b).name);
+        } else if (a instanceof Wildcard && b instanceof Wildcard) {
+            Wildcard wa = (Wildcard) a;
+            Wildcard wb = (Wildcard) b;
+            if (wa.kind == '*' || wb.kind == '*') {
+                return wa.kind == wb.kind
+                        || isObject(wa.kind == '*' ? wb.bound : wa.bound) && (wa.kind == '+' || wb.kind == '+');
+            }
+            return wa.kind == wb.kind && isSameType(wa.bound, wb.bound);
+        }
+        return false;
+    }
+
+    private boolean areSameTypes(List<Type> a, List<Type> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!isSameType(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isObject(Type type) {
+        return type instanceof ClassType && ((ClassType) type).name.equals(OBJECT);
+    }
+
+    /**
+     * @param bounds the bounds of the type variables in scope of <code>s</code>
+     * @return whether <code>s</code> is a subtype of <code>t</code>
+     */
+    boolean isSubtype(Type s, Type t, Map<String, List<Type>> bounds) {
+        if (s instanceof Primitive || t instanceof Primitive) {
+            // only primitives can be subtypes of primitives, and only by widening, which javac allows here
+            return s instanceof Primitive && t instanceof Primitive
+                    && isPrimitiveSubtype(((Primitive) s).descriptor, ((Primitive) t).descriptor);
+        }
+        if (isObject(t) && ((ClassType) t).isRaw()) {
+            return true;
+        }
+        if (s instanceof TypeVariable) {
+            if (t instanceof TypeVariable && ((TypeVariable) s).name.equals(((TypeVariable) t).name)) {
+                return true;
+            }
+            List<Type> sBounds = bounds.get(((TypeVariable) s).name);
+            if (sBounds == null || sBounds.isEmpty()) {
+                return false;
+            }
+            // the type variable is a subtype of each of its bounds
+            for (Type bound : sBounds) {
+                if (isSubtype(bound, t, withoutVariable(bounds, ((TypeVariable) s).name))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (s instanceof ArrayType) {
+            if (t instanceof ArrayType) {
+                Type sComponent = ((ArrayType) s).component;
+                Type tComponent = ((ArrayType) t).component;
+                if (sComponent instanceof Primitive || tComponent instanceof Primitive) {
+                    return isSameType(sComponent, tComponent);
+                }
+                return isSubtype(sComponent, tComponent, bounds);
+            }
+            return t instanceof ClassType && ((ClassType) t).isRaw()
+                    && (((ClassType) t).name.equals("java/lang/Cloneable")
+                            || ((ClassType) t).name.equals("java/io/Serializable"));
+        }
+        if (!(s instanceof ClassType) || !(t instanceof ClassType)) {
+            return false;
+        }
+        ClassType tClass = (ClassType) t;
+        ClassType supertype = asSuper((ClassType) s, tClass.name);
+        if (supertype == null) {
+            return false;
+        }
+        if (tClass.isRaw()) {
+            return true;
+        }
+        if (supertype.isRaw() || supertype.arguments.size() != tClass.arguments.size()) {
+            // raw types are only convertible to parameterised types with an unchecked conversion
+            return false;
+        }
+        for (int i = 0; i < tClass.arguments.size(); i++) {
+            if (!contains(tClass.arguments.get(i), supertype.arguments.get(i), bounds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, List<Type>> withoutVariable(Map<String, List<Type>> bounds, String name) {
+        // so that recursive bounds, such as T extends Comparable<T>, terminate
+        Map<String, List<Type>> without = new HashMap<>(bounds);
+        without.remove(name);
+        return without;
+    }
+
+    private static boolean isPrimitiveSubtype(char s, char t) {
+        if (s == t) {
+            return true;
+        }
+        String widening;
+        switch (s) {
+            case 'B':
+                widening = "SIJFD";
+                break;
+            case 'S':
+            case 'C':
+                widening = "IJFD";
+                break;
+            case 'I':
+                widening = "JFD";
+                break;
+            case 'J':
+                widening = "FD";
+                break;
+            case 'F':
+                widening = "D";
+                break;
+            default:
+                return false;
+        }
+        return widening.indexOf(t) != -1;
+    }
+
+    /**
+     * Type argument containment, as specified in JLS 4.5.1.
+     */
+    private boolean contains(Type t, Type s, Map<String, List<Type>> bounds) {
+        if (t instanceof Wildcard) {
+            Wildcard wildcard = (Wildcard) t;
+            if (wildcard.kind == '*') {
+                return true;
+            }
+            if (wildcard.kind == '+') {
+                Type upper = s instanceof Wildcard ? upperBound((Wildcard) s) : s;
+                return upper != null && isSubtype(upper, wildcard.bound, bounds);
+            }
+            Type lower = s instanceof Wildcard ? (((Wildcard) s).kind == '-' ? ((Wildcard) s).bound : null) : s;
+            return lower != null && isSubtype(wildcard.bound, lower, bounds);
+        }
+        return isSameType(t, s);
+    }
+
+    private static Type upperBound(Wildcard wildcard) {
+        switch (wildcard.kind) {
+            case '+':
+                return wildcard.bound;
+            case '*':
+            case '-':
+                return new ClassType(OBJECT);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the supertype of <code>type</code>, or <code>type</code> itself, whose class has the given name, with
+     *         the type arguments it is given by <code>type</code>, or <code>null</code> if there is none, or if the
+     *         hierarchy is incomplete
+     */
+    ClassType asSuper(ClassType type, String name) {
+        Deque<ClassType> queue = new ArrayDeque<>();
+        Set<String> seen = new HashSet<>();
+        queue.add(type);
+        while (!queue.isEmpty()) {
+            ClassType current = queue.poll();
+            if (current.name.equals(name)) {
+                return current;
+            }
+            if (!seen.add(current.name)) {
+                continue;
+            }
+            for (ClassType supertype : getSupertypes(current)) {
+                queue.add(supertype);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the direct supertypes of the given type, with the type arguments it gives them, or erased if it is raw
+     */
+    private List<ClassType> getSupertypes(ClassType type) {
+        List<ClassType> declared = getDeclaredSupertypes(type.name);
+        if (declared.isEmpty()) {
+            return declared;
+        }
+        List<TypeParameter> typeParameters = getTypeParameters(type.name);
+        if (typeParameters.isEmpty()) {
+            return declared;
+        }
+        List<ClassType> supertypes = new ArrayList<>(declared.size());
+        if (type.arguments.size() != typeParameters.size()) {
+            // raw types have erased supertypes
+            for (ClassType supertype : declared) {
+                supertypes.add(new ClassType(supertype.name));
+            }
+            return supertypes;
+        }
+        Map<String, Type> substitution = new HashMap<>();
+        for (int i = 0; i < typeParameters.size(); i++) {
+            substitution.put(typeParameters.get(i).name, type.arguments.get(i));
+        }
+        for (ClassType supertype : declared) {
+            supertypes.add((ClassType) substitute(supertype, substitution));
+        }
+        return supertypes;
+    }
+
+    private List<ClassType> getDeclaredSupertypes(String name) {
+        List<ClassType> declared = supertypes.get(name);
+        if (declared == null) {
+            ClassFile classFile = classPath.find(name);
+            if (classFile == null) {
+                missing.add(name);
+                declared = Collections.emptyList();
+            } else if (classFile.signature != null) {
+                ClassSignature signature = Signatures.parseClass(classFile.signature);
+                declared = new ArrayList<>();
+                if (signature.superclass != null) {
+                    declared.add(signature.superclass);
+                }
+                declared.addAll(signature.interfaces);
+            } else {
+                declared = new ArrayList<>();
+                if (classFile.superName != null) {
+                    declared.add(new ClassType(classFile.superName));
+                }
+                for (String interfaceName : classFile.interfaces) {
+                    declared.add(new ClassType(interfaceName));
+                }
+            }
+            supertypes.putIfAbsent(name, declared);
+        }
+        return declared;
+    }
+
+    /**
+     * @return the type parameters of the given class, or an empty list if it is not generic or cannot be found
+     */
+    List<TypeParameter> getTypeParameters(String name) {
+        ClassFile classFile = classPath.find(name);
+        if (classFile == null || classFile.signature == null) {
+            return Collections.emptyList();
+        }
+        return Signatures.parseClass(classFile.signature).typeParameters;
+    }
+
+    /**
+     * @return the internal names of the classes we could not find while walking type hierarchies, so the subtype tests
+     *         involving them failed
+     */
+    Set<String> getMissing() {
+        return missing;
+    }
+
+    private static Type substitute(Type type, Map<String, Type> substitution) {
+        if (type instanceof TypeVariable) {
+            Type substituted = substitution.get(((TypeVariable) type).name);
+            return substituted != null ? substituted : type;
+        } else if (type instanceof ClassType) {
+            ClassType classType = (ClassType) type;
+            if (classType.arguments.isEmpty() && classType.owner == null) {
+                return type;
+            }
+            List<Type> arguments = new ArrayList<>(classType.arguments.size());
+            for (Type argument : classType.arguments) {
+                arguments.add(substitute(argument, substitution));
+            }
+            ClassType owner = classType.owner != null ? (ClassType) substitute(classType.owner, substitution) : null;
+            return new ClassType(classType.name, arguments, owner);
+        } else if (type instanceof ArrayType) {
+            return new ArrayType(substitute(((ArrayType) type).component, substitution));
+        } else if (type instanceof Wildcard && ((Wildcard) type).bound != null) {
+            return new Wildcard(((Wildcard) type).kind, substitute(((Wildcard) type).bound, substitution));
+        }
+        return type;
+    }
+}
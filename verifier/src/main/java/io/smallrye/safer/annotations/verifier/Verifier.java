@@ -0,0 +1,469 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.smallrye.safer.annotations.verifier.Constraints.Constraint;
+import io.smallrye.safer.annotations.verifier.Constraints.Matcher;
+import io.smallrye.safer.annotations.verifier.Signatures.MethodSignature;
+import io.smallrye.safer.annotations.verifier.Type.TypeParameter;
+
+/**
+ * Checks the annotation constraints on compiled classes, without compiling anything, for code which never goes
+ * through javac with the processor: generated classes, other JVM languages, or third-party jars. Constraints and
+ * {@link Diagnostic} messages are the same as those of the processor, read from class files: annotations with a
+ * <code>SOURCE</code> retention cannot be checked, since they are not in class files. Only the signatures of
+ * <code>TargetAllocationFree</code> methods are checked, and their varargs parameters are called <code>argN</code>
+ * in messages unless their class was compiled with <code>-parameters</code>.
+ * <p>
+ * Jars are memory-mapped, and their class files are parsed and checked in parallel. Types are looked up in the checked
+ * jars and directories, then in the class path, then in the JDK running the verifier.
+ * <p>
+ * Run it with <code>java -jar smallrye-safer-annotations-verifier.jar [--class-path path] [--threads n] jar...</code>
+ */
+public class Verifier {
+
+    // how many classes each task checks without forking
+    private static final int BATCH_SIZE = 64;
+
+    private List<Path> classPath = Collections.emptyList();
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Sets the jars and directories of the classes the checked classes use, to check subtypes, and of the constrained
+     * annotations and their overrides, when they are not checked themselves.
+     */
+    public Verifier classPath(List<Path> classPath) {
+        this.classPath = classPath;
+        return this;
+    }
+
+    /**
+     * Sets how many threads check classes, the number of processors by default.
+     */
+    public Verifier threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Checks every class of the given jars and directories.
+     *
+     * @return what we found, in the order of the given jars and of their classes
+     */
+    public List<Diagnostic> verify(List<Path> inputs) throws IOException {
+        List<Archive> checked = new ArrayList<>();
+        // the same jar may be on both
+        Set<Path> paths = new LinkedHashSet<>(inputs);
+        paths.addAll(classPath);
+        List<Archive> archives = new ArrayList<>();
+        for (Path path : paths) {
+            Archive archive = Archive.open(path);
+            archives.add(archive);
+            if (inputs.contains(path)) {
+                checked.add(archive);
+            }
+        }
+        ClassPath classes = new ClassPath(archives);
+        Types types = new Types(classes);
+        Constraints constraints = new Constraints(classes, types);
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        constraints.readOverrides(archives, checked, diagnostics);
+
+        List<Check> checks = new ArrayList<>();
+        for (Archive archive : checked) {
+            for (String entry : archive.getEntries()) {
+                // skip the other versions of multi-release jars, module-info and package-info
+                if (entry.endsWith(".class") && !entry.startsWith("META-INF/") && !entry.endsWith("-info.class")) {
+                    checks.add(new Check(archive, entry));
+                }
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new CheckTask(checks, 0, checks.size(), classes, types, constraints));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        for (Check check : checks) {
+            diagnostics.addAll(check.diagnostics);
+        }
+        for (String missing : new TreeSet<>(types.getMissing())) {
+            diagnostics.add(new Diagnostic(Diagnostic.Kind.WARNING, null, -1, null, null,
+                    "Class not found, the subtype checks which needed it failed: " + missing.replace('/', '.')));
+        }
+        return diagnostics;
+    }
+
+    /**
+     * A class file to check, and what we found.
+     */
+    private static final class Check {
+        final Archive archive;
+        final String entry;
+        List<Diagnostic> diagnostics = Collections.emptyList();
+
+        Check(Archive archive, String entry) {
+            this.archive = archive;
+            this.entry = entry;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class CheckTask extends RecursiveAction {
+        private final List<Check> checks;
+        private final int from;
+        private final int to;
+        private final ClassPath classPath;
+        private final Types types;
+        private final Constraints constraints;
+
+        CheckTask(List<Check> checks, int from, int to, ClassPath classPath, Types types, Constraints constraints) {
+            this.checks = checks;
+            this.from = from;
+            this.to = to;
+            this.classPath = classPath;
+            this.types = types;
+            this.constraints = constraints;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    Check check = checks.get(i);
+                    try {
+                        ByteBuffer bytes = check.archive.read(check.entry);
+                        ClassFile classFile = classPath.parse(check.archive, check.entry, bytes);
+                        check.diagnostics = new ClassCheck(classFile, check.archive, classPath, types, constraints).check();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (IllegalArgumentException e) {
+                        check.diagnostics = Collections.singletonList(new Diagnostic(Diagnostic.Kind.WARNING, null, -1,
+                                null, check.archive.toString(),
+                                "Skipped invalid class file " + check.entry + ": " + e.getMessage()));
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CheckTask(checks, from, middle, classPath, types, constraints),
+                        new CheckTask(checks, middle, to, classPath, types, constraints));
+            }
+        }
+    }
+
+    /**
+     * Checks the constrained methods of a class, like the processor does.
+     */
+    private static final class ClassCheck {
+        private final ClassFile classFile;
+        private final Archive archive;
+        private final ClassPath classPath;
+        private final Types types;
+        private final Constraints constraints;
+        private final List<Diagnostic> diagnostics = new ArrayList<>();
+        // the bounds of the type variables of the class, and of its enclosing classes
+        private Map<String, List<Type>> classBounds;
+
+        ClassCheck(ClassFile classFile, Archive archive, ClassPath classPath, Types types, Constraints constraints) {
+            this.classFile = classFile;
+            this.archive = archive;
+            this.classPath = classPath;
+            this.types = types;
+            this.constraints = constraints;
+        }
+
+        List<Diagnostic> check() {
+            // the processor only checks top-level and member classes
+            if (classFile.local) {
+                return diagnostics;
+            }
+            for (ClassFile.Method method : classFile.methods) {
+                if (method.name.startsWith("<")
+                        || (method.access & (ClassFile.ACC_BRIDGE | ClassFile.ACC_SYNTHETIC)) != 0) {
+                    continue;
+                }
+                boolean targetAccessor = false;
+                List<Constraint> methodConstraints = null;
+                List<Constraint> allocationConstraints = null;
+                for (ClassFile.Annotation annotation : method.annotations) {
+                    Constraint constraint = constraints.get(annotation.type);
+                    if (constraint == null) {
+                        continue;
+                    }
+                    targetAccessor |= constraint.targetAccessor;
+                    if (constraint.allocationFree) {
+                        if (allocationConstraints == null) {
+                            allocationConstraints = new ArrayList<>(1);
+                        }
+                        allocationConstraints.add(constraint);
+                    }
+                    if (constraint.isTargetMethod()) {
+                        if (methodConstraints == null) {
+                            methodConstraints = new ArrayList<>(1);
+                        }
+                        methodConstraints.add(constraint);
+                    }
+                }
+                if (targetAccessor || methodConstraints != null || allocationConstraints != null) {
+                    check(method, targetAccessor,
+                            methodConstraints != null ? methodConstraints : Collections.<Constraint> emptyList(),
+                            allocationConstraints != null ? allocationConstraints
+                                    : Collections.<Constraint> emptyList());
+                }
+            }
+            return diagnostics;
+        }
+
+        private void check(ClassFile.Method method, boolean targetAccessor, List<Constraint> methodConstraints,
+                List<Constraint> allocationConstraints) {
+            MethodSignature signature = Signatures.parseMethod(method.descriptor);
+            if (method.signature != null) {
+                MethodSignature generic = Signatures.parseMethod(method.signature);
+                // they only differ for synthetic parameters, which we do not check anyway
+                if (generic.parameters.size() == signature.parameters.size()) {
+                    signature = generic;
+                }
+            }
+            String element = element(method, signature);
+            if (targetAccessor) {
+                checkAccessor(method, signature, element);
+            }
+            if (!allocationConstraints.isEmpty()) {
+                checkAllocationFreeSignature(method, signature, element, allocationConstraints);
+            }
+            if (methodConstraints.isEmpty()) {
+                return;
+            }
+            Map<String, List<Type>> bounds = bounds(signature.typeParameters);
+            for (Constraint constraint : methodConstraints) {
+                checkType(signature.returnType, constraint.allowedReturnTypes, "return", method, element, bounds);
+            }
+            for (Type parameter : signature.parameters) {
+                for (Constraint constraint : methodConstraints) {
+                    checkType(parameter, constraint.allowedParameterTypes, "parameter", method, element, bounds);
+                }
+            }
+        }
+
+        private void checkAccessor(ClassFile.Method method, MethodSignature signature, String element) {
+            String name = method.name;
+            boolean returnsVoid = signature.returnType instanceof Type.Primitive
+                    && ((Type.Primitive) signature.returnType).descriptor == 'V';
+            if ((name.startsWith("get") && name.length() > 3)
+                    || (name.startsWith("is") && name.length() > 2)) {
+                if (returnsVoid) {
+                    error("Invalid getter return type: cannot be 'void'", method, element);
+                }
+                if (!signature.parameters.isEmpty()) {
+                    error("Getter cannot have parameters", method, element);
+                }
+            } else if (name.startsWith("set") && name.length() > 3) {
+                if (!returnsVoid) {
+                    error("Invalid setter return type: must be 'void'", method, element);
+                }
+                if (signature.parameters.size() != 1) {
+                    error("Setter must have a single parameter", method, element);
+                }
+            } else {
+                error("Invalid accessor name: " + name + " must start with 'get', 'is' or 'set'", method, element);
+            }
+        }
+
+        private void checkAllocationFreeSignature(ClassFile.Method method, MethodSignature signature, String element,
+                List<Constraint> allocationConstraints) {
+            if (isAllocationAllowed(method.annotations)) {
+                return;
+            }
+            boolean varargs = (method.access & ClassFile.ACC_VARARGS) != 0;
+            for (Constraint constraint : allocationConstraints) {
+                if (AllocationRules.isBoxed(signature.returnType)) {
+                    error(AllocationRules.message(AllocationRules.boxedReturnType(types.toString(signature.returnType)),
+                            constraint.annotation), method, element);
+                }
+                for (int p = 0; p < signature.parameters.size(); p++) {
+                    if (isAllocationAllowed(method.getParameterAnnotations(p))) {
+                        continue;
+                    }
+                    Type parameter = signature.parameters.get(p);
+                    if (varargs && p == signature.parameters.size() - 1) {
+                        error(AllocationRules.message(AllocationRules.varargsParameter(method.getParameterName(p)),
+                                constraint.annotation), method, element);
+                    } else if (AllocationRules.isBoxed(parameter)) {
+                        error(AllocationRules.message(AllocationRules.boxedParameterType(types.toString(parameter)),
+                                constraint.annotation), method, element);
+                    }
+                }
+            }
+        }
+
+        private static boolean isAllocationAllowed(List<ClassFile.Annotation> annotations) {
+            for (ClassFile.Annotation annotation : annotations) {
+                if (annotation.type.equals(Constraints.ALLOW_ALLOCATION)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void checkType(Type checkedType, List<Matcher> allowedTypes, String kind,
+                ClassFile.Method method, String element, Map<String, List<Type>> bounds) {
+            for (Matcher matcher : allowedTypes) {
+                if (matcher.subtype ? types.isSubtype(checkedType, matcher.type, bounds)
+                        : types.isSameType(matcher.type, checkedType)) {
+                    return;
+                }
+            }
+            // like the processor, which prints the array type of a variable arity parameter with []
+            error("Invalid " + kind + " type: '" + types.toString(checkedType) + "' must be one of: "
+                    + allowedTypes, method, element);
+        }
+
+        private Map<String, List<Type>> bounds(List<TypeParameter> methodTypeParameters) {
+            if (classBounds == null) {
+                classBounds = new HashMap<>();
+                List<String> enclosing = new ArrayList<>();
+                for (ClassFile c = classFile; c != null; c = c.outerName != null ? classPath.find(c.outerName) : null) {
+                    enclosing.add(0, c.name);
+                }
+                // inner type variables shadow the outer ones
+                for (String name : enclosing) {
+                    for (TypeParameter typeParameter : types.getTypeParameters(name)) {
+                        classBounds.put(typeParameter.name, typeParameter.bounds);
+                    }
+                }
+            }
+            if (methodTypeParameters.isEmpty()) {
+                return classBounds;
+            }
+            Map<String, List<Type>> bounds = new HashMap<>(classBounds);
+            for (TypeParameter typeParameter : methodTypeParameters) {
+                bounds.put(typeParameter.name, typeParameter.bounds);
+            }
+            return bounds;
+        }
+
+        private String element(ClassFile.Method method, MethodSignature signature) {
+            StringBuilder sb = new StringBuilder(types.getSourceName(classFile.name)).append('.').append(method.name)
+                    .append('(');
+            boolean varargs = (method.access & ClassFile.ACC_VARARGS) != 0;
+            for (int p = 0; p < signature.parameters.size(); p++) {
+                if (p > 0) {
+                    sb.append(',');
+                }
+                sb.append(types.toString(signature.parameters.get(p), varargs && p == signature.parameters.size() - 1));
+            }
+            return sb.append(')').toString();
+        }
+
+        private void error(String message, ClassFile.Method method, String element) {
+            diagnostics.add(new Diagnostic(Diagnostic.Kind.ERROR, classFile.getSourcePath(), method.line, element,
+                    archive.toString(), message));
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.err));
+    }
+
+    /**
+     * Runs the verifier from the command line, printing diagnostics like javac does.
+     *
+     * @return 0 if no error was found, 1 if some were, or 2 if the verifier could not run
+     */
+    static int run(String[] args, PrintStream out) {
+        Verifier verifier = new Verifier();
+        List<Path> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-cp") || arg.equals("--class-path")) {
+                    List<Path> classPath = new ArrayList<>();
+                    for (String path : value(args, ++i).split(File.pathSeparator)) {
+                        if (!path.isEmpty()) {
+                            classPath.add(Paths.get(path));
+                        }
+                    }
+                    verifier.classPath(classPath);
+                } else if (arg.equals("--threads")) {
+                    verifier.threads(Integer.parseInt(value(args, ++i)));
+                } else if (arg.equals("-h") || arg.equals("--help")) {
+                    usage(out);
+                    return 0;
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    inputs.add(Paths.get(arg));
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("Nothing to verify");
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("error: " + e.getMessage());
+            usage(out);
+            return 2;
+        }
+        List<Diagnostic> diagnostics;
+        try {
+            diagnostics = verifier.verify(inputs);
+        } catch (IOException e) {
+            out.println("error: " + e.getMessage());
+            return 2;
+        }
+        int errors = 0;
+        int warnings = 0;
+        for (Diagnostic diagnostic : diagnostics) {
+            out.println(diagnostic);
+            if (diagnostic.getElement() != null) {
+                out.println("    in " + diagnostic.getElement()
+                        + (diagnostic.getArchive() != null ? " from " + diagnostic.getArchive() : ""));
+            }
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors++;
+            } else if (diagnostic.getKind() == Diagnostic.Kind.WARNING) {
+                warnings++;
+            }
+        }
+        if (errors > 0) {
+            out.println(errors + (errors == 1 ? " error" : " errors"));
+        }
+        if (warnings > 0) {
+            out.println(warnings + (warnings == 1 ? " warning" : " warnings"));
+        }
+        return errors > 0 ? 1 : 0;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private static void usage(PrintStream out) {
+        out.println("Usage: java -jar smallrye-safer-annotations-verifier.jar [options] <jar or directory>...");
+        out.println("  -cp, --class-path <path>  the jars and directories of the classes the checked ones use");
+        out.println("  --threads <n>             how many threads check classes, the number of processors by default");
+    }
+}
@@ -0,0 +1,341 @@
+package io.smallrye.safer.annotations.verifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.smallrye.safer.annotations.testing.ExpectedDiagnostic;
+import io.smallrye.safer.annotations.testing.SaferCompiler;
+import io.smallrye.safer.annotations.testing.Source;
+
+public class VerifierTest {
+
+    private static final String SERVICES = "META-INF/services/io.smallrye.safer.annotations.DefinitionOverride";
+
+    private static final List<Source> CONSTRAINTS = Arrays.asList(
+            Source.of("test.Handler", "package test;\n"
+                    + "import java.util.List;\n"
+                    + "import java.util.Map;\n"
+                    + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                    + "@TargetMethod(returnTypes = { void.class, String.class, Handler.ListOfInteger.class, int[].class },"
+                    + " parameterTypes = { Integer.class, Handler.ListOfInteger.class, Handler.ThrowableSubtype.class,"
+                    + " Handler.NumberMapSubtype.class })\n"
+                    + "public @interface Handler {\n"
+                    + "    class ListOfInteger extends TargetMethod.GenericType<List<Integer>> {\n"
+                    + "    }\n"
+                    + "    class ThrowableSubtype extends TargetMethod.Subtype<Throwable> {\n"
+                    + "    }\n"
+                    + "    class NumberMapSubtype extends TargetMethod.Subtype<Map<String, ? extends Number>> {\n"
+                    + "    }\n"
+                    + "}\n"),
+            Source.of("test.Accessor", "package test;\n"
+                    + "import java.lang.annotation.Retention;\n"
+                    + "import java.lang.annotation.RetentionPolicy;\n"
+                    + "import io.smallrye.safer.annotations.TargetAccessor;\n"
+                    + "@TargetAccessor\n"
+                    + "@Retention(RetentionPolicy.RUNTIME)\n"
+                    + "public @interface Accessor {\n"
+                    + "}\n"),
+            Source.of("test.AllocationFree", "package test;\n"
+                    + "import io.smallrye.safer.annotations.TargetAllocationFree;\n"
+                    + "@TargetAllocationFree\n"
+                    + "public @interface AllocationFree {\n"
+                    + "}\n"),
+            Source.of("test.Plain", "package test;\n"
+                    + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                    + "@TargetMethod(returnTypes = void.class)\n"
+                    + "public @interface Plain {\n"
+                    + "}\n"),
+            Source.of("test.PlainOverride", "package test;\n"
+                    + "import io.smallrye.safer.annotations.DefinitionOverride;\n"
+                    + "import io.smallrye.safer.annotations.OverrideTarget;\n"
+                    + "import io.smallrye.safer.annotations.TargetMethod;\n"
+                    + "@OverrideTarget(Plain.class)\n"
+                    + "@TargetMethod(returnTypes = String.class, parameterTypes = CharSequence.class)\n"
+                    + "public class PlainOverride implements DefinitionOverride {\n"
+                    + "}\n"));
+
+    private static final Source VALID = Source.of("test.Valid", "package test;\n"
+            + "import java.io.IOException;\n"
+            + "import java.util.HashMap;\n"
+            + "import java.util.List;\n"
+            + "public class Valid {\n"
+            + "    @Handler\n"
+            + "    public List<Integer> handle(Integer i, List<Integer> l, IOException e, HashMap<String, Long> m) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @Handler\n"
+            + "    public <T extends RuntimeException> int[] bounded(T t) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @Accessor\n"
+            + "    public int getI() {\n"
+            + "        return 1;\n"
+            + "    }\n"
+            + "    @AllocationFree\n"
+            + "    public long hot(int i, @io.smallrye.safer.annotations.AllowAllocation(\"reviewed\") Long l) {\n"
+            + "        return i;\n"
+            + "    }\n"
+            + "    @AllocationFree\n"
+            + "    @io.smallrye.safer.annotations.AllowAllocation(\"startup only\")\n"
+            + "    public Integer start(Integer i, String... s) {\n"
+            + "        return i;\n"
+            + "    }\n"
+            + "    @Accessor\n"
+            + "    public abstract static class Nested {\n"
+            + "        @Accessor\n"
+            + "        public abstract void setI(int i);\n"
+            + "        @Plain\n"
+            + "        public String plain(CharSequence s) {\n"
+            + "            return null;\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n");
+
+    private static final Source INVALID = Source.of("test.Invalid", "package test;\n"
+            + "import java.util.ArrayList;\n"
+            + "import java.util.List;\n"
+            + "import java.util.Map;\n"
+            + "import java.util.TreeMap;\n"
+            + "public class Invalid<X> {\n"
+            + "    @Handler\n"
+            + "    public int handle(List<String> l, Map<String, Integer> m, String... s) {\n"
+            + "        return 1;\n"
+            + "    }\n"
+            + "    @Handler\n"
+            + "    public <T> ArrayList<Integer> generic(T t, X x, TreeMap<Integer, Long> m, Map<String, Number> n) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @Handler\n"
+            + "    public Inner.Deeper array(Object[] o, int[][] i, Map.Entry<String, ?> e) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @Accessor\n"
+            + "    public void getNothing(int i) {\n"
+            + "    }\n"
+            + "    @Accessor\n"
+            + "    @Handler\n"
+            + "    public String setTwo(int i, int j) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @Accessor\n"
+            + "    public void other() {\n"
+            + "    }\n"
+            + "    @Plain\n"
+            + "    public void plain(Integer i) {\n"
+            + "    }\n"
+            + "    @AllocationFree\n"
+            + "    public Integer hot(Long l, int i, Object... rest) {\n"
+            + "        return i;\n"
+            + "    }\n"
+            + "    public class Inner {\n"
+            + "        public class Deeper {\n"
+            + "        }\n"
+            + "        @Handler\n"
+            + "        public void inner(Invalid<String>.Inner i) {\n"
+            + "        }\n"
+            + "    }\n"
+            + "    public interface Api {\n"
+            + "        @Handler\n"
+            + "        Long api(Long l);\n"
+            + "    }\n"
+            + "}\n");
+
+    @Test
+    public void testSameErrorsAsProcessor(@TempDir Path dir) throws IOException {
+        List<Source> sources = new ArrayList<>(CONSTRAINTS);
+        sources.add(VALID);
+        sources.add(INVALID);
+        List<String> expected = processorErrors(sources);
+        Assertions.assertFalse(expected.isEmpty());
+
+        Path classes = compile(dir.resolve("classes"), sources);
+        Path jar = jar(classes, dir.resolve("test.jar"));
+        List<Diagnostic> diagnostics = new Verifier().threads(4).verify(Collections.singletonList(jar));
+        Assertions.assertEquals(expected, messages(diagnostics));
+        for (Diagnostic diagnostic : diagnostics) {
+            Assertions.assertEquals("test/Invalid.java", diagnostic.getSource());
+            Assertions.assertTrue(diagnostic.getElement().startsWith("test.Invalid."), diagnostic.getElement());
+            Assertions.assertEquals(jar.toString(), diagnostic.getArchive());
+        }
+        // abstract methods have no line
+        Assertions.assertTrue(diagnostics.stream().anyMatch(d -> d.getLine() > 0));
+        Assertions.assertTrue(diagnostics.stream().anyMatch(d -> d.getLine() == -1));
+
+        // directories are read like jars
+        Assertions.assertEquals(toStrings(diagnostics),
+                toStrings(new Verifier().threads(1).verify(Collections.singletonList(classes))));
+    }
+
+    @Test
+    public void testClassPath(@TempDir Path dir) throws IOException {
+        // the constraints and their override come from the class path, and only the users are checked
+        Path constraints = jar(compile(dir.resolve("constraints"), CONSTRAINTS), dir.resolve("constraints.jar"));
+        Path users = dir.resolve("users");
+        compile(users, Arrays.asList(VALID, INVALID), constraints);
+        Files.delete(users.resolve(SERVICES));
+
+        List<Diagnostic> diagnostics = new Verifier().classPath(Collections.singletonList(constraints))
+                .verify(Collections.singletonList(users));
+        List<Source> sources = new ArrayList<>(CONSTRAINTS);
+        sources.add(INVALID);
+        Assertions.assertEquals(processorErrors(sources), messages(diagnostics));
+
+        // without the constraints, nothing is checked
+        Assertions.assertEquals(Collections.emptyList(), new Verifier().verify(Collections.singletonList(users)));
+    }
+
+    @Test
+    public void testCommandLine(@TempDir Path dir) throws IOException {
+        List<Source> sources = new ArrayList<>(CONSTRAINTS);
+        sources.add(VALID);
+        Path valid = jar(compile(dir.resolve("valid"), sources), dir.resolve("valid.jar"));
+        sources.add(INVALID);
+        Path invalid = jar(compile(dir.resolve("invalid"), sources), dir.resolve("invalid.jar"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assertions.assertEquals(0, Verifier.run(new String[] { valid.toString() }, print(out)));
+        Assertions.assertEquals("", out.toString("UTF-8"));
+
+        out.reset();
+        Assertions.assertEquals(1, Verifier.run(new String[] { "--threads", "2", invalid.toString() }, print(out)));
+        String output = out.toString("UTF-8");
+        Assertions.assertTrue(output.contains("test/Invalid.java:"), output);
+        Assertions.assertTrue(output.contains(": error: Invalid return type: 'int' must be one of: [void, java.lang.String,"
+                + " java.util.List<java.lang.Integer>, int[]]"), output);
+        Assertions.assertTrue(output.contains("    in test.Invalid.handle(java.util.List<java.lang.String>,"
+                + "java.util.Map<java.lang.String,java.lang.Integer>,java.lang.String...) from " + invalid), output);
+        Assertions.assertTrue(output.endsWith(processorErrors(sources).size() + " errors" + System.lineSeparator()),
+                output);
+
+        out.reset();
+        Assertions.assertEquals(2, Verifier.run(new String[] { "--threads" }, print(out)));
+        Assertions.assertTrue(out.toString("UTF-8").startsWith("error: Missing value for --threads"));
+        out.reset();
+        Assertions.assertEquals(2, Verifier.run(new String[] { dir.resolve("missing.jar").toString() }, print(out)));
+    }
+
+    private static PrintStream print(OutputStream out) throws IOException {
+        return new PrintStream(out, true, "UTF-8");
+    }
+
+    /**
+     * @return the sorted messages of the errors the processor reports
+     */
+    private static List<String> processorErrors(List<Source> sources) {
+        try (SaferCompiler compiler = new SaferCompiler()) {
+            return compiler.resource(SERVICES, "test.PlainOverride\n")
+                    .compile(sources)
+                    .getErrors()
+                    .stream()
+                    .map(ExpectedDiagnostic::getMessage)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> messages(List<Diagnostic> diagnostics) {
+        return diagnostics.stream().map(Diagnostic::getMessage).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> toStrings(List<Diagnostic> diagnostics) {
+        return diagnostics.stream().map(Diagnostic::toString).collect(Collectors.toList());
+    }
+
+    /**
+     * Compiles the given sources without the processor, along with the service file of the override.
+     */
+    private static Path compile(Path output, List<Source> sources, Path... classPath) throws IOException {
+        Files.createDirectories(output.resolve(SERVICES).getParent());
+        Files.write(output.resolve(SERVICES), "test.PlainOverride\n".getBytes(StandardCharsets.UTF_8));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ENGLISH,
+                StandardCharsets.UTF_8)) {
+            StringBuilder path = new StringBuilder(System.getProperty("java.class.path"));
+            for (Path entry : classPath) {
+                path.append(java.io.File.pathSeparator).append(entry);
+            }
+            List<String> options = Arrays.asList("-proc:none", "-parameters", "-d", output.toString(), "-classpath",
+                    path.toString());
+            // keeps javac from loading the plugin of the processor from the test class path, where the reactor build
+            // only has the classes of core for Java 8
+            JavaFileManager noPlugins = new ForwardingJavaFileManager<JavaFileManager>(fileManager) {
+                @Override
+                public boolean hasLocation(Location location) {
+                    return location == StandardLocation.ANNOTATION_PROCESSOR_PATH || super.hasLocation(location);
+                }
+
+                @Override
+                public ClassLoader getClassLoader(Location location) {
+                    return location == StandardLocation.ANNOTATION_PROCESSOR_PATH
+                            ? new URLClassLoader(new URL[0], ClassLoader.getSystemClassLoader().getParent())
+                            : super.getClassLoader(location);
+                }
+            };
+            Assertions.assertTrue(compiler.getTask(null, noPlugins, diagnostics, options, null, sources).call(),
+                    () -> diagnostics.getDiagnostics().toString());
+        }
+        return output;
+    }
+
+    /**
+     * Packages the given directory, alternating deflated and stored entries.
+     */
+    private static Path jar(Path directory, Path jar) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            boolean stored = false;
+            for (Path file : files) {
+                byte[] bytes = Files.readAllBytes(file);
+                JarEntry entry = new JarEntry(directory.relativize(file).toString().replace('\\', '/'));
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(bytes.length);
+                    entry.setCompressedSize(bytes.length);
+                    entry.setCrc(crc.getValue());
+                }
+                stored = !stored;
+                out.putNextEntry(entry);
+                out.write(bytes);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}